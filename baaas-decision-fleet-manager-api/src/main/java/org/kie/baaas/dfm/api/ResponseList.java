@@ -15,6 +15,7 @@
 
 package org.kie.baaas.dfm.api;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import io.quarkus.runtime.annotations.RegisterForReflection;
@@ -29,7 +30,8 @@ public abstract class ResponseList {
     private long size;
 
     @JsonProperty("total")
-    private long total;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long total;
 
     public long getPage() {
         return page;
@@ -47,11 +49,11 @@ public abstract class ResponseList {
         this.size = size;
     }
 
-    public long getTotal() {
+    public Long getTotal() {
         return total;
     }
 
-    public void setTotal(long total) {
+    public void setTotal(Long total) {
         this.total = total;
     }
 }
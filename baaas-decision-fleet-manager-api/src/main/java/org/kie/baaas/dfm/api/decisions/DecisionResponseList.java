@@ -35,6 +35,9 @@ public class DecisionResponseList extends ResponseList {
     @JsonProperty("items")
     private List<DecisionResponse> items = new ArrayList<>();
 
+    @JsonProperty("next_cursor")
+    private String nextCursor;
+
     public String getKind() {
         return kind;
     }
@@ -50,4 +53,12 @@ public class DecisionResponseList extends ResponseList {
     public void setItems(List<DecisionResponse> items) {
         this.items = items;
     }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
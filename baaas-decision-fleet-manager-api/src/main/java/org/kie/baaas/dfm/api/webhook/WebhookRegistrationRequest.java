@@ -12,6 +12,9 @@ public class WebhookRegistrationRequest {
     @JsonProperty("url")
     private URL url;
 
+    @JsonProperty("batch")
+    private boolean batch;
+
     public URL getUrl() {
         return url;
     }
@@ -19,4 +22,12 @@ public class WebhookRegistrationRequest {
     public void setUrl(URL url) {
         this.url = url;
     }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public void setBatch(boolean batch) {
+        this.batch = batch;
+    }
 }
@@ -21,6 +21,9 @@ public class WebhookResponse {
     @JsonProperty("url")
     private URL url;
 
+    @JsonProperty("batch")
+    private boolean batch;
+
     public String getKind() {
         return kind;
     }
@@ -49,10 +52,19 @@ public class WebhookResponse {
         this.url = url;
     }
 
-    public static WebhookResponse from(String id, URL url) {
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public void setBatch(boolean batch) {
+        this.batch = batch;
+    }
+
+    public static WebhookResponse from(String id, URL url, boolean batch) {
         WebhookResponse result = new WebhookResponse();
         result.setId(id);
         result.setUrl(url);
+        result.setBatch(batch);
         result.setHref(String.format("/webhooks/%s", id));
         return result;
     }
@@ -55,6 +55,46 @@ public class APIConstants {
      */
     public static final String SIZE_DEFAULT = "100";
 
+    /**
+     * The cursor query parameter name. Its value is the continuation token returned with the previous page of a list
+     */
+    public static final String CURSOR = "cursor";
+
+    /**
+     * The total query parameter name. Counting the items of a list is opt-in, as it costs more than reading a page
+     */
+    public static final String TOTAL = "total";
+
+    /**
+     * The default value for the total query parameter (if it is omitted by the user)
+     */
+    public static final String TOTAL_DEFAULT = "false";
+
+    /**
+     * The wait query parameter name. Its value is the number of seconds for which a watch waits for a change
+     */
+    public static final String WAIT = "wait";
+
+    /**
+     * The default value for the wait query parameter (if it is omitted by the user)
+     */
+    public static final String WAIT_DEFAULT = "30";
+
+    /**
+     * The minimum value for the wait query parameter
+     */
+    public static final int WAIT_MIN = 1;
+
+    /**
+     * The maximum value for the wait query parameter
+     */
+    public static final int WAIT_MAX = 60;
+
+    /**
+     * The maximum number of Decisions in a single bulk request
+     */
+    public static final int BULK_SIZE_MAX = 50;
+
     private APIConstants() {
     }
 }
@@ -15,23 +15,36 @@
 
 package org.kie.baaas.dfm.app.controller;
 
-import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.validation.Valid;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 
@@ -39,17 +52,22 @@ import org.eclipse.microprofile.openapi.annotations.enums.SecuritySchemeType;
 import org.eclipse.microprofile.openapi.annotations.security.SecurityRequirement;
 import org.eclipse.microprofile.openapi.annotations.security.SecurityScheme;
 import org.eclipse.microprofile.openapi.annotations.security.SecuritySchemes;
+import org.kie.baaas.dfm.api.decisions.DecisionBulkResponse;
 import org.kie.baaas.dfm.api.decisions.DecisionRequest;
 import org.kie.baaas.dfm.api.decisions.DecisionResponse;
 import org.kie.baaas.dfm.api.decisions.DecisionResponseList;
 import org.kie.baaas.dfm.app.controller.modelmappers.DecisionMapper;
 import org.kie.baaas.dfm.app.manager.DecisionLifecycle;
 import org.kie.baaas.dfm.app.manager.DecisionLifecycleOrchestrator;
-import org.kie.baaas.dfm.app.model.Decision;
+import org.kie.baaas.dfm.app.manager.DecisionVersionOutcome;
+import org.kie.baaas.dfm.app.manager.DecisionVersionWatcher;
+import org.kie.baaas.dfm.app.model.DecisionSummary;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
 import org.kie.baaas.dfm.app.model.DecisionVersionStatus;
+import org.kie.baaas.dfm.app.model.ListCursor;
 import org.kie.baaas.dfm.app.model.ListResult;
 import org.kie.baaas.dfm.app.resolvers.CustomerIdResolver;
+import org.kie.baaas.dfm.app.storage.DMNContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,6 +75,8 @@ import io.quarkus.security.Authenticated;
 import io.quarkus.security.identity.SecurityIdentity;
 
 import static java.util.Objects.requireNonNull;
+import static org.kie.baaas.dfm.app.controller.APIConstants.BULK_SIZE_MAX;
+import static org.kie.baaas.dfm.app.controller.APIConstants.CURSOR;
 import static org.kie.baaas.dfm.app.controller.APIConstants.PAGE;
 import static org.kie.baaas.dfm.app.controller.APIConstants.PAGE_DEFAULT;
 import static org.kie.baaas.dfm.app.controller.APIConstants.PAGE_MIN;
@@ -64,6 +84,12 @@ import static org.kie.baaas.dfm.app.controller.APIConstants.SIZE;
 import static org.kie.baaas.dfm.app.controller.APIConstants.SIZE_DEFAULT;
 import static org.kie.baaas.dfm.app.controller.APIConstants.SIZE_MAX;
 import static org.kie.baaas.dfm.app.controller.APIConstants.SIZE_MIN;
+import static org.kie.baaas.dfm.app.controller.APIConstants.TOTAL;
+import static org.kie.baaas.dfm.app.controller.APIConstants.TOTAL_DEFAULT;
+import static org.kie.baaas.dfm.app.controller.APIConstants.WAIT;
+import static org.kie.baaas.dfm.app.controller.APIConstants.WAIT_DEFAULT;
+import static org.kie.baaas.dfm.app.controller.APIConstants.WAIT_MAX;
+import static org.kie.baaas.dfm.app.controller.APIConstants.WAIT_MIN;
 
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
@@ -76,12 +102,28 @@ import static org.kie.baaas.dfm.app.controller.APIConstants.SIZE_MIN;
 @SecurityRequirement(name = "bearer")
 public class DecisionResource {
 
+    private static final String RANGE = "Range";
+
+    private static final String CONTENT_RANGE = "Content-Range";
+
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+
+    private static final String PREFER = "Prefer";
+
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
+
+    private static final String RESPOND_ASYNC = "respond-async";
+
+    private static final Pattern SINGLE_BYTE_RANGE = Pattern.compile("bytes=(\\d+-\\d*|-\\d+)");
+
     private final Logger LOGGER = LoggerFactory.getLogger(DecisionResource.class);
 
     private final DecisionLifecycle decisionLifecycle;
 
     private final DecisionMapper decisionMapper;
 
+    private final DecisionVersionWatcher decisionVersionWatcher;
+
     @Inject
     CustomerIdResolver customerIdResolver;
 
@@ -90,12 +132,21 @@ public class DecisionResource {
 
     @Inject
     public DecisionResource(DecisionLifecycleOrchestrator decisionLifecycle,
-            DecisionMapper decisionMapper) {
+            DecisionMapper decisionMapper, DecisionVersionWatcher decisionVersionWatcher) {
         requireNonNull(decisionLifecycle, "decisionLifecycle cannot be null");
         requireNonNull(decisionMapper, "decisionMapper cannot be null");
+        requireNonNull(decisionVersionWatcher, "decisionVersionWatcher cannot be null");
 
         this.decisionLifecycle = decisionLifecycle;
         this.decisionMapper = decisionMapper;
+        this.decisionVersionWatcher = decisionVersionWatcher;
+    }
+
+    /*
+     * A continuation token takes precedence over a page number, which is only honoured for clients that still page by number.
+     */
+    private ListCursor toListCursor(int page, String cursor) {
+        return cursor == null ? ListCursor.atPage(page) : ListCursor.decode(cursor);
     }
 
     private Response mapDecisionVersion(DecisionVersion decisionVersion) {
@@ -140,16 +191,42 @@ public class DecisionResource {
     @Path("{id}/versions/{version}/dmn")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
     @Authenticated
-    public Response getDecisionVersionDMN(@PathParam("id") String id, @PathParam("version") long version) {
+    public Response getDecisionVersionDMN(@PathParam("id") String id, @PathParam("version") long version,
+            @HeaderParam(RANGE) String range, @Context Request request) {
         // TODO returns a formatted xml file.
 
         String customerId = customerIdResolver.getCustomerId(identity.getPrincipal());
         LOGGER.info("Requesting Decision version '{}' of with id or name '{}' for customer '{}' to be downloaded...",
                 version, id, customerId);
 
-        ByteArrayOutputStream byteArrayOutputStream = decisionLifecycle.getDMN(customerId, id, version);
+        DecisionVersion decisionVersion = decisionLifecycle.getVersion(customerId, id, version);
 
-        Response.ResponseBuilder response = Response.ok((StreamingOutput) output -> byteArrayOutputStream.writeTo(output));
+        // The DMN of a version never changes, so its MD5 answers conditional requests without reading it from storage.
+        // A version without a recorded MD5 is always served in full and without an ETag.
+        EntityTag entityTag = decisionVersion.getDmnMd5() == null ? null : new EntityTag(decisionVersion.getDmnMd5().replace("\"", ""));
+        if (entityTag != null) {
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+            if (notModified != null) {
+                return notModified.build();
+            }
+        }
+
+        // Multiple or malformed ranges are ignored and the whole DMN is returned
+        String byteRange = range != null && SINGLE_BYTE_RANGE.matcher(range).matches() ? range : null;
+        DMNContent dmn = decisionLifecycle.getDMN(customerId, decisionVersion, byteRange);
+
+        Response.ResponseBuilder response = Response.ok((StreamingOutput) dmn::writeTo);
+        if (dmn.isPartial()) {
+            response.status(Response.Status.PARTIAL_CONTENT);
+            response.header(CONTENT_RANGE, dmn.getContentRange());
+        }
+        if (entityTag != null) {
+            response.tag(entityTag);
+        }
+        response.header(ACCEPT_RANGES, "bytes");
+        if (dmn.getContentLength() != null) {
+            response.header(HttpHeaders.CONTENT_LENGTH, dmn.getContentLength());
+        }
         response.header("Content-Disposition", "attachment;filename=" + id + ".xml");
         response.header("Content-Type", MediaType.APPLICATION_XML);
 
@@ -177,6 +254,52 @@ public class DecisionResource {
         return mapDecisionVersion(decisionVersion);
     }
 
+    /*
+     * The status of a DecisionVersion is its entity tag, so a client that sends the tag it last saw as If-None-Match
+     * is answered as soon as the status differs from it.
+     */
+    private EntityTag statusTag(String status) {
+        return new EntityTag(status);
+    }
+
+    private Response mapWatchedDecisionVersion(DecisionResponse decisionResponse) {
+        return Response.ok(decisionResponse).tag(statusTag(decisionResponse.getStatus())).build();
+    }
+
+    /**
+     * Long poll for a change of status of a DecisionVersion, in place of polling it. Without an If-None-Match header, or
+     * with one that no longer matches, the DecisionVersion is returned straight away. Otherwise the request is held until
+     * the fleet shard reports the DecisionVersion as deployed or failed, or until the wait expires with 304 Not Modified.
+     * A held request does not hold a thread.
+     */
+    @GET
+    @Path("{id}/versions/{version}/watch")
+    @Authenticated
+    public void watchDecisionVersion(@PathParam("id") String id, @PathParam("version") long version,
+            @DefaultValue(WAIT_DEFAULT) @Min(WAIT_MIN) @Max(WAIT_MAX) @QueryParam(WAIT) int wait, @Context Request request,
+            @Suspended AsyncResponse asyncResponse) {
+        String customerId = customerIdResolver.getCustomerId(identity.getPrincipal());
+        LOGGER.info("Watching Decision Version '{}' for Decision with id or name '{}' for customer '{}'...", version, id, customerId);
+
+        DecisionResponse seen = decisionMapper.mapVersionToDecisionResponse(decisionLifecycle.getVersion(customerId, id, version));
+        EntityTag seenTag = statusTag(seen.getStatus());
+        if (request.evaluatePreconditions(seenTag) == null) {
+            asyncResponse.resume(mapWatchedDecisionVersion(seen));
+            return;
+        }
+
+        Runnable stopWatching = decisionVersionWatcher.watch(seen.getId(), version, (changed) -> asyncResponse.resume(mapWatchedDecisionVersion(changed)));
+        asyncResponse.register((CompletionCallback) (throwable) -> stopWatching.run());
+        asyncResponse.setTimeoutHandler((timedOut) -> timedOut.resume(Response.notModified(seenTag).build()));
+        asyncResponse.setTimeout(wait, TimeUnit.SECONDS);
+
+        // A change committed before the watch started is not announced to it, so check for one once more
+        DecisionResponse current = decisionMapper.mapVersionToDecisionResponse(decisionLifecycle.getVersion(customerId, id, version));
+        if (!seen.getStatus().equals(current.getStatus())) {
+            asyncResponse.resume(mapWatchedDecisionVersion(current));
+        }
+    }
+
     @GET
     @Path("{id}")
     @Authenticated
@@ -191,32 +314,60 @@ public class DecisionResource {
     @Path("{id}/versions")
     @Authenticated
     public Response listDecisionVersions(@PathParam("id") String id, @DefaultValue(PAGE_DEFAULT) @Min(PAGE_MIN) @QueryParam(PAGE) int page,
-            @DefaultValue(SIZE_DEFAULT) @Min(SIZE_MIN) @Max(SIZE_MAX) @QueryParam(SIZE) int size) {
+            @DefaultValue(SIZE_DEFAULT) @Min(SIZE_MIN) @Max(SIZE_MAX) @QueryParam(SIZE) int size, @QueryParam(CURSOR) String cursor,
+            @DefaultValue(TOTAL_DEFAULT) @QueryParam(TOTAL) boolean total) {
         String customerId = customerIdResolver.getCustomerId(identity.getPrincipal());
         LOGGER.info("Listing all versions for Decision with id or name '{}' for customer '{}'...", id, customerId);
-        ListResult<DecisionVersion> versions = decisionLifecycle.listDecisionVersions(customerId, id, page, size);
+        ListResult<DecisionVersion> versions = decisionLifecycle.listDecisionVersions(customerId, id, toListCursor(page, cursor), size, total);
         DecisionResponseList responseList = decisionMapper.mapVersionsToDecisionResponseList(versions);
         return Response.ok(responseList).build();
     }
 
     @GET
     @Authenticated
-    public Response listDecisions(@DefaultValue(PAGE_DEFAULT) @Min(PAGE_MIN) @QueryParam(PAGE) int page, @DefaultValue(SIZE_DEFAULT) @Min(SIZE_MIN) @Max(SIZE_MAX) @QueryParam(SIZE) int size) {
+    public Response listDecisions(@DefaultValue(PAGE_DEFAULT) @Min(PAGE_MIN) @QueryParam(PAGE) int page, @DefaultValue(SIZE_DEFAULT) @Min(SIZE_MIN) @Max(SIZE_MAX) @QueryParam(SIZE) int size,
+            @QueryParam(CURSOR) String cursor, @DefaultValue(TOTAL_DEFAULT) @QueryParam(TOTAL) boolean total) {
         String customerId = customerIdResolver.getCustomerId(identity.getPrincipal());
         LOGGER.info("Listing all Decisions for customer with id '{}...'", customerId);
-        ListResult<Decision> decisions = decisionLifecycle.listDecisions(customerId, page, size);
+        ListResult<DecisionSummary> decisions = decisionLifecycle.listDecisions(customerId, toListCursor(page, cursor), size, total);
         DecisionResponseList responseList = decisionMapper.mapToDecisionResponseList(decisions);
         return Response.ok(responseList).build();
     }
 
     @POST
     @Authenticated
-    public Response createOrUpdateDecision(@Valid DecisionRequest decisionsRequest) {
+    public Response createOrUpdateDecision(@Valid DecisionRequest decisionsRequest, @HeaderParam(PREFER) String prefer) {
         String customerId = customerIdResolver.getCustomerId(identity.getPrincipal());
         LOGGER.info("Decision with name '{}' received for processing for customer id '{}'...", decisionsRequest.getName(), customerId);
+
+        // Clients that prefer an asynchronous response poll the href of the returned DecisionVersion for its status
+        if (prefer != null && prefer.contains(RESPOND_ASYNC)) {
+            DecisionVersion decisionVersion = decisionLifecycle.createOrUpdateVersionAsync(customerId, decisionsRequest);
+            DecisionResponse decisionResponse = decisionMapper.mapVersionToDecisionResponse(decisionVersion);
+            return Response.accepted(decisionResponse)
+                    .location(URI.create(decisionResponse.getHref()))
+                    .header(PREFERENCE_APPLIED, RESPOND_ASYNC)
+                    .build();
+        }
+
         DecisionVersion decisionVersion = decisionLifecycle.createOrUpdateVersion(customerId, decisionsRequest);
         DecisionResponse decisionResponse = decisionMapper.mapVersionToDecisionResponse(decisionVersion);
         return Response.status(Response.Status.CREATED).entity(decisionResponse).build();
     }
 
+    /*
+     * The outcome of each Decision is reported in the body, so the request as a whole succeeds even if some
+     * of the Decisions could not be created or updated.
+     */
+    @POST
+    @Path("bulk")
+    @Authenticated
+    public Response createOrUpdateDecisions(@Valid @NotEmpty @Size(max = BULK_SIZE_MAX) List<DecisionRequest> decisionRequests) {
+        String customerId = customerIdResolver.getCustomerId(identity.getPrincipal());
+        LOGGER.info("{} Decisions received for processing for customer id '{}'...", decisionRequests.size(), customerId);
+
+        List<DecisionVersionOutcome> outcomes = decisionLifecycle.createOrUpdateVersions(customerId, decisionRequests);
+        DecisionBulkResponse response = decisionMapper.mapOutcomesToDecisionBulkResponse(outcomes);
+        return Response.ok(response).build();
+    }
 }
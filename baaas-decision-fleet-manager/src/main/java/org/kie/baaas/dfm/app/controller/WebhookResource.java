@@ -90,7 +90,7 @@ public class WebhookResource {
 
         String customerId = customerIdResolver.getCustomerId(identity.getPrincipal());
         Webhook webhook = webhookManager.registerWebhook(customerId, webhookReq);
-        WebhookResponse result = WebhookResponse.from(webhook.getId(), webhookReq.getUrl());
+        WebhookResponse result = WebhookResponse.from(webhook.getId(), webhook.getUrl(), webhook.isBatch());
         return Response.ok().entity(result).build();
     }
 
@@ -113,7 +113,7 @@ public class WebhookResource {
     public Response getWebooks(@QueryParam(PAGE) @Min(PAGE_MIN) @DefaultValue(PAGE_DEFAULT) int page, @QueryParam(SIZE) @DefaultValue(SIZE_DEFAULT) @Min(SIZE_MIN) @Max(SIZE_MAX) int size) {
         String customerId = customerIdResolver.getCustomerId(identity.getPrincipal());
         ListResult<Webhook> listResult = webhookManager.listCustomerWebhooks(customerId, page, size);
-        List<WebhookResponse> webhooks = listResult.getItems().stream().map(e -> WebhookResponse.from(e.getId(), e.getUrl())).collect(Collectors.toList());
+        List<WebhookResponse> webhooks = listResult.getItems().stream().map(e -> WebhookResponse.from(e.getId(), e.getUrl(), e.isBatch())).collect(Collectors.toList());
         WebhookResponseList result = new WebhookResponseList();
         result.setItems(webhooks);
         result.setPage(listResult.getPage());
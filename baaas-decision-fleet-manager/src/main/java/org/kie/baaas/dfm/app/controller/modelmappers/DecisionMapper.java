@@ -15,19 +15,23 @@
 
 package org.kie.baaas.dfm.app.controller.modelmappers;
 
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.ws.rs.core.Response;
 
+import org.kie.baaas.dfm.api.decisions.DecisionBulkResponse;
+import org.kie.baaas.dfm.api.decisions.DecisionBulkResult;
 import org.kie.baaas.dfm.api.decisions.DecisionResponse;
 import org.kie.baaas.dfm.api.decisions.DecisionResponseList;
 import org.kie.baaas.dfm.api.decisions.ResponseModel;
 import org.kie.baaas.dfm.api.eventing.Eventing;
 import org.kie.baaas.dfm.api.eventing.kafka.Kafka;
+import org.kie.baaas.dfm.app.exceptions.DecisionFleetManagerException;
+import org.kie.baaas.dfm.app.manager.DecisionVersionOutcome;
 import org.kie.baaas.dfm.app.model.Decision;
+import org.kie.baaas.dfm.app.model.DecisionSummary;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
 import org.kie.baaas.dfm.app.model.DecisionVersionStatus;
 import org.kie.baaas.dfm.app.model.ListResult;
@@ -53,43 +57,64 @@ public class DecisionMapper {
 
         Decision decision = decisionVersion.getDecision();
 
-        DecisionResponse decisionResponse = new DecisionResponse();
+        DecisionResponse decisionResponse = newDecisionResponse(decision.getId(), decision.getName(), decisionVersion.getVersion(), decisionVersion.getStatus(),
+                decisionVersion.getDmnMd5());
         decisionResponse.setDescription(decisionVersion.getDescription());
-        decisionResponse.setId(decision.getId());
-        decisionResponse.setName(decision.getName());
-        decisionResponse.setVersion(decisionVersion.getVersion());
         decisionResponse.setSubmittedAt(decisionVersion.getSubmittedAt());
         decisionResponse.setPublishedAt(decisionVersion.getPublishedAt());
         if (decisionVersion.getDeployment() != null) {
-            if (DecisionVersionStatus.CURRENT.equals(decisionVersion.getStatus())) {
-                decisionResponse.setCurrentEndpoint(decisionVersion.getDeployment().getCurrentUrl());
-            }
-            decisionResponse.setVersionEndpoint(decisionVersion.getDeployment().getVersionUrl());
-            decisionResponse.setStatusMessage(decisionVersion.getDeployment().getStatusMessage());
+            setDeployment(decisionResponse, decisionVersion.getStatus(), decisionVersion.getDeployment().getCurrentUrl(),
+                    decisionVersion.getDeployment().getVersionUrl(), decisionVersion.getDeployment().getStatusMessage());
         }
-        decisionResponse.setStatus(decisionVersion.getStatus().name());
         decisionResponse.setConfiguration(decisionVersion.getConfiguration());
         decisionResponse.setTags(decisionVersion.getTags());
-        decisionResponse.setHref(hrefGenerator.generateDecisionHref(decisionVersion));
-
-        ResponseModel responseModel = new ResponseModel();
-        responseModel.setMd5(decisionVersion.getDmnMd5());
-        responseModel.setHref(hrefGenerator.generateDecisionDMNHref(decisionVersion));
-        decisionResponse.setResponseModel(responseModel);
 
         if (decisionVersion.getKafkaConfig() != null) {
-            Eventing eventing = new Eventing();
-            eventing.setKafka(new Kafka());
-            eventing.getKafka().setSink(decisionVersion.getKafkaConfig().getSinkTopic());
-            eventing.getKafka().setSource(decisionVersion.getKafkaConfig().getSourceTopic());
-            eventing.getKafka().setBootstrapServers(decisionVersion.getKafkaConfig().getBootstrapServers());
             // Credentials deliberately omitted
-            decisionResponse.setEventing(eventing);
+            decisionResponse.setEventing(newKafkaEventing(decisionVersion.getKafkaConfig().getSourceTopic(), decisionVersion.getKafkaConfig().getSinkTopic(),
+                    decisionVersion.getKafkaConfig().getBootstrapServers()));
         }
 
         return decisionResponse;
     }
 
+    /*
+     * Creates a response with the fields that identify the version of a Decision and the links to it, which are
+     * mapped in the same way from a DecisionVersion and from a DecisionSummary.
+     */
+    private DecisionResponse newDecisionResponse(String decisionId, String name, long version, DecisionVersionStatus status, String dmnMd5) {
+
+        DecisionResponse decisionResponse = new DecisionResponse();
+        decisionResponse.setId(decisionId);
+        decisionResponse.setName(name);
+        decisionResponse.setVersion(version);
+        decisionResponse.setStatus(status.name());
+        decisionResponse.setHref(hrefGenerator.generateDecisionHref(decisionId, version));
+
+        ResponseModel responseModel = new ResponseModel();
+        responseModel.setMd5(dmnMd5);
+        responseModel.setHref(hrefGenerator.generateDecisionDMNHref(decisionId, version));
+        decisionResponse.setResponseModel(responseModel);
+        return decisionResponse;
+    }
+
+    private void setDeployment(DecisionResponse decisionResponse, DecisionVersionStatus status, String currentUrl, String versionUrl, String statusMessage) {
+        if (DecisionVersionStatus.CURRENT.equals(status)) {
+            decisionResponse.setCurrentEndpoint(currentUrl);
+        }
+        decisionResponse.setVersionEndpoint(versionUrl);
+        decisionResponse.setStatusMessage(statusMessage);
+    }
+
+    private Eventing newKafkaEventing(String sourceTopic, String sinkTopic, String bootstrapServers) {
+        Eventing eventing = new Eventing();
+        eventing.setKafka(new Kafka());
+        eventing.getKafka().setSink(sinkTopic);
+        eventing.getKafka().setSource(sourceTopic);
+        eventing.getKafka().setBootstrapServers(bootstrapServers);
+        return eventing;
+    }
+
     public DecisionResponse mapToDecisionResponse(Decision decision) {
         return mapVersionToDecisionResponse(decision.getCurrentVersion());
     }
@@ -102,12 +127,6 @@ public class DecisionMapper {
                 .collect(toList());
         responseList.setItems(items);
         setPaginationData(decisionVersions, responseList);
-        return sort(responseList);
-    }
-
-    private DecisionResponseList sort(DecisionResponseList responseList) {
-        Comparator<DecisionResponse> comparator = Comparator.comparing(DecisionResponse::getSubmittedAt);
-        Collections.sort(responseList.getItems(), comparator.reversed());
         return responseList;
     }
 
@@ -115,16 +134,66 @@ public class DecisionMapper {
         responseList.setPage(listResult.getPage());
         responseList.setSize(listResult.getSize());
         responseList.setTotal(listResult.getTotal());
+        if (listResult.getNextCursor() != null) {
+            responseList.setNextCursor(listResult.getNextCursor().encode());
+        }
+    }
+
+    public DecisionResponse mapSummaryToDecisionResponse(DecisionSummary decisionSummary) {
+
+        DecisionResponse decisionResponse = newDecisionResponse(decisionSummary.getDecisionId(), decisionSummary.getName(), decisionSummary.getVersion(),
+                decisionSummary.getStatus(), decisionSummary.getDmnMd5());
+        decisionResponse.setDescription(decisionSummary.getDescription());
+        decisionResponse.setSubmittedAt(decisionSummary.getSubmittedAt());
+        decisionResponse.setPublishedAt(decisionSummary.getPublishedAt());
+        setDeployment(decisionResponse, decisionSummary.getStatus(), decisionSummary.getCurrentUrl(), decisionSummary.getVersionUrl(), decisionSummary.getStatusMessage());
+        decisionResponse.setConfiguration(decisionSummary.getConfiguration());
+        decisionResponse.setTags(decisionSummary.getTags());
+
+        if (decisionSummary.getKafkaSourceTopic() != null || decisionSummary.getKafkaSinkTopic() != null || decisionSummary.getKafkaBootstrapServers() != null) {
+            decisionResponse.setEventing(newKafkaEventing(decisionSummary.getKafkaSourceTopic(), decisionSummary.getKafkaSinkTopic(),
+                    decisionSummary.getKafkaBootstrapServers()));
+        }
+
+        return decisionResponse;
     }
 
-    public DecisionResponseList mapToDecisionResponseList(ListResult<Decision> decisions) {
+    public DecisionResponseList mapToDecisionResponseList(ListResult<DecisionSummary> decisions) {
 
         DecisionResponseList responseList = new DecisionResponseList();
         List<DecisionResponse> items = decisions.getItems().stream()
-                .map(this::mapToDecisionResponse)
+                .map(this::mapSummaryToDecisionResponse)
                 .collect(toList());
         responseList.setItems(items);
         setPaginationData(decisions, responseList);
-        return sort(responseList);
+        return responseList;
+    }
+
+    public DecisionBulkResponse mapOutcomesToDecisionBulkResponse(List<DecisionVersionOutcome> outcomes) {
+
+        DecisionBulkResponse response = new DecisionBulkResponse();
+        List<DecisionBulkResult> items = outcomes.stream()
+                .map(this::mapOutcomeToDecisionBulkResult)
+                .collect(toList());
+        response.setItems(items);
+        return response;
+    }
+
+    private DecisionBulkResult mapOutcomeToDecisionBulkResult(DecisionVersionOutcome outcome) {
+
+        DecisionBulkResult result = new DecisionBulkResult();
+        result.setName(outcome.getName());
+        if (outcome.isSucceeded()) {
+            Response.Status status = outcome.isDeferred() ? Response.Status.ACCEPTED : Response.Status.CREATED;
+            result.setStatusCode(status.getStatusCode());
+            result.setDecision(mapVersionToDecisionResponse(outcome.getDecisionVersion()));
+        } else if (outcome.getFailure() instanceof DecisionFleetManagerException) {
+            result.setStatusCode(((DecisionFleetManagerException) outcome.getFailure()).getStatusCode());
+            result.setError(outcome.getFailure().getMessage());
+        } else {
+            result.setStatusCode(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+            result.setError(outcome.getFailure().getMessage());
+        }
+        return result;
     }
 }
@@ -44,10 +44,10 @@ public class HrefGenerator {
     }
 
     public String generateDecisionHref(DecisionVersion decisionVersion) {
+        return generateDecisionHref(decisionVersion.getDecision().getId(), decisionVersion.getVersion());
+    }
 
-        String id = decisionVersion.getDecision().getId();
-        long version = decisionVersion.getVersion();
-
+    public String generateDecisionHref(String id, long version) {
         try {
             return UriBuilder.fromUri(config.getApiBaseUrl()).path(DECISION_HREF_SUFFIX).build(id, version).toString();
         } catch (Exception e) {
@@ -58,4 +58,8 @@ public class HrefGenerator {
     public String generateDecisionDMNHref(DecisionVersion decisionVersion) {
         return generateDecisionHref(decisionVersion) + DECISION_DMN_HREF_SUFFIX;
     }
+
+    public String generateDecisionDMNHref(String id, long version) {
+        return generateDecisionHref(id, version) + DECISION_DMN_HREF_SUFFIX;
+    }
 }
@@ -16,6 +16,7 @@
 package org.kie.baaas.dfm.app.dao;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.LockModeType;
 import javax.transaction.Transactional;
 
 import org.kie.baaas.dfm.app.model.Decision;
@@ -35,8 +36,29 @@ public class DecisionDAO implements PanacheRepositoryBase<Decision, String> {
         return find("#Decision.byCustomerIdAndName", params).firstResult();
     }
 
-    public Decision findByCustomerAndIdOrName(String customerId, String decisionIdOrName) {
-        Parameters params = Parameters.with("idOrName", decisionIdOrName).and("customerId", customerId);
-        return find("#Decision.byCustomerAndIdOrName", params).firstResult();
+    /**
+     * Re-reads a Decision with a row lock, which serialises changes to its lifecycle until the transaction ends. Its
+     * next version must only be checked once it is locked, as a concurrent update may have started a new version
+     * since it was read.
+     *
+     * @param decision - The Decision to lock
+     */
+    public void lock(Decision decision) {
+        getEntityManager().refresh(decision, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    /**
+     * Allocates the next version number of a Decision by incrementing its counter. The Decision must have been
+     * locked with {@link #lock(Decision)} in the same transaction, so that concurrent allocations are serialised.
+     * <p>
+     * The counter is incremented on the managed entity rather than with a bulk update, as Hibernate invalidates the
+     * whole Decision region of the second-level cache, and every cached query result, on a bulk update.
+     *
+     * @param decision - The Decision to allocate a version number for
+     * @return - The allocated version number
+     */
+    public long allocateNextVersion(Decision decision) {
+        decision.setLastVersion(decision.getLastVersion() + 1);
+        return decision.getLastVersion();
     }
 }
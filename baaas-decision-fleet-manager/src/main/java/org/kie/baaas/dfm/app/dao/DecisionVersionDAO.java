@@ -16,18 +16,24 @@
 package org.kie.baaas.dfm.app.dao;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.persistence.TypedQuery;
 import javax.transaction.Transactional;
 
+import org.kie.baaas.dfm.app.model.DecisionSummary;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
+import org.kie.baaas.dfm.app.model.ListCursor;
 import org.kie.baaas.dfm.app.model.ListResult;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import io.quarkus.panache.common.Parameters;
 
 import static java.util.Collections.emptyList;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
 
 /**
  * DAO implementation for working with DecisionVersions.
@@ -36,47 +42,98 @@ import static java.util.Collections.emptyList;
 @Transactional
 public class DecisionVersionDAO implements PanacheRepositoryBase<DecisionVersion, String> {
 
+    private static final String AFTER_PARAM = "after";
+
     private static final String CUSTOMER_ID_PARAM = "customerId";
 
-    private static final String IDS_PARAM = "ids";
+    private static final String DMN_HASH_PARAM = "dmnHash";
 
-    private static final String ID_OR_NAME_PARAM = "idOrName";
+    private static final String IDS_PARAM = "ids";
 
     private static final String NAME_PARAM = "name";
 
     private static final String VERSION_PARAM = "version";
 
+    // The versions of a single Decision, newest first by their version number
+    private static final PagedQuery BY_DECISION_NAME = new PagedQuery("DecisionVersion.countByDecisionName", "DecisionVersion.listIdsByDecisionName",
+            "DecisionVersion.listIdsByDecisionNameAfter", "DecisionVersion.listByIds", (version) -> String.valueOf(version.getVersion()), ListCursor::getAfterAsLong);
+
     private Parameters customerIdParams(String customerId) {
         return Parameters.with(CUSTOMER_ID_PARAM, customerId);
     }
 
-    public long getNextVersionId(String customerId, String decisionName) {
-        Parameters params = customerIdParams(customerId).and(NAME_PARAM, decisionName);
-        return find("#DecisionVersion.countByCustomerAndName", params).count() + 1;
+    public DecisionVersion findByCustomerAndDecisionName(String customerId, String decisionName, long decisionVersion) {
+        Parameters params = customerIdParams(customerId).and(NAME_PARAM, decisionName).and(VERSION_PARAM, decisionVersion);
+        return find("#DecisionVersion.byCustomerDecisionNameAndVersion", params).firstResult();
     }
 
-    public DecisionVersion getCurrentVersion(String customerId, String decisionIdOrName) {
-        Parameters params = customerIdParams(customerId).and(ID_OR_NAME_PARAM, decisionIdOrName);
-        return find("#DecisionVersion.currentByCustomerAndDecisionIdOrName", params).firstResult();
+    /**
+     * Counts the DecisionVersions of a customer that reference the DMN with the given content hash.
+     *
+     * @param customerId - The customer that owns the DecisionVersions
+     * @param dmnHash - The content hash of the DMN
+     * @return - The number of DecisionVersions referencing the DMN
+     */
+    public long countByCustomerAndDmnHash(String customerId, String dmnHash) {
+        Parameters params = customerIdParams(customerId).and(DMN_HASH_PARAM, dmnHash);
+        return executeCountQuery("DecisionVersion.countByCustomerAndDmnHash", params);
     }
 
-    public DecisionVersion getBuildingVersion(String customerId, String decisionIdOrName) {
-        Parameters params = customerIdParams(customerId).and(ID_OR_NAME_PARAM, decisionIdOrName);
-        return find("#DecisionVersion.buildingByCustomerAndDecisionIdOrName", params).firstResult();
-    }
+    /**
+     * Lists a summary of the current version of each of the customers Decisions, ordered by the unique name of the
+     * Decision. As the summaries are a projection without fetched joins, the page is limited by the database directly
+     * and the tags and configuration of the whole page are then read with one query each.
+     *
+     * @param customerId - The customer that owns the Decisions
+     * @param cursor - The position in the list from which to read the page
+     * @param pageSize - The maximum number of summaries to return
+     * @param includeTotal - Whether to count the total number of Decisions of the customer
+     * @return - The page of summaries
+     */
+    public ListResult<DecisionSummary> listCurrentSummariesByCustomerId(String customerId, ListCursor cursor, int pageSize, boolean includeTotal) {
+        Parameters params = customerIdParams(customerId);
+        Long totalDecisions = includeTotal ? executeCountQuery("DecisionVersion.countCurrentByCustomer", params) : null;
+
+        TypedQuery<DecisionSummary> namedQuery;
+        if (cursor.getAfter() == null) {
+            namedQuery = getEntityManager().createNamedQuery("DecisionVersion.listCurrentSummariesByCustomer", DecisionSummary.class);
+            namedQuery.setFirstResult(getFirstResult(cursor.getPage(), pageSize));
+        } else {
+            namedQuery = getEntityManager().createNamedQuery("DecisionVersion.listCurrentSummariesByCustomerAfter", DecisionSummary.class);
+            params = params.and(AFTER_PARAM, cursor.getAfter());
+        }
+        addParamsToNamedQuery(params, namedQuery);
+        List<DecisionSummary> summaries = namedQuery.setMaxResults(pageSize + 1).getResultList();
 
-    public DecisionVersion findByCustomerAndDecisionIdOrName(String customerId, String decisionIdOrName, long decisionVersion) {
-        Parameters params = customerIdParams(customerId).and(ID_OR_NAME_PARAM, decisionIdOrName).and(VERSION_PARAM, decisionVersion);
-        return find("#DecisionVersion.byCustomerDecisionIdOrNameAndVersion", params).firstResult();
+        boolean hasNextPage = summaries.size() > pageSize;
+        if (hasNextPage) {
+            summaries = summaries.subList(0, pageSize);
+        }
+
+        if (!summaries.isEmpty()) {
+            Map<String, DecisionSummary> summariesByVersionId = summaries.stream().collect(toMap(DecisionSummary::getVersionId, identity()));
+            readEntries("DecisionVersion.tagsByIds", summariesByVersionId, DecisionSummary::getTags);
+            readEntries("DecisionVersion.configurationByIds", summariesByVersionId, DecisionSummary::getConfiguration);
+        }
+
+        ListCursor nextCursor = hasNextPage ? ListCursor.after(summaries.get(summaries.size() - 1).getName()) : null;
+        return new ListResult<>(summaries, cursor.getPage(), totalDecisions, nextCursor);
     }
 
-    public ListResult<DecisionVersion> listCurrentByCustomerId(String customerId, int page, int pageSize) {
-        Parameters p = customerIdParams(customerId);
-        return executePagedQuery("DecisionVersion.countCurrentByCustomer", "DecisionVersion.listCurrentIdsByCustomer", "DecisionVersion.listCurrentByCustomer", p, page, pageSize);
+    /*
+     * Reads the rows of an element collection of the given DecisionVersions as (version id, key, value) tuples and
+     * adds each of them to the map of the matching summary.
+     */
+    private void readEntries(String entriesQuery, Map<String, DecisionSummary> summariesByVersionId, Function<DecisionSummary, Map<String, String>> entries) {
+        TypedQuery<Object[]> namedQuery = getEntityManager().createNamedQuery(entriesQuery, Object[].class);
+        namedQuery.setParameter(IDS_PARAM, summariesByVersionId.keySet());
+        for (Object[] row : namedQuery.getResultList()) {
+            entries.apply(summariesByVersionId.get((String) row[0])).put((String) row[1], (String) row[2]);
+        }
     }
 
     private void addParamsToNamedQuery(Parameters params, TypedQuery<?> namedQuery) {
-        params.map().forEach((key, value) -> namedQuery.setParameter(key, value.toString()));
+        params.map().forEach(namedQuery::setParameter);
     }
 
     private List<String> executeIdsQuery(String idsQuery, Parameters params, int firstResult, int maxResults) {
@@ -96,27 +153,45 @@ public class DecisionVersionDAO implements PanacheRepositoryBase<DecisionVersion
      * due the fetched joins in our queries for DecisionVersion entities (in one query we also fetch the Decision, Config, Tags) etc
      * 
      * So the way we do paged queries for these entities breaks down as follows:
-     * - Count the total number of entities
-     * - Determine the ids of the entities that will be on the page the user is requesting
+     * - Count the total number of entities, only if the caller asked for it
+     * - Determine the ids of the entities that will be on the page the user is requesting. A cursor that continues after
+     *   a sort key seeks straight to it via the index, only a legacy page number falls back to an offset.
      * - Select the entities by id, performing the fetched join of related entities.
+     *
+     * One more id than the page holds is selected, so that we know whether there is a next page without counting.
      */
-    private ListResult<DecisionVersion> executePagedQuery(String countQuery, String idsQuery, String versionsQuery, Parameters params, int page, int pageSize) {
+    private ListResult<DecisionVersion> executePagedQuery(PagedQuery query, Parameters params, ListCursor cursor, int pageSize, boolean includeTotal) {
 
-        Long totalVersions = executeCountQuery(countQuery, params);
-        if (totalVersions == 0L) {
-            return new ListResult<>(emptyList(), page, totalVersions);
+        Long totalVersions = includeTotal ? executeCountQuery(query.countQuery, params) : null;
+        if (totalVersions != null && totalVersions == 0L) {
+            return new ListResult<>(emptyList(), cursor.getPage(), totalVersions, null);
+        }
+
+        List<String> ids;
+        if (cursor.getAfter() == null) {
+            ids = executeIdsQuery(query.idsQuery, params, getFirstResult(cursor.getPage(), pageSize), pageSize + 1);
+        } else {
+            ids = executeIdsQuery(query.idsAfterQuery, params.and(AFTER_PARAM, query.afterParam.apply(cursor)), 0, pageSize + 1);
+        }
+
+        if (ids.isEmpty()) {
+            return new ListResult<>(emptyList(), cursor.getPage(), totalVersions, null);
+        }
+
+        boolean hasNextPage = ids.size() > pageSize;
+        if (hasNextPage) {
+            ids = ids.subList(0, pageSize);
         }
-        int firstResult = getFirstResult(page, pageSize);
 
-        List<String> ids = executeIdsQuery(idsQuery, params, firstResult, pageSize);
         // Panache expects a # prefix on Named Queries
-        List<DecisionVersion> versions = list("#" + versionsQuery, Parameters.with(IDS_PARAM, ids));
-        return new ListResult<>(versions, page, totalVersions);
+        List<DecisionVersion> versions = list("#" + query.versionsQuery, Parameters.with(IDS_PARAM, ids));
+        ListCursor nextCursor = hasNextPage ? ListCursor.after(query.sortKey.apply(versions.get(versions.size() - 1))) : null;
+        return new ListResult<>(versions, cursor.getPage(), totalVersions, nextCursor);
     }
 
-    public ListResult<DecisionVersion> listByCustomerAndDecisionIdOrName(String customerId, String decisionIdOrName, int page, int pageSize) {
-        Parameters p = customerIdParams(customerId).and(ID_OR_NAME_PARAM, decisionIdOrName);
-        return executePagedQuery("DecisionVersion.countByIdOrName", "DecisionVersion.listIdsByIdOrName", "DecisionVersion.listByIdOrName", p, page, pageSize);
+    public ListResult<DecisionVersion> listByCustomerAndDecisionName(String customerId, String decisionName, ListCursor cursor, int pageSize, boolean includeTotal) {
+        Parameters p = customerIdParams(customerId).and(NAME_PARAM, decisionName);
+        return executePagedQuery(BY_DECISION_NAME, p, cursor, pageSize, includeTotal);
     }
 
     private int getFirstResult(int requestedPage, int requestedPageSize) {
@@ -126,4 +201,33 @@ public class DecisionVersionDAO implements PanacheRepositoryBase<DecisionVersion
 
         return requestedPage * requestedPageSize;
     }
+
+    /**
+     * The named queries that make up a paged listing of DecisionVersions, together with how the sort key of
+     * the listing is read from an entity and bound from a cursor.
+     */
+    private static class PagedQuery {
+
+        private final String countQuery;
+
+        private final String idsQuery;
+
+        private final String idsAfterQuery;
+
+        private final String versionsQuery;
+
+        private final Function<DecisionVersion, String> sortKey;
+
+        private final Function<ListCursor, Object> afterParam;
+
+        PagedQuery(String countQuery, String idsQuery, String idsAfterQuery, String versionsQuery, Function<DecisionVersion, String> sortKey,
+                Function<ListCursor, Object> afterParam) {
+            this.countQuery = countQuery;
+            this.idsQuery = idsQuery;
+            this.idsAfterQuery = idsAfterQuery;
+            this.versionsQuery = versionsQuery;
+            this.sortKey = sortKey;
+            this.afterParam = afterParam;
+        }
+    }
 }
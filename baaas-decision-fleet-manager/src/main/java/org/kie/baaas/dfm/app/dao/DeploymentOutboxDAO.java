@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.dao;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.transaction.Transactional;
+
+import org.kie.baaas.dfm.app.model.DeploymentOutboxEntry;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import io.quarkus.panache.common.Parameters;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * DAO implementation for working with DeploymentOutboxEntries.
+ */
+@ApplicationScoped
+@Transactional
+public class DeploymentOutboxDAO implements PanacheRepositoryBase<DeploymentOutboxEntry, String> {
+
+    /**
+     * Claims up to the given number of entries whose next attempt is due, by moving their next attempt to the
+     * expiry of a lease. An entry that is claimed concurrently by another Fleet Manager is skipped.
+     *
+     * @param now - The current time
+     * @param leaseExpiry - The time at which claimed entries become due again if they have not been completed
+     * @param batchSize - The maximum number of entries to claim
+     * @return - The claimed entries
+     */
+    public List<DeploymentOutboxEntry> claimDue(ZonedDateTime now, ZonedDateTime leaseExpiry, int batchSize) {
+        List<DeploymentOutboxEntry> due = find("#DeploymentOutboxEntry.due", Parameters.with("now", now)).page(0, batchSize).list();
+        return due.stream()
+                .filter(entry -> claim(entry, leaseExpiry))
+                .collect(toList());
+    }
+
+    private boolean claim(DeploymentOutboxEntry entry, ZonedDateTime leaseExpiry) {
+        int claimed = getEntityManager().createNamedQuery("DeploymentOutboxEntry.claim")
+                .setParameter("leaseExpiry", leaseExpiry)
+                .setParameter("decisionVersionId", entry.getDecisionVersionId())
+                .setParameter("nextAttemptAt", entry.getNextAttemptAt())
+                .executeUpdate();
+        return claimed == 1;
+    }
+}
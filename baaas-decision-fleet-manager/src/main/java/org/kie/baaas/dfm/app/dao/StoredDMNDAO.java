@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.dao;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.LockModeType;
+import javax.transaction.Transactional;
+
+import org.kie.baaas.dfm.app.model.StoredDMN;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import io.quarkus.panache.common.Parameters;
+
+/**
+ * DAO implementation for working with StoredDMNs.
+ */
+@ApplicationScoped
+@Transactional
+public class StoredDMNDAO implements PanacheRepositoryBase<StoredDMN, StoredDMN.Key> {
+
+    /**
+     * Records that a DMN is being staged. An existing record is locked and its staging time refreshed, so that the DMN
+     * is not reclaimed until the grace period has passed again. Otherwise a pending record is created. The lock is
+     * only held until the DMN is staged; see {@link #referenced(String, String, ZonedDateTime)}.
+     *
+     * @param customerId - The customer staging the DMN
+     * @param dmnHash - The content hash of the DMN
+     * @param now - The current time
+     * @return - The MD5 of the stored DMN, or null if the DMN has not been uploaded yet
+     */
+    public String touch(String customerId, String dmnHash, ZonedDateTime now) {
+        StoredDMN storedDMN = lock(customerId, dmnHash);
+        if (storedDMN == null) {
+            persist(new StoredDMN(customerId, dmnHash, now));
+            flush();
+            return null;
+        }
+        storedDMN.setStagedAt(now);
+        return storedDMN.getMd5();
+    }
+
+    /**
+     * Records that a DMN has been uploaded.
+     *
+     * @param customerId - The customer that uploaded the DMN
+     * @param dmnHash - The content hash of the DMN
+     * @param md5 - The MD5 of the uploaded DMN
+     * @param now - The current time
+     */
+    public void uploaded(String customerId, String dmnHash, String md5, ZonedDateTime now) {
+        StoredDMN storedDMN = lock(customerId, dmnHash);
+        if (storedDMN == null) {
+            storedDMN = new StoredDMN(customerId, dmnHash, now);
+            persist(storedDMN);
+        }
+        storedDMN.setMd5(md5);
+        storedDMN.setStagedAt(now);
+    }
+
+    /**
+     * Locks the record of an uploaded DMN that is about to be referenced by a DecisionVersion, and refreshes its
+     * staging time. Called within the transaction that records the DecisionVersion, the lock is held until the
+     * reference is committed, so a concurrent reclaim either waits for the reference or has already deleted the DMN.
+     *
+     * @param customerId - The customer that owns the DMN
+     * @param dmnHash - The content hash of the DMN
+     * @param now - The current time
+     * @return - The locked record, or null if the DMN has been reclaimed or not uploaded yet
+     */
+    public StoredDMN referenced(String customerId, String dmnHash, ZonedDateTime now) {
+        StoredDMN storedDMN = lock(customerId, dmnHash);
+        if (storedDMN == null || storedDMN.getMd5() == null) {
+            return null;
+        }
+        storedDMN.setStagedAt(now);
+        return storedDMN;
+    }
+
+    /**
+     * Finds and locks the record of a stored DMN.
+     *
+     * @param customerId - The customer that owns the DMN
+     * @param dmnHash - The content hash of the DMN
+     * @return - The locked record, or null if the DMN is not stored
+     */
+    public StoredDMN lock(String customerId, String dmnHash) {
+        return getEntityManager().find(StoredDMN.class, new StoredDMN.Key(customerId, dmnHash), LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    /**
+     * Lists the stored DMNs that were last staged before the cutoff and are not referenced by any DecisionVersion of
+     * their customer, oldest first.
+     *
+     * @param cutoff - The time before which the DMNs must have been last staged
+     * @param batchSize - The maximum number of DMNs to list
+     * @return - The unreferenced DMNs
+     */
+    public List<StoredDMN> listUnreferencedBefore(ZonedDateTime cutoff, int batchSize) {
+        return find("#StoredDMN.unreferencedBefore", Parameters.with("cutoff", cutoff)).page(0, batchSize).list();
+    }
+}
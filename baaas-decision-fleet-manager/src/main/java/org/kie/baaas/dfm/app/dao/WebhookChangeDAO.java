@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.dao;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.transaction.Transactional;
+
+import org.kie.baaas.dfm.app.model.webhook.WebhookChange;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import io.quarkus.panache.common.Parameters;
+
+/**
+ * DAO implementation for working with WebhookChanges.
+ */
+@ApplicationScoped
+@Transactional
+public class WebhookChangeDAO implements PanacheRepositoryBase<WebhookChange, Long> {
+
+    /**
+     * @return - The sequence number of the latest change, or 0 if there are none
+     */
+    public long latestSeq() {
+        Long latest = getEntityManager().createNamedQuery("WebhookChange.latestSeq", Long.class).getSingleResult();
+        return latest == null ? 0 : latest;
+    }
+
+    /**
+     * Lists the changes after the given sequence number, in order.
+     *
+     * @param seq - The sequence number after which to list changes
+     * @param limit - The maximum number of changes to list
+     * @return - The changes
+     */
+    public List<WebhookChange> findAfter(long seq, int limit) {
+        return find("#WebhookChange.after", Parameters.with("seq", seq)).page(0, limit).list();
+    }
+
+    /**
+     * Lists the changes with the given sequence numbers that exist, in order.
+     *
+     * @param seqs - The sequence numbers of the changes
+     * @return - The changes
+     */
+    public List<WebhookChange> findBySeqs(Collection<Long> seqs) {
+        if (seqs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return find("#WebhookChange.bySeqs", Parameters.with("seqs", seqs)).list();
+    }
+
+    /**
+     * Deletes the changes made before the given time.
+     *
+     * @param before - The time before which to delete changes
+     * @return - The number of deleted changes
+     */
+    public int deleteBefore(ZonedDateTime before) {
+        return getEntityManager().createNamedQuery("WebhookChange.deleteBefore")
+                .setParameter("before", before)
+                .executeUpdate();
+    }
+}
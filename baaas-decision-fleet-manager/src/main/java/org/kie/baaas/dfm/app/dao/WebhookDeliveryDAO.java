@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.dao;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.transaction.Transactional;
+
+import org.kie.baaas.dfm.app.model.webhook.WebhookDelivery;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import io.quarkus.panache.common.Parameters;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * DAO implementation for working with WebhookDeliveries.
+ */
+@ApplicationScoped
+@Transactional
+public class WebhookDeliveryDAO implements PanacheRepositoryBase<WebhookDelivery, String> {
+
+    /**
+     * Claims up to the given number of deliveries whose next attempt is due, by moving their next attempt to the
+     * expiry of a lease. A delivery that is claimed concurrently by another Fleet Manager is skipped.
+     *
+     * @param now - The current time
+     * @param leaseExpiry - The time at which claimed deliveries become due again if they have not been completed
+     * @param batchSize - The maximum number of deliveries to claim
+     * @return - The claimed deliveries
+     */
+    public List<WebhookDelivery> claimDue(ZonedDateTime now, ZonedDateTime leaseExpiry, int batchSize) {
+        List<WebhookDelivery> due = find("#WebhookDelivery.due", Parameters.with("now", now)).page(0, batchSize).list();
+        return due.stream()
+                .filter(delivery -> claim(delivery, leaseExpiry))
+                .collect(toList());
+    }
+
+    private boolean claim(WebhookDelivery delivery, ZonedDateTime leaseExpiry) {
+        int claimed = getEntityManager().createNamedQuery("WebhookDelivery.claim")
+                .setParameter("leaseExpiry", leaseExpiry)
+                .setParameter("id", delivery.getId())
+                .setParameter("nextAttemptAt", delivery.getNextAttemptAt())
+                .executeUpdate();
+        return claimed == 1;
+    }
+}
@@ -15,39 +15,133 @@
 
 package org.kie.baaas.dfm.app.dfs.client;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.kie.baaas.dfm.app.config.DecisionFleetManagerConfig;
 import org.kie.baaas.dfm.app.dfs.DecisionFleetShardClient;
 import org.kie.baaas.dfm.app.model.DecisionFleetShard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.fabric8.kubernetes.client.Config;
 import io.fabric8.kubernetes.client.ConfigBuilder;
 import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.OkHttpClient;
 
 import static java.util.Objects.requireNonNull;
 
 /**
- * Creates a client to interact with the given Fleet Shard
+ * Creates a client to interact with the given Fleet Shard.
+ * <p>
+ * Each Kubernetes client holds its own connection pool and dispatcher threads, so a single client is kept per
+ * Fleet Shard and shared by every request to it. The client of a Fleet Shard is closed and replaced when the
+ * Kubernetes API URL of the Fleet Shard changes. Each client shares a {@link NamespaceCache} of the Namespaces
+ * that exist on its Fleet Shard.
  */
 @ApplicationScoped
 public class DecisionFleetShardClientFactory {
 
+    public static final String CONNECTIONS = "daaas.dfs.client.connections";
+
+    public static final String IDLE_CONNECTIONS = "daaas.dfs.client.connections.idle";
+
+    public static final String RUNNING_CALLS = "daaas.dfs.client.calls.running";
+
+    public static final String QUEUED_CALLS = "daaas.dfs.client.calls.queued";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecisionFleetShardClientFactory.class);
+
     private final DecisionFleetManagerConfig controlPlaneConfig;
 
+    private final MeterRegistry meterRegistry;
+
+    private final Duration namespaceCacheTtl;
+
+    private final Map<Integer, ShardClient> clients = new ConcurrentHashMap<>();
+
     @Inject
-    public DecisionFleetShardClientFactory(DecisionFleetManagerConfig config) {
+    public DecisionFleetShardClientFactory(DecisionFleetManagerConfig config, MeterRegistry meterRegistry,
+            @ConfigProperty(name = "baaas.dfm.dfs.namespace-cache.ttl", defaultValue = "PT5M") Duration namespaceCacheTtl) {
         requireNonNull(config, "config cannot be null");
+        requireNonNull(meterRegistry, "meterRegistry cannot be null");
+        requireNonNull(namespaceCacheTtl, "namespaceCacheTtl cannot be null");
         this.controlPlaneConfig = config;
+        this.meterRegistry = meterRegistry;
+        this.namespaceCacheTtl = namespaceCacheTtl;
     }
 
     public DecisionFleetShardClient createClientFor(DecisionFleetShard fleetShard) {
+        ShardClient shardClient = getShardClient(fleetShard);
+        return new DefaultDecisionFleetShardClient(this.controlPlaneConfig, shardClient.kubernetesClient, fleetShard, shardClient.namespaceCache);
+    }
+
+    KubernetesClient getKubernetesClient(DecisionFleetShard fleetShard) {
+        return getShardClient(fleetShard).kubernetesClient;
+    }
+
+    private ShardClient getShardClient(DecisionFleetShard fleetShard) {
+        return clients.compute(fleetShard.getId(), (id, shardClient) -> {
+            if (shardClient != null) {
+                if (shardClient.kubernetesApiUrl.equals(fleetShard.getKubernetesApiUrl())) {
+                    return shardClient;
+                }
+                LOGGER.info("Kubernetes API URL of Decision Fleet Shard '{}' has changed. Replacing its client.", id);
+                shardClient.close();
+            }
+            return new ShardClient(fleetShard);
+        });
+    }
+
+    @PreDestroy
+    void close() {
+        clients.values().forEach(ShardClient::close);
+        clients.clear();
+    }
+
+    /**
+     * The Kubernetes client of a Fleet Shard, along with the metrics published for its connection pool.
+     */
+    private class ShardClient {
+
+        private final String kubernetesApiUrl;
+
+        private final DefaultKubernetesClient kubernetesClient;
+
+        private final NamespaceCache namespaceCache;
+
+        private final List<Meter> meters;
+
+        ShardClient(DecisionFleetShard fleetShard) {
+            Config config = new ConfigBuilder().withMasterUrl(fleetShard.getKubernetesApiUrl()).build();
+            this.kubernetesApiUrl = fleetShard.getKubernetesApiUrl();
+            this.kubernetesClient = new DefaultKubernetesClient(config);
+            this.namespaceCache = new NamespaceCache(kubernetesClient, namespaceCacheTtl);
 
-        Config config = new ConfigBuilder().withMasterUrl(fleetShard.getKubernetesApiUrl()).build();
-        KubernetesClient client = new DefaultKubernetesClient(config);
+            OkHttpClient httpClient = kubernetesClient.getHttpClient();
+            String shard = String.valueOf(fleetShard.getId());
+            this.meters = List.of(
+                    Gauge.builder(CONNECTIONS, httpClient, c -> c.connectionPool().connectionCount()).tag("shard", shard).register(meterRegistry),
+                    Gauge.builder(IDLE_CONNECTIONS, httpClient, c -> c.connectionPool().idleConnectionCount()).tag("shard", shard).register(meterRegistry),
+                    Gauge.builder(RUNNING_CALLS, httpClient, c -> c.dispatcher().runningCallsCount()).tag("shard", shard).register(meterRegistry),
+                    Gauge.builder(QUEUED_CALLS, httpClient, c -> c.dispatcher().queuedCallsCount()).tag("shard", shard).register(meterRegistry));
+        }
 
-        return new DefaultDecisionFleetShardClient(this.controlPlaneConfig, client, fleetShard);
+        void close() {
+            meters.forEach(meterRegistry::remove);
+            namespaceCache.close();
+            kubernetesClient.close();
+        }
     }
 }
@@ -16,6 +16,7 @@
 package org.kie.baaas.dfm.app.dfs.client;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.Collection;
 
 import org.kie.baaas.dfm.app.config.DecisionFleetManagerConfig;
@@ -32,7 +33,6 @@ import org.kie.baaas.dfs.api.KafkaRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import io.fabric8.kubernetes.api.model.Namespace;
 import io.fabric8.kubernetes.api.model.ObjectMeta;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.dsl.Resource;
@@ -52,20 +52,26 @@ public class DefaultDecisionFleetShardClient implements DecisionFleetShardClient
 
     private final DecisionFleetManagerConfig config;
 
+    private final NamespaceCache namespaceCache;
+
     public DefaultDecisionFleetShardClient(DecisionFleetManagerConfig config, KubernetesClient kubernetesClient, DecisionFleetShard fleetShard) {
+        this(config, kubernetesClient, fleetShard, new NamespaceCache(kubernetesClient, Duration.ZERO));
+    }
+
+    public DefaultDecisionFleetShardClient(DecisionFleetManagerConfig config, KubernetesClient kubernetesClient, DecisionFleetShard fleetShard, NamespaceCache namespaceCache) {
         this.kubernetesClient = kubernetesClient;
         this.fleetShard = fleetShard;
         this.config = config;
+        this.namespaceCache = namespaceCache;
     }
 
     private String getNamespace() {
 
-        Namespace namespace = kubernetesClient.namespaces().withName(fleetShard.getNamespace()).get();
-        if (namespace == null) {
+        if (!namespaceCache.exists(fleetShard.getNamespace())) {
             throw new DecisionFleetManagerException("Cannot locate namespace '" + fleetShard.getNamespace() + "' for Decision Fleet Shard.");
         }
 
-        return namespace.getMetadata().getName();
+        return fleetShard.getNamespace();
     }
 
     @Override
@@ -117,18 +123,18 @@ public class DefaultDecisionFleetShardClient implements DecisionFleetShardClient
     private Resource<org.kie.baaas.dfs.api.DecisionVersion> getDecisionVersion(Deployment deployment) {
 
         if (deployment != null) {
-            Namespace namespace = getDeploymentNamespace(deployment);
+            String namespace = getDeploymentNamespace(deployment);
             if (namespace != null) {
-                return kubernetesClient.customResources(org.kie.baaas.dfs.api.DecisionVersion.class).inNamespace(namespace.getMetadata().getName()).withName(deployment.getVersionName());
+                return kubernetesClient.customResources(org.kie.baaas.dfs.api.DecisionVersion.class).inNamespace(namespace).withName(deployment.getVersionName());
             }
         }
 
         return null;
     }
 
-    private Namespace getDeploymentNamespace(Deployment deployment) {
-        if (deployment != null && deployment.getNamespace() != null) {
-            return kubernetesClient.namespaces().withName(deployment.getNamespace()).get();
+    private String getDeploymentNamespace(Deployment deployment) {
+        if (deployment != null && deployment.getNamespace() != null && namespaceCache.exists(deployment.getNamespace())) {
+            return deployment.getNamespace();
         }
 
         return null;
@@ -136,9 +142,9 @@ public class DefaultDecisionFleetShardClient implements DecisionFleetShardClient
 
     private Resource<org.kie.baaas.dfs.api.Decision> getDecision(Deployment deployment) {
         if (deployment != null) {
-            Namespace namespace = getDeploymentNamespace(deployment);
+            String namespace = getDeploymentNamespace(deployment);
             if (namespace != null) {
-                return kubernetesClient.customResources(org.kie.baaas.dfs.api.Decision.class).inNamespace(namespace.getMetadata().getName()).withName(deployment.getName());
+                return kubernetesClient.customResources(org.kie.baaas.dfs.api.Decision.class).inNamespace(namespace).withName(deployment.getName());
             }
         }
 
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.dfs.client;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.WatcherException;
+
+/**
+ * Remembers which Namespaces exist on a Fleet Shard, so that lifecycle operations do not need to look up the
+ * Namespace from the API server every time.
+ * <p>
+ * A Namespace found to exist is remembered for the configured TTL. A watch on the Namespaces of the Fleet Shard
+ * forgets a Namespace as soon as it is modified or deleted. A Namespace that was not found is never remembered, so
+ * newly created Namespaces are picked up immediately. A TTL of zero disables the cache.
+ */
+public class NamespaceCache implements Watcher<Namespace> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NamespaceCache.class);
+
+    private final KubernetesClient kubernetesClient;
+
+    private final long ttlNanos;
+
+    private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+
+    private Watch watch;
+
+    private boolean watchFailed;
+
+    public NamespaceCache(KubernetesClient kubernetesClient, Duration ttl) {
+        this.kubernetesClient = kubernetesClient;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Checks whether the given Namespace exists on the Fleet Shard.
+     *
+     * @param name - The name of the Namespace
+     * @return - true if the Namespace exists
+     */
+    public boolean exists(String name) {
+        if (ttlNanos <= 0) {
+            return lookup(name);
+        }
+
+        watch();
+        long now = System.nanoTime();
+        Long expiry = expiries.get(name);
+        if (expiry != null && expiry - now > 0) {
+            return true;
+        }
+
+        if (lookup(name)) {
+            expiries.put(name, now + ttlNanos);
+            return true;
+        }
+        expiries.remove(name);
+        return false;
+    }
+
+    private boolean lookup(String name) {
+        return kubernetesClient.namespaces().withName(name).get() != null;
+    }
+
+    /*
+     * The watch is started on first use rather than on creation so that clients which are never used do not hold
+     * a connection open. If the watch cannot be started, for example because the Fleet Manager may not watch
+     * Namespaces, the cache relies on the TTL alone.
+     */
+    private synchronized void watch() {
+        if (watch != null || watchFailed) {
+            return;
+        }
+        try {
+            watch = kubernetesClient.namespaces().watch(this);
+        } catch (RuntimeException e) {
+            watchFailed = true;
+            LOGGER.warn("Failed to watch Namespaces. Cached Namespaces will only be refreshed when they expire.", e);
+        }
+    }
+
+    @Override
+    public void eventReceived(Action action, Namespace namespace) {
+        if (action != Action.ADDED && namespace.getMetadata() != null) {
+            expiries.remove(namespace.getMetadata().getName());
+        }
+    }
+
+    @Override
+    public void onClose(WatcherException cause) {
+        LOGGER.warn("Watch on Namespaces was closed. Clearing cached Namespaces.", cause);
+        expiries.clear();
+        synchronized (this) {
+            watch = null;
+        }
+    }
+
+    /**
+     * Stops watching Namespaces and forgets all cached Namespaces.
+     */
+    public synchronized void close() {
+        if (watch != null) {
+            watch.close();
+            watch = null;
+        }
+        expiries.clear();
+    }
+}
@@ -25,6 +25,11 @@ public class AfterDeployedEvent extends EventWithId {
         this.decisionResponse = decisionResponse;
     }
 
+    public AfterDeployedEvent(String customerId, DecisionResponse decisionResponse) {
+        super(customerId);
+        this.decisionResponse = decisionResponse;
+    }
+
     public AfterDeployedEvent() {
         // Jackson.
     }
@@ -25,6 +25,11 @@ public class AfterFailedEvent extends EventWithId {
         this.decisionResponse = decisionResponse;
     }
 
+    public AfterFailedEvent(String customerId, DecisionResponse decisionResponse) {
+        super(customerId);
+        this.decisionResponse = decisionResponse;
+    }
+
     public AfterFailedEvent() {
         // Jackson.
     }
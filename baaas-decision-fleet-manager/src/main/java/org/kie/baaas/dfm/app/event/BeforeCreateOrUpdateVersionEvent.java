@@ -25,6 +25,11 @@ public class BeforeCreateOrUpdateVersionEvent extends EventWithId {
         this.decisionRequest = decisionRequest;
     }
 
+    public BeforeCreateOrUpdateVersionEvent(String customerId, DecisionRequest decisionRequest) {
+        super(customerId);
+        this.decisionRequest = decisionRequest;
+    }
+
     public BeforeCreateOrUpdateVersionEvent() {
         // Jackson.
     }
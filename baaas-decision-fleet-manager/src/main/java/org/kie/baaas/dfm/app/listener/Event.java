@@ -8,4 +8,11 @@ public interface Event {
         return Optional.empty();
     }
 
+    /**
+     * @return - The customer the event concerns. Only the Listeners of that customer are notified, besides global Listeners.
+     */
+    default Optional<String> getCustomerId() {
+        return Optional.empty();
+    }
+
 }
@@ -10,9 +10,26 @@ public abstract class EventWithId implements Event {
     @JsonIgnore
     private final String eventId = UUID.randomUUID().toString();
 
+    @JsonIgnore
+    private final String customerId;
+
+    protected EventWithId() {
+        this(null);
+    }
+
+    protected EventWithId(String customerId) {
+        this.customerId = customerId;
+    }
+
     @JsonIgnore
     @Override
     public Optional<String> getEventId() {
         return Optional.of(eventId);
     }
+
+    @JsonIgnore
+    @Override
+    public Optional<String> getCustomerId() {
+        return Optional.ofNullable(customerId);
+    }
 }
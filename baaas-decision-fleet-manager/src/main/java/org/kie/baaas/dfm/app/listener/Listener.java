@@ -1,6 +1,16 @@
 package org.kie.baaas.dfm.app.listener;
 
+import java.util.Collections;
+import java.util.Set;
+
 public interface Listener {
 
     void onEvent(Event event);
+
+    /**
+     * @return - The types of event this Listener is notified of, including their subtypes. All events by default.
+     */
+    default Set<Class<? extends Event>> getEventTypes() {
+        return Collections.singleton(Event.class);
+    }
 }
@@ -1,9 +1,13 @@
 package org.kie.baaas.dfm.app.listener;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -11,44 +15,112 @@ import javax.enterprise.context.ApplicationScoped;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Registry of the Listeners to notify of events.
+ * <p>
+ * Listeners are either global, or registered for a customer under an id, such as the id of a Webhook, by which they
+ * are later replaced or removed. An event that concerns a customer is dispatched to the global Listeners and to the
+ * Listeners of that customer only, so the cost of dispatching it does not grow with the Listeners of other customers.
+ * <p>
+ * The registry is copy-on-write: events are dispatched to an immutable snapshot of the Listeners without locking,
+ * while registrations replace the snapshot. Only the Listeners of the customer concerned are copied on registration,
+ * and each snapshot remembers which global Listeners subscribe to each type of event.
+ */
 @ApplicationScoped
 public class ListenerManager {
 
     private static final Logger LOG = LoggerFactory.getLogger(ListenerManager.class);
 
-    private Set<Listener> listeners = new HashSet<>();
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(), Collections.emptyMap());
 
     public ListenerManager() {
     }
 
-    public void addListener(Listener listener) {
-        this.listeners.add(listener);
+    public synchronized void addListener(Listener listener) {
+        List<Listener> global = new ArrayList<>(snapshot.global);
+        global.add(listener);
+        snapshot = new Snapshot(Collections.unmodifiableList(global), snapshot.byCustomer);
     }
 
-    public void addListeners(Collection<Listener> listeners) {
-        this.listeners.addAll(listeners);
+    public synchronized void addListeners(Collection<Listener> listeners) {
+        List<Listener> global = new ArrayList<>(snapshot.global);
+        global.addAll(listeners);
+        snapshot = new Snapshot(Collections.unmodifiableList(global), snapshot.byCustomer);
     }
 
-    public void removeListener(Listener listener) {
-        this.listeners.remove(listener);
+    /**
+     * Registers a Listener for a customer, replacing any Listener already registered under the same id.
+     *
+     * @param customerId - The customer the Listener is registered for
+     * @param listenerId - The id of the Listener, unique for the customer
+     * @param listener - The Listener
+     */
+    public synchronized void addListener(String customerId, String listenerId, Listener listener) {
+        Map<String, Listener> customerListeners = new HashMap<>(snapshot.byCustomer.getOrDefault(customerId, Collections.emptyMap()));
+        customerListeners.put(listenerId, listener);
+        Map<String, Map<String, Listener>> byCustomer = new HashMap<>(snapshot.byCustomer);
+        byCustomer.put(customerId, Collections.unmodifiableMap(customerListeners));
+        snapshot = new Snapshot(snapshot.global, Collections.unmodifiableMap(byCustomer));
     }
 
-    public Set<Listener> getListeners() {
-        return this.listeners;
+    /**
+     * Removes the Listener registered for a customer under the given id.
+     *
+     * @param customerId - The customer the Listener is registered for
+     * @param listenerId - The id of the Listener
+     * @return - The removed Listener, if there was one
+     */
+    public synchronized Optional<Listener> removeListener(String customerId, String listenerId) {
+        Map<String, Listener> current = snapshot.byCustomer.get(customerId);
+        if (current == null || !current.containsKey(listenerId)) {
+            return Optional.empty();
+        }
+
+        Map<String, Listener> customerListeners = new HashMap<>(current);
+        Listener removed = customerListeners.remove(listenerId);
+        Map<String, Map<String, Listener>> byCustomer = new HashMap<>(snapshot.byCustomer);
+        if (customerListeners.isEmpty()) {
+            byCustomer.remove(customerId);
+        } else {
+            byCustomer.put(customerId, Collections.unmodifiableMap(customerListeners));
+        }
+        snapshot = new Snapshot(snapshot.global, Collections.unmodifiableMap(byCustomer));
+        return Optional.of(removed);
+    }
+
+    public synchronized void removeListener(Listener listener) {
+        List<Listener> global = new ArrayList<>(snapshot.global);
+        if (global.remove(listener)) {
+            snapshot = new Snapshot(Collections.unmodifiableList(global), snapshot.byCustomer);
+        }
+    }
+
+    /**
+     * @return - An immutable snapshot of all registered Listeners
+     */
+    public List<Listener> getListeners() {
+        Snapshot current = snapshot;
+        List<Listener> listeners = new ArrayList<>(current.global);
+        current.byCustomer.values().forEach(customerListeners -> listeners.addAll(customerListeners.values()));
+        return Collections.unmodifiableList(listeners);
     }
 
     public boolean hasListeners() {
-        return !this.listeners.isEmpty();
+        Snapshot current = snapshot;
+        return !current.global.isEmpty() || !current.byCustomer.isEmpty();
     }
 
     public void notifyListeners(Event event) {
-        for (Listener l : getListeners()) {
-            try {
-                l.onEvent(event);
-            } catch (Throwable t) {
-                LOG.error("Error notifying logger", t);
-            }
-        }
+        Snapshot current = snapshot;
+        current.globalListenersFor(event.getClass()).forEach(l -> notifyListener(l, event));
+        event.getCustomerId()
+                .map(current.byCustomer::get)
+                .ifPresent(customerListeners -> customerListeners.values().stream()
+                        .filter(l -> subscribes(l, event.getClass()))
+                        .forEach(l -> notifyListener(l, event)));
     }
 
     public <E extends Event> Optional<E> notifyListeners(Supplier<E> eventSupplier) {
@@ -60,4 +132,37 @@ public class ListenerManager {
             return Optional.empty();
         }
     }
+
+    private static void notifyListener(Listener listener, Event event) {
+        try {
+            listener.onEvent(event);
+        } catch (Throwable t) {
+            LOG.error("Error notifying logger", t);
+        }
+    }
+
+    private static boolean subscribes(Listener listener, Class<? extends Event> eventType) {
+        return listener.getEventTypes().stream().anyMatch(type -> type.isAssignableFrom(eventType));
+    }
+
+    private static final class Snapshot {
+
+        private final List<Listener> global;
+
+        private final Map<String, Map<String, Listener>> byCustomer;
+
+        // The global Listeners subscribed to each type of event dispatched so far, filled in as events are dispatched
+        private final Map<Class<?>, List<Listener>> globalByEventType = new ConcurrentHashMap<>();
+
+        private Snapshot(List<Listener> global, Map<String, Map<String, Listener>> byCustomer) {
+            this.global = global;
+            this.byCustomer = byCustomer;
+        }
+
+        private List<Listener> globalListenersFor(Class<? extends Event> eventType) {
+            return globalByEventType.computeIfAbsent(eventType, type -> global.stream()
+                    .filter(l -> subscribes(l, eventType))
+                    .collect(collectingAndThen(toList(), Collections::unmodifiableList)));
+        }
+    }
 }
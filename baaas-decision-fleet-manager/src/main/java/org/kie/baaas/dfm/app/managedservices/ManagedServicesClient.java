@@ -15,11 +15,17 @@
 
 package org.kie.baaas.dfm.app.managedservices;
 
-import java.util.Optional;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.ws.rs.core.Response;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.kie.baaas.dfm.app.vault.Secret;
 import org.slf4j.Logger;
@@ -27,11 +33,17 @@ import org.slf4j.LoggerFactory;
 
 import com.openshift.cloud.api.kas.SecurityApi;
 import com.openshift.cloud.api.kas.invoker.ApiException;
-import com.openshift.cloud.api.kas.invoker.auth.HttpBearerAuth;
 import com.openshift.cloud.api.kas.models.ServiceAccount;
 import com.openshift.cloud.api.kas.models.ServiceAccountListItem;
 import com.openshift.cloud.api.kas.models.ServiceAccountRequest;
 
+/**
+ * Creates the Service Accounts through which Decisions connect to Kafka.
+ * <p>
+ * The ids of known Service Accounts are indexed by name, so that an existing Service Account is found without
+ * listing all of them. The index is updated as Service Accounts are created, and is refreshed from the full list of
+ * Service Accounts when a name is not found, at most once per refresh interval.
+ */
 @ApplicationScoped
 public class ManagedServicesClient {
 
@@ -46,25 +58,18 @@ public class ManagedServicesClient {
     @Inject
     ManagedServicesConfig config;
 
+    @ConfigProperty(name = "baaas.dfm.managed-services.index-refresh-interval", defaultValue = "PT1M")
+    Duration indexRefreshInterval;
+
+    private final Map<String, String> serviceAccountIds = new ConcurrentHashMap<>();
+
+    private volatile boolean indexed;
+
+    private volatile long indexRefreshedAt;
+
     public Secret createOrReplaceServiceAccount(String saName) {
-        var api = getApi();
         try {
-            Optional<ServiceAccountListItem> expected = api.getServiceAccounts()
-                    .getItems()
-                    .stream()
-                    .filter(s -> s.getName().equals(saName))
-                    .findFirst();
-            ServiceAccount sa;
-            if (expected.isPresent()) {
-                LOGGER.debug("ServiceAccount {} exists, need to reset the credentials", saName);
-                sa = api.resetServiceAccountCreds(expected.get().getId());
-            } else {
-                var req = new ServiceAccountRequest();
-                req.name(saName);
-                req.description("DaaS Managed Service Account " + saName);
-                LOGGER.debug("ServiceAccount {} does not exist, need to create it.", saName);
-                sa = api.createServiceAccount(req);
-            }
+            ServiceAccount sa = config.invoke(token.getRawToken(), api -> createOrReplace(api, saName));
             return new Secret().setId(sa.getName())
                     .value(CLIENT_ID, sa.getClientId())
                     .value(CLIENT_SECRET, sa.getClientSecret());
@@ -74,10 +79,60 @@ public class ManagedServicesClient {
         }
     }
 
-    private SecurityApi getApi() {
-        HttpBearerAuth bearer = (HttpBearerAuth) config.getClient().getAuthentication("Bearer");
-        bearer.setBearerToken(token.getRawToken());
-        return new SecurityApi(config.getClient());
+    private ServiceAccount createOrReplace(SecurityApi api, String saName) throws ApiException {
+        String id = findServiceAccountId(api, saName);
+        if (id != null) {
+            try {
+                LOGGER.debug("ServiceAccount {} exists, need to reset the credentials", saName);
+                return api.resetServiceAccountCreds(id);
+            } catch (ApiException e) {
+                if (e.getCode() != Response.Status.NOT_FOUND.getStatusCode()) {
+                    throw e;
+                }
+                LOGGER.debug("ServiceAccount {} no longer exists", saName);
+                serviceAccountIds.remove(saName, id);
+            }
+        }
+
+        var req = new ServiceAccountRequest();
+        req.name(saName);
+        req.description("DaaS Managed Service Account " + saName);
+        LOGGER.debug("ServiceAccount {} does not exist, need to create it.", saName);
+        ServiceAccount sa = api.createServiceAccount(req);
+        serviceAccountIds.put(saName, sa.getId());
+        return sa;
+    }
+
+    private String findServiceAccountId(SecurityApi api, String saName) throws ApiException {
+        String id = serviceAccountIds.get(saName);
+        if (id == null && isIndexStale()) {
+            refreshIndex(api);
+            id = serviceAccountIds.get(saName);
+        }
+        return id;
+    }
+
+    private boolean isIndexStale() {
+        return !indexed || System.nanoTime() - indexRefreshedAt >= indexRefreshInterval.toNanos();
     }
 
+    private void refreshIndex(SecurityApi api) throws ApiException {
+        Set<String> names = new HashSet<>();
+        for (ServiceAccountListItem item : api.getServiceAccounts().getItems()) {
+            serviceAccountIds.put(item.getName(), item.getId());
+            names.add(item.getName());
+        }
+        serviceAccountIds.keySet().retainAll(names);
+        indexRefreshedAt = System.nanoTime();
+        indexed = true;
+        LOGGER.debug("Indexed {} ServiceAccounts", names.size());
+    }
+
+    /**
+     * Forgets all indexed Service Accounts, so that the index is refreshed on next use.
+     */
+    void clearIndex() {
+        indexed = false;
+        serviceAccountIds.clear();
+    }
 }
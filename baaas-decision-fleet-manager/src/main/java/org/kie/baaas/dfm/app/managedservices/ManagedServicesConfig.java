@@ -16,6 +16,8 @@
 package org.kie.baaas.dfm.app.managedservices;
 
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.enterprise.context.ApplicationScoped;
 
@@ -23,24 +25,89 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.openshift.cloud.api.kas.SecurityApi;
 import com.openshift.cloud.api.kas.invoker.ApiClient;
+import com.openshift.cloud.api.kas.invoker.ApiException;
+import com.openshift.cloud.api.kas.invoker.auth.HttpBearerAuth;
 
+/**
+ * Holds the clients of the Managed Services API.
+ * <p>
+ * The bearer token of an {@link ApiClient} is part of its state, so an ApiClient may only be used by one call at a
+ * time. A fixed number of ApiClients are therefore created up front and lent out to one call at a time, each
+ * carrying the token of the caller. All of the ApiClients share the HTTP transport of the first one, and with it
+ * its connection pool.
+ */
 @ApplicationScoped
 public class ManagedServicesConfig {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ManagedServicesConfig.class);
 
-    private final ApiClient client = new ApiClient();
+    private static final String BEARER = "Bearer";
+
+    private final BlockingQueue<ApiClient> clients;
 
-    public ManagedServicesConfig(@ConfigProperty(name = "baaas.dfm.managed-services.endpoint") Optional<String> basePath) {
+    public ManagedServicesConfig(@ConfigProperty(name = "baaas.dfm.managed-services.endpoint") Optional<String> basePath,
+            @ConfigProperty(name = "baaas.dfm.managed-services.max-concurrent", defaultValue = "8") int maxConcurrent) {
+        this.clients = new ArrayBlockingQueue<>(maxConcurrent);
+
+        ApiClient transport = createClient(basePath);
+        clients.add(transport);
+        for (int i = 1; i < maxConcurrent; i++) {
+            ApiClient client = createClient(basePath);
+            client.setHttpClient(transport.getHttpClient());
+            clients.add(client);
+        }
+        LOGGER.info("Configured {} Managed Services clients {}", maxConcurrent, transport.getBasePath());
+    }
+
+    private ApiClient createClient(Optional<String> basePath) {
+        ApiClient client = new ApiClient();
         if (basePath.isPresent()) {
             client.setBasePath(basePath.get());
         }
-        LOGGER.info("Configured Managed Services client {}", client.getBasePath());
+        return client;
+    }
+
+    /**
+     * Invokes the Managed Services API on behalf of the owner of the given bearer token. The call waits for a client
+     * to become available if all of them are in use.
+     *
+     * @param bearerToken - The bearer token to authenticate the call with
+     * @param call - The call to make against the API
+     * @param <T> - The type of the result of the call
+     * @return - The result of the call
+     * @throws ApiException - If the API rejected the call
+     */
+    public <T> T invoke(String bearerToken, ApiCall<T> call) throws ApiException {
+        ApiClient client = borrow();
+        HttpBearerAuth bearer = (HttpBearerAuth) client.getAuthentication(BEARER);
+        try {
+            bearer.setBearerToken(bearerToken);
+            return call.call(new SecurityApi(client));
+        } finally {
+            bearer.setBearerToken(null);
+            clients.add(client);
+        }
     }
 
-    public ApiClient getClient() {
-        return client;
+    private ApiClient borrow() {
+        try {
+            return clients.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagedServicesException("Interrupted whilst waiting for a Managed Services client", e);
+        }
     }
 
+    /**
+     * A call against the Managed Services API.
+     *
+     * @param <T> - The type of the result of the call
+     */
+    @FunctionalInterface
+    public interface ApiCall<T> {
+
+        T call(SecurityApi api) throws ApiException;
+    }
 }
@@ -15,13 +15,16 @@
 
 package org.kie.baaas.dfm.app.manager;
 
-import java.io.ByteArrayOutputStream;
+import java.util.List;
 
 import org.kie.baaas.dfm.api.decisions.DecisionRequest;
 import org.kie.baaas.dfm.app.model.Decision;
+import org.kie.baaas.dfm.app.model.DecisionSummary;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
+import org.kie.baaas.dfm.app.model.ListCursor;
 import org.kie.baaas.dfm.app.model.ListResult;
 import org.kie.baaas.dfm.app.model.deployment.Deployment;
+import org.kie.baaas.dfm.app.storage.DMNContent;
 
 /**
  * Core interface for working with the lifecycle of a Decision.
@@ -46,6 +49,28 @@ public interface DecisionLifecycle {
      */
     DecisionVersion createOrUpdateVersion(String customerId, DecisionRequest decisionRequest);
 
+    /**
+     * Creates or updates a Decision for the given customerId, returning as soon as the new DecisionVersion has been
+     * recorded. Deployment of the DecisionVersion is requested in the background, and its outcome is reflected in the
+     * status of the DecisionVersion.
+     *
+     * @param customerId - The id of the customer that owns the Decision
+     * @param decisionRequest - The API request sent to the BAaaS API
+     * @return - The created or updated DecisionVersion, in status BUILDING
+     */
+    DecisionVersion createOrUpdateVersionAsync(String customerId, DecisionRequest decisionRequest);
+
+    /**
+     * Creates or updates a number of Decisions for the given customerId. The DMNs are written to storage in parallel,
+     * the new DecisionVersions are recorded together and their deployments are requested concurrently. The failure
+     * of one request does not prevent the others from completing.
+     *
+     * @param customerId - The id of the customer that owns the Decisions
+     * @param decisionRequests - The API requests sent to the BAaaS API
+     * @return - The outcome of each request, in the same order as the requests
+     */
+    List<DecisionVersionOutcome> createOrUpdateVersions(String customerId, List<DecisionRequest> decisionRequests);
+
     /**
      * Sets new current version of a Decision.
      *
@@ -60,9 +85,12 @@ public interface DecisionLifecycle {
      * List all Decisions for the specified Customer
      *
      * @param customerId - The id of the customer that owns the Decisions
-     * @return - The List of Decisions for this customer (can be empty)
+     * @param cursor - The position in the list from which to read the page
+     * @param pageSize - The maximum number of Decisions to return
+     * @param includeTotal - Whether to count the total number of Decisions of the customer
+     * @return - The List of summaries of the Decisions for this customer (can be empty)
      */
-    ListResult<Decision> listDecisions(String customerId, int page, int pageSize);
+    ListResult<DecisionSummary> listDecisions(String customerId, ListCursor cursor, int pageSize, boolean includeTotal);
 
     /**
      * Gets the building version of the specified decision owned by the customer id.
@@ -109,19 +137,22 @@ public interface DecisionLifecycle {
      *
      * @param customerId - The id of the customer that owns the decision
      * @param decisionIdOrName - The id or name of the Decision
+     * @param cursor - The position in the list from which to read the page
+     * @param pageSize - The maximum number of versions to return
+     * @param includeTotal - Whether to count the total number of versions of the Decision
      * @return - The list of versions for this decision.
      */
-    ListResult<DecisionVersion> listDecisionVersions(String customerId, String decisionIdOrName, int page, int pageSize);
+    ListResult<DecisionVersion> listDecisionVersions(String customerId, String decisionIdOrName, ListCursor cursor, int pageSize, boolean includeTotal);
 
     /**
-     * Retrieve the requested dmn file from S3 Bucket as ByteArrayOutputStream
+     * Opens a stream over the dmn file of the given Decision Version. The dmn file is not buffered.
      *
      * @param customerId - The id of the customer that owns the Decision
-     * @param decisionIdOrName - The id or name of the Decision
-     * @param version - The version of the Decision
-     * @return the request dmn file as ByteArrayOutputStream
+     * @param decisionVersion - The Decision Version that owns the dmn file
+     * @param range - A single HTTP byte range of the dmn file to read, or null to read the whole file
+     * @return the requested dmn file content
      */
-    ByteArrayOutputStream getDMN(String customerId, String decisionIdOrName, long version);
+    DMNContent getDMN(String customerId, DecisionVersion decisionVersion, String range);
 
     /**
      * Callback method invoked when we have failed to deploy the specified version of a Decision.
@@ -15,11 +15,19 @@
 
 package org.kie.baaas.dfm.app.manager;
 
-import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.transaction.Transactional;
 
+import org.eclipse.microprofile.context.ManagedExecutor;
 import org.kie.baaas.dfm.api.decisions.DecisionRequest;
 import org.kie.baaas.dfm.app.controller.modelmappers.DecisionMapper;
 import org.kie.baaas.dfm.app.dfs.DecisionFleetShardClient;
@@ -33,14 +41,23 @@ import org.kie.baaas.dfm.app.listener.ListenerManager;
 import org.kie.baaas.dfm.app.managedservices.ManagedServicesClient;
 import org.kie.baaas.dfm.app.model.Decision;
 import org.kie.baaas.dfm.app.model.DecisionFleetShard;
+import org.kie.baaas.dfm.app.model.DecisionSummary;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
+import org.kie.baaas.dfm.app.model.DecisionVersionStatus;
+import org.kie.baaas.dfm.app.model.DeploymentOutboxEntry;
+import org.kie.baaas.dfm.app.model.ListCursor;
 import org.kie.baaas.dfm.app.model.ListResult;
 import org.kie.baaas.dfm.app.model.deployment.Deployment;
 import org.kie.baaas.dfm.app.model.eventing.Credential;
+import org.kie.baaas.dfm.app.storage.DMNContent;
 import org.kie.baaas.dfm.app.storage.DecisionDMNStorage;
+import org.kie.baaas.dfm.app.storage.StagedDMN;
 import org.kie.baaas.dfm.app.vault.Secret;
 import org.kie.baaas.dfm.app.vault.VaultService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import static java.util.stream.Collectors.toList;
 import static org.kie.baaas.dfm.app.managedservices.ManagedServicesClient.CLIENT_ID;
 import static org.kie.baaas.dfm.app.managedservices.ManagedServicesClient.CLIENT_SECRET;
 
@@ -52,6 +69,8 @@ import static org.kie.baaas.dfm.app.managedservices.ManagedServicesClient.CLIENT
 @ApplicationScoped
 public class DecisionLifecycleOrchestrator implements DecisionLifecycle {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecisionLifecycleOrchestrator.class);
+
     private static final String CREDENTIALS_NAME = "daas-%s-credentials";
 
     private final DecisionFleetShardClientFactory clientFactory;
@@ -70,13 +89,22 @@ public class DecisionLifecycleOrchestrator implements DecisionLifecycle {
 
     private final ManagedServicesClient managedServicesClient;
 
+    private final ManagedExecutor executorService;
+
+    private final DeploymentScheduler deploymentScheduler;
+
+    private final DeploymentOutbox deploymentOutbox;
+
     @Inject
     public DecisionLifecycleOrchestrator(DecisionFleetShardClientFactory clientFactory, DecisionFleetShardSelector fleetShardSelector, DecisionManager decisionManager,
             DecisionDMNStorage decisionDMNStorage,
             ListenerManager listenerManager,
             DecisionMapper decisionMapper,
             VaultService vaultService,
-            ManagedServicesClient managedServicesClient) {
+            ManagedServicesClient managedServicesClient,
+            ManagedExecutor executorService,
+            DeploymentScheduler deploymentScheduler,
+            DeploymentOutbox deploymentOutbox) {
         this.clientFactory = clientFactory;
         this.fleetShardSelector = fleetShardSelector;
         this.decisionManager = decisionManager;
@@ -85,6 +113,9 @@ public class DecisionLifecycleOrchestrator implements DecisionLifecycle {
         this.decisionMapper = decisionMapper;
         this.vaultService = vaultService;
         this.managedServicesClient = managedServicesClient;
+        this.executorService = executorService;
+        this.deploymentScheduler = deploymentScheduler;
+        this.deploymentOutbox = deploymentOutbox;
     }
 
     @Override
@@ -93,10 +124,22 @@ public class DecisionLifecycleOrchestrator implements DecisionLifecycle {
         Decision decision = decisionManager.deleteDecision(customerId, decisionNameOrId);
         DecisionFleetShardClient client = getFleetShardClient(decision);
         client.delete(decision);
-        decisionDMNStorage.deleteDMN(customerId, decision);
+        deleteDMN(customerId, decision);
         return decision;
     }
 
+    /*
+     * Removing the DMNs of a Decision from storage can take some time and its outcome is of no interest to the caller,
+     * so it is done outside of the request path.
+     */
+    private void deleteDMN(String customerId, Decision decision) {
+        executorService.runAsync(() -> decisionDMNStorage.deleteDMN(customerId, decision))
+                .exceptionally(t -> {
+                    LOGGER.error("Failed to delete DMN of Decision with id '{}' for customer '{}'", decision.getId(), customerId, t);
+                    return null;
+                });
+    }
+
     private DecisionVersion requestDeployment(String customerId, DecisionVersion decisionVersion) {
         DecisionFleetShardClient client = getFleetShardClient(decisionVersion.getDecision());
         try {
@@ -119,20 +162,334 @@ public class DecisionLifecycleOrchestrator implements DecisionLifecycle {
         return new DecisionFleetManagerException(message, t);
     }
 
+    /*
+     * Deployment is requested inline and the outcome is returned to the caller, so the outbox entry is completed
+     * whether or not the Fleet Shard accepted it. If the credential cannot be resolved, the deployment is given up on
+     * as well. The entry is only left in place if the Fleet Manager stopped before completing it, in which case the
+     * DeploymentOutboxDispatcher requests the deployment once the lease on the entry expires.
+     */
     @Override
     public DecisionVersion createOrUpdateVersion(String customerId, DecisionRequest decisionRequest) {
-        listenerManager.notifyListeners(() -> new BeforeCreateOrUpdateVersionEvent(decisionRequest));
-        // TODO - chicken and egg problem here.  The DecisionVersion requires information about the DMN
-        // storage location, but the storage requires the DecisionVersion. We therefore have the write
-        // to storage happening within the DecisionManager implementation. Ideally the write should happen
-        // outside of this as we don't want to write to remote resources within a transaction boundary.
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(customerId, decisionRequest);
+        DecisionVersion decisionVersion = recordVersion(customerId, decisionRequest);
+        try {
+            attachCredential(customerId, decisionRequest, decisionVersion);
+        } catch (RuntimeException e) {
+            abandonDeployment(customerId, decisionVersion);
+            throw e;
+        }
+        try {
+            return requestDeployment(customerId, decisionVersion);
+        } finally {
+            deploymentOutbox.complete(decisionVersion.getId());
+        }
+    }
+
+    /*
+     * The DMN is recorded on the calling thread, so that the request is not acknowledged before its DMN is durable.
+     * Only the calls to the Secrets Manager, the Managed Services API and the Fleet Shard are deferred.
+     */
+    @Override
+    public DecisionVersion createOrUpdateVersionAsync(String customerId, DecisionRequest decisionRequest) {
+        DecisionVersion decisionVersion = recordVersion(customerId, decisionRequest);
+        try {
+            deploymentScheduler.schedule(customerId, () -> deployInBackground(customerId, decisionRequest, decisionVersion));
+        } catch (DeploymentQueueFullException e) {
+            abandonDeployment(customerId, decisionVersion);
+            throw e;
+        }
+        return decisionVersion;
+    }
+
+    private void deployInBackground(String customerId, DecisionRequest decisionRequest, DecisionVersion decisionVersion) {
+        try {
+            attachCredential(customerId, decisionRequest, decisionVersion);
+            getFleetShardClient(decisionVersion.getDecision()).deploy(decisionVersion);
+            deploymentOutbox.complete(decisionVersion.getId());
+        } catch (RuntimeException e) {
+            retryOrFail(customerId, decisionVersion, e);
+        }
+    }
+
+    /*
+     * Each phase of a bulk request is applied to all of the requests before the next phase starts, so that the calls
+     * to storage and the Fleet Shard are made concurrently rather than one request at a time:
+     * - Stage the DMNs in parallel, outside of any transaction
+     * - Record all DecisionVersions in a single transaction, falling back to a transaction per request if that fails
+     * - Promote the staged DMNs in parallel, if the DecisionDMNStorage needs to, see recordVersion
+     * - Request the deployments through the DeploymentScheduler, which bounds how many are in flight
+     * A request that fails in one phase takes no part in the phases that follow.
+     */
+    @Override
+    public List<DecisionVersionOutcome> createOrUpdateVersions(String customerId, List<DecisionRequest> decisionRequests) {
+        List<BulkItem> items = decisionRequests.stream().map(BulkItem::new).collect(toList());
+        rejectDuplicateNames(items);
+
+        List<BulkItem> pending = pending(items);
+        pending.forEach(item -> listenerManager.notifyListeners(() -> new BeforeCreateOrUpdateVersionEvent(customerId, item.request)));
+        inParallel(pending, item -> item.stagedDMN = decisionDMNStorage.stageDMN(customerId, item.request));
+
+        recordVersions(customerId, pending(items));
+        inParallel(pending(items), item -> promoteDMN(customerId, item.stagedDMN, item.decisionVersion));
+        requestDeployments(customerId, pending(items));
+
+        return items.stream().map(BulkItem::toOutcome).collect(toList());
+    }
+
+    private void rejectDuplicateNames(List<BulkItem> items) {
+        Set<String> names = new HashSet<>();
+        for (BulkItem item : items) {
+            if (!names.add(item.request.getName())) {
+                item.fail(new DecisionLifecycleException("Decision with name '" + item.request.getName() + "' appears more than once in the request"));
+            }
+        }
+    }
+
+    private void recordVersions(String customerId, List<BulkItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
 
+        try {
+            List<DecisionRequest> decisionRequests = items.stream().map(item -> item.request).collect(toList());
+            List<StagedDMN> stagedDMNs = items.stream().map(item -> item.stagedDMN).collect(toList());
+            List<DecisionVersion> decisionVersions = decisionManager.createOrUpdateVersions(customerId, decisionRequests, stagedDMNs);
+            for (int i = 0; i < items.size(); i++) {
+                items.get(i).decisionVersion = decisionVersions.get(i);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to record {} Decisions for customer '{}' together. Recording them one at a time.", items.size(), customerId, e);
+            for (BulkItem item : items) {
+                try {
+                    item.decisionVersion = decisionManager.createOrUpdateVersion(customerId, item.request, item.stagedDMN);
+                } catch (RuntimeException ex) {
+                    decisionDMNStorage.discardDMN(item.stagedDMN);
+                    item.fail(ex);
+                }
+            }
+        }
+    }
+
+    /*
+     * The credential is shared by all Decisions of the customer, so it is resolved once up front rather than
+     * concurrently by each deployment. If it cannot be resolved, the deployments that need it are given up on. A
+     * deployment that cannot be scheduled is deferred to the DeploymentOutboxDispatcher and reported as accepted.
+     */
+    private void requestDeployments(String customerId, List<BulkItem> items) {
+        Credential credential = null;
+        if (items.stream().anyMatch(item -> item.decisionVersion.getKafkaConfig() != null)) {
+            try {
+                credential = getCustomerCredential(customerId);
+            } catch (RuntimeException e) {
+                items.stream().filter(item -> item.decisionVersion.getKafkaConfig() != null).forEach(item -> {
+                    abandonBulkDeployment(customerId, item.decisionVersion);
+                    item.fail(e);
+                });
+            }
+        }
+
+        Credential kafkaCredential = credential;
+        List<CompletableFuture<Void>> deployments = new ArrayList<>();
+        List<BulkItem> deploying = pending(items);
+        for (BulkItem item : deploying) {
+            CompletableFuture<Void> deployment = new CompletableFuture<>();
+            deployments.add(deployment);
+            try {
+                deploymentScheduler.schedule(customerId, () -> {
+                    try {
+                        deployRecordedVersion(customerId, item.decisionVersion, kafkaCredential);
+                        deployment.complete(null);
+                    } catch (RuntimeException e) {
+                        deployment.completeExceptionally(e);
+                    }
+                });
+            } catch (DeploymentQueueFullException e) {
+                LOGGER.warn("Deployment of Decision with id '{}' at version '{}' for customer '{}' is deferred: {}",
+                        item.decisionVersion.getDecision().getId(), item.decisionVersion.getVersion(), customerId, e.getMessage());
+                item.defer();
+                deployment.complete(null);
+            }
+        }
+        awaitAll(deploying, deployments);
+    }
+
+    // A failure to give up on one deployment must not prevent the outcome of the others from being reported
+    private void abandonBulkDeployment(String customerId, DecisionVersion decisionVersion) {
+        try {
+            abandonDeployment(customerId, decisionVersion);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to record failure of Decision with id '{}' at version '{}' for customer '{}'",
+                    decisionVersion.getDecision().getId(), decisionVersion.getVersion(), customerId, e);
+        }
+    }
+
+    private void deployRecordedVersion(String customerId, DecisionVersion decisionVersion, Credential credential) {
+        try {
+            if (decisionVersion.getKafkaConfig() != null) {
+                decisionVersion.getKafkaConfig().setCredential(credential);
+            }
+            requestDeployment(customerId, decisionVersion);
+        } finally {
+            deploymentOutbox.complete(decisionVersion.getId());
+        }
+    }
+
+    private void inParallel(List<BulkItem> items, Consumer<BulkItem> task) {
+        List<CompletableFuture<Void>> futures = items.stream()
+                .map(item -> executorService.runAsync(() -> task.accept(item)))
+                .collect(toList());
+        awaitAll(items, futures);
+    }
+
+    private void awaitAll(List<BulkItem> items, List<CompletableFuture<Void>> futures) {
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                futures.get(i).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                items.get(i).fail(cause instanceof RuntimeException ? (RuntimeException) cause : new DecisionFleetManagerException(cause.getMessage(), cause));
+            }
+        }
+    }
+
+    private static List<BulkItem> pending(List<BulkItem> items) {
+        return items.stream().filter(BulkItem::isPending).collect(toList());
+    }
+
+    /*
+     * Tracks the progress of a single request of a bulk request through each phase.
+     */
+    private static class BulkItem {
+
+        private final DecisionRequest request;
+
+        private StagedDMN stagedDMN;
+
+        private DecisionVersion decisionVersion;
+
+        private RuntimeException failure;
+
+        private boolean deferred;
+
+        BulkItem(DecisionRequest request) {
+            this.request = request;
+        }
+
+        boolean isPending() {
+            return failure == null;
+        }
+
+        void fail(RuntimeException failure) {
+            this.failure = failure;
+        }
+
+        void defer() {
+            this.deferred = true;
+        }
+
+        DecisionVersionOutcome toOutcome() {
+            if (failure != null) {
+                return DecisionVersionOutcome.failed(request.getName(), failure);
+            }
+            if (deferred) {
+                return DecisionVersionOutcome.deferred(request.getName(), decisionVersion);
+            }
+            return DecisionVersionOutcome.succeeded(request.getName(), decisionVersion);
+        }
+    }
+
+    /**
+     * Requests deployment of a DecisionVersion from the outbox. Deployment is skipped if the DecisionVersion no
+     * longer exists or is no longer waiting to be deployed.
+     *
+     * @param entry - The outbox entry of the DecisionVersion to deploy
+     */
+    public void deliverDeployment(DeploymentOutboxEntry entry) {
+        DecisionVersion decisionVersion;
+        try {
+            decisionVersion = decisionManager.getVersion(entry.getCustomerId(), entry.getDecisionId(), entry.getVersion());
+        } catch (NoSuchDecisionException | NoSuchDecisionVersionException e) {
+            deploymentOutbox.complete(entry.getDecisionVersionId());
+            return;
+        }
+
+        if (decisionVersion.getStatus() != DecisionVersionStatus.BUILDING) {
+            deploymentOutbox.complete(entry.getDecisionVersionId());
+            return;
+        }
+
+        try {
+            if (decisionVersion.getKafkaConfig() != null) {
+                decisionVersion.getKafkaConfig().setCredential(getCustomerCredential(entry.getCustomerId()));
+            }
+            getFleetShardClient(decisionVersion.getDecision()).deploy(decisionVersion);
+            deploymentOutbox.complete(entry.getDecisionVersionId());
+        } catch (RuntimeException e) {
+            retryOrFail(entry.getCustomerId(), decisionVersion, e);
+        }
+    }
+
+    private void retryOrFail(String customerId, DecisionVersion decisionVersion, Exception e) {
+        DecisionFleetManagerException failure = failedToDeploy(customerId, decisionVersion, e);
+        if (deploymentOutbox.retry(decisionVersion.getId(), failure)) {
+            LOGGER.warn(failure.getMessage(), e);
+            return;
+        }
+        LOGGER.error(failure.getMessage(), e);
+        decisionManager.failed(customerId, decisionVersion.getDecision().getId(), decisionVersion.getVersion(), failedToDeploy());
+    }
+
+    /*
+     * The DMN is uploaded before the DecisionVersion is recorded, so that no connection is held open for the duration
+     * of the upload:
+     * - Stage the DMN outside of any transaction. DMNs are stored once per customer at their content address, so a
+     *   DMN that is already stored is not uploaded again.
+     * - Record the DecisionVersion in a short transaction, which locks the stored DMN until the reference commits.
+     * Promoting and discarding the staged DMN is left to the DecisionDMNStorage. The S3 storage does neither, as the
+     * DMN is staged where it is finally stored and may be shared with other DecisionVersions: a DMN that ends up
+     * unreferenced is deleted by the UnreferencedDMNSweeper once its grace period has passed.
+     */
+    private DecisionVersion recordVersion(String customerId, DecisionRequest decisionRequest) {
+        listenerManager.notifyListeners(() -> new BeforeCreateOrUpdateVersionEvent(customerId, decisionRequest));
+
+        StagedDMN stagedDMN = decisionDMNStorage.stageDMN(customerId, decisionRequest);
+        DecisionVersion decisionVersion;
+        try {
+            decisionVersion = decisionManager.createOrUpdateVersion(customerId, decisionRequest, stagedDMN);
+        } catch (RuntimeException e) {
+            decisionDMNStorage.discardDMN(stagedDMN);
+            throw e;
+        }
+        promoteDMN(customerId, stagedDMN, decisionVersion);
+        return decisionVersion;
+    }
+
+    private void attachCredential(String customerId, DecisionRequest decisionRequest, DecisionVersion decisionVersion) {
         if (decisionVersion.getKafkaConfig() != null) {
             Credential credential = getCustomerCredential(customerId, decisionRequest);
             decisionVersion.getKafkaConfig().setCredential(credential);
         }
-        return requestDeployment(customerId, decisionVersion);
+    }
+
+    private void promoteDMN(String customerId, StagedDMN stagedDMN, DecisionVersion decisionVersion) {
+        try {
+            decisionDMNStorage.promoteDMN(customerId, stagedDMN, decisionVersion);
+        } catch (Exception e) {
+            decisionDMNStorage.discardDMN(stagedDMN);
+            abandonDeployment(customerId, decisionVersion);
+            throw failedToDeploy(customerId, decisionVersion, e);
+        }
+    }
+
+    /*
+     * Records that a recorded DecisionVersion failed before its deployment was requested, and removes it from the
+     * outbox so that the DeploymentOutboxDispatcher does not request the deployment later.
+     */
+    private void abandonDeployment(String customerId, DecisionVersion decisionVersion) {
+        try {
+            decisionManager.failed(customerId, decisionVersion.getDecision().getId(), decisionVersion.getVersion(), failedToDeploy());
+        } finally {
+            deploymentOutbox.complete(decisionVersion.getId());
+        }
     }
 
     private Deployment failedToDeploy() {
@@ -153,8 +510,8 @@ public class DecisionLifecycleOrchestrator implements DecisionLifecycle {
     }
 
     @Override
-    public ListResult<Decision> listDecisions(String customerId, int page, int pageSize) {
-        return decisionManager.listDecisions(customerId, page, pageSize);
+    public ListResult<DecisionSummary> listDecisions(String customerId, ListCursor cursor, int pageSize, boolean includeTotal) {
+        return decisionManager.listDecisions(customerId, cursor, pageSize, includeTotal);
     }
 
     @Override
@@ -181,40 +538,46 @@ public class DecisionLifecycleOrchestrator implements DecisionLifecycle {
     }
 
     @Override
-    public ListResult<DecisionVersion> listDecisionVersions(String customerId, String decisionIdOrName, int page, int pageSize) {
-        return decisionManager.listDecisionVersions(customerId, decisionIdOrName, page, pageSize);
+    public ListResult<DecisionVersion> listDecisionVersions(String customerId, String decisionIdOrName, ListCursor cursor, int pageSize, boolean includeTotal) {
+        return decisionManager.listDecisionVersions(customerId, decisionIdOrName, cursor, pageSize, includeTotal);
     }
 
     @Override
-    public ByteArrayOutputStream getDMN(String customerId, String decisionIdOrName, long version) {
-        return decisionManager.getDMN(customerId, decisionIdOrName, version);
+    public DMNContent getDMN(String customerId, DecisionVersion decisionVersion, String range) {
+        return decisionDMNStorage.readDMN(customerId, decisionVersion, range);
     }
 
+    /*
+     * The status change and the Webhook deliveries that report it are committed in the same transaction, so that a
+     * crash in between cannot lose the event. The deliveries are attempted once the transaction has committed.
+     */
+    @Transactional
     public DecisionVersion failed(String customerId, String decisionIdOrName, long version, Deployment deployment) {
         DecisionVersion decisionVersion = decisionManager.failed(customerId, decisionIdOrName, version, deployment);
-        listenerManager.notifyListeners(() -> new AfterFailedEvent(decisionMapper.mapVersionToDecisionResponse(decisionVersion)));
+        listenerManager.notifyListeners(() -> new AfterFailedEvent(customerId, decisionMapper.mapVersionToDecisionResponse(decisionVersion)));
         return decisionVersion;
     }
 
+    @Transactional
     public DecisionVersion deployed(String customerId, String decisionIdOrName, long version, Deployment deployment) {
         DecisionVersion decisionVersion = decisionManager.deployed(customerId, decisionIdOrName, version, deployment);
-        listenerManager.notifyListeners(() -> new AfterDeployedEvent(decisionMapper.mapVersionToDecisionResponse(decisionVersion)));
+        listenerManager.notifyListeners(() -> new AfterDeployedEvent(customerId, decisionMapper.mapVersionToDecisionResponse(decisionVersion)));
         return decisionVersion;
     }
 
     private Credential getCustomerCredential(String customerId, DecisionRequest decisionRequest) {
         if (decisionRequest.getEventing() != null) {
-            String secretName = String.format(CREDENTIALS_NAME, customerId);
-            Secret secret = vaultService.get(secretName);
-            if (secret == null) {
-                secret = managedServicesClient.createOrReplaceServiceAccount(secretName);
-                vaultService.create(secret);
-            }
-            return toCredential(secret);
+            return getCustomerCredential(customerId);
         }
         return null;
     }
 
+    private Credential getCustomerCredential(String customerId) {
+        String secretName = String.format(CREDENTIALS_NAME, customerId);
+        Secret secret = vaultService.getOrCreate(secretName, () -> managedServicesClient.createOrReplaceServiceAccount(secretName));
+        return toCredential(secret);
+    }
+
     private Credential toCredential(Secret secret) {
         if (secret == null || secret.getValues() == null) {
             return null;
@@ -15,9 +15,9 @@
 
 package org.kie.baaas.dfm.app.manager;
 
-import java.io.ByteArrayOutputStream;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -25,47 +25,60 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.transaction.Transactional;
 
+import org.hibernate.Hibernate;
 import org.kie.baaas.dfm.api.decisions.DecisionRequest;
 import org.kie.baaas.dfm.api.eventing.Eventing;
 import org.kie.baaas.dfm.app.dao.DecisionDAO;
 import org.kie.baaas.dfm.app.dao.DecisionVersionDAO;
 import org.kie.baaas.dfm.app.model.Decision;
+import org.kie.baaas.dfm.app.model.DecisionSummary;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
 import org.kie.baaas.dfm.app.model.DecisionVersionStatus;
+import org.kie.baaas.dfm.app.model.ListCursor;
 import org.kie.baaas.dfm.app.model.ListResult;
 import org.kie.baaas.dfm.app.model.deployment.Deployment;
 import org.kie.baaas.dfm.app.model.eventing.KafkaConfig;
 import org.kie.baaas.dfm.app.storage.DMNStorageRequest;
 import org.kie.baaas.dfm.app.storage.DecisionDMNStorage;
+import org.kie.baaas.dfm.app.storage.StagedDMN;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static java.util.stream.Collectors.toList;
-
 /**
  * Manages the core lifecycle for Decisions. Our API should ensure valid Payload and then
  * delegate to the DecisionManager to complete the lifecycle management.
  */
 @ApplicationScoped
 @Transactional
-public class DecisionManager implements DecisionLifecycle {
+public class DecisionManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DecisionManager.class);
 
+    private static final long FIRST_VERSION = 1L;
+
     private final DecisionDAO decisionDAO;
 
     private final DecisionVersionDAO decisionVersionDAO;
 
     private final DecisionDMNStorage decisionDMNStorage;
 
+    private final DeploymentOutbox deploymentOutbox;
+
+    private final DecisionNameResolver decisionNameResolver;
+
     @Inject
-    public DecisionManager(DecisionDAO decisionDAO, DecisionVersionDAO decisionVersionDAO, DecisionDMNStorage decisionDMNStorage) {
+    public DecisionManager(DecisionDAO decisionDAO, DecisionVersionDAO decisionVersionDAO, DecisionDMNStorage decisionDMNStorage, DeploymentOutbox deploymentOutbox,
+            DecisionNameResolver decisionNameResolver) {
         Objects.requireNonNull(decisionDAO, "decisionDAO cannot be null");
         Objects.requireNonNull(decisionVersionDAO, "decisionVersionDAO cannot be null");
         Objects.requireNonNull(decisionDMNStorage, "decisionDMNStorage cannot be null");
+        Objects.requireNonNull(deploymentOutbox, "deploymentOutbox cannot be null");
+        Objects.requireNonNull(decisionNameResolver, "decisionNameResolver cannot be null");
         this.decisionDAO = decisionDAO;
         this.decisionVersionDAO = decisionVersionDAO;
         this.decisionDMNStorage = decisionDMNStorage;
+        this.deploymentOutbox = deploymentOutbox;
+        this.decisionNameResolver = decisionNameResolver;
     }
 
     /*
@@ -111,11 +124,8 @@ public class DecisionManager implements DecisionLifecycle {
      * @return - The decision version
      */
     public DecisionVersion getCurrentVersion(String customerId, String decisionIdOrName) {
-        DecisionVersion decisionVersion = decisionVersionDAO.getCurrentVersion(customerId, decisionIdOrName);
-        if (decisionVersion == null) {
-            throw decisionDoesNotExist(customerId, decisionIdOrName);
-        }
-        return decisionVersion;
+        Decision decision = findDecision(customerId, decisionIdOrName);
+        return initialize(decision.getCurrentVersion());
     }
 
     /**
@@ -123,12 +133,20 @@ public class DecisionManager implements DecisionLifecycle {
      *
      * @param customerId - The customer id
      * @param decisionIdOrName - The decision id or name
+     * @param cursor - The position in the list from which to read the page
+     * @param pageSize - The maximum number of versions to return
+     * @param includeTotal - Whether to count the total number of versions
      * @return - The list of versions.
      */
-    public ListResult<DecisionVersion> listDecisionVersions(String customerId, String decisionIdOrName, int page, int pageSize) {
+    public ListResult<DecisionVersion> listDecisionVersions(String customerId, String decisionIdOrName, ListCursor cursor, int pageSize, boolean includeTotal) {
 
-        ListResult<DecisionVersion> versions = decisionVersionDAO.listByCustomerAndDecisionIdOrName(customerId, decisionIdOrName, page, pageSize);
-        if (versions.getItems().isEmpty()) {
+        String decisionName = decisionNameResolver.resolveName(customerId, decisionIdOrName);
+        ListResult<DecisionVersion> versions = decisionVersionDAO.listByCustomerAndDecisionName(customerId, decisionName, cursor, pageSize, includeTotal);
+        // Every Decision has at least one version, so only the first page can tell us that the Decision does not exist
+        if (versions.getItems().isEmpty() && cursor.isFirst()) {
+            throw decisionDoesNotExist(customerId, decisionIdOrName);
+        }
+        if (!versions.getItems().isEmpty() && decisionNameResolver.isStale(decisionIdOrName, decisionName, versions.getItems().get(0).getDecision().getId())) {
             throw decisionDoesNotExist(customerId, decisionIdOrName);
         }
         return versions;
@@ -138,43 +156,92 @@ public class DecisionManager implements DecisionLifecycle {
      * Lists the currently known Decisions for the specified Customer.
      *
      * @param customerId - The customer id to find decisions for
+     * @param cursor - The position in the list from which to read the page
+     * @param pageSize - The maximum number of decisions to return
+     * @param includeTotal - Whether to count the total number of decisions
      * @return - The list of decisions for this customer.
      */
-    public ListResult<Decision> listDecisions(String customerId, int page, int pageSize) {
-        ListResult<DecisionVersion> versions = decisionVersionDAO.listCurrentByCustomerId(customerId, page, pageSize);
-        List<Decision> decisions = versions.getItems().stream().map((version) -> version.getDecision()).collect(toList());
-        return new ListResult<>(decisions, versions.getPage(), versions.getTotal());
+    public ListResult<DecisionSummary> listDecisions(String customerId, ListCursor cursor, int pageSize, boolean includeTotal) {
+        return decisionVersionDAO.listCurrentSummariesByCustomerId(customerId, cursor, pageSize, includeTotal);
     }
 
-    @Override
     public DecisionVersion getBuildingVersion(String customerId, String decisionIdOrName) {
-        DecisionVersion decisionVersion = decisionVersionDAO.getBuildingVersion(customerId, decisionIdOrName);
-        if (decisionVersion == null) {
+        Decision decision = findDecision(customerId, decisionIdOrName);
+        if (decision.getNextVersion() == null) {
             throw new NoSuchDecisionVersionException("There is no BUILDING version of Decision with id '" + decisionIdOrName + "' for customer '" + customerId + "'");
         }
 
+        return initialize(decision.getNextVersion());
+    }
+
+    /*
+     * The current and building versions are read by following the associations of the Decision, and their status is
+     * always read from the database. Their tags and configuration are served from the second-level cache, and are
+     * loaded here as callers map the DecisionVersion once the transaction has ended.
+     */
+    private Decision findDecision(String customerId, String decisionIdOrName) {
+        String decisionName = decisionNameResolver.resolveName(customerId, decisionIdOrName);
+        Decision decision = decisionDAO.findByCustomerAndName(customerId, decisionName);
+        if (decision == null || decisionNameResolver.isStale(decisionIdOrName, decisionName, decision.getId())) {
+            throw decisionDoesNotExist(customerId, decisionIdOrName);
+        }
+        return decision;
+    }
+
+    private DecisionVersion initialize(DecisionVersion decisionVersion) {
+        Hibernate.initialize(decisionVersion.getTags());
+        Hibernate.initialize(decisionVersion.getConfiguration());
         return decisionVersion;
     }
 
     /**
+     * Records a new DecisionVersion for an already staged DMN. The DMN must have been staged before
+     * calling this method, so that no write to storage happens whilst the transaction is open.
+     * Deployment of the new DecisionVersion is added to the {@link DeploymentOutbox} in the same transaction.
+     *
      * @param customerId - The id of the customer for the Decision
      * @param decisionRequest - The API processed request
+     * @param stagedDMN - The DMN of the request, already staged in storage
      * @return - the updated Decision
      */
-    public DecisionVersion createOrUpdateVersion(String customerId, DecisionRequest decisionRequest) {
+    public DecisionVersion createOrUpdateVersion(String customerId, DecisionRequest decisionRequest, StagedDMN stagedDMN) {
         Decision decision = decisionDAO.findByCustomerAndName(customerId, decisionRequest.getName());
         if (decision == null) {
-            return createDecision(customerId, decisionRequest);
+            return createDecision(customerId, decisionRequest, stagedDMN);
+        }
+        return updateDecision(customerId, decision, decisionRequest, stagedDMN);
+    }
+
+    /**
+     * Records a new DecisionVersion for each of the already staged DMNs in a single transaction. If any of the
+     * DecisionVersions cannot be recorded, none of them are.
+     *
+     * @param customerId - The id of the customer for the Decisions
+     * @param decisionRequests - The API processed requests
+     * @param stagedDMNs - The DMNs of the requests, already staged in storage, in the same order as the requests
+     * @return - the updated Decisions, in the same order as the requests
+     */
+    public List<DecisionVersion> createOrUpdateVersions(String customerId, List<DecisionRequest> decisionRequests, List<StagedDMN> stagedDMNs) {
+        List<DecisionVersion> decisionVersions = new ArrayList<>(decisionRequests.size());
+        for (int i = 0; i < decisionRequests.size(); i++) {
+            decisionVersions.add(createOrUpdateVersion(customerId, decisionRequests.get(i), stagedDMNs.get(i)));
         }
-        return updateDecision(customerId, decision, decisionRequest);
+        return decisionVersions;
+    }
+
+    private void setDMNLocation(String customerId, DecisionVersion decisionVersion, StagedDMN stagedDMN) {
+        DMNStorageRequest dmnStorageRequest = decisionDMNStorage.locateDMN(customerId, stagedDMN, decisionVersion);
+        decisionVersion.setDmnMd5(dmnStorageRequest.getMd5Hash());
+        decisionVersion.setDmnLocation(dmnStorageRequest.getProviderUrl());
+        decisionVersion.setDmnHash(dmnStorageRequest.getContentHash());
     }
 
-    private DecisionVersion createDecisionVersion(String customerId, DecisionRequest decisionRequest) {
+    private DecisionVersion createDecisionVersion(DecisionRequest decisionRequest, long version) {
 
         DecisionVersion decisionVersion = new DecisionVersion();
         decisionVersion.setStatus(DecisionVersionStatus.BUILDING);
         decisionVersion.setSubmittedAt(ZonedDateTime.now(ZoneOffset.UTC));
-        decisionVersion.setVersion(decisionVersionDAO.getNextVersionId(customerId, decisionRequest.getName()));
+        decisionVersion.setVersion(version);
         decisionVersion.setConfiguration(decisionRequest.getConfiguration());
         decisionVersion.setTags(decisionRequest.getTags());
         decisionVersion.setDescription(decisionRequest.getDescription());
@@ -193,39 +260,37 @@ public class DecisionManager implements DecisionLifecycle {
         return decisionVersion;
     }
 
-    private DecisionVersion createDecision(String customerId, DecisionRequest decisionRequest) {
+    private DecisionVersion createDecision(String customerId, DecisionRequest decisionRequest, StagedDMN stagedDMN) {
         Decision decision = new Decision();
         decision.setCustomerId(customerId);
         decision.setName(decisionRequest.getName());
+        decision.setLastVersion(FIRST_VERSION);
 
-        DecisionVersion decisionVersion = createDecisionVersion(customerId, decisionRequest);
+        DecisionVersion decisionVersion = createDecisionVersion(decisionRequest, FIRST_VERSION);
         decision.addVersion(decisionVersion);
         decision.setNextVersion(decisionVersion);
         decision.setCurrentVersion(decisionVersion);
 
-        //TODO - this is occurring within a transaction. If the write to storage takes a long time, the transaction
-        // will be held open.
-        DMNStorageRequest dmnStorageRequest = decisionDMNStorage.writeDMN(customerId, decisionRequest, decisionVersion);
-        decisionVersion.setDmnMd5(dmnStorageRequest.getMd5Hash());
-        decisionVersion.setDmnLocation(dmnStorageRequest.getProviderUrl());
+        setDMNLocation(customerId, decisionVersion, stagedDMN);
 
         decisionDAO.persist(decision);
+        deploymentOutbox.add(customerId, decisionVersion);
         LOGGER.info("Created new Decision with name '{}' at version '{}' for customer with id '{}'", decision.getName(), decisionVersion.getVersion(), customerId);
         return decisionVersion;
     }
 
-    private DecisionVersion updateDecision(String customerId, Decision decision, DecisionRequest decisionRequest) {
+    private DecisionVersion updateDecision(String customerId, Decision decision, DecisionRequest decisionRequest, StagedDMN stagedDMN) {
+        decisionDAO.lock(decision);
         checkForExistingLifecycleOperation(decision);
 
-        DecisionVersion decisionVersion = createDecisionVersion(customerId, decisionRequest);
+        DecisionVersion decisionVersion = createDecisionVersion(decisionRequest, decisionDAO.allocateNextVersion(decision));
         decision.addVersion(decisionVersion);
         decision.setNextVersion(decisionVersion);
 
-        DMNStorageRequest dmnStorageRequest = decisionDMNStorage.writeDMN(customerId, decisionRequest, decisionVersion);
-        decisionVersion.setDmnMd5(dmnStorageRequest.getMd5Hash());
-        decisionVersion.setDmnLocation(dmnStorageRequest.getProviderUrl());
+        setDMNLocation(customerId, decisionVersion, stagedDMN);
 
         decisionDAO.persist(decision);
+        deploymentOutbox.add(customerId, decisionVersion);
         LOGGER.info("Updating Decision with name '{}' with new version '{}' for customer with id '{}'", decision.getName(), decisionVersion.getVersion(), customerId);
         return decisionVersion;
     }
@@ -335,20 +400,6 @@ public class DecisionManager implements DecisionLifecycle {
         return decisionVersion;
     }
 
-    /**
-     * Reads the given dmn version and name from associated customerId
-     *
-     * @param customerId - The customer that owns the Decision
-     * @param decisionName - The name of the decision to be returned
-     * @param version - The version of the decision to be returned
-     * @return - The dmn as String from S3 bucket
-     */
-    public ByteArrayOutputStream getDMN(String customerId, String decisionName, long version) {
-
-        DecisionVersion decisionVersion = findDecisionVersion(customerId, decisionName, version);
-        return decisionDMNStorage.readDMN(customerId, decisionVersion);
-    }
-
     /**
      * Attempts to delete the specified version of a Decision
      *
@@ -370,16 +421,20 @@ public class DecisionManager implements DecisionLifecycle {
         return decisionVersion;
     }
 
-    private DecisionVersion findDecisionVersion(String customerId, String decisionName, long version) {
-        DecisionVersion decisionVersion = decisionVersionDAO.findByCustomerAndDecisionIdOrName(customerId, decisionName, version);
+    private DecisionVersion findDecisionVersion(String customerId, String decisionIdOrName, long version) {
+        String decisionName = decisionNameResolver.resolveName(customerId, decisionIdOrName);
+        DecisionVersion decisionVersion = decisionVersionDAO.findByCustomerAndDecisionName(customerId, decisionName, version);
         if (decisionVersion == null) {
-            Decision decision = decisionDAO.findByCustomerAndIdOrName(customerId, decisionName);
-            if (decision == null) {
-                throw decisionDoesNotExist(customerId, decisionName);
+            Decision decision = decisionDAO.findByCustomerAndName(customerId, decisionName);
+            if (decision == null || decisionNameResolver.isStale(decisionIdOrName, decisionName, decision.getId())) {
+                throw decisionDoesNotExist(customerId, decisionIdOrName);
             } else {
-                throw decisionVersionDoesNotExist(customerId, decisionName, version);
+                throw decisionVersionDoesNotExist(customerId, decisionIdOrName, version);
             }
         }
+        if (decisionNameResolver.isStale(decisionIdOrName, decisionName, decisionVersion.getDecision().getId())) {
+            throw decisionDoesNotExist(customerId, decisionIdOrName);
+        }
         return decisionVersion;
     }
 
@@ -392,12 +447,9 @@ public class DecisionManager implements DecisionLifecycle {
      */
     public Decision deleteDecision(String customerId, String decisionNameOrId) {
 
-        Decision decision = decisionDAO.findByCustomerAndIdOrName(customerId, decisionNameOrId);
-        if (decision == null) {
-            throw decisionDoesNotExist(customerId, decisionNameOrId);
-        }
-
+        Decision decision = findDecision(customerId, decisionNameOrId);
         decisionDAO.delete(decision);
+        decisionNameResolver.evict(decision.getId());
         LOGGER.info("Deleted Decision with name '{}' and customer id '{}'", decisionNameOrId, customerId);
         return decision;
     }
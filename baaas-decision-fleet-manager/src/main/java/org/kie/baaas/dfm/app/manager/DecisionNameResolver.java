@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.kie.baaas.dfm.app.dao.DecisionDAO;
+import org.kie.baaas.dfm.app.model.Decision;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Resolves the id or name by which the API addresses a Decision to the name of the Decision, so that Decisions and their
+ * versions are only ever looked up by the (customer_id, name) index rather than by a disjunction over id and name.
+ * <p>
+ * A value shaped like a Decision id is resolved by its primary key, and the name found is cached against the id. Names
+ * of Decisions never change and ids are never reused, so a cached name only goes stale once its Decision is deleted;
+ * {@link #evict(String)} forgets it on this instance and the TTL bounds how long other instances remember it. Until
+ * then, the name may have been given to a new Decision, so callers must check that a Decision found by a resolved
+ * name has the id they were given, see {@link #isStale(String, String, String)}.
+ * Anything else, including an id that does not belong to the customer, is taken to be a name.
+ * <p>
+ * Once the cache is full, expired names are evicted first and then the least recently used.
+ */
+@ApplicationScoped
+public class DecisionNameResolver {
+
+    public static final String CACHE_HITS = "daaas.decisions.id-cache.hits";
+
+    public static final String CACHE_MISSES = "daaas.decisions.id-cache.misses";
+
+    public static final String CACHE_SIZE = "daaas.decisions.id-cache.size";
+
+    private static final Pattern DECISION_ID = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    private final DecisionDAO decisionDAO;
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    // Guarded by itself, as reads reorder an access ordered map
+    private final LinkedHashMap<String, CachedName> names;
+
+    @Inject
+    public DecisionNameResolver(DecisionDAO decisionDAO, MeterRegistry meterRegistry,
+            @ConfigProperty(name = "baaas.dfm.decision-id-cache.max-size", defaultValue = "10000") int maxSize,
+            @ConfigProperty(name = "baaas.dfm.decision-id-cache.ttl", defaultValue = "PT10M") Duration ttl) {
+        requireNonNull(decisionDAO, "decisionDAO cannot be null");
+        requireNonNull(meterRegistry, "meterRegistry cannot be null");
+
+        this.decisionDAO = decisionDAO;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.hits = meterRegistry.counter(CACHE_HITS);
+        this.misses = meterRegistry.counter(CACHE_MISSES);
+        this.names = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedName> eldest) {
+                return size() > maxSize;
+            }
+        };
+        meterRegistry.gauge(CACHE_SIZE, this, DecisionNameResolver::size);
+    }
+
+    /**
+     * Resolves the id or name of a Decision to its name.
+     *
+     * @param customerId - The customer that owns the Decision
+     * @param decisionIdOrName - The id or name of the Decision
+     * @return - The name of the Decision
+     */
+    public String resolveName(String customerId, String decisionIdOrName) {
+        if (!DECISION_ID.matcher(decisionIdOrName).matches()) {
+            return decisionIdOrName;
+        }
+
+        CachedName cached = cached(decisionIdOrName);
+        if (cached != null) {
+            hits.increment();
+            return cached.resolve(customerId, decisionIdOrName);
+        }
+
+        misses.increment();
+        Decision decision = decisionDAO.findById(decisionIdOrName);
+        if (decision == null) {
+            // Names are free text, so this may yet be the name of a Decision
+            return decisionIdOrName;
+        }
+
+        cached = new CachedName(decision.getCustomerId(), decision.getName(), System.nanoTime() + ttlNanos);
+        cache(decisionIdOrName, cached);
+        return cached.resolve(customerId, decisionIdOrName);
+    }
+
+    /**
+     * Tells whether the name resolved for an id belonged to a Decision that has since been deleted, because the
+     * Decision now found by that name has another id. A stale name is evicted.
+     *
+     * @param decisionIdOrName - The id or name the Decision was addressed by
+     * @param decisionName - The name it was resolved to
+     * @param decisionId - The id of the Decision found by the name
+     * @return - true if the Decision addressed by id no longer exists
+     */
+    public boolean isStale(String decisionIdOrName, String decisionName, String decisionId) {
+        if (decisionName.equals(decisionIdOrName) || decisionId.equals(decisionIdOrName)) {
+            return false;
+        }
+        evict(decisionIdOrName);
+        return true;
+    }
+
+    /**
+     * Forgets the name cached for a Decision that has been deleted.
+     *
+     * @param decisionId - The id of the deleted Decision
+     */
+    public void evict(String decisionId) {
+        synchronized (names) {
+            names.remove(decisionId);
+        }
+    }
+
+    private int size() {
+        synchronized (names) {
+            return names.size();
+        }
+    }
+
+    private CachedName cached(String decisionId) {
+        synchronized (names) {
+            CachedName cached = names.get(decisionId);
+            if (cached != null && cached.expiresAt - System.nanoTime() <= 0) {
+                names.remove(decisionId);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    /*
+     * Expired names are only found by scanning the whole cache, so they are evicted only once the cache is full. If
+     * none have expired, the least recently used name makes way for the new one.
+     */
+    private void cache(String decisionId, CachedName cached) {
+        if (ttlNanos <= 0 || maxSize <= 0) {
+            return;
+        }
+
+        synchronized (names) {
+            if (names.size() >= maxSize && !names.containsKey(decisionId)) {
+                long now = System.nanoTime();
+                names.values().removeIf((name) -> name.expiresAt - now <= 0);
+            }
+            names.put(decisionId, cached);
+        }
+    }
+
+    private static class CachedName {
+
+        private final String customerId;
+
+        private final String name;
+
+        private final long expiresAt;
+
+        CachedName(String customerId, String name, long expiresAt) {
+            this.customerId = customerId;
+            this.name = name;
+            this.expiresAt = expiresAt;
+        }
+
+        String resolve(String customerId, String decisionIdOrName) {
+            return this.customerId.equals(customerId) ? name : decisionIdOrName;
+        }
+    }
+}
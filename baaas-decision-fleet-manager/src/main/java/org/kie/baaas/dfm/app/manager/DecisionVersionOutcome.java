@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.kie.baaas.dfm.app.manager;
+
+import org.kie.baaas.dfm.app.model.DecisionVersion;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The outcome of creating or updating a single Decision as part of a bulk request. Exactly one of the
+ * DecisionVersion or the failure is set. A DecisionVersion whose deployment could not be requested yet is deferred:
+ * it has been recorded and its deployment will be requested later.
+ */
+public class DecisionVersionOutcome {
+
+    private final String name;
+
+    private final DecisionVersion decisionVersion;
+
+    private final RuntimeException failure;
+
+    private final boolean deferred;
+
+    private DecisionVersionOutcome(String name, DecisionVersion decisionVersion, RuntimeException failure, boolean deferred) {
+        this.name = name;
+        this.decisionVersion = decisionVersion;
+        this.failure = failure;
+        this.deferred = deferred;
+    }
+
+    public static DecisionVersionOutcome succeeded(String name, DecisionVersion decisionVersion) {
+        requireNonNull(decisionVersion, "decisionVersion cannot be null");
+        return new DecisionVersionOutcome(name, decisionVersion, null, false);
+    }
+
+    public static DecisionVersionOutcome deferred(String name, DecisionVersion decisionVersion) {
+        requireNonNull(decisionVersion, "decisionVersion cannot be null");
+        return new DecisionVersionOutcome(name, decisionVersion, null, true);
+    }
+
+    public static DecisionVersionOutcome failed(String name, RuntimeException failure) {
+        requireNonNull(failure, "failure cannot be null");
+        return new DecisionVersionOutcome(name, null, failure, false);
+    }
+
+    /**
+     * The name of the Decision in the request.
+     *
+     * @return - The name of the Decision
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The DecisionVersion that was created, or null if the request failed.
+     *
+     * @return - The created DecisionVersion
+     */
+    public DecisionVersion getDecisionVersion() {
+        return decisionVersion;
+    }
+
+    /**
+     * The reason the request failed, or null if it succeeded.
+     *
+     * @return - The failure
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    public boolean isSucceeded() {
+        return failure == null;
+    }
+
+    /**
+     * Whether the DecisionVersion was recorded, but its deployment will only be requested later.
+     *
+     * @return - true if the deployment was deferred
+     */
+    public boolean isDeferred() {
+        return deferred;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.kie.baaas.dfm.api.decisions.DecisionResponse;
+import org.kie.baaas.dfm.app.event.AfterDeployedEvent;
+import org.kie.baaas.dfm.app.event.AfterFailedEvent;
+import org.kie.baaas.dfm.app.listener.Event;
+import org.kie.baaas.dfm.app.listener.Listener;
+import org.kie.baaas.dfm.app.listener.ListenerManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.Startup;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tells clients waiting on a DecisionVersion when the fleet shard reports it as deployed or failed, so that they do not
+ * have to poll the database for the change.
+ * <p>
+ * Watchers are plain callbacks held against the Decision id and version, not threads, so any number of clients can wait
+ * on the same DecisionVersion. When an {@link AfterDeployedEvent} or {@link AfterFailedEvent} arrives, every watcher of its
+ * DecisionVersion is called once, on the executor, and then forgotten. The events are raised on the instance that
+ * received the callback of the fleet shard, so watchers on other instances are not called and fall back on their timeout.
+ * <p>
+ * Events raised within a transaction only call watchers once the transaction has committed, so that a watcher never
+ * sees a change that is rolled back, nor reads the DecisionVersion again before the change is visible.
+ */
+@Startup
+@ApplicationScoped
+public class DecisionVersionWatcher implements Listener {
+
+    public static final String WATCHERS = "daaas.decisions.watchers";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecisionVersionWatcher.class);
+
+    private static final Set<Class<? extends Event>> EVENT_TYPES = Set.of(AfterDeployedEvent.class, AfterFailedEvent.class);
+
+    private final ListenerManager listenerManager;
+
+    private final ManagedExecutor executorService;
+
+    private final TransactionSynchronizationRegistry transactionRegistry;
+
+    private final Map<String, Set<Consumer<DecisionResponse>>> watchers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger watching = new AtomicInteger();
+
+    @Inject
+    public DecisionVersionWatcher(ListenerManager listenerManager, ManagedExecutor executorService, MeterRegistry meterRegistry,
+            TransactionSynchronizationRegistry transactionRegistry) {
+        requireNonNull(listenerManager, "listenerManager cannot be null");
+        requireNonNull(executorService, "executorService cannot be null");
+        requireNonNull(meterRegistry, "meterRegistry cannot be null");
+        requireNonNull(transactionRegistry, "transactionRegistry cannot be null");
+
+        this.listenerManager = listenerManager;
+        this.executorService = executorService;
+        this.transactionRegistry = transactionRegistry;
+        meterRegistry.gauge(WATCHERS, watching);
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerManager.addListener(this);
+    }
+
+    private static String key(String decisionId, long version) {
+        return decisionId + "/" + version;
+    }
+
+    /**
+     * Watches a DecisionVersion for the next change of its status reported by the fleet shard.
+     *
+     * @param decisionId - The id of the Decision
+     * @param version - The version of the Decision
+     * @param watcher - Called once with the DecisionVersion as it was after the change
+     * @return - Stops watching, if the watcher has not been called yet
+     */
+    public Runnable watch(String decisionId, long version, Consumer<DecisionResponse> watcher) {
+        String key = key(decisionId, version);
+        watchers.compute(key, (k, keyWatchers) -> {
+            Set<Consumer<DecisionResponse>> added = keyWatchers == null ? ConcurrentHashMap.newKeySet() : keyWatchers;
+            if (added.add(watcher)) {
+                watching.incrementAndGet();
+            }
+            return added;
+        });
+        return () -> watchers.computeIfPresent(key, (k, keyWatchers) -> {
+            if (keyWatchers.remove(watcher)) {
+                watching.decrementAndGet();
+            }
+            return keyWatchers.isEmpty() ? null : keyWatchers;
+        });
+    }
+
+    @Override
+    public Set<Class<? extends Event>> getEventTypes() {
+        return EVENT_TYPES;
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        DecisionResponse decisionResponse;
+        if (event instanceof AfterDeployedEvent) {
+            decisionResponse = ((AfterDeployedEvent) event).getDecisionResponse();
+        } else if (event instanceof AfterFailedEvent) {
+            decisionResponse = ((AfterFailedEvent) event).getDecisionResponse();
+        } else {
+            return;
+        }
+
+        if (transactionRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        notifyWatchers(decisionResponse);
+                    }
+                }
+            });
+        } else {
+            notifyWatchers(decisionResponse);
+        }
+    }
+
+    private void notifyWatchers(DecisionResponse decisionResponse) {
+        Set<Consumer<DecisionResponse>> changed = watchers.remove(key(decisionResponse.getId(), decisionResponse.getVersion()));
+        if (changed == null) {
+            return;
+        }
+
+        watching.addAndGet(-changed.size());
+        executorService.execute(() -> changed.forEach(watcher -> {
+            try {
+                watcher.accept(decisionResponse);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to notify a watcher of version '{}' of Decision '{}'", decisionResponse.getVersion(), decisionResponse.getId(), e);
+            }
+        }));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.kie.baaas.dfm.app.dao.DeploymentOutboxDAO;
+import org.kie.baaas.dfm.app.model.DecisionVersion;
+import org.kie.baaas.dfm.app.model.DeploymentOutboxEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Transactional outbox of the deployments to request from the Fleet Shard.
+ * <p>
+ * An entry is added in the same transaction that records a DecisionVersion. Whoever requests the deployment first
+ * holds a lease on the entry, during which no one else will request it. Entries whose lease has expired, or whose
+ * deployment failed and is due to be retried, are claimed in batches by the {@link DeploymentOutboxDispatcher}.
+ * Failed deployments are retried with exponential backoff, up to a maximum number of attempts.
+ */
+@ApplicationScoped
+@Transactional
+public class DeploymentOutbox {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeploymentOutbox.class);
+
+    private final DeploymentOutboxDAO deploymentOutboxDAO;
+
+    private final Duration lease;
+
+    private final Duration initialBackoff;
+
+    private final Duration maxBackoff;
+
+    private final int maxAttempts;
+
+    private final int batchSize;
+
+    @Inject
+    public DeploymentOutbox(DeploymentOutboxDAO deploymentOutboxDAO,
+            @ConfigProperty(name = "baaas.dfm.deployments.outbox.lease", defaultValue = "PT5M") Duration lease,
+            @ConfigProperty(name = "baaas.dfm.deployments.outbox.initial-backoff", defaultValue = "PT5S") Duration initialBackoff,
+            @ConfigProperty(name = "baaas.dfm.deployments.outbox.max-backoff", defaultValue = "PT5M") Duration maxBackoff,
+            @ConfigProperty(name = "baaas.dfm.deployments.outbox.max-attempts", defaultValue = "10") int maxAttempts,
+            @ConfigProperty(name = "baaas.dfm.deployments.outbox.batch-size", defaultValue = "50") int batchSize) {
+        requireNonNull(deploymentOutboxDAO, "deploymentOutboxDAO cannot be null");
+
+        this.deploymentOutboxDAO = deploymentOutboxDAO;
+        this.lease = lease;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.maxAttempts = maxAttempts;
+        this.batchSize = batchSize;
+    }
+
+    private ZonedDateTime now() {
+        return ZonedDateTime.now(ZoneOffset.UTC);
+    }
+
+    /**
+     * Adds deployment of the DecisionVersion to the outbox. The caller holds the lease on the new entry.
+     *
+     * @param customerId - The customer that owns the DecisionVersion
+     * @param decisionVersion - The DecisionVersion to deploy
+     */
+    public void add(String customerId, DecisionVersion decisionVersion) {
+        deploymentOutboxDAO.persist(new DeploymentOutboxEntry(customerId, decisionVersion, now().plus(lease)));
+    }
+
+    /**
+     * Claims the next batch of entries that are due for deployment.
+     *
+     * @return - The claimed entries
+     */
+    public List<DeploymentOutboxEntry> claimDue() {
+        ZonedDateTime now = now();
+        return deploymentOutboxDAO.claimDue(now, now.plus(lease), batchSize);
+    }
+
+    /**
+     * Removes the entry of a DecisionVersion whose deployment has been accepted by the Fleet Shard, or given up on.
+     *
+     * @param decisionVersionId - The id of the DecisionVersion
+     */
+    public void complete(String decisionVersionId) {
+        deploymentOutboxDAO.deleteById(decisionVersionId);
+    }
+
+    /**
+     * Schedules another attempt to deploy a DecisionVersion after a failed attempt. If the maximum number of
+     * attempts has been reached, the entry is removed instead.
+     *
+     * @param decisionVersionId - The id of the DecisionVersion
+     * @param cause - The reason the attempt failed
+     * @return - true if another attempt has been scheduled, false if deployment should be given up on
+     */
+    public boolean retry(String decisionVersionId, Exception cause) {
+        DeploymentOutboxEntry entry = deploymentOutboxDAO.findById(decisionVersionId);
+        if (entry == null) {
+            return false;
+        }
+
+        int attempts = entry.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            LOGGER.warn("Giving up deployment of DecisionVersion '{}' after {} attempts.", decisionVersionId, attempts);
+            deploymentOutboxDAO.delete(entry);
+            return false;
+        }
+
+        ZonedDateTime nextAttemptAt = now().plus(backoff(attempts));
+        entry.setAttempts(attempts);
+        entry.setNextAttemptAt(nextAttemptAt);
+        entry.setLastError(cause.getMessage());
+        LOGGER.info("Deployment of DecisionVersion '{}' failed at attempt {}. Retrying at {}.", decisionVersionId, attempts, nextAttemptAt);
+        return true;
+    }
+
+    private Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+}
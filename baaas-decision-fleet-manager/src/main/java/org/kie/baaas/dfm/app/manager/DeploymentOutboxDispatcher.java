@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.kie.baaas.dfm.app.model.DeploymentOutboxEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.quarkus.runtime.StartupEvent;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Periodically drains the {@link DeploymentOutbox}, handing each claimed batch of deployments to the
+ * {@link DeploymentScheduler}. Draining in bounded batches paces the deployments requested from a Fleet Shard that
+ * is recovering from an outage.
+ */
+@ApplicationScoped
+public class DeploymentOutboxDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeploymentOutboxDispatcher.class);
+
+    private final DeploymentOutbox deploymentOutbox;
+
+    private final DeploymentScheduler deploymentScheduler;
+
+    private final DecisionLifecycleOrchestrator decisionLifecycle;
+
+    private final boolean enabled;
+
+    private final Duration pollInterval;
+
+    private ScheduledExecutorService poller;
+
+    @Inject
+    public DeploymentOutboxDispatcher(DeploymentOutbox deploymentOutbox, DeploymentScheduler deploymentScheduler, DecisionLifecycleOrchestrator decisionLifecycle,
+            @ConfigProperty(name = "baaas.dfm.deployments.outbox.enabled", defaultValue = "true") boolean enabled,
+            @ConfigProperty(name = "baaas.dfm.deployments.outbox.poll-interval", defaultValue = "PT5S") Duration pollInterval) {
+        requireNonNull(deploymentOutbox, "deploymentOutbox cannot be null");
+        requireNonNull(deploymentScheduler, "deploymentScheduler cannot be null");
+        requireNonNull(decisionLifecycle, "decisionLifecycle cannot be null");
+
+        this.deploymentOutbox = deploymentOutbox;
+        this.deploymentScheduler = deploymentScheduler;
+        this.decisionLifecycle = decisionLifecycle;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+    }
+
+    void onStart(@Observes StartupEvent ev) {
+        if (enabled) {
+            poller = Executors.newSingleThreadScheduledExecutor();
+            poller.scheduleWithFixedDelay(this::dispatch, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    /**
+     * Claims the next batch of due deployments and schedules them. A deployment that cannot be scheduled remains
+     * claimed until its lease expires, after which it is claimed again.
+     */
+    void dispatch() {
+        try {
+            List<DeploymentOutboxEntry> entries = deploymentOutbox.claimDue();
+            for (DeploymentOutboxEntry entry : entries) {
+                try {
+                    deploymentScheduler.schedule(entry.getCustomerId(), () -> decisionLifecycle.deliverDeployment(entry));
+                } catch (DeploymentQueueFullException e) {
+                    LOGGER.warn("Could not dispatch deployment of DecisionVersion '{}': {}", entry.getDecisionVersionId(), e.getMessage());
+                }
+            }
+            if (!entries.isEmpty()) {
+                LOGGER.info("Dispatched {} deployments from the outbox.", entries.size());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to dispatch deployments from the outbox.", e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs deployments requested asynchronously on a bounded number of workers.
+ * <p>
+ * Each customer has its own queue of deployments. Workers take deployments from the queues of the customers in
+ * turn, so a customer submitting many deployments at once cannot delay the deployments of other customers.
+ */
+@ApplicationScoped
+public class DeploymentScheduler {
+
+    public static final String QUEUED_DEPLOYMENTS = "daaas.deployments.queued";
+
+    public static final String RUNNING_DEPLOYMENTS = "daaas.deployments.running";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeploymentScheduler.class);
+
+    private final ManagedExecutor executorService;
+
+    private final int maxConcurrentDeployments;
+
+    private final int maxQueuedDeploymentsPerCustomer;
+
+    private final Map<String, Queue<Runnable>> queues = new HashMap<>();
+
+    // Customers with queued deployments, in the order in which they will next be served
+    private final Queue<String> customers = new ArrayDeque<>();
+
+    private int queued;
+
+    private int running;
+
+    @Inject
+    public DeploymentScheduler(ManagedExecutor executorService, MeterRegistry meterRegistry,
+            @ConfigProperty(name = "baaas.dfm.deployments.max-concurrent", defaultValue = "8") int maxConcurrentDeployments,
+            @ConfigProperty(name = "baaas.dfm.deployments.max-queued-per-customer", defaultValue = "100") int maxQueuedDeploymentsPerCustomer) {
+        requireNonNull(executorService, "executorService cannot be null");
+        requireNonNull(meterRegistry, "meterRegistry cannot be null");
+
+        this.executorService = executorService;
+        this.maxConcurrentDeployments = maxConcurrentDeployments;
+        this.maxQueuedDeploymentsPerCustomer = maxQueuedDeploymentsPerCustomer;
+        meterRegistry.gauge(QUEUED_DEPLOYMENTS, this, DeploymentScheduler::getQueued);
+        meterRegistry.gauge(RUNNING_DEPLOYMENTS, this, DeploymentScheduler::getRunning);
+    }
+
+    /**
+     * Queues a deployment for the given customer.
+     *
+     * @param customerId - The customer that requested the deployment
+     * @param deployment - The deployment to run
+     * @throws DeploymentQueueFullException - If the customer already has the maximum number of queued deployments
+     */
+    public synchronized void schedule(String customerId, Runnable deployment) {
+        Queue<Runnable> queue = queues.computeIfAbsent(customerId, k -> new ArrayDeque<>());
+        if (queue.size() >= maxQueuedDeploymentsPerCustomer) {
+            throw new DeploymentQueueFullException("Customer '" + customerId + "' already has " + queue.size() + " deployments waiting to be requested.");
+        }
+
+        if (queue.isEmpty()) {
+            customers.add(customerId);
+        }
+        queue.add(deployment);
+        queued++;
+        dispatch();
+    }
+
+    private synchronized void dispatch() {
+        while (running < maxConcurrentDeployments && !customers.isEmpty()) {
+            String customerId = customers.poll();
+            Queue<Runnable> queue = queues.get(customerId);
+            Runnable deployment = queue.poll();
+            if (queue.isEmpty()) {
+                queues.remove(customerId);
+            } else {
+                customers.add(customerId);
+            }
+            queued--;
+            running++;
+
+            try {
+                executorService.runAsync(deployment)
+                        .whenComplete((r, t) -> {
+                            if (t != null) {
+                                LOGGER.error("Deployment for customer '{}' failed.", customerId, t);
+                            }
+                            completed();
+                        });
+            } catch (RuntimeException e) {
+                running--;
+                LOGGER.error("Failed to start deployment for customer '{}'.", customerId, e);
+            }
+        }
+    }
+
+    private synchronized void completed() {
+        running--;
+        dispatch();
+    }
+
+    synchronized int getQueued() {
+        return queued;
+    }
+
+    synchronized int getRunning() {
+        return running;
+    }
+}
@@ -1,32 +1,31 @@
 package org.kie.baaas.dfm.app.manager;
 
 import java.net.URL;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Objects;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.transaction.Transactional;
 
-import org.eclipse.microprofile.config.inject.ConfigProperty;
-import org.eclipse.microprofile.context.ManagedExecutor;
 import org.kie.baaas.dfm.api.webhook.WebhookRegistrationRequest;
+import org.kie.baaas.dfm.app.dao.WebhookChangeDAO;
 import org.kie.baaas.dfm.app.dao.WebhookDAO;
 import org.kie.baaas.dfm.app.listener.ListenerManager;
 import org.kie.baaas.dfm.app.model.ListResult;
 import org.kie.baaas.dfm.app.model.webhook.Webhook;
+import org.kie.baaas.dfm.app.model.webhook.WebhookChange;
 import org.kie.baaas.dfm.app.webhook.AlreadyExistingWebhookException;
 import org.kie.baaas.dfm.app.webhook.NotFoundWebhookException;
+import org.kie.baaas.dfm.app.webhook.WebhookDeliveryDispatcher;
+import org.kie.baaas.dfm.app.webhook.WebhookEventSerializer;
 import org.kie.baaas.dfm.app.webhook.WebhookListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.runtime.Startup;
 
 @Startup
@@ -36,37 +35,67 @@ public class WebhookManager {
     private static final Logger LOG = LoggerFactory.getLogger(WebhookManager.class);
 
     private final WebhookDAO webhookDAO;
+    private final WebhookChangeDAO webhookChangeDAO;
     private final ListenerManager listenerManager;
-    private final ManagedExecutor executorService;
-    private final MeterRegistry meterRegistry;
-    private final ObjectMapper objectMapper;
-
-    @ConfigProperty(name = "baaas.webhook.delivery-retries", defaultValue = "3")
-    Integer MAX_RETRY;
-    @ConfigProperty(name = "baaas.webhook.delivery-timeout", defaultValue = "10")
-    Integer TIMEOUT;
+    private final WebhookEventSerializer eventSerializer;
+    private final WebhookDeliveryDispatcher deliveryDispatcher;
+    private volatile long loadedChangeSeq;
 
     @Inject
-    public WebhookManager(WebhookDAO webhookDAO, ListenerManager listenerManager, ManagedExecutor executorService, MeterRegistry meterRegistry, ObjectMapper objectMapper) {
+    public WebhookManager(WebhookDAO webhookDAO, WebhookChangeDAO webhookChangeDAO, ListenerManager listenerManager, WebhookEventSerializer eventSerializer,
+            WebhookDeliveryDispatcher deliveryDispatcher) {
         Objects.requireNonNull(webhookDAO, "webhookDAO cannot be null");
+        Objects.requireNonNull(webhookChangeDAO, "webhookChangeDAO cannot be null");
         Objects.requireNonNull(listenerManager, "listenerManager cannot be null");
-        Objects.requireNonNull(executorService, "executorService cannot be null");
-        Objects.requireNonNull(meterRegistry, "meterRegistry cannot be null");
-        Objects.requireNonNull(objectMapper, "objectMapper cannot be null");
+        Objects.requireNonNull(eventSerializer, "eventSerializer cannot be null");
+        Objects.requireNonNull(deliveryDispatcher, "deliveryDispatcher cannot be null");
 
         this.webhookDAO = webhookDAO;
+        this.webhookChangeDAO = webhookChangeDAO;
         this.listenerManager = listenerManager;
-        this.executorService = executorService;
-        this.meterRegistry = meterRegistry;
-        this.objectMapper = objectMapper;
+        this.eventSerializer = eventSerializer;
+        this.deliveryDispatcher = deliveryDispatcher;
     }
 
     @PostConstruct
     public void init() {
+        // Read first, so that the Webhooks loaded reflect at least every change up to it
+        loadedChangeSeq = webhookChangeDAO.latestSeq();
         List<Webhook> listAll = listAll();
         LOG.info("init() with {}", listAll);
         for (Webhook e : listAll) {
-            listenerManager.addListener(new WebhookListener(e, executorService, meterRegistry, objectMapper, MAX_RETRY, TIMEOUT));
+            addListener(e);
+        }
+    }
+
+    /**
+     * @return - The sequence number of the latest Webhook change already reflected by the Webhooks loaded at startup
+     */
+    public long getLoadedChangeSeq() {
+        return loadedChangeSeq;
+    }
+
+    private void addListener(Webhook webhook) {
+        listenerManager.addListener(webhook.getCustomerId(), webhook.getId(), new WebhookListener(webhook, eventSerializer, deliveryDispatcher));
+    }
+
+    private void recordChange(Webhook webhook) {
+        webhookChangeDAO.persist(new WebhookChange(webhook, ZonedDateTime.now(ZoneOffset.UTC)));
+    }
+
+    /**
+     * Brings the listener of a Webhook in line with the database, after the Webhook has been registered or
+     * unregistered on any Fleet Manager.
+     *
+     * @param customerId - The customer that owns the Webhook
+     * @param webhookId - The id of the Webhook
+     */
+    public void refreshListener(String customerId, String webhookId) {
+        List<Webhook> webhooks = webhookDAO.findByCustomerIdAndWebhookId(customerId, webhookId);
+        if (webhooks.isEmpty()) {
+            listenerManager.removeListener(customerId, webhookId);
+        } else {
+            addListener(webhooks.get(0));
         }
     }
 
@@ -85,8 +114,10 @@ public class WebhookManager {
             throw new AlreadyExistingWebhookException("The webhook is already existing: " + alreadyExisting);
         }
         Webhook webhook = new Webhook(customerId, webhookReq.getUrl());
-        listenerManager.addListener(new WebhookListener(webhook, executorService, meterRegistry, objectMapper, MAX_RETRY, TIMEOUT));
+        webhook.setBatch(webhookReq.isBatch());
+        addListener(webhook);
         webhookDAO.persist(webhook);
+        recordChange(webhook);
         LOG.info("Persisted new Webhook with id '{}' for URL '{}'", webhook.getId(), webhook.getUrl());
         return webhook;
     }
@@ -101,6 +132,8 @@ public class WebhookManager {
         List<Webhook> listById = webhookDAO.findByCustomerIdAndWebhookId(customerId, lookupRef);
         for (Webhook e : listById) {
             webhookDAO.delete(e);
+            recordChange(e);
+            listenerManager.removeListener(customerId, e.getId());
             anyDeleted = true;
             LOG.info("Deleted Webhook with id '{}' for URL '{}'", e.getId(), e.getUrl());
         }
@@ -109,6 +142,8 @@ public class WebhookManager {
             List<Webhook> findByUrlOrId = webhookDAO.findByCustomerIdAndUrl(customerId, urlRef);
             for (Webhook e : findByUrlOrId) {
                 webhookDAO.delete(e);
+                recordChange(e);
+                listenerManager.removeListener(customerId, e.getId());
                 anyDeleted = true;
                 LOG.info("Deleted Webhook with id '{}' for URL '{}'", e.getId(), e.getUrl());
             }
@@ -118,13 +153,5 @@ public class WebhookManager {
         if (!anyDeleted) {
             throw new NotFoundWebhookException("No webhook found to be deleted for lookupRef: " + lookupRef);
         }
-        final Predicate<WebhookListener> lookup = (WebhookListener l) -> l.getWebhook().getUrl().toString().equals(lookupRef) || l.getWebhook().getId().equals(lookupRef);
-        List<WebhookListener> toBeRemoved = listenerManager.getListeners()
-                .stream()
-                .filter(WebhookListener.class::isInstance)
-                .map(WebhookListener.class::cast)
-                .filter(lookup::test)
-                .collect(Collectors.toList());
-        toBeRemoved.forEach(listenerManager::removeListener);
     }
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.kie.baaas.dfm.app.dao.WebhookChangeDAO;
+import org.kie.baaas.dfm.app.model.webhook.WebhookChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.quarkus.runtime.StartupEvent;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps the Webhook listeners of this Fleet Manager in line with the Webhooks registered on any Fleet Manager.
+ * <p>
+ * Every registration and unregistration of a Webhook is recorded as a numbered change. This Fleet Manager
+ * periodically reads the changes after the last one it has applied, and refreshes the listener of each Webhook
+ * concerned, rather than reloading every Webhook. Refreshing a listener reads the Webhook from the database, so
+ * applying a change more than once, or out of order, is harmless.
+ * <p>
+ * Changes are numbered when they are made, but become visible when their transaction commits, so a change can appear
+ * after changes with higher numbers. Numbers that have been skipped are therefore looked for again until they show
+ * up, or until they are old enough that their transaction must have been rolled back.
+ */
+@ApplicationScoped
+public class WebhookRegistrySynchronizer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebhookRegistrySynchronizer.class);
+
+    private final WebhookChangeDAO webhookChangeDAO;
+
+    private final WebhookManager webhookManager;
+
+    private final boolean enabled;
+
+    private final Duration pollInterval;
+
+    private final int batchSize;
+
+    private final Duration gapTimeout;
+
+    private final Duration retention;
+
+    private long watermark;
+
+    // Skipped sequence numbers, with the time at which they were first skipped
+    private final Map<Long, ZonedDateTime> gaps = new HashMap<>();
+
+    private ScheduledExecutorService poller;
+
+    @Inject
+    public WebhookRegistrySynchronizer(WebhookChangeDAO webhookChangeDAO, WebhookManager webhookManager,
+            @ConfigProperty(name = "baaas.dfm.webhooks.sync.enabled", defaultValue = "true") boolean enabled,
+            @ConfigProperty(name = "baaas.dfm.webhooks.sync.poll-interval", defaultValue = "PT5S") Duration pollInterval,
+            @ConfigProperty(name = "baaas.dfm.webhooks.sync.batch-size", defaultValue = "500") int batchSize,
+            @ConfigProperty(name = "baaas.dfm.webhooks.sync.gap-timeout", defaultValue = "PT1M") Duration gapTimeout,
+            @ConfigProperty(name = "baaas.dfm.webhooks.sync.retention", defaultValue = "P1D") Duration retention) {
+        requireNonNull(webhookChangeDAO, "webhookChangeDAO cannot be null");
+        requireNonNull(webhookManager, "webhookManager cannot be null");
+
+        this.webhookChangeDAO = webhookChangeDAO;
+        this.webhookManager = webhookManager;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+        this.batchSize = batchSize;
+        this.gapTimeout = gapTimeout;
+        this.retention = retention;
+    }
+
+    void onStart(@Observes StartupEvent ev) {
+        if (enabled) {
+            start();
+            poller = Executors.newSingleThreadScheduledExecutor();
+            poller.scheduleWithFixedDelay(this::synchronize, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    private ZonedDateTime now() {
+        return ZonedDateTime.now(ZoneOffset.UTC);
+    }
+
+    /**
+     * Starts from the latest change that the Webhooks loaded at startup already reflect, as read before they were
+     * loaded, so that no change made while they were being loaded is missed.
+     */
+    synchronized void start() {
+        watermark = webhookManager.getLoadedChangeSeq();
+        gaps.clear();
+    }
+
+    /**
+     * Applies the changes made since the last synchronization, along with skipped changes that have since become
+     * visible, and forgets changes that are past their retention.
+     */
+    synchronized void synchronize() {
+        try {
+            ZonedDateTime now = now();
+            List<WebhookChange> changes = new ArrayList<>(webhookChangeDAO.findBySeqs(gaps.keySet()));
+            changes.addAll(webhookChangeDAO.findAfter(watermark, batchSize));
+            for (WebhookChange change : changes) {
+                apply(change, now);
+            }
+            gaps.values().removeIf(skippedAt -> !skippedAt.isAfter(now.minus(gapTimeout)));
+            webhookChangeDAO.deleteBefore(now.minus(retention));
+            if (!changes.isEmpty()) {
+                LOGGER.info("Applied {} Webhook changes, up to change {}.", changes.size(), watermark);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to synchronize Webhooks.", e);
+        }
+    }
+
+    // A change is only marked as applied once its listener has been refreshed, so that a failure is retried
+    private void apply(WebhookChange change, ZonedDateTime now) {
+        long seq = change.getSeq();
+        webhookManager.refreshListener(change.getCustomerId(), change.getWebhookId());
+        gaps.remove(seq);
+        if (seq > watermark) {
+            for (long skipped = watermark + 1; skipped < seq; skipped++) {
+                gaps.put(skipped, now);
+            }
+            watermark = seq;
+        }
+    }
+
+    synchronized long getWatermark() {
+        return watermark;
+    }
+
+    synchronized int getGaps() {
+        return gaps.size();
+    }
+}
@@ -36,8 +36,7 @@ import javax.persistence.Table;
 import javax.persistence.Version;
 
 @NamedQueries({
-        @NamedQuery(name = "Decision.byCustomerIdAndName", query = "from Decision where customerId=:customerId and name=:name"),
-        @NamedQuery(name = "Decision.byCustomerAndIdOrName", query = "from Decision where customerId=:customerId and name=:idOrName or id=:idOrName")
+        @NamedQuery(name = "Decision.byCustomerIdAndName", query = "from Decision where customerId=:customerId and name=:name")
 })
 @Entity
 @Table(name = "DECISION")
@@ -66,6 +65,14 @@ public class Decision {
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "decision", orphanRemoval = true, cascade = CascadeType.ALL)
     private List<DecisionVersion> versions = new ArrayList<>();
 
+    /*
+     * The last version number allocated to a DecisionVersion of this Decision. It is only incremented while the
+     * Decision row is locked, see DecisionDAO.allocateNextVersion.
+     */
+    @Basic
+    @Column(name = "last_version", nullable = false)
+    private long lastVersion;
+
     @Version
     @Column(name = "lock_version", nullable = false)
     private int lockVersion = 0;
@@ -94,6 +101,10 @@ public class Decision {
         return versions;
     }
 
+    public long getLastVersion() {
+        return lastVersion;
+    }
+
     public void setCustomerId(String customerId) {
         this.customerId = customerId;
     }
@@ -114,6 +125,10 @@ public class Decision {
         this.versions = versions;
     }
 
+    public void setLastVersion(long lastVersion) {
+        this.lastVersion = lastVersion;
+    }
+
     public void addVersion(DecisionVersion decisionVersion) {
         if (decisionVersion != null) {
             versions.add(decisionVersion);
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.model;
+
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * A read-only view of the current version of a Decision, holding only what is needed to list Decisions.
+ * It is selected directly as a projection rather than loaded as DecisionVersion and Decision entities, so listing
+ * neither builds managed entities nor fetches the tags and configuration through a join.
+ */
+@RegisterForReflection
+public class DecisionSummary {
+
+    private final String decisionId;
+
+    private final String name;
+
+    private final long version;
+
+    private final String versionId;
+
+    private final String description;
+
+    private final DecisionVersionStatus status;
+
+    private final ZonedDateTime submittedAt;
+
+    private final ZonedDateTime publishedAt;
+
+    private final String dmnMd5;
+
+    private final String currentUrl;
+
+    private final String versionUrl;
+
+    private final String statusMessage;
+
+    private final String kafkaSourceTopic;
+
+    private final String kafkaSinkTopic;
+
+    private final String kafkaBootstrapServers;
+
+    private final Map<String, String> tags = new HashMap<>();
+
+    private final Map<String, String> configuration = new HashMap<>();
+
+    public DecisionSummary(String decisionId, String name, String versionId, long version, String description, DecisionVersionStatus status,
+            ZonedDateTime submittedAt, ZonedDateTime publishedAt, String dmnMd5, String currentUrl, String versionUrl, String statusMessage,
+            String kafkaSourceTopic, String kafkaSinkTopic, String kafkaBootstrapServers) {
+        this.decisionId = decisionId;
+        this.name = name;
+        this.versionId = versionId;
+        this.version = version;
+        this.description = description;
+        this.status = status;
+        this.submittedAt = submittedAt;
+        this.publishedAt = publishedAt;
+        this.dmnMd5 = dmnMd5;
+        this.currentUrl = currentUrl;
+        this.versionUrl = versionUrl;
+        this.statusMessage = statusMessage;
+        this.kafkaSourceTopic = kafkaSourceTopic;
+        this.kafkaSinkTopic = kafkaSinkTopic;
+        this.kafkaBootstrapServers = kafkaBootstrapServers;
+    }
+
+    public String getDecisionId() {
+        return decisionId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersionId() {
+        return versionId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public DecisionVersionStatus getStatus() {
+        return status;
+    }
+
+    public ZonedDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public ZonedDateTime getPublishedAt() {
+        return publishedAt;
+    }
+
+    public String getDmnMd5() {
+        return dmnMd5;
+    }
+
+    public String getCurrentUrl() {
+        return currentUrl;
+    }
+
+    public String getVersionUrl() {
+        return versionUrl;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    public String getKafkaSourceTopic() {
+        return kafkaSourceTopic;
+    }
+
+    public String getKafkaSinkTopic() {
+        return kafkaSinkTopic;
+    }
+
+    public String getKafkaBootstrapServers() {
+        return kafkaBootstrapServers;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public Map<String, String> getConfiguration() {
+        return configuration;
+    }
+}
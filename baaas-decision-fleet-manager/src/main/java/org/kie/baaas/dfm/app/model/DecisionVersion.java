@@ -41,6 +41,8 @@ import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.kie.baaas.dfm.app.model.deployment.Deployment;
 import org.kie.baaas.dfm.app.model.eventing.KafkaConfig;
 
@@ -48,23 +50,32 @@ import org.kie.baaas.dfm.app.model.eventing.KafkaConfig;
  * Encapsulates a version of a Decision.
  */
 @NamedQueries({
-        @NamedQuery(name = "DecisionVersion.countByCustomerAndName", query = "from DecisionVersion dv where dv.decision.customerId=:customerId and dv.decision.name=:name"),
         @NamedQuery(name = "DecisionVersion.countCurrentByCustomer", query = "select count(d.currentVersion.id) from Decision d where d.customerId=:customerId"),
-        @NamedQuery(name = "DecisionVersion.listCurrentIdsByCustomer", query = "select d.currentVersion.id from Decision d where d.customerId=:customerId order by d.name"),
-        @NamedQuery(name = "DecisionVersion.countByIdOrName",
-                query = "select count(dv.id) from DecisionVersion dv where dv.decision.customerId=:customerId and (dv.decision.name=:idOrName or dv.decision.id=:idOrName)"),
-        @NamedQuery(name = "DecisionVersion.listIdsByIdOrName",
-                query = "select dv.id from DecisionVersion dv where dv.decision.customerId=:customerId and (dv.decision.name=:idOrName or dv.decision.id=:idOrName)"),
-        @NamedQuery(name = "DecisionVersion.listByIdOrName",
-                query = "select dv from DecisionVersion dv left join fetch dv.tags left join fetch dv.configuration join fetch dv.decision where dv.id in (:ids) order by dv.submittedAt desc"),
-        @NamedQuery(name = "DecisionVersion.listCurrentByCustomer",
-                query = "select dv from DecisionVersion dv left join fetch dv.tags left join fetch dv.configuration join fetch dv.decision where dv.id in (:ids) order by dv.decision.name"),
-        @NamedQuery(name = "DecisionVersion.currentByCustomerAndDecisionIdOrName",
-                query = "select dv from DecisionVersion dv left join fetch dv.tags left join fetch dv.configuration join fetch dv.decision where dv.id=dv.decision.currentVersion.id and dv.decision.customerId=:customerId and (dv.decision.id=:idOrName or dv.decision.name=:idOrName)"),
-        @NamedQuery(name = "DecisionVersion.buildingByCustomerAndDecisionIdOrName",
-                query = "select dv from DecisionVersion dv left join fetch dv.tags left join fetch dv.configuration join fetch dv.decision where dv.id=dv.decision.nextVersion.id and dv.decision.customerId=:customerId and (dv.decision.id=:idOrName or dv.decision.name=:idOrName)"),
-        @NamedQuery(name = "DecisionVersion.byCustomerDecisionIdOrNameAndVersion",
-                query = "select dv from DecisionVersion dv left join fetch dv.tags left join fetch dv.configuration join fetch dv.decision where dv.version=:version and dv.decision.customerId=:customerId and (dv.decision.id=:idOrName or dv.decision.name=:idOrName)")
+        @NamedQuery(name = "DecisionVersion.listCurrentSummariesByCustomer",
+                query = "select new org.kie.baaas.dfm.app.model.DecisionSummary(d.id, d.name, dv.id, dv.version, dv.description, dv.status, dv.submittedAt, dv.publishedAt, "
+                        + "dv.dmnMd5, dv.deployment.currentUrl, dv.deployment.versionUrl, dv.deployment.statusMessage, "
+                        + "dv.kafkaConfig.sourceTopic, dv.kafkaConfig.sinkTopic, dv.kafkaConfig.bootstrapServers) "
+                        + "from Decision d join d.currentVersion dv where d.customerId=:customerId order by d.name"),
+        @NamedQuery(name = "DecisionVersion.listCurrentSummariesByCustomerAfter",
+                query = "select new org.kie.baaas.dfm.app.model.DecisionSummary(d.id, d.name, dv.id, dv.version, dv.description, dv.status, dv.submittedAt, dv.publishedAt, "
+                        + "dv.dmnMd5, dv.deployment.currentUrl, dv.deployment.versionUrl, dv.deployment.statusMessage, "
+                        + "dv.kafkaConfig.sourceTopic, dv.kafkaConfig.sinkTopic, dv.kafkaConfig.bootstrapServers) "
+                        + "from Decision d join d.currentVersion dv where d.customerId=:customerId and d.name > :after order by d.name"),
+        @NamedQuery(name = "DecisionVersion.tagsByIds", query = "select dv.id, key(t), value(t) from DecisionVersion dv join dv.tags t where dv.id in (:ids)"),
+        @NamedQuery(name = "DecisionVersion.configurationByIds",
+                query = "select dv.id, key(c), value(c) from DecisionVersion dv join dv.configuration c where dv.id in (:ids)"),
+        @NamedQuery(name = "DecisionVersion.countByDecisionName",
+                query = "select count(dv.id) from DecisionVersion dv where dv.decision.customerId=:customerId and dv.decision.name=:name"),
+        @NamedQuery(name = "DecisionVersion.listIdsByDecisionName",
+                query = "select dv.id from DecisionVersion dv where dv.decision.customerId=:customerId and dv.decision.name=:name order by dv.version desc"),
+        @NamedQuery(name = "DecisionVersion.listIdsByDecisionNameAfter",
+                query = "select dv.id from DecisionVersion dv where dv.decision.customerId=:customerId and dv.decision.name=:name and dv.version < :after order by dv.version desc"),
+        @NamedQuery(name = "DecisionVersion.listByIds",
+                query = "select dv from DecisionVersion dv left join fetch dv.tags left join fetch dv.configuration join fetch dv.decision where dv.id in (:ids) order by dv.version desc"),
+        @NamedQuery(name = "DecisionVersion.byCustomerDecisionNameAndVersion",
+                query = "select dv from DecisionVersion dv left join fetch dv.tags left join fetch dv.configuration join fetch dv.decision where dv.version=:version and dv.decision.customerId=:customerId and dv.decision.name=:name"),
+        @NamedQuery(name = "DecisionVersion.countByCustomerAndDmnHash",
+                query = "select count(dv.id) from DecisionVersion dv where dv.decision.customerId=:customerId and dv.dmnHash=:dmnHash")
 })
 @Entity
 @Table(name = "DECISION_VERSION")
@@ -106,6 +117,15 @@ public class DecisionVersion {
     @Column(name = "dmn_md5", updatable = false)
     private String dmnMd5;
 
+    @Basic
+    @Column(name = "dmn_hash", updatable = false)
+    private String dmnHash;
+
+    /*
+     * The tags and configuration of a DecisionVersion never change once it is created, so unlike its status they
+     * cannot be served stale from the second-level cache of one Fleet Manager after another has changed them.
+     */
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     @ElementCollection(fetch = FetchType.LAZY)
     @CollectionTable(
             name = "DECISION_VERSION_TAG",
@@ -114,6 +134,7 @@ public class DecisionVersion {
     @Column(name = "value", updatable = false, nullable = false)
     private Map<String, String> tags = new HashMap<>();
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     @ElementCollection(fetch = FetchType.LAZY)
     @CollectionTable(
             name = "DECISION_VERSION_CONFIG",
@@ -217,6 +238,14 @@ public class DecisionVersion {
         this.dmnMd5 = dmnMd5;
     }
 
+    public String getDmnHash() {
+        return dmnHash;
+    }
+
+    public void setDmnHash(String dmnHash) {
+        this.dmnHash = dmnHash;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.model;
+
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * Records that deployment of a DecisionVersion must be requested from the Fleet Shard. Entries are written in the
+ * same transaction as the DecisionVersion and removed once the Fleet Shard has accepted the deployment, or the
+ * deployment has been given up on.
+ */
+@NamedQueries({
+        @NamedQuery(name = "DeploymentOutboxEntry.due", query = "from DeploymentOutboxEntry e where e.nextAttemptAt<=:now order by e.nextAttemptAt"),
+        @NamedQuery(name = "DeploymentOutboxEntry.claim",
+                query = "update DeploymentOutboxEntry e set e.nextAttemptAt=:leaseExpiry where e.decisionVersionId=:decisionVersionId and e.nextAttemptAt=:nextAttemptAt")
+})
+@Entity
+@Table(name = "DEPLOYMENT_OUTBOX")
+public class DeploymentOutboxEntry {
+
+    @Id
+    @Column(name = "decision_version_id")
+    private String decisionVersionId;
+
+    @Basic
+    @Column(name = "customer_id", nullable = false, updatable = false)
+    private String customerId;
+
+    @Basic
+    @Column(name = "decision_id", nullable = false, updatable = false)
+    private String decisionId;
+
+    @Column(nullable = false, updatable = false)
+    private long version;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false, columnDefinition = "TIMESTAMP")
+    private ZonedDateTime nextAttemptAt;
+
+    @Basic
+    @Column(name = "last_error")
+    private String lastError;
+
+    public DeploymentOutboxEntry() {
+    }
+
+    public DeploymentOutboxEntry(String customerId, DecisionVersion decisionVersion, ZonedDateTime nextAttemptAt) {
+        this.decisionVersionId = decisionVersion.getId();
+        this.customerId = customerId;
+        this.decisionId = decisionVersion.getDecision().getId();
+        this.version = decisionVersion.getVersion();
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getDecisionVersionId() {
+        return decisionVersionId;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public String getDecisionId() {
+        return decisionId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public ZonedDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(ZonedDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DeploymentOutboxEntry that = (DeploymentOutboxEntry) o;
+        return Objects.equals(decisionVersionId, that.decisionVersionId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(decisionVersionId);
+    }
+}
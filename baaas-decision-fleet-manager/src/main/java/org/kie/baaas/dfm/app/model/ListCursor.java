@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * The position in a list from which the next page of results is read. A cursor either continues after the sort key
+ * of the last item of the previous page, which costs the same for every page, or addresses a page number, which
+ * is resolved with an offset and is kept for clients that still page by number.
+ */
+public class ListCursor {
+
+    private static final ListCursor FIRST = new ListCursor(null, 0);
+
+    private final String after;
+
+    private final int page;
+
+    private ListCursor(String after, int page) {
+        this.after = after;
+        this.page = page;
+    }
+
+    public static ListCursor first() {
+        return FIRST;
+    }
+
+    public static ListCursor atPage(int page) {
+        return page <= 0 ? FIRST : new ListCursor(null, page);
+    }
+
+    public static ListCursor after(String sortKey) {
+        Objects.requireNonNull(sortKey, "sortKey cannot be null");
+        return new ListCursor(sortKey, 0);
+    }
+
+    /**
+     * Decodes a continuation token previously returned by {@link #encode()}.
+     *
+     * @param token - The continuation token
+     * @return - The cursor encoded in the token
+     */
+    public static ListCursor decode(String token) {
+        try {
+            return after(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidListCursorException("The continuation token '" + token + "' is not valid.", e);
+        }
+    }
+
+    /**
+     * Encodes this cursor as an opaque continuation token for API clients.
+     *
+     * @return - The continuation token
+     */
+    public String encode() {
+        if (after == null) {
+            throw new IllegalStateException("Only cursors that continue after a sort key can be encoded.");
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(after.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isFirst() {
+        return after == null && page == 0;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public long getAfterAsLong() {
+        try {
+            return Long.parseLong(after);
+        } catch (NumberFormatException e) {
+            throw new InvalidListCursorException("The continuation token '" + encode() + "' is not valid for this list.", e);
+        }
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ListCursor that = (ListCursor) o;
+        return page == that.page && Objects.equals(after, that.after);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(after, page);
+    }
+
+    @Override
+    public String toString() {
+        return "ListCursor [after=" + after + ", page=" + page + "]";
+    }
+}
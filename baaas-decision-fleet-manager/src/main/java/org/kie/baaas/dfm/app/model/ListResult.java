@@ -28,14 +28,21 @@ public class ListResult<T> {
 
     private final List<T> items;
 
-    private final long total;
+    private final Long total;
 
     private final long page;
 
+    private final ListCursor nextCursor;
+
     public ListResult(List<T> items, long page, long total) {
+        this(items, page, Long.valueOf(total), null);
+    }
+
+    public ListResult(List<T> items, long page, Long total, ListCursor nextCursor) {
         this.items = items;
         this.page = page;
         this.total = total;
+        this.nextCursor = nextCursor;
     }
 
     public long getPage() {
@@ -46,10 +53,24 @@ public class ListResult<T> {
         return this.items == null ? 0 : items.size();
     }
 
-    public long getTotal() {
+    /**
+     * The total number of items in the list, if it was requested.
+     *
+     * @return - The total number of items, or null if the total was not counted
+     */
+    public Long getTotal() {
         return total;
     }
 
+    /**
+     * The cursor from which the next page of the list continues.
+     *
+     * @return - The cursor of the next page, or null if this is the last page
+     */
+    public ListCursor getNextCursor() {
+        return nextCursor;
+    }
+
     public List<T> getItems() {
         return items;
     }
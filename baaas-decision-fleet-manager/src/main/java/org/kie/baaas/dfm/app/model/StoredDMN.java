@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.model;
+
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * Records a content addressed DMN held in storage for a customer. The row is locked and its staging time refreshed
+ * whenever the DMN is staged, so that a DMN being reused by a new DecisionVersion is never reclaimed while that
+ * DecisionVersion is recorded.
+ */
+@NamedQueries({
+        @NamedQuery(name = "StoredDMN.unreferencedBefore",
+                query = "from StoredDMN s where s.stagedAt<:cutoff and not exists "
+                        + "(select dv.id from DecisionVersion dv where dv.dmnHash=s.dmnHash and dv.decision.customerId=s.customerId) "
+                        + "order by s.stagedAt")
+})
+@Entity
+@IdClass(StoredDMN.Key.class)
+@Table(name = "STORED_DMN")
+public class StoredDMN {
+
+    @Id
+    @Column(name = "customer_id")
+    private String customerId;
+
+    @Id
+    @Column(name = "dmn_hash")
+    private String dmnHash;
+
+    // null until the DMN has been uploaded
+    @Basic
+    @Column(name = "md5")
+    private String md5;
+
+    @Column(name = "staged_at", nullable = false, columnDefinition = "TIMESTAMP")
+    private ZonedDateTime stagedAt;
+
+    public StoredDMN() {
+    }
+
+    public StoredDMN(String customerId, String dmnHash, ZonedDateTime stagedAt) {
+        this.customerId = customerId;
+        this.dmnHash = dmnHash;
+        this.stagedAt = stagedAt;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public String getDmnHash() {
+        return dmnHash;
+    }
+
+    public String getMd5() {
+        return md5;
+    }
+
+    public void setMd5(String md5) {
+        this.md5 = md5;
+    }
+
+    public ZonedDateTime getStagedAt() {
+        return stagedAt;
+    }
+
+    public void setStagedAt(ZonedDateTime stagedAt) {
+        this.stagedAt = stagedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        StoredDMN that = (StoredDMN) o;
+        return Objects.equals(customerId, that.customerId) && Objects.equals(dmnHash, that.dmnHash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(customerId, dmnHash);
+    }
+
+    /**
+     * The identity of a StoredDMN: a DMN is stored once per customer and content hash.
+     */
+    public static class Key implements Serializable {
+
+        private String customerId;
+
+        private String dmnHash;
+
+        public Key() {
+        }
+
+        public Key(String customerId, String dmnHash) {
+            this.customerId = customerId;
+            this.dmnHash = dmnHash;
+        }
+
+        public String getCustomerId() {
+            return customerId;
+        }
+
+        public String getDmnHash() {
+            return dmnHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key that = (Key) o;
+            return Objects.equals(customerId, that.customerId) && Objects.equals(dmnHash, that.dmnHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(customerId, dmnHash);
+        }
+    }
+}
@@ -33,6 +33,9 @@ public class Webhook {
     @Column(nullable = false, updatable = false)
     private URL url;
 
+    @Column(nullable = false)
+    private boolean batch;
+
     public String getId() {
         return id;
     }
@@ -53,6 +56,17 @@ public class Webhook {
         this.url = url;
     }
 
+    /**
+     * @return - true if CloudEvents are delivered to the Webhook in batches rather than one at a time
+     */
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public void setBatch(boolean batch) {
+        this.batch = batch;
+    }
+
     public Webhook() {
     }
 
@@ -99,6 +113,6 @@ public class Webhook {
 
     @Override
     public String toString() {
-        return "Webhook [id=" + id + ", customerId=" + customerId + ", url=" + url + "]";
+        return "Webhook [id=" + id + ", customerId=" + customerId + ", url=" + url + ", batch=" + batch + "]";
     }
 }
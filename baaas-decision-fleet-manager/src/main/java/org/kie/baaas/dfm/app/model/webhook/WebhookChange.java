@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.model.webhook;
+
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+/**
+ * Records that a Webhook has been registered or unregistered. Changes are numbered in the order in which they were
+ * made, and are read by every Fleet Manager to bring its Webhook listeners up to date.
+ */
+@NamedQueries({
+        @NamedQuery(name = "WebhookChange.after", query = "from WebhookChange c where c.seq>:seq order by c.seq"),
+        @NamedQuery(name = "WebhookChange.bySeqs", query = "from WebhookChange c where c.seq in (:seqs) order by c.seq"),
+        @NamedQuery(name = "WebhookChange.latestSeq", query = "select max(c.seq) from WebhookChange c"),
+        @NamedQuery(name = "WebhookChange.deleteBefore", query = "delete from WebhookChange c where c.changedAt<:before")
+})
+@Entity
+@Table(name = "WEBHOOK_CHANGE")
+public class WebhookChange {
+
+    // Sequence numbers are allocated one at a time, so that they follow the order in which changes are made
+    @Id
+    @SequenceGenerator(name = "webhookChangeSeq", sequenceName = "webhook_change_seq", allocationSize = 1)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "webhookChangeSeq")
+    private Long seq;
+
+    @Basic
+    @Column(name = "webhook_id", nullable = false, updatable = false)
+    private String webhookId;
+
+    @Basic
+    @Column(name = "customer_id", nullable = false, updatable = false)
+    private String customerId;
+
+    @Column(name = "changed_at", nullable = false, updatable = false, columnDefinition = "TIMESTAMP")
+    private ZonedDateTime changedAt;
+
+    public WebhookChange() {
+    }
+
+    public WebhookChange(Webhook webhook, ZonedDateTime changedAt) {
+        this.webhookId = webhook.getId();
+        this.customerId = webhook.getCustomerId();
+        this.changedAt = changedAt;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public String getWebhookId() {
+        return webhookId;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public ZonedDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        WebhookChange that = (WebhookChange) o;
+        return Objects.equals(seq, that.seq);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(seq);
+    }
+}
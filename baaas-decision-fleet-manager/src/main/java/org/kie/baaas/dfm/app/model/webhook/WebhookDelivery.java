@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.model.webhook;
+
+import java.net.URL;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * A CloudEvent waiting to be delivered to a Webhook. Deliveries are written when the event is raised and removed once
+ * the Webhook has accepted the event, or delivery has been given up on. Deliveries are removed with their Webhook.
+ */
+@NamedQueries({
+        @NamedQuery(name = "WebhookDelivery.due", query = "from WebhookDelivery d where d.nextAttemptAt<=:now order by d.nextAttemptAt"),
+        @NamedQuery(name = "WebhookDelivery.claim",
+                query = "update WebhookDelivery d set d.nextAttemptAt=:leaseExpiry where d.id=:id and d.nextAttemptAt=:nextAttemptAt")
+})
+@Entity
+@Table(name = "WEBHOOK_DELIVERY")
+public class WebhookDelivery {
+
+    @Id
+    private String id = UUID.randomUUID().toString();
+
+    @Basic
+    @Column(name = "webhook_id", nullable = false, updatable = false)
+    private String webhookId;
+
+    @Basic
+    @Column(nullable = false, updatable = false)
+    private URL url;
+
+    @Basic
+    @Column(nullable = false, updatable = false)
+    private String payload;
+
+    @Column(nullable = false, updatable = false)
+    private boolean batch;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false, columnDefinition = "TIMESTAMP")
+    private ZonedDateTime nextAttemptAt;
+
+    @Basic
+    @Column(name = "last_error")
+    private String lastError;
+
+    public WebhookDelivery() {
+    }
+
+    public WebhookDelivery(Webhook webhook, String payload, ZonedDateTime nextAttemptAt) {
+        this.webhookId = webhook.getId();
+        this.url = webhook.getUrl();
+        this.payload = payload;
+        this.batch = webhook.isBatch();
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getWebhookId() {
+        return webhookId;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public ZonedDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(ZonedDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        WebhookDelivery that = (WebhookDelivery) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
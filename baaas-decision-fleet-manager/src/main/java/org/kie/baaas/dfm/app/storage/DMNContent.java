@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * Encapsulates an open stream over the DMN of a DecisionVersion, or over the requested range of it.
+ * The stream must either be written out with {@link #writeTo(OutputStream)} or closed.
+ */
+public class DMNContent implements Closeable {
+
+    private final InputStream inputStream;
+
+    private final Long contentLength;
+
+    private final String contentRange;
+
+    public DMNContent(InputStream inputStream, Long contentLength, String contentRange) {
+        Objects.requireNonNull(inputStream, "inputStream cannot be null");
+
+        this.inputStream = inputStream;
+        this.contentLength = contentLength;
+        this.contentRange = contentRange;
+    }
+
+    /**
+     * The number of bytes that will be written, if known.
+     *
+     * @return - The length of the content, or null if it is not known.
+     */
+    public Long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * The range of the DMN covered by this content, as an HTTP Content-Range value.
+     *
+     * @return - The range of the content, or null if the content is the whole DMN.
+     */
+    public String getContentRange() {
+        return contentRange;
+    }
+
+    public boolean isPartial() {
+        return contentRange != null;
+    }
+
+    /**
+     * Copies the content to the given stream through a fixed size buffer, closing the underlying stream once done.
+     *
+     * @param output - The stream to write the content to
+     * @throws IOException - If the content cannot be read or written
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        try (InputStream input = inputStream) {
+            input.transferTo(output);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -26,12 +26,19 @@ public class DMNStorageRequest {
 
     private final String md5Hash;
 
+    private final String contentHash;
+
     public DMNStorageRequest(String providerUrl, String md5Hash) {
+        this(providerUrl, md5Hash, null);
+    }
+
+    public DMNStorageRequest(String providerUrl, String md5Hash, String contentHash) {
         Objects.requireNonNull(providerUrl, "providerUrl cannot be null");
         Objects.requireNonNull(md5Hash, "md5Hash cannot be null");
 
         this.providerUrl = providerUrl;
         this.md5Hash = md5Hash;
+        this.contentHash = contentHash;
     }
 
     /**
@@ -51,4 +58,13 @@ public class DMNStorageRequest {
     public String getMd5Hash() {
         return md5Hash;
     }
+
+    /**
+     * The hash by which the DMN is addressed in storage, if the provider stores DMN by content.
+     *
+     * @return - The content hash of the DMN, or null if the DMN is not stored by content.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
 }
@@ -15,17 +15,61 @@
 
 package org.kie.baaas.dfm.app.storage;
 
-import java.io.ByteArrayOutputStream;
-
 import org.kie.baaas.dfm.api.decisions.DecisionRequest;
 import org.kie.baaas.dfm.app.model.Decision;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
 
 public interface DecisionDMNStorage {
 
-    DMNStorageRequest writeDMN(String customerId, DecisionRequest decisionRequest, DecisionVersion decisionVersion);
+    /**
+     * Uploads the DMN of the request to a staging location. This is the only potentially long-running
+     * write to storage and must be invoked outside of any transaction boundary.
+     *
+     * @param customerId - The customer that owns the Decision
+     * @param decisionRequest - The API request containing the DMN
+     * @return - The staged DMN
+     */
+    StagedDMN stageDMN(String customerId, DecisionRequest decisionRequest);
+
+    /**
+     * Resolves the location at which a staged DMN will live once promoted for the given DecisionVersion.
+     * This performs no I/O against storage and must be called within the transaction that records the
+     * DecisionVersion, so that the DMN cannot be reclaimed before the reference to it is committed.
+     *
+     * @param customerId - The customer that owns the Decision
+     * @param stagedDMN - The staged DMN
+     * @param decisionVersion - The DecisionVersion that will own the DMN
+     * @return - The storage details to record against the DecisionVersion
+     */
+    DMNStorageRequest locateDMN(String customerId, StagedDMN stagedDMN, DecisionVersion decisionVersion);
+
+    /**
+     * Moves a staged DMN to the location returned by {@link #locateDMN(String, StagedDMN, DecisionVersion)}.
+     *
+     * @param customerId - The customer that owns the Decision
+     * @param stagedDMN - The staged DMN
+     * @param decisionVersion - The DecisionVersion that owns the DMN
+     */
+    void promoteDMN(String customerId, StagedDMN stagedDMN, DecisionVersion decisionVersion);
+
+    /**
+     * Releases a staged DMN that will never be promoted. Implementations may leave the DMN to be reclaimed
+     * later and should not fail if the DMN cannot be removed.
+     *
+     * @param stagedDMN - The staged DMN to discard
+     */
+    void discardDMN(StagedDMN stagedDMN);
 
     void deleteDMN(String customerId, Decision decision);
 
-    ByteArrayOutputStream readDMN(String customerId, DecisionVersion decisionVersion);
+    /**
+     * Opens a stream over the DMN of the given DecisionVersion. The DMN is not buffered, so the caller
+     * is responsible for writing out or closing the returned content.
+     *
+     * @param customerId - The customer that owns the Decision
+     * @param decisionVersion - The DecisionVersion that owns the DMN
+     * @param range - A single HTTP byte range of the DMN to read, or null to read the whole DMN
+     * @return - The content of the DMN
+     */
+    DMNContent readDMN(String customerId, DecisionVersion decisionVersion, String range);
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.storage;
+
+import java.util.Objects;
+
+/**
+ * Encapsulates a DMN that has been uploaded to a staging location in storage, but has not yet been
+ * promoted to the location of the DecisionVersion that owns it.
+ */
+public class StagedDMN {
+
+    private final String stagingLocation;
+
+    private final String md5Hash;
+
+    private final String contentHash;
+
+    public StagedDMN(String stagingLocation, String md5Hash, String contentHash) {
+        Objects.requireNonNull(stagingLocation, "stagingLocation cannot be null");
+        Objects.requireNonNull(md5Hash, "md5Hash cannot be null");
+        Objects.requireNonNull(contentHash, "contentHash cannot be null");
+
+        this.stagingLocation = stagingLocation;
+        this.md5Hash = md5Hash;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Returns the provider specific location at which the DMN has been staged.
+     *
+     * @return - The staging location of the DMN
+     */
+    public String getStagingLocation() {
+        return stagingLocation;
+    }
+
+    /**
+     * The MD5 hash of the DMN that was staged.
+     *
+     * @return - The MD5 hash of the staged DMN.
+     */
+    public String getMd5Hash() {
+        return md5Hash;
+    }
+
+    /**
+     * The hash of the DMN content, by which identical DMNs are addressed in storage.
+     *
+     * @return - The content hash of the staged DMN.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public String toString() {
+        return "StagedDMN [stagingLocation=" + stagingLocation + ", md5Hash=" + md5Hash + ", contentHash=" + contentHash + "]";
+    }
+}
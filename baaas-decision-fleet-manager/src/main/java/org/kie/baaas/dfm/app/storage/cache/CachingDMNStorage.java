@@ -0,0 +1,273 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.storage.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.kie.baaas.dfm.api.decisions.DecisionRequest;
+import org.kie.baaas.dfm.app.model.Decision;
+import org.kie.baaas.dfm.app.model.DecisionVersion;
+import org.kie.baaas.dfm.app.storage.DMNContent;
+import org.kie.baaas.dfm.app.storage.DMNRangeNotSatisfiableException;
+import org.kie.baaas.dfm.app.storage.DMNStorageRequest;
+import org.kie.baaas.dfm.app.storage.DecisionDMNStorage;
+import org.kie.baaas.dfm.app.storage.DecisionDMNStorageException;
+import org.kie.baaas.dfm.app.storage.StagedDMN;
+import org.kie.baaas.dfm.app.storage.s3.S3DMNStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Read-through cache of DMN content in front of the storage provider.
+ * <p>
+ * The DMN recorded against a DecisionVersion never changes, so DMN content is cached by the location recorded
+ * against the DecisionVersion and is never invalidated. The cache is bounded by the total number of bytes it holds,
+ * evicting the least recently read DMN first. DMNs larger than the configured maximum entry size are never cached.
+ */
+@ApplicationScoped
+public class CachingDMNStorage implements DecisionDMNStorage {
+
+    public static final String CACHE_HITS = "daaas.dmn.cache.hits";
+
+    public static final String CACHE_MISSES = "daaas.dmn.cache.misses";
+
+    public static final String CACHE_EVICTIONS = "daaas.dmn.cache.evictions";
+
+    public static final String CACHE_SIZE = "daaas.dmn.cache.size.bytes";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingDMNStorage.class);
+
+    private static final Pattern BYTE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private final DecisionDMNStorage delegate;
+
+    private final long maxBytes;
+
+    private final long maxEntryBytes;
+
+    private final boolean compress;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter evictions;
+
+    private final Map<String, CachedDMN> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long currentBytes;
+
+    @Inject
+    public CachingDMNStorage(S3DMNStorage delegate, MeterRegistry meterRegistry,
+            @ConfigProperty(name = "baaas.dfm.dmn-cache.max-bytes", defaultValue = "67108864") long maxBytes,
+            @ConfigProperty(name = "baaas.dfm.dmn-cache.max-entry-bytes", defaultValue = "1048576") long maxEntryBytes,
+            @ConfigProperty(name = "baaas.dfm.dmn-cache.compress", defaultValue = "false") boolean compress) {
+        requireNonNull(delegate, "delegate cannot be null");
+        requireNonNull(meterRegistry, "meterRegistry cannot be null");
+
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.compress = compress;
+        this.hits = meterRegistry.counter(CACHE_HITS);
+        this.misses = meterRegistry.counter(CACHE_MISSES);
+        this.evictions = meterRegistry.counter(CACHE_EVICTIONS);
+        meterRegistry.gauge(CACHE_SIZE, this, CachingDMNStorage::getCurrentBytes);
+    }
+
+    @Override
+    public StagedDMN stageDMN(String customerId, DecisionRequest decisionRequest) {
+        return delegate.stageDMN(customerId, decisionRequest);
+    }
+
+    @Override
+    public DMNStorageRequest locateDMN(String customerId, StagedDMN stagedDMN, DecisionVersion decisionVersion) {
+        return delegate.locateDMN(customerId, stagedDMN, decisionVersion);
+    }
+
+    @Override
+    public void promoteDMN(String customerId, StagedDMN stagedDMN, DecisionVersion decisionVersion) {
+        delegate.promoteDMN(customerId, stagedDMN, decisionVersion);
+    }
+
+    @Override
+    public void discardDMN(StagedDMN stagedDMN) {
+        delegate.discardDMN(stagedDMN);
+    }
+
+    @Override
+    public void deleteDMN(String customerId, Decision decision) {
+        // Cached DMNs are keyed by immutable locations, which are only reused for identical content.
+        delegate.deleteDMN(customerId, decision);
+    }
+
+    @Override
+    public DMNContent readDMN(String customerId, DecisionVersion decisionVersion, String range) {
+
+        String key = decisionVersion.getDmnLocation();
+        CachedDMN cached = key == null ? null : get(key);
+        if (cached != null) {
+            hits.increment();
+            return range == null ? cached.open() : cached.open(range);
+        }
+
+        misses.increment();
+        DMNContent dmn = delegate.readDMN(customerId, decisionVersion, range);
+        if (key == null || dmn.isPartial() || dmn.getContentLength() == null || dmn.getContentLength() > maxEntryBytes) {
+            return dmn;
+        }
+
+        cached = load(dmn);
+        put(key, cached);
+        return cached.open();
+    }
+
+    private CachedDMN load(DMNContent dmn) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(dmn.getContentLength().intValue());
+            dmn.writeTo(bytes);
+            byte[] content = bytes.toByteArray();
+            return compress ? new CachedDMN(gzip(content), content.length, true) : new CachedDMN(content, content.length, false);
+        } catch (IOException e) {
+            throw new DecisionDMNStorageException("Failed to read decision from storage.", e);
+        }
+    }
+
+    private synchronized CachedDMN get(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(String key, CachedDMN cached) {
+        CachedDMN previous = entries.put(key, cached);
+        if (previous != null) {
+            currentBytes -= previous.data.length;
+        }
+        currentBytes += cached.data.length;
+
+        Iterator<CachedDMN> leastRecentlyRead = entries.values().iterator();
+        while (currentBytes > maxBytes && leastRecentlyRead.hasNext()) {
+            currentBytes -= leastRecentlyRead.next().data.length;
+            leastRecentlyRead.remove();
+            evictions.increment();
+        }
+        LOGGER.debug("Cached DMN {}. The cache holds {} DMNs in {} bytes.", key, entries.size(), currentBytes);
+    }
+
+    synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(compressed)) {
+            output.write(content);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * The content of a DMN held in the cache, optionally compressed.
+     */
+    private static class CachedDMN {
+
+        private final byte[] data;
+
+        private final int length;
+
+        private final boolean compressed;
+
+        CachedDMN(byte[] data, int length, boolean compressed) {
+            this.data = data;
+            this.length = length;
+            this.compressed = compressed;
+        }
+
+        DMNContent open() {
+            return new DMNContent(inputStream(), (long) length, null);
+        }
+
+        DMNContent open(String range) {
+            Matcher matcher = BYTE_RANGE.matcher(range);
+            if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                return open();
+            }
+
+            long first;
+            long last;
+            if (matcher.group(1).isEmpty()) {
+                // A suffix range selects the final bytes of the DMN
+                first = Math.max(0, length - Long.parseLong(matcher.group(2)));
+                last = length - 1;
+            } else {
+                first = Long.parseLong(matcher.group(1));
+                last = matcher.group(2).isEmpty() ? length - 1 : Long.parseLong(matcher.group(2));
+                if (last < first) {
+                    // A range that ends before it starts is invalid, so is ignored
+                    return open();
+                }
+                last = Math.min(last, length - 1);
+            }
+
+            if (first > last) {
+                throw new DMNRangeNotSatisfiableException("Range " + range + " is outside of decision of " + length + " bytes.");
+            }
+
+            byte[] content = compressed ? decompress() : data;
+            int rangeLength = (int) (last - first + 1);
+            return new DMNContent(new ByteArrayInputStream(content, (int) first, rangeLength), (long) rangeLength,
+                    "bytes " + first + "-" + last + "/" + length);
+        }
+
+        private InputStream inputStream() {
+            if (!compressed) {
+                return new ByteArrayInputStream(data);
+            }
+            try {
+                return new GZIPInputStream(new ByteArrayInputStream(data));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private byte[] decompress() {
+            try (InputStream input = inputStream()) {
+                return input.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
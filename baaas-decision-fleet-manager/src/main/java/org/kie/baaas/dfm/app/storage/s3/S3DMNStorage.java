@@ -15,114 +15,241 @@
 
 package org.kie.baaas.dfm.app.storage.s3;
 
-import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Typed;
 import javax.inject.Inject;
+import javax.persistence.PersistenceException;
+import javax.transaction.Transactional;
+import javax.ws.rs.core.Response;
 
 import org.kie.baaas.dfm.api.decisions.DecisionRequest;
 import org.kie.baaas.dfm.app.config.DecisionFleetManagerConfig;
-import org.kie.baaas.dfm.app.manager.DecisionManager;
+import org.kie.baaas.dfm.app.dao.DecisionVersionDAO;
+import org.kie.baaas.dfm.app.dao.StoredDMNDAO;
 import org.kie.baaas.dfm.app.model.Decision;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
+import org.kie.baaas.dfm.app.model.StoredDMN;
+import org.kie.baaas.dfm.app.storage.DMNContent;
+import org.kie.baaas.dfm.app.storage.DMNRangeNotSatisfiableException;
 import org.kie.baaas.dfm.app.storage.DMNStorageRequest;
 import org.kie.baaas.dfm.app.storage.DecisionDMNStorage;
 import org.kie.baaas.dfm.app.storage.DecisionDMNStorageException;
+import org.kie.baaas.dfm.app.storage.StagedDMN;
 import org.kie.baaas.dfm.app.storage.hash.DMNHashGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.utils.BinaryUtils;
 
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Stores DMNs in S3. Consumers of {@link DecisionDMNStorage} are served through the
+ * {@link org.kie.baaas.dfm.app.storage.cache.CachingDMNStorage} that wraps this bean.
+ */
 @ApplicationScoped
+@Typed(S3DMNStorage.class)
 public class S3DMNStorage implements DecisionDMNStorage {
 
     private final Logger LOGGER = LoggerFactory.getLogger(S3DMNStorage.class);
 
     // base url = https://s3Endpoint/s3BucketName
     private final String S3_DMN_ENDPOINT = "s3://%s";
-    // base file location customers/<customer_id>/<decision_id>/<decision_version>/dmn.xml
+    // legacy file location customers/<customer_id>/<decision_id>/<decision_version>/dmn.xml
     private final String DMN_LOCATION = "customers/%s/%s/%d/dmn.xml";
+    private final String DECISION_PREFIX = "customers/%s/%s/";
+    // content addressed file location customers/<customer_id>/dmn/<dmn_md5_hex>.xml
+    private final String CONTENT_PREFIX = "customers/%s/dmn/";
+    private final String CONTENT_SUFFIX = ".xml";
+    // the maximum number of keys accepted by a single DeleteObjects request
+    private final int MAX_DELETE_BATCH_SIZE = 1000;
 
     private final DecisionFleetManagerConfig config;
     private final S3Client s3Client;
     private final DMNHashGenerator hashGenerator;
-    private final DecisionManager decisionManager;
+    private final DecisionVersionDAO decisionVersionDAO;
+    private final StoredDMNDAO storedDMNDAO;
 
     @Inject
     public S3DMNStorage(DecisionFleetManagerConfig config, DMNHashGenerator hashGenerator, S3Client s3Client,
-            DecisionManager decisionManager) {
+            DecisionVersionDAO decisionVersionDAO, StoredDMNDAO storedDMNDAO) {
 
         requireNonNull(config, "config cannot be null");
         requireNonNull(s3Client, "s3Client cannot be null");
         requireNonNull(hashGenerator, "hashGenerator cannot be null");
-        requireNonNull(decisionManager, "decisionManager cannot be null");
+        requireNonNull(decisionVersionDAO, "decisionVersionDAO cannot be null");
+        requireNonNull(storedDMNDAO, "storedDMNDAO cannot be null");
 
         this.config = config;
         this.s3Client = s3Client;
         this.hashGenerator = hashGenerator;
-        this.decisionManager = decisionManager;
+        this.decisionVersionDAO = decisionVersionDAO;
+        this.storedDMNDAO = storedDMNDAO;
     }
 
+    /*
+     * DMNs are stored once per customer at a location derived from their content hash. Staging first records the DMN
+     * as a StoredDMN, refreshing the staging time of an existing record under a row lock, so that it cannot be
+     * reclaimed until the grace period has passed again. If the DMN has already been uploaded, nothing is uploaded.
+     * Otherwise the DMN is written straight to its content address: concurrent writers of the same content write
+     * identical bytes, so no separate staging copy is needed.
+     *
+     * The row lock taken here ends with staging, so between staging and recording the DecisionVersion only the grace
+     * period keeps the DMN from being reclaimed. Recording the DecisionVersion locks the record again, see locateDMN,
+     * so a DMN reclaimed in that window makes the request fail rather than leave a reference to a deleted DMN.
+     */
     @Override
-    public DMNStorageRequest writeDMN(String customerId, DecisionRequest decisionRequest, DecisionVersion decisionVersion) {
+    public StagedDMN stageDMN(String customerId, DecisionRequest decisionRequest) {
 
-        String dmnLocation = composeDMNLocation(customerId, decisionVersion.getDecision().getId(), decisionVersion.getVersion());
+        String dmn = decisionRequest.getModel().getDmn();
+        String contentHash = hashGenerator.generateHash(dmn);
+        String dmnLocation = composeContentLocation(customerId, contentHash);
+
+        String storedMd5 = recordStaging(customerId, contentHash);
+        if (storedMd5 != null) {
+            LOGGER.info("DMN file {} is already stored at {}. Skipping upload.", decisionRequest.getName(), composeS3URL(dmnLocation));
+            return new StagedDMN(dmnLocation, storedMd5, contentHash);
+        }
 
         PutObjectResponse response = s3Client.putObject(
-                putObjectRequest(dmnLocation, hashGenerator.generateHash(decisionRequest.getModel().getDmn())),
-                RequestBody.fromBytes(decisionRequest.getModel().getDmn().getBytes(StandardCharsets.UTF_8)));
+                putObjectRequest(dmnLocation, contentHash),
+                RequestBody.fromBytes(dmn.getBytes(StandardCharsets.UTF_8)));
+        storedDMNDAO.uploaded(customerId, contentHash, response.eTag(), now());
+
+        LOGGER.info("DMN file {} successfully written at {}.", decisionRequest.getName(), composeS3URL(dmnLocation));
+        return new StagedDMN(dmnLocation, response.eTag(), contentHash);
+    }
+
+    private String recordStaging(String customerId, String contentHash) {
+        try {
+            return storedDMNDAO.touch(customerId, contentHash, now());
+        } catch (PersistenceException e) {
+            // A concurrent request recorded the same DMN first, so its record can now be locked
+            return storedDMNDAO.touch(customerId, contentHash, now());
+        }
+    }
+
+    private ZonedDateTime now() {
+        return ZonedDateTime.now(ZoneOffset.UTC);
+    }
+
+    /*
+     * Runs within the transaction that records the DecisionVersion. The record of the DMN stays locked until that
+     * transaction ends, and reclaimDMN locks it before counting the references to the DMN, so the DMN is never
+     * reclaimed while a reference to it is being committed.
+     */
+    @Override
+    public DMNStorageRequest locateDMN(String customerId, StagedDMN stagedDMN, DecisionVersion decisionVersion) {
+        if (storedDMNDAO.referenced(customerId, stagedDMN.getContentHash(), now()) == null) {
+            throw new DecisionDMNStorageException(String.format("DMN file %s was reclaimed before it was recorded.", composeS3URL(stagedDMN.getStagingLocation())));
+        }
+        return new DMNStorageRequest(composeS3URL(stagedDMN.getStagingLocation()), stagedDMN.getMd5Hash(), stagedDMN.getContentHash());
+    }
 
-        String dmnURL = composeS3URL(dmnLocation);
-        LOGGER.info("DMN file {} successfully written at {}.", decisionRequest.getName(), dmnURL);
-        return new DMNStorageRequest(dmnURL, response.eTag());
+    @Override
+    public void promoteDMN(String customerId, StagedDMN stagedDMN, DecisionVersion decisionVersion) {
+        // The DMN is staged at its content address, which is already the location recorded against the DecisionVersion.
+    }
+
+    @Override
+    public void discardDMN(StagedDMN stagedDMN) {
+        // The staged DMN may be shared with concurrent requests for the same content, so it is never removed here.
+        // Once unreferenced, it is reclaimed by the UnreferencedDMNSweeper after the grace period.
+        LOGGER.debug("Leaving staged DMN {} in bucket {} for reclamation.", stagedDMN.getStagingLocation(), config.getBucketName());
     }
 
     @Override
     public void deleteDMN(String customerId, Decision decision) {
-        // get objects from bucket
-        ListObjectsV2Response objectsInBucket = s3Client
-                .listObjectsV2(ListObjectsV2Request
-                        .builder()
-                        .bucket(config.getBucketName())
-                        .build());
-
-        if (objectsInBucket.contents().isEmpty()) {
-            throw new DecisionDMNStorageException(
-                    String.format("There is no object on bucket %s that matches customer id %s and decision name %s",
-                            config.getBucketName(),
-                            customerId,
-                            decision.getId()));
+        // Only DMNs stored at their legacy location belong to the Decision. Content addressed DMNs are shared by
+        // the Decisions of the customer and are reclaimed by the UnreferencedDMNSweeper once unreferenced.
+        deleteObjects(String.format(DECISION_PREFIX, customerId, decision.getId()));
+    }
+
+    /**
+     * Deletes a stored DMN if it was last staged before the cutoff and is not referenced by any DecisionVersion of
+     * its customer. The record of the DMN is locked for the duration, so the DMN cannot be staged again concurrently.
+     *
+     * @param customerId - The customer that owns the DMN
+     * @param dmnHash - The content hash of the DMN
+     * @param stagedBefore - The time before which the DMN must have been last staged
+     * @return - true if the DMN was deleted
+     */
+    @Transactional
+    public boolean reclaimDMN(String customerId, String dmnHash, ZonedDateTime stagedBefore) {
+        StoredDMN storedDMN = storedDMNDAO.lock(customerId, dmnHash);
+        if (storedDMN == null || !storedDMN.getStagedAt().isBefore(stagedBefore)
+                || decisionVersionDAO.countByCustomerAndDmnHash(customerId, dmnHash) > 0) {
+            return false;
+        }
+
+        String dmnLocation = composeContentLocation(customerId, dmnHash);
+        s3Client.deleteObject(deleteObjectRequest(dmnLocation));
+        storedDMNDAO.delete(storedDMN);
+        LOGGER.info("Unreferenced DMN file {} deleted.", composeS3URL(dmnLocation));
+        return true;
+    }
+
+    /**
+     * Deletes the objects under the given prefix. Objects are listed page by page and deleted in batches of at
+     * most {@link #MAX_DELETE_BATCH_SIZE} keys.
+     *
+     * @param prefix - The prefix of the objects to delete
+     */
+    private void deleteObjects(String prefix) {
+        List<ObjectIdentifier> batch = new ArrayList<>();
+        for (S3Object obj : s3Client.listObjectsV2Paginator(listObjectsRequest(prefix)).contents()) {
+            batch.add(ObjectIdentifier.builder().key(obj.key()).build());
+            if (batch.size() == MAX_DELETE_BATCH_SIZE) {
+                deleteBatch(batch);
+                batch = new ArrayList<>();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            deleteBatch(batch);
         }
+    }
 
-        objectsInBucket.contents().stream()
-                .filter(obj -> obj.key().contains(customerId) && obj.key().contains(decision.getId()))
-                .forEach(obj -> {
-                    s3Client.deleteObject(deleteObjectRequest(obj.key()));
-                    LOGGER.info("Object {} deleted from bucket {}.", obj.key(), config.getBucketName());
-                });
+    private void deleteBatch(List<ObjectIdentifier> batch) {
+        DeleteObjectsResponse response = s3Client.deleteObjects(deleteObjectsRequest(batch));
+        response.errors().forEach(error -> LOGGER.warn("Failed to delete object {} from bucket {}: {}", error.key(), config.getBucketName(), error.message()));
+        LOGGER.info("{} objects deleted from bucket {}.", batch.size() - response.errors().size(), config.getBucketName());
     }
 
     @Override
-    public ByteArrayOutputStream readDMN(String customerId, DecisionVersion decisionVersion) {
+    public DMNContent readDMN(String customerId, DecisionVersion decisionVersion, String range) {
 
-        String dmnLocation = composeDMNLocation(customerId, decisionVersion.getDecision().getId(), decisionVersion.getVersion());
+        String dmnLocation = composeReadLocation(customerId, decisionVersion);
 
         try {
-            ByteArrayOutputStream dmnBaos = new ByteArrayOutputStream();
-            s3Client.getObject(getObjectRequest(dmnLocation), ResponseTransformer.toOutputStream(dmnBaos));
-            return dmnBaos;
+            ResponseInputStream<GetObjectResponse> dmn = s3Client.getObject(getObjectRequest(dmnLocation, range));
+            return new DMNContent(dmn, dmn.response().contentLength(), dmn.response().contentRange());
+        } catch (final S3Exception e) {
+            if (e.statusCode() == Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode()) {
+                throw new DMNRangeNotSatisfiableException("Range " + range + " is outside of decision " + dmnLocation + ".", e);
+            }
+            throw new DecisionDMNStorageException("Failed to read decision from S3 Bucket.", e);
         } catch (final Exception e) {
             throw new DecisionDMNStorageException("Failed to read decision from S3 Bucket.", e);
         }
@@ -154,6 +281,33 @@ public class S3DMNStorage implements DecisionDMNStorage {
         return String.format(DMN_LOCATION, customerId, decisionId, decisionVersion);
     }
 
+    /**
+     * Return the location on S3 Bucket from which the DMN of a DecisionVersion is read. DecisionVersions recorded
+     * before DMNs were stored by content have no content hash and are read from their legacy location.
+     *
+     * @param customerId - The customer id associated with the decision
+     * @param decisionVersion - The decision version
+     * @return full location of the dmn file.
+     */
+    private String composeReadLocation(String customerId, DecisionVersion decisionVersion) {
+        if (decisionVersion.getDmnHash() == null) {
+            return composeDMNLocation(customerId, decisionVersion.getDecision().getId(), decisionVersion.getVersion());
+        }
+        return composeContentLocation(customerId, decisionVersion.getDmnHash());
+    }
+
+    /**
+     * Return the content addressed location on S3 Bucket for a DMN. The hash is hex encoded, as the base64
+     * alphabet is not safe for use in object keys.
+     *
+     * @param customerId - The customer id associated with the decision
+     * @param contentHash - The decision checksum (base64 encoded MD5)
+     * @return full location of the dmn file.
+     */
+    private String composeContentLocation(String customerId, String contentHash) {
+        return String.format(CONTENT_PREFIX, customerId) + BinaryUtils.toHex(BinaryUtils.fromBase64(contentHash)) + CONTENT_SUFFIX;
+    }
+
     /**
      * Builds a put object request for the given dmn which will be persisted on S3 Bucket.
      *
@@ -174,27 +328,57 @@ public class S3DMNStorage implements DecisionDMNStorage {
      * Builds a get object request for the given dmn.
      *
      * @param dmnLocation - The decision location on bucket
+     * @param range - The byte range of the dmn to get, or null for the whole dmn
      * @return GetObjectRequest with dmn file information.
      */
-    private GetObjectRequest getObjectRequest(String dmnLocation) {
+    private GetObjectRequest getObjectRequest(String dmnLocation, String range) {
         return GetObjectRequest
                 .builder()
                 .bucket(config.getBucketName())
                 .key(dmnLocation)
+                .range(range)
+                .build();
+    }
+
+    /**
+     * Builds a list objects request for the given prefix.
+     *
+     * @param prefix - The prefix of the objects to list
+     * @return ListObjectsV2Request for the objects under the prefix.
+     */
+    private ListObjectsV2Request listObjectsRequest(String prefix) {
+        return ListObjectsV2Request
+                .builder()
+                .bucket(config.getBucketName())
+                .prefix(prefix)
                 .build();
     }
 
     /**
      * Builds a delete object request for the given dmn.
      *
-     * @param objectKey - The decision checksum (MD5)
+     * @param dmnLocation - The decision location on bucket
      * @return DeleteObjectRequest with dmn file information.
      */
-    private DeleteObjectRequest deleteObjectRequest(String objectKey) {
+    private DeleteObjectRequest deleteObjectRequest(String dmnLocation) {
         return DeleteObjectRequest
                 .builder()
                 .bucket(config.getBucketName())
-                .key(objectKey)
+                .key(dmnLocation)
+                .build();
+    }
+
+    /**
+     * Builds a delete objects request for the given batch of objects.
+     *
+     * @param objects - The objects to delete
+     * @return DeleteObjectsRequest for the batch of objects.
+     */
+    private DeleteObjectsRequest deleteObjectsRequest(List<ObjectIdentifier> objects) {
+        return DeleteObjectsRequest
+                .builder()
+                .bucket(config.getBucketName())
+                .delete(Delete.builder().objects(objects).quiet(true).build())
                 .build();
     }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.storage.s3;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.kie.baaas.dfm.app.dao.StoredDMNDAO;
+import org.kie.baaas.dfm.app.model.StoredDMN;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.quarkus.scheduler.Scheduled;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Periodically deletes the content addressed DMNs that are no longer referenced by any DecisionVersion, whether they
+ * were left behind by a deleted Decision or by a request that failed after staging its DMN. A DMN is only deleted
+ * once the grace period has passed since it was last staged.
+ * <p>
+ * A DMN is locked while a DecisionVersion referencing it is recorded, so it is never deleted while the reference is
+ * being committed. The grace period only covers the time between staging a DMN and recording its DecisionVersion,
+ * which is bounded by the timeout of the request; a DMN deleted in between makes the request fail, not dangle.
+ */
+@ApplicationScoped
+public class UnreferencedDMNSweeper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnreferencedDMNSweeper.class);
+
+    private final S3DMNStorage dmnStorage;
+
+    private final StoredDMNDAO storedDMNDAO;
+
+    private final boolean enabled;
+
+    private final Duration gracePeriod;
+
+    private final int batchSize;
+
+    @Inject
+    public UnreferencedDMNSweeper(S3DMNStorage dmnStorage, StoredDMNDAO storedDMNDAO,
+            @ConfigProperty(name = "baaas.dfm.dmn-sweep.enabled", defaultValue = "true") boolean enabled,
+            @ConfigProperty(name = "baaas.dfm.dmn-sweep.grace-period", defaultValue = "PT1H") Duration gracePeriod,
+            @ConfigProperty(name = "baaas.dfm.dmn-sweep.batch-size", defaultValue = "100") int batchSize) {
+        requireNonNull(dmnStorage, "dmnStorage cannot be null");
+        requireNonNull(storedDMNDAO, "storedDMNDAO cannot be null");
+
+        this.dmnStorage = dmnStorage;
+        this.storedDMNDAO = storedDMNDAO;
+        this.enabled = enabled;
+        this.gracePeriod = gracePeriod;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(every = "${baaas.dfm.dmn-sweep.interval:PT15M}", delayed = "${baaas.dfm.dmn-sweep.interval:PT15M}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledSweep() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    /**
+     * Lists a batch of unreferenced DMNs with a single query and reclaims each of them. Every DMN is checked again
+     * under a lock on its record before it is deleted, as it may have been staged again since it was listed.
+     *
+     * @return - The number of DMNs deleted
+     */
+    int sweep() {
+        try {
+            ZonedDateTime cutoff = ZonedDateTime.now(ZoneOffset.UTC).minus(gracePeriod);
+            List<StoredDMN> unreferenced = storedDMNDAO.listUnreferencedBefore(cutoff, batchSize);
+            int reclaimed = 0;
+            for (StoredDMN storedDMN : unreferenced) {
+                try {
+                    if (dmnStorage.reclaimDMN(storedDMN.getCustomerId(), storedDMN.getDmnHash(), cutoff)) {
+                        reclaimed++;
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Could not reclaim DMN '{}' of customer '{}': {}", storedDMN.getDmnHash(), storedDMN.getCustomerId(), e.getMessage());
+                }
+            }
+            if (reclaimed > 0) {
+                LOGGER.info("Reclaimed {} unreferenced DMNs.", reclaimed);
+            }
+            return reclaimed;
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to sweep unreferenced DMNs.", e);
+            return 0;
+        }
+    }
+}
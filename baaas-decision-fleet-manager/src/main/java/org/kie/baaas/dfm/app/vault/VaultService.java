@@ -15,6 +15,8 @@
 
 package org.kie.baaas.dfm.app.vault;
 
+import java.util.function.Supplier;
+
 public interface VaultService {
 
     void create(Secret secret);
@@ -23,4 +25,20 @@ public interface VaultService {
 
     String delete(String name);
 
+    /**
+     * Gets the named secret, creating it if it does not exist. Implementations may ensure that concurrent
+     * callers for the same secret only create it once.
+     *
+     * @param name - The name of the secret
+     * @param factory - Creates the secret if it does not exist
+     * @return - The existing or created secret
+     */
+    default Secret getOrCreate(String name, Supplier<Secret> factory) {
+        Secret secret = get(name);
+        if (secret == null) {
+            secret = factory.get();
+            create(secret);
+        }
+        return secret;
+    }
 }
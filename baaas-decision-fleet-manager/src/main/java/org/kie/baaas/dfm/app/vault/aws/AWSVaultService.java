@@ -18,6 +18,7 @@ package org.kie.baaas.dfm.app.vault.aws;
 import java.util.Map;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Typed;
 import javax.inject.Inject;
 
 import org.kie.baaas.dfm.app.vault.Secret;
@@ -36,6 +37,7 @@ import software.amazon.awssdk.services.secretsmanager.model.ResourceNotFoundExce
 import software.amazon.awssdk.services.secretsmanager.model.SecretsManagerException;
 
 @ApplicationScoped
+@Typed(AWSVaultService.class)
 public class AWSVaultService implements VaultService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AWSVaultService.class);
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.vault.cache;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.kie.baaas.dfm.app.vault.Secret;
+import org.kie.baaas.dfm.app.vault.VaultService;
+import org.kie.baaas.dfm.app.vault.aws.AWSVaultService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Read-through cache of secrets in front of the vault.
+ * <p>
+ * A secret that was found is remembered for the configured TTL, and a secret that was not found is remembered for
+ * the configured negative TTL. Only one lookup of a given secret is made at a time: concurrent callers wait for and
+ * share the outcome of the lookup in flight, including its failure. Likewise, only one caller creates a missing
+ * secret through {@link #getOrCreate(String, Supplier)}. A TTL of zero disables caching of that kind of result.
+ */
+@ApplicationScoped
+public class CachingVaultService implements VaultService {
+
+    public static final String CACHE_HITS = "daaas.vault.cache.hits";
+
+    public static final String CACHE_MISSES = "daaas.vault.cache.misses";
+
+    public static final String CACHE_COALESCED = "daaas.vault.cache.coalesced";
+
+    public static final String CACHE_SIZE = "daaas.vault.cache.size";
+
+    private final VaultService delegate;
+
+    private final long ttlNanos;
+
+    private final long negativeTtlNanos;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter coalesced;
+
+    private final Map<String, CachedSecret> entries = new ConcurrentHashMap<>();
+
+    private final Map<String, CompletableFuture<Secret>> lookups = new ConcurrentHashMap<>();
+
+    private final Map<String, CompletableFuture<Secret>> creations = new ConcurrentHashMap<>();
+
+    @Inject
+    public CachingVaultService(AWSVaultService delegate, MeterRegistry meterRegistry,
+            @ConfigProperty(name = "baaas.dfm.vault-cache.ttl", defaultValue = "PT5M") Duration ttl,
+            @ConfigProperty(name = "baaas.dfm.vault-cache.negative-ttl", defaultValue = "PT30S") Duration negativeTtl) {
+        requireNonNull(delegate, "delegate cannot be null");
+        requireNonNull(meterRegistry, "meterRegistry cannot be null");
+
+        this.delegate = delegate;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.hits = meterRegistry.counter(CACHE_HITS);
+        this.misses = meterRegistry.counter(CACHE_MISSES);
+        this.coalesced = meterRegistry.counter(CACHE_COALESCED);
+        meterRegistry.gauge(CACHE_SIZE, entries, Map::size);
+    }
+
+    @Override
+    public void create(Secret secret) {
+        delegate.create(secret);
+        cache(secret.getId(), secret);
+    }
+
+    @Override
+    public Secret get(String name) {
+        CachedSecret cached = lookup(name);
+        if (cached != null) {
+            hits.increment();
+            return cached.secret;
+        }
+
+        misses.increment();
+        return singleFlight(lookups, name, () -> {
+            Secret secret = delegate.get(name);
+            cache(name, secret);
+            return secret;
+        });
+    }
+
+    @Override
+    public String delete(String name) {
+        try {
+            return delegate.delete(name);
+        } finally {
+            entries.remove(name);
+        }
+    }
+
+    @Override
+    public Secret getOrCreate(String name, Supplier<Secret> factory) {
+        CachedSecret cached = lookup(name);
+        if (cached != null && cached.secret != null) {
+            hits.increment();
+            return cached.secret;
+        }
+
+        misses.increment();
+        return singleFlight(creations, name, () -> {
+            Secret secret = delegate.get(name);
+            if (secret == null) {
+                secret = factory.get();
+                delegate.create(secret);
+            }
+            cache(name, secret);
+            return secret;
+        });
+    }
+
+    private CachedSecret lookup(String name) {
+        CachedSecret cached = entries.get(name);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.expiry - System.nanoTime() > 0) {
+            return cached;
+        }
+        entries.remove(name, cached);
+        return null;
+    }
+
+    private void cache(String name, Secret secret) {
+        long ttl = secret == null ? negativeTtlNanos : ttlNanos;
+        if (ttl > 0) {
+            entries.put(name, new CachedSecret(secret, System.nanoTime() + ttl));
+        } else {
+            entries.remove(name);
+        }
+    }
+
+    /*
+     * The first caller for a name runs the loader on its own thread. Callers that arrive whilst it is running wait
+     * for its outcome rather than running the loader again.
+     */
+    private Secret singleFlight(Map<String, CompletableFuture<Secret>> inFlight, String name, Supplier<Secret> loader) {
+        CompletableFuture<Secret> load = new CompletableFuture<>();
+        CompletableFuture<Secret> existing = inFlight.putIfAbsent(name, load);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        try {
+            Secret secret = loader.get();
+            load.complete(secret);
+            return secret;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(name, load);
+        }
+    }
+
+    private Secret await(CompletableFuture<Secret> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static class CachedSecret {
+
+        private final Secret secret;
+
+        private final long expiry;
+
+        CachedSecret(Secret secret, long expiry) {
+            this.secret = secret;
+            this.expiry = expiry;
+        }
+    }
+}
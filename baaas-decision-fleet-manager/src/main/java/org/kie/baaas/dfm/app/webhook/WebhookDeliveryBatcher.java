@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.webhook;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.kie.baaas.dfm.app.model.webhook.WebhookDelivery;
+
+/**
+ * Accumulates the deliveries to Webhooks that receive CloudEvents in batches.
+ * <p>
+ * A batch is ready once it holds the maximum number of events, or once the batching window has elapsed since its
+ * first event was added, whichever comes first.
+ */
+@ApplicationScoped
+public class WebhookDeliveryBatcher {
+
+    private final Duration window;
+
+    private final int maxEvents;
+
+    // The batch being accumulated for each Webhook, oldest first
+    private final Map<String, PendingBatch> batches = new LinkedHashMap<>();
+
+    @Inject
+    public WebhookDeliveryBatcher(@ConfigProperty(name = "baaas.dfm.webhooks.delivery.batching.window", defaultValue = "PT5S") Duration window,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.batching.max-events", defaultValue = "100") int maxEvents) {
+        this.window = window;
+        this.maxEvents = maxEvents;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    /**
+     * Adds a delivery to the batch of its Webhook. A delivery that is already in the batch is not added again.
+     *
+     * @param delivery - The delivery to add
+     * @return - The batch of the Webhook, if it is now full
+     */
+    public synchronized Optional<List<WebhookDelivery>> add(WebhookDelivery delivery) {
+        PendingBatch batch = batches.computeIfAbsent(delivery.getWebhookId(), k -> new PendingBatch(System.nanoTime()));
+        if (!batch.deliveries.contains(delivery)) {
+            batch.deliveries.add(delivery);
+        }
+
+        if (batch.deliveries.size() < maxEvents) {
+            return Optional.empty();
+        }
+        batches.remove(delivery.getWebhookId());
+        return Optional.of(batch.deliveries);
+    }
+
+    /**
+     * Removes the batches whose window has elapsed.
+     *
+     * @return - The batches that are ready to be delivered
+     */
+    public synchronized List<List<WebhookDelivery>> drainExpired() {
+        long expiredBefore = System.nanoTime() - window.toNanos();
+        List<List<WebhookDelivery>> expired = new ArrayList<>();
+        Iterator<PendingBatch> iterator = batches.values().iterator();
+        while (iterator.hasNext()) {
+            PendingBatch batch = iterator.next();
+            if (batch.startedAt - expiredBefore > 0) {
+                // Batches are held in the order in which they were started, so the remaining ones have not expired either
+                break;
+            }
+            expired.add(batch.deliveries);
+            iterator.remove();
+        }
+        return expired;
+    }
+
+    private static class PendingBatch {
+
+        private final long startedAt;
+
+        private final List<WebhookDelivery> deliveries = new ArrayList<>();
+
+        private PendingBatch(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+}
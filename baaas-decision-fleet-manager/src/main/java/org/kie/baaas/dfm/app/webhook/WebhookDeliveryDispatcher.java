@@ -0,0 +1,292 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.webhook;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.kie.baaas.dfm.app.model.webhook.Webhook;
+import org.kie.baaas.dfm.app.model.webhook.WebhookDelivery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Delivers CloudEvents to Webhooks.
+ * <p>
+ * Deliveries are recorded in the {@link WebhookDeliveryOutbox} before they are attempted and handed to the
+ * {@link WebhookDeliveryScheduler}, which sends them through a single shared HTTP client. Deliveries that fail, or
+ * that were pending when a Fleet Manager stopped, are periodically claimed from the outbox and attempted again.
+ * Deliveries of an event raised within a transaction are recorded in that transaction, so they are committed together
+ * with the change the event reports, and are only attempted once it has committed.
+ * <p>
+ * The client prefers HTTP/2, which multiplexes the concurrent requests to a host over a single connection, and runs
+ * on the managed executor, so the number of connections and threads does not grow with the number of Webhooks.
+ * <p>
+ * Webhooks registered for batching receive their CloudEvents in batches accumulated by the
+ * {@link WebhookDeliveryBatcher}, sent in the CloudEvents JSON batch format. A batch is accepted or retried as a whole.
+ */
+@ApplicationScoped
+public class WebhookDeliveryDispatcher {
+
+    public static final String INVOCATIONS = "daaas.webhook.invocations";
+
+    public static final String SUCCESS = "daaas.webhook.success";
+
+    public static final String FAILURE = "daaas.webhook.failure";
+
+    public static final String LATENCY = "daaas.webhook.latency";
+
+    private static final String CONTENT_TYPE = "application/cloudevents+json";
+
+    private static final String BATCH_CONTENT_TYPE = "application/cloudevents-batch+json";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebhookDeliveryDispatcher.class);
+
+    private final WebhookDeliveryOutbox webhookDeliveryOutbox;
+
+    private final WebhookDeliveryScheduler webhookDeliveryScheduler;
+
+    private final WebhookDeliveryBatcher webhookDeliveryBatcher;
+
+    private final MeterRegistry meterRegistry;
+
+    private final TransactionSynchronizationRegistry transactionRegistry;
+
+    private final HttpClient httpClient;
+
+    private final Duration timeout;
+
+    private final boolean enabled;
+
+    private final Duration pollInterval;
+
+    private ScheduledExecutorService poller;
+
+    @Inject
+    public WebhookDeliveryDispatcher(WebhookDeliveryOutbox webhookDeliveryOutbox, WebhookDeliveryScheduler webhookDeliveryScheduler, WebhookDeliveryBatcher webhookDeliveryBatcher,
+            ManagedExecutor executorService, MeterRegistry meterRegistry, TransactionSynchronizationRegistry transactionRegistry,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.timeout", defaultValue = "PT10S") Duration timeout,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.enabled", defaultValue = "true") boolean enabled,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.poll-interval", defaultValue = "PT5S") Duration pollInterval) {
+        this(webhookDeliveryOutbox, webhookDeliveryScheduler, webhookDeliveryBatcher, meterRegistry, transactionRegistry,
+                HttpClient.newBuilder().executor(requireNonNull(executorService, "executorService cannot be null")).version(HttpClient.Version.HTTP_2).connectTimeout(timeout).build(),
+                timeout, enabled, pollInterval);
+    }
+
+    WebhookDeliveryDispatcher(WebhookDeliveryOutbox webhookDeliveryOutbox, WebhookDeliveryScheduler webhookDeliveryScheduler, WebhookDeliveryBatcher webhookDeliveryBatcher,
+            MeterRegistry meterRegistry, TransactionSynchronizationRegistry transactionRegistry, HttpClient httpClient, Duration timeout, boolean enabled,
+            Duration pollInterval) {
+        requireNonNull(webhookDeliveryOutbox, "webhookDeliveryOutbox cannot be null");
+        requireNonNull(webhookDeliveryScheduler, "webhookDeliveryScheduler cannot be null");
+        requireNonNull(webhookDeliveryBatcher, "webhookDeliveryBatcher cannot be null");
+        requireNonNull(meterRegistry, "meterRegistry cannot be null");
+        requireNonNull(transactionRegistry, "transactionRegistry cannot be null");
+        requireNonNull(httpClient, "httpClient cannot be null");
+
+        this.webhookDeliveryOutbox = webhookDeliveryOutbox;
+        this.webhookDeliveryScheduler = webhookDeliveryScheduler;
+        this.webhookDeliveryBatcher = webhookDeliveryBatcher;
+        this.meterRegistry = meterRegistry;
+        this.transactionRegistry = transactionRegistry;
+        this.httpClient = httpClient;
+        this.timeout = timeout;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+    }
+
+    void onStart(@Observes StartupEvent ev) {
+        if (enabled) {
+            poller = Executors.newSingleThreadScheduledExecutor();
+            poller.scheduleWithFixedDelay(this::dispatch, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+            long batchingWindow = Math.max(webhookDeliveryBatcher.getWindow().toMillis(), 1);
+            poller.scheduleWithFixedDelay(this::dispatchBatches, batchingWindow, batchingWindow, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    /**
+     * Records delivery of a CloudEvent to the Webhook and attempts it, or adds it to the batch of the Webhook if the
+     * Webhook receives CloudEvents in batches. Within a transaction, the delivery is recorded as part of the
+     * transaction and only attempted once the transaction has committed.
+     *
+     * @param webhook - The Webhook to deliver the CloudEvent to
+     * @param payload - The CloudEvent, serialized in structured mode
+     */
+    public void deliver(Webhook webhook, String payload) {
+        WebhookDelivery delivery = webhookDeliveryOutbox.add(webhook, payload);
+        if (transactionRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        routeCommitted(delivery);
+                    }
+                }
+            });
+        } else {
+            route(delivery);
+        }
+    }
+
+    // A delivery that cannot be routed remains leased in the outbox and is claimed again once its lease expires
+    private void routeCommitted(WebhookDelivery delivery) {
+        try {
+            route(delivery);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to dispatch Webhook delivery '{}'.", delivery.getId(), e);
+        }
+    }
+
+    /**
+     * Claims the next batch of due deliveries and schedules them. A delivery that cannot be scheduled remains
+     * claimed until its lease expires, after which it is claimed again.
+     */
+    void dispatch() {
+        try {
+            List<WebhookDelivery> deliveries = webhookDeliveryOutbox.claimDue();
+            deliveries.forEach(this::route);
+            if (!deliveries.isEmpty()) {
+                LOGGER.info("Dispatched {} Webhook deliveries from the outbox.", deliveries.size());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to dispatch Webhook deliveries from the outbox.", e);
+        }
+    }
+
+    /**
+     * Schedules the batches whose batching window has elapsed.
+     */
+    void dispatchBatches() {
+        try {
+            webhookDeliveryBatcher.drainExpired().forEach(this::scheduleBatch);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to dispatch Webhook delivery batches.", e);
+        }
+    }
+
+    private void route(WebhookDelivery delivery) {
+        if (delivery.isBatch()) {
+            webhookDeliveryBatcher.add(delivery).ifPresent(this::scheduleBatch);
+        } else {
+            schedule(delivery);
+        }
+    }
+
+    private void scheduleBatch(List<WebhookDelivery> batch) {
+        WebhookDelivery first = batch.get(0);
+        if (!webhookDeliveryScheduler.schedule(first.getWebhookId(), first.getUrl().getHost(), first.getId(), () -> send(batch))) {
+            LOGGER.warn("Too many deliveries queued for Webhook '{}'. A batch of {} deliveries will be attempted later.", first.getUrl(), batch.size());
+        }
+    }
+
+    private void schedule(WebhookDelivery delivery) {
+        if (!webhookDeliveryScheduler.schedule(delivery.getWebhookId(), delivery.getUrl().getHost(), delivery.getId(), () -> send(delivery))) {
+            LOGGER.warn("Too many deliveries queued for Webhook '{}'. Delivery '{}' will be attempted later.", delivery.getUrl(), delivery.getId());
+        }
+    }
+
+    CompletionStage<Void> send(WebhookDelivery delivery) {
+        return send(delivery, List.of(delivery.getId()), CONTENT_TYPE, delivery.getPayload());
+    }
+
+    CompletionStage<Void> send(List<WebhookDelivery> batch) {
+        List<String> deliveryIds = batch.stream().map(WebhookDelivery::getId).collect(toList());
+        String payload = batch.stream().map(WebhookDelivery::getPayload).collect(joining(",", "[", "]"));
+        return send(batch.get(0), deliveryIds, BATCH_CONTENT_TYPE, payload);
+    }
+
+    private CompletionStage<Void> send(WebhookDelivery first, List<String> deliveryIds, String contentType, String payload) {
+        String url = first.getUrl().toString();
+        meterRegistry.counter(INVOCATIONS, "url", url).increment();
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder().POST(BodyPublishers.ofString(payload))
+                    .uri(first.getUrl().toURI())
+                    .header("Accept", "application/json")
+                    .header("Content-Type", contentType)
+                    .timeout(timeout).build();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            LOGGER.error("Webhook URL '{}' is not valid. Giving up deliveries {}.", url, deliveryIds, e);
+            webhookDeliveryOutbox.complete(deliveryIds);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, BodyHandlers.discarding())
+                .handle((response, t) -> {
+                    meterRegistry.timer(LATENCY, "host", first.getUrl().getHost()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    completed(url, deliveryIds, response, t);
+                    return null;
+                });
+    }
+
+    private void completed(String url, List<String> deliveryIds, HttpResponse<Void> response, Throwable t) {
+        try {
+            if (response != null && response.statusCode() / 100 == 2) {
+                meterRegistry.counter(SUCCESS, "url", url).increment();
+                webhookDeliveryOutbox.complete(deliveryIds);
+                return;
+            }
+
+            meterRegistry.counter(FAILURE, "url", url).increment();
+            String cause = response != null ? "HTTP status " + response.statusCode() : String.valueOf(t);
+            LOGGER.warn("Deliveries {} to Webhook '{}' failed: {}", deliveryIds, url, cause);
+            webhookDeliveryOutbox.retry(deliveryIds, cause);
+        } catch (RuntimeException e) {
+            // The deliveries remain in the outbox and are attempted again once their lease expires
+            LOGGER.error("Failed to record the outcome of deliveries {} to Webhook '{}'.", deliveryIds, url, e);
+        }
+    }
+}
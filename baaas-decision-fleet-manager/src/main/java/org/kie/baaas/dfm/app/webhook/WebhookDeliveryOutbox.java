@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.webhook;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.kie.baaas.dfm.app.dao.WebhookDeliveryDAO;
+import org.kie.baaas.dfm.app.model.webhook.Webhook;
+import org.kie.baaas.dfm.app.model.webhook.WebhookDelivery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Transactional outbox of the CloudEvents to deliver to Webhooks.
+ * <p>
+ * A delivery is added for each Webhook when an event is raised, and the caller holds a lease on it during which no
+ * one else will attempt it. Deliveries whose lease has expired, for instance because the Fleet Manager restarted, or
+ * whose delivery failed and is due to be retried, are claimed in batches by the {@link WebhookDeliveryDispatcher}.
+ * Failed deliveries are retried with exponential backoff and jitter, up to a maximum number of attempts, so that
+ * Webhooks recovering from an outage are not hit by every pending delivery at once.
+ */
+@ApplicationScoped
+@Transactional
+public class WebhookDeliveryOutbox {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebhookDeliveryOutbox.class);
+
+    private final WebhookDeliveryDAO webhookDeliveryDAO;
+
+    private final Duration lease;
+
+    private final Duration initialBackoff;
+
+    private final Duration maxBackoff;
+
+    private final int maxAttempts;
+
+    private final int batchSize;
+
+    @Inject
+    public WebhookDeliveryOutbox(WebhookDeliveryDAO webhookDeliveryDAO,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.lease", defaultValue = "PT5M") Duration lease,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.initial-backoff", defaultValue = "PT5S") Duration initialBackoff,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.max-backoff", defaultValue = "PT10M") Duration maxBackoff,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.max-attempts", defaultValue = "10") int maxAttempts,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.batch-size", defaultValue = "100") int batchSize) {
+        requireNonNull(webhookDeliveryDAO, "webhookDeliveryDAO cannot be null");
+
+        this.webhookDeliveryDAO = webhookDeliveryDAO;
+        this.lease = lease;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.maxAttempts = maxAttempts;
+        this.batchSize = batchSize;
+    }
+
+    private ZonedDateTime now() {
+        return ZonedDateTime.now(ZoneOffset.UTC);
+    }
+
+    /**
+     * Adds delivery of a CloudEvent to the Webhook to the outbox, joining the transaction of the caller if there is
+     * one. The caller holds the lease on the new delivery.
+     *
+     * @param webhook - The Webhook to deliver the CloudEvent to
+     * @param payload - The CloudEvent, serialized in structured mode
+     * @return - The new delivery
+     */
+    public WebhookDelivery add(Webhook webhook, String payload) {
+        WebhookDelivery delivery = new WebhookDelivery(webhook, payload, now().plus(lease));
+        webhookDeliveryDAO.persist(delivery);
+        return delivery;
+    }
+
+    /**
+     * Claims the next batch of deliveries that are due.
+     *
+     * @return - The claimed deliveries
+     */
+    public List<WebhookDelivery> claimDue() {
+        ZonedDateTime now = now();
+        return webhookDeliveryDAO.claimDue(now, now.plus(lease), batchSize);
+    }
+
+    /**
+     * Removes a delivery that has been accepted by its Webhook.
+     *
+     * @param deliveryId - The id of the delivery
+     */
+    public void complete(String deliveryId) {
+        webhookDeliveryDAO.deleteById(deliveryId);
+    }
+
+    /**
+     * Removes the deliveries of a batch that has been accepted by its Webhook.
+     *
+     * @param deliveryIds - The ids of the deliveries
+     */
+    public void complete(Collection<String> deliveryIds) {
+        deliveryIds.forEach(webhookDeliveryDAO::deleteById);
+    }
+
+    /**
+     * Schedules another attempt of a delivery after a failed attempt. If the maximum number of attempts has been
+     * reached, the delivery is removed instead.
+     *
+     * @param deliveryId - The id of the delivery
+     * @param cause - The reason the attempt failed
+     * @return - true if another attempt has been scheduled, false if the delivery has been given up on
+     */
+    public boolean retry(String deliveryId, String cause) {
+        WebhookDelivery delivery = webhookDeliveryDAO.findById(deliveryId);
+        if (delivery == null) {
+            return false;
+        }
+        return retry(delivery, cause, now().plus(backoff(delivery.getAttempts() + 1)));
+    }
+
+    /**
+     * Schedules another attempt of the deliveries of a batch after a failed attempt. The deliveries are attempted
+     * again together, apart from those that have reached the maximum number of attempts, which are removed instead.
+     *
+     * @param deliveryIds - The ids of the deliveries
+     * @param cause - The reason the attempt failed
+     */
+    public void retry(Collection<String> deliveryIds, String cause) {
+        ZonedDateTime nextAttemptAt = null;
+        for (String deliveryId : deliveryIds) {
+            WebhookDelivery delivery = webhookDeliveryDAO.findById(deliveryId);
+            if (delivery == null) {
+                continue;
+            }
+            if (nextAttemptAt == null) {
+                nextAttemptAt = now().plus(backoff(delivery.getAttempts() + 1));
+            }
+            retry(delivery, cause, nextAttemptAt);
+        }
+    }
+
+    private boolean retry(WebhookDelivery delivery, String cause, ZonedDateTime nextAttemptAt) {
+        int attempts = delivery.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            LOGGER.warn("Giving up delivery '{}' to '{}' after {} attempts.", delivery.getId(), delivery.getUrl(), attempts);
+            webhookDeliveryDAO.delete(delivery);
+            return false;
+        }
+
+        delivery.setAttempts(attempts);
+        delivery.setNextAttemptAt(nextAttemptAt);
+        delivery.setLastError(cause);
+        LOGGER.info("Delivery '{}' to '{}' failed at attempt {}. Retrying at {}.", delivery.getId(), delivery.getUrl(), attempts, nextAttemptAt);
+        return true;
+    }
+
+    // Half of the exponential backoff is randomised, so that deliveries failing together are not retried together
+    private Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+        if (backoff.compareTo(maxBackoff) > 0) {
+            backoff = maxBackoff;
+        }
+        long half = backoff.toMillis() / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+}
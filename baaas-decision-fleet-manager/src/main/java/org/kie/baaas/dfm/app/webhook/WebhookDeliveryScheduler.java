@@ -0,0 +1,267 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.webhook;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs Webhook deliveries with a bounded number of requests in flight.
+ * <p>
+ * Each Webhook has its own bounded queue of deliveries. Webhooks are served in turn, and no more than a maximum
+ * number of requests are in flight to any one host, so a slow or unavailable Webhook cannot hold up the deliveries
+ * to the others. A delivery that is scheduled again while it is still queued or in flight, for example because it
+ * was claimed again from the outbox, is coalesced with the one already scheduled rather than sent twice.
+ * <p>
+ * Deliveries are picked while holding the monitor of the scheduler, but started after releasing it, as starting a
+ * delivery may block, for example to record the outcome of a delivery that cannot be sent. Only one thread starts
+ * deliveries at a time; a delivery that completes as it is started frees its slot for that same thread to fill in
+ * turn, rather than starting the next delivery from within its completion.
+ * <p>
+ * The number of queued and in flight deliveries is reported in total and for each host.
+ */
+@ApplicationScoped
+public class WebhookDeliveryScheduler {
+
+    public static final String QUEUED_DELIVERIES = "daaas.webhook.deliveries.queued";
+
+    public static final String IN_FLIGHT_DELIVERIES = "daaas.webhook.deliveries.inflight";
+
+    public static final String COALESCED_DELIVERIES = "daaas.webhook.deliveries.coalesced";
+
+    public static final String HOST_QUEUED_DELIVERIES = "daaas.webhook.host.deliveries.queued";
+
+    public static final String HOST_IN_FLIGHT_DELIVERIES = "daaas.webhook.host.deliveries.inflight";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebhookDeliveryScheduler.class);
+
+    private final MeterRegistry meterRegistry;
+
+    private final Counter coalesced;
+
+    private final int maxConcurrentDeliveries;
+
+    private final int maxConcurrentDeliveriesPerHost;
+
+    private final int maxQueuedDeliveriesPerWebhook;
+
+    private final Map<String, Queue<PendingDelivery>> queues = new HashMap<>();
+
+    // Webhooks with queued deliveries, in the order in which they will next be served
+    private final Queue<String> webhooks = new ArrayDeque<>();
+
+    // Deliveries that are queued or in flight
+    private final Set<String> scheduled = new HashSet<>();
+
+    private final Map<String, HostDeliveries> hosts = new HashMap<>();
+
+    private int queued;
+
+    private int inFlight;
+
+    // Whether a thread is starting deliveries
+    private boolean dispatching;
+
+    @Inject
+    public WebhookDeliveryScheduler(MeterRegistry meterRegistry,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.max-concurrent", defaultValue = "64") int maxConcurrentDeliveries,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.max-concurrent-per-host", defaultValue = "4") int maxConcurrentDeliveriesPerHost,
+            @ConfigProperty(name = "baaas.dfm.webhooks.delivery.max-queued-per-webhook", defaultValue = "1000") int maxQueuedDeliveriesPerWebhook) {
+        requireNonNull(meterRegistry, "meterRegistry cannot be null");
+
+        this.meterRegistry = meterRegistry;
+        this.coalesced = meterRegistry.counter(COALESCED_DELIVERIES);
+        this.maxConcurrentDeliveries = maxConcurrentDeliveries;
+        this.maxConcurrentDeliveriesPerHost = maxConcurrentDeliveriesPerHost;
+        this.maxQueuedDeliveriesPerWebhook = maxQueuedDeliveriesPerWebhook;
+        meterRegistry.gauge(QUEUED_DELIVERIES, this, WebhookDeliveryScheduler::getQueued);
+        meterRegistry.gauge(IN_FLIGHT_DELIVERIES, this, WebhookDeliveryScheduler::getInFlight);
+    }
+
+    /**
+     * Queues a delivery to the given Webhook.
+     *
+     * @param webhookId - The Webhook to deliver to
+     * @param host - The host of the Webhook
+     * @param deliveryId - The id of the delivery
+     * @param delivery - Starts the delivery, returning its completion
+     * @return - true if the delivery has been queued or is already scheduled, false if the Webhook already has the maximum number of queued deliveries
+     */
+    public boolean schedule(String webhookId, String host, String deliveryId, Supplier<? extends CompletionStage<?>> delivery) {
+        synchronized (this) {
+            if (scheduled.contains(deliveryId)) {
+                coalesced.increment();
+                return true;
+            }
+
+            Queue<PendingDelivery> queue = queues.computeIfAbsent(webhookId, k -> new ArrayDeque<>());
+            if (queue.size() >= maxQueuedDeliveriesPerWebhook) {
+                return false;
+            }
+
+            if (queue.isEmpty()) {
+                webhooks.add(webhookId);
+            }
+            queue.add(new PendingDelivery(webhookId, host, deliveryId, delivery));
+            scheduled.add(deliveryId);
+            queued++;
+            hostDeliveries(host).queued.incrementAndGet();
+        }
+        dispatch();
+        return true;
+    }
+
+    private void dispatch() {
+        synchronized (this) {
+            // The thread already starting deliveries picks up any capacity freed meanwhile
+            if (dispatching) {
+                return;
+            }
+            dispatching = true;
+        }
+
+        List<PendingDelivery> picked;
+        while (!(picked = pick()).isEmpty()) {
+            picked.forEach(this::start);
+        }
+    }
+
+    private synchronized List<PendingDelivery> pick() {
+        List<PendingDelivery> picked = new ArrayList<>();
+        // Webhooks whose host is at capacity are passed over, until every Webhook has been passed over in a row
+        int passedOver = 0;
+        while (inFlight < maxConcurrentDeliveries && passedOver < webhooks.size()) {
+            String webhookId = webhooks.poll();
+            Queue<PendingDelivery> queue = queues.get(webhookId);
+            PendingDelivery next = queue.peek();
+            HostDeliveries hostDeliveries = hosts.get(next.host);
+            if (hostDeliveries.inFlight.get() >= maxConcurrentDeliveriesPerHost) {
+                webhooks.add(webhookId);
+                passedOver++;
+                continue;
+            }
+
+            passedOver = 0;
+            queue.poll();
+            if (queue.isEmpty()) {
+                queues.remove(webhookId);
+            } else {
+                webhooks.add(webhookId);
+            }
+            queued--;
+            inFlight++;
+            hostDeliveries.queued.decrementAndGet();
+            hostDeliveries.inFlight.incrementAndGet();
+            picked.add(next);
+        }
+
+        if (picked.isEmpty()) {
+            dispatching = false;
+        }
+        return picked;
+    }
+
+    private void start(PendingDelivery pending) {
+        CompletionStage<?> completion;
+        try {
+            completion = pending.delivery.get();
+        } catch (RuntimeException e) {
+            completion = CompletableFuture.failedFuture(e);
+        }
+        completion.whenComplete((r, t) -> {
+            if (t != null) {
+                LOGGER.error("Delivery to Webhook '{}' failed.", pending.webhookId, t);
+            }
+            completed(pending);
+        });
+    }
+
+    private void completed(PendingDelivery pending) {
+        synchronized (this) {
+            inFlight--;
+            hosts.get(pending.host).inFlight.decrementAndGet();
+            scheduled.remove(pending.deliveryId);
+        }
+        dispatch();
+    }
+
+    private HostDeliveries hostDeliveries(String host) {
+        return hosts.computeIfAbsent(host, k -> {
+            // The gauges only hold weak references, which the map of hosts keeps alive
+            HostDeliveries hostDeliveries = new HostDeliveries();
+            Tags tags = Tags.of("host", host);
+            meterRegistry.gauge(HOST_QUEUED_DELIVERIES, tags, hostDeliveries.queued);
+            meterRegistry.gauge(HOST_IN_FLIGHT_DELIVERIES, tags, hostDeliveries.inFlight);
+            return hostDeliveries;
+        });
+    }
+
+    synchronized int getQueued() {
+        return queued;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private static class PendingDelivery {
+
+        private final String webhookId;
+
+        private final String host;
+
+        private final String deliveryId;
+
+        private final Supplier<? extends CompletionStage<?>> delivery;
+
+        private PendingDelivery(String webhookId, String host, String deliveryId, Supplier<? extends CompletionStage<?>> delivery) {
+            this.webhookId = webhookId;
+            this.host = host;
+            this.deliveryId = deliveryId;
+            this.delivery = delivery;
+        }
+    }
+
+    private static class HostDeliveries {
+
+        private final AtomicInteger queued = new AtomicInteger();
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+    }
+}
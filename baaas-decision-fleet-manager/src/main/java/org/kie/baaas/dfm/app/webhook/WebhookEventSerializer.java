@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.webhook;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.kie.baaas.dfm.app.listener.Event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Serializes events as CloudEvents in structured mode for delivery to Webhooks.
+ * <p>
+ * The same event is delivered to every registered Webhook, so each event is serialized only once. The serialized
+ * form is remembered for as long as the event itself is reachable.
+ */
+@ApplicationScoped
+public class WebhookEventSerializer {
+
+    static final URI SOURCE = URI.create("daaswebhook");
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<Event, String> serialized = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @Inject
+    public WebhookEventSerializer(ObjectMapper objectMapper) {
+        requireNonNull(objectMapper, "objectMapper cannot be null");
+
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Serializes the event as a CloudEvent.
+     *
+     * @param event - The event to serialize
+     * @return - The CloudEvent in JSON format
+     */
+    public String serialize(Event event) {
+        return serialized.computeIfAbsent(event, this::toCloudEvent);
+    }
+
+    private String toCloudEvent(Event event) {
+        try {
+            CloudEvent cloudEvent = CloudEventBuilder.v1().withId(event.getEventId().orElse(UUID.randomUUID().toString()))
+                    .withSource(SOURCE).withType(event.getClass().getCanonicalName())
+                    .withData(objectMapper.writeValueAsBytes(event)).build();
+            return objectMapper.writeValueAsString(cloudEvent);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to build CloudEvent for event " + event, e);
+        }
+    }
+}
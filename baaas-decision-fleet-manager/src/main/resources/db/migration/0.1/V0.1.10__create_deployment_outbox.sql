@@ -0,0 +1,12 @@
+create table DEPLOYMENT_OUTBOX
+(
+    decision_version_id varchar(255) NOT NULL PRIMARY KEY,
+    customer_id         varchar(255) NOT NULL,
+    decision_id         varchar(255) NOT NULL,
+    version             integer      NOT NULL,
+    attempts            integer      NOT NULL DEFAULT 0,
+    next_attempt_at     timestamp    NOT NULL,
+    last_error          text
+);
+
+CREATE INDEX deployment_outbox_next_attempt_at_idx ON DEPLOYMENT_OUTBOX(next_attempt_at);
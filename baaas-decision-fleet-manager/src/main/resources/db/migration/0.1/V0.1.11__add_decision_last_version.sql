@@ -0,0 +1,2 @@
+ALTER TABLE DECISION ADD COLUMN last_version integer NOT NULL DEFAULT 0;
+UPDATE DECISION SET last_version = (SELECT COALESCE(MAX(dv.version), 0) FROM DECISION_VERSION dv WHERE dv.decision_id = DECISION.id);
@@ -0,0 +1,9 @@
+-- Versions of a Decision are listed, paged and looked up by version number
+CREATE INDEX decision_version_decision_id_version_idx ON DECISION_VERSION(decision_id, version);
+
+-- Tags and configuration are fetch joined whenever a DecisionVersion is read
+CREATE INDEX decision_version_tag_decision_version_id_idx ON DECISION_VERSION_TAG(decision_version_id);
+CREATE INDEX decision_version_config_decision_version_id_idx ON DECISION_VERSION_CONFIG(decision_version_id);
+
+-- Webhooks are always read per customer
+CREATE INDEX webhook_customer_id_idx ON WEBHOOK(customer_id);
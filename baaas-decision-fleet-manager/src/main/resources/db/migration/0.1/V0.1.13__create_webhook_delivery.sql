@@ -0,0 +1,14 @@
+create table WEBHOOK_DELIVERY
+(
+    id              varchar(255) NOT NULL PRIMARY KEY,
+    webhook_id      varchar(255) NOT NULL,
+    url             varchar(255) NOT NULL,
+    payload         text         NOT NULL,
+    attempts        integer      NOT NULL DEFAULT 0,
+    next_attempt_at timestamp    NOT NULL,
+    last_error      text,
+    constraint fk_webhook_delivery_webhook foreign key (webhook_id) references WEBHOOK (id) on delete cascade
+);
+
+CREATE INDEX webhook_delivery_next_attempt_at_idx ON WEBHOOK_DELIVERY(next_attempt_at);
+CREATE INDEX webhook_delivery_webhook_id_idx ON WEBHOOK_DELIVERY(webhook_id);
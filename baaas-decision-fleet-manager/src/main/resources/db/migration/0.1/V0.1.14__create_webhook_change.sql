@@ -0,0 +1,13 @@
+-- Registrations and unregistrations of webhooks, in the order in which they were made, so that every Fleet Manager
+-- can bring its webhook listeners up to date
+create sequence webhook_change_seq start with 1 increment by 1;
+
+create table WEBHOOK_CHANGE
+(
+    seq         bigint       NOT NULL PRIMARY KEY,
+    webhook_id  varchar(255) NOT NULL,
+    customer_id varchar(255) NOT NULL,
+    changed_at  timestamp    NOT NULL
+);
+
+CREATE INDEX webhook_change_changed_at_idx ON WEBHOOK_CHANGE(changed_at);
@@ -0,0 +1,2 @@
+ALTER TABLE WEBHOOK ADD COLUMN batch boolean DEFAULT false NOT NULL;
+ALTER TABLE WEBHOOK_DELIVERY ADD COLUMN batch boolean DEFAULT false NOT NULL;
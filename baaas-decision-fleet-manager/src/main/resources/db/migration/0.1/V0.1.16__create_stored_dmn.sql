@@ -0,0 +1,19 @@
+-- Content addressed DMNs held in S3, so that a DMN being reused by a new DecisionVersion is never reclaimed
+create table STORED_DMN
+(
+    customer_id varchar(255) NOT NULL,
+    dmn_hash    varchar(255) NOT NULL,
+    md5         varchar(255),
+    staged_at   timestamp    NOT NULL,
+    primary key (customer_id, dmn_hash)
+);
+
+CREATE INDEX stored_dmn_staged_at_idx ON STORED_DMN(staged_at);
+
+-- DMNs already referenced by DecisionVersions
+insert into STORED_DMN (customer_id, dmn_hash, md5, staged_at)
+select d.customer_id, dv.dmn_hash, max(dv.dmn_md5), current_timestamp
+from DECISION_VERSION dv
+         join DECISION d on dv.decision_id = d.id
+where dv.dmn_hash is not null
+group by d.customer_id, dv.dmn_hash;
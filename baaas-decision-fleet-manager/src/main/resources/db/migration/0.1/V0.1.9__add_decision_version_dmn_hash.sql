@@ -0,0 +1,2 @@
+ALTER TABLE DECISION_VERSION ADD COLUMN dmn_hash varchar(255);
+CREATE INDEX decision_version_dmn_hash_idx ON DECISION_VERSION(dmn_hash);
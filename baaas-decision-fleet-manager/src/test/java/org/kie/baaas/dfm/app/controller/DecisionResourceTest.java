@@ -15,14 +15,18 @@
 
 package org.kie.baaas.dfm.app.controller;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 
 import javax.ws.rs.core.Response;
 
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.api.decisions.DecisionBulkResponse;
+import org.kie.baaas.dfm.api.decisions.DecisionBulkResult;
 import org.kie.baaas.dfm.api.decisions.DecisionRequest;
 import org.kie.baaas.dfm.api.decisions.DecisionResponse;
 import org.kie.baaas.dfm.api.decisions.DecisionResponseList;
@@ -31,8 +35,12 @@ import org.kie.baaas.dfm.api.decisions.ResponseModel;
 import org.kie.baaas.dfm.app.controller.modelmappers.DecisionMapper;
 import org.kie.baaas.dfm.app.manager.DecisionLifecycleOrchestrator;
 import org.kie.baaas.dfm.app.model.Decision;
+import org.kie.baaas.dfm.app.model.DecisionSummary;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
+import org.kie.baaas.dfm.app.model.DecisionVersionStatus;
+import org.kie.baaas.dfm.app.model.ListCursor;
 import org.kie.baaas.dfm.app.model.ListResult;
+import org.kie.baaas.dfm.app.storage.DMNContent;
 import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -46,9 +54,17 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.kie.baaas.dfm.app.TestConstants.DEFAULT_CUSTOMER_ID;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @QuarkusTest
@@ -146,18 +162,99 @@ public class DecisionResourceTest {
         assertThat(decision, equalTo(decisionResponse));
     }
 
+    private DecisionVersion mockDMNVersion(long version) {
+        DecisionVersion dmnVersion = mock(DecisionVersion.class);
+        when(dmnVersion.getDmnMd5()).thenReturn("\"ff576fa78715ffc6f9fa6d32c3bc9b9a\"");
+        when(decisionLifecycle.getVersion(DEFAULT_CUSTOMER_ID, DECISION_ID, version)).thenReturn(dmnVersion);
+        return dmnVersion;
+    }
+
+    private DMNContent dmnContent(String content, String contentRange) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return new DMNContent(new ByteArrayInputStream(bytes), (long) bytes.length, contentRange);
+    }
+
     @Test
     @TestSecurity(user = DEFAULT_CUSTOMER_ID)
     public void getDecisionVersionDMN() {
 
-        ByteArrayOutputStream b = new ByteArrayOutputStream();
-        b.writeBytes("<xml test=\"123\">foo</xml>".getBytes(StandardCharsets.UTF_8));
+        long version = 1L;
+        DecisionVersion dmnVersion = mockDMNVersion(version);
+
+        when(decisionLifecycle.getDMN(DEFAULT_CUSTOMER_ID, dmnVersion, null)).thenReturn(dmnContent("<xml test=\"123\">foo</xml>", null));
+
+        RestAssured.given()
+                .get("/decisions/" + DECISION_ID + "/versions/" + version + "/dmn")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .header("ETag", equalTo("\"ff576fa78715ffc6f9fa6d32c3bc9b9a\""))
+                .header("Accept-Ranges", equalTo("bytes"))
+                .body(containsString("123"));
+    }
+
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void getDecisionVersionDMN_notModified() {
+
+        long version = 1L;
+        DecisionVersion dmnVersion = mockDMNVersion(version);
+
+        RestAssured.given()
+                .header("If-None-Match", "\"ff576fa78715ffc6f9fa6d32c3bc9b9a\"")
+                .get("/decisions/" + DECISION_ID + "/versions/" + version + "/dmn")
+                .then()
+                .statusCode(Response.Status.NOT_MODIFIED.getStatusCode());
+
+        verify(decisionLifecycle, never()).getDMN(DEFAULT_CUSTOMER_ID, dmnVersion, null);
+    }
+
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void getDecisionVersionDMN_withoutMd5() {
+
+        long version = 1L;
+        DecisionVersion dmnVersion = mock(DecisionVersion.class);
+        when(decisionLifecycle.getVersion(DEFAULT_CUSTOMER_ID, DECISION_ID, version)).thenReturn(dmnVersion);
+        when(decisionLifecycle.getDMN(DEFAULT_CUSTOMER_ID, dmnVersion, null)).thenReturn(dmnContent("<xml test=\"123\">foo</xml>", null));
+
+        RestAssured.given()
+                .header("If-None-Match", "\"ff576fa78715ffc6f9fa6d32c3bc9b9a\"")
+                .get("/decisions/" + DECISION_ID + "/versions/" + version + "/dmn")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .header("ETag", nullValue())
+                .body(containsString("123"));
+    }
+
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void getDecisionVersionDMN_range() {
+
+        long version = 1L;
+        DecisionVersion dmnVersion = mockDMNVersion(version);
+
+        when(decisionLifecycle.getDMN(DEFAULT_CUSTOMER_ID, dmnVersion, "bytes=0-4")).thenReturn(dmnContent("<xml ", "bytes 0-4/25"));
+
+        RestAssured.given()
+                .header("Range", "bytes=0-4")
+                .get("/decisions/" + DECISION_ID + "/versions/" + version + "/dmn")
+                .then()
+                .statusCode(Response.Status.PARTIAL_CONTENT.getStatusCode())
+                .header("Content-Range", equalTo("bytes 0-4/25"))
+                .body(equalTo("<xml "));
+    }
+
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void getDecisionVersionDMN_multipleRangesIgnored() {
 
         long version = 1L;
+        DecisionVersion dmnVersion = mockDMNVersion(version);
 
-        when(decisionLifecycle.getDMN(DEFAULT_CUSTOMER_ID, DECISION_ID, version)).thenReturn(b);
+        when(decisionLifecycle.getDMN(DEFAULT_CUSTOMER_ID, dmnVersion, null)).thenReturn(dmnContent("<xml test=\"123\">foo</xml>", null));
 
         RestAssured.given()
+                .header("Range", "bytes=0-4,10-12")
                 .get("/decisions/" + DECISION_ID + "/versions/" + version + "/dmn")
                 .then()
                 .statusCode(Response.Status.OK.getStatusCode())
@@ -184,6 +281,72 @@ public class DecisionResourceTest {
         assertThat(decision, equalTo(decisionResponse));
     }
 
+    private DecisionResponse buildDecisionResponse(DecisionVersionStatus status) {
+        DecisionResponse response = buildDecisionResponse();
+        response.setStatus(status.name());
+        return response;
+    }
+
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void watchDecisionVersion_withoutTag() {
+        DecisionVersion version = mock(DecisionVersion.class);
+        DecisionResponse decisionResponse = buildDecisionResponse(DecisionVersionStatus.BUILDING);
+        long decisionVersion = 1L;
+
+        when(decisionLifecycle.getVersion(DEFAULT_CUSTOMER_ID, DECISION_ID, decisionVersion)).thenReturn(version);
+        when(decisionMapper.mapVersionToDecisionResponse(version)).thenReturn(decisionResponse);
+
+        DecisionResponse decision = RestAssured.given()
+                .get("/decisions/" + DECISION_ID + "/versions/" + decisionVersion + "/watch")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .header("ETag", equalTo("\"BUILDING\""))
+                .extract()
+                .as(DecisionResponse.class);
+
+        assertThat(decision, equalTo(decisionResponse));
+    }
+
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void watchDecisionVersion_notModified() {
+        DecisionVersion version = mock(DecisionVersion.class);
+        long decisionVersion = 1L;
+
+        when(decisionLifecycle.getVersion(DEFAULT_CUSTOMER_ID, DECISION_ID, decisionVersion)).thenReturn(version);
+        when(decisionMapper.mapVersionToDecisionResponse(version)).thenReturn(buildDecisionResponse(DecisionVersionStatus.BUILDING));
+
+        RestAssured.given()
+                .header("If-None-Match", "\"BUILDING\"")
+                .queryParam("wait", 1)
+                .get("/decisions/" + DECISION_ID + "/versions/" + decisionVersion + "/watch")
+                .then()
+                .statusCode(Response.Status.NOT_MODIFIED.getStatusCode());
+    }
+
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void watchDecisionVersion_changedWhilstStartingToWatch() {
+        DecisionVersion version = mock(DecisionVersion.class);
+        DecisionResponse deployed = buildDecisionResponse(DecisionVersionStatus.CURRENT);
+        long decisionVersion = 1L;
+
+        when(decisionLifecycle.getVersion(DEFAULT_CUSTOMER_ID, DECISION_ID, decisionVersion)).thenReturn(version);
+        when(decisionMapper.mapVersionToDecisionResponse(version)).thenReturn(buildDecisionResponse(DecisionVersionStatus.BUILDING), deployed);
+
+        DecisionResponse decision = RestAssured.given()
+                .header("If-None-Match", "\"BUILDING\"")
+                .get("/decisions/" + DECISION_ID + "/versions/" + decisionVersion + "/watch")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .header("ETag", equalTo("\"CURRENT\""))
+                .extract()
+                .as(DecisionResponse.class);
+
+        assertThat(decision, equalTo(deployed));
+    }
+
     @Test
     @TestSecurity(user = DEFAULT_CUSTOMER_ID)
     public void getBuildingVersion() {
@@ -229,10 +392,9 @@ public class DecisionResourceTest {
         ListResult<DecisionVersion> versions = mock(ListResult.class);
         DecisionResponseList responseList = mock(DecisionResponseList.class);
         ArgumentCaptor<ListResult<DecisionVersion>> decisionList = ArgumentCaptor.forClass(ListResult.class);
-        int page = 0;
         int size = 100;
 
-        when(decisionLifecycle.listDecisionVersions(DEFAULT_CUSTOMER_ID, DECISION_ID, page, size)).thenReturn(versions);
+        when(decisionLifecycle.listDecisionVersions(DEFAULT_CUSTOMER_ID, DECISION_ID, ListCursor.first(), size, false)).thenReturn(versions);
         when(decisionMapper.mapVersionsToDecisionResponseList(decisionList.capture())).thenReturn(responseList);
 
         DecisionResponseList decisions = RestAssured.given()
@@ -250,14 +412,13 @@ public class DecisionResourceTest {
     @TestSecurity(user = DEFAULT_CUSTOMER_ID)
     public void listDecisions() {
 
-        ListResult<Decision> listResult = mock(ListResult.class);
+        ListResult<DecisionSummary> listResult = mock(ListResult.class);
         DecisionResponseList responseList = mock(DecisionResponseList.class);
-        ArgumentCaptor<ListResult<Decision>> decisionList = ArgumentCaptor.forClass(ListResult.class);
+        ArgumentCaptor<ListResult<DecisionSummary>> decisionList = ArgumentCaptor.forClass(ListResult.class);
 
-        int page = 0;
         int size = 100;
 
-        when(decisionLifecycle.listDecisions(DEFAULT_CUSTOMER_ID, page, size)).thenReturn(listResult);
+        when(decisionLifecycle.listDecisions(DEFAULT_CUSTOMER_ID, ListCursor.first(), size, false)).thenReturn(listResult);
         when(decisionMapper.mapToDecisionResponseList(decisionList.capture())).thenReturn(responseList);
 
         DecisionResponseList decisions = RestAssured.given()
@@ -271,6 +432,46 @@ public class DecisionResourceTest {
         assertThat(responseList.getKind(), is(responseList.getKind()));
     }
 
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void listDecisions_withCursor() {
+
+        ListResult<DecisionSummary> listResult = mock(ListResult.class);
+        DecisionResponseList responseList = new DecisionResponseList();
+        responseList.setTotal(3L);
+        responseList.setNextCursor(ListCursor.after("robs-second-decision").encode());
+        ListCursor cursor = ListCursor.after("robs-first-decision");
+
+        when(decisionLifecycle.listDecisions(DEFAULT_CUSTOMER_ID, cursor, 1, true)).thenReturn(listResult);
+        when(decisionMapper.mapToDecisionResponseList(listResult)).thenReturn(responseList);
+
+        DecisionResponseList decisions = RestAssured.given()
+                .queryParam("cursor", cursor.encode())
+                .queryParam("size", 1)
+                .queryParam("total", true)
+                .get("/decisions")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .extract()
+                .as(DecisionResponseList.class);
+
+        assertThat(decisions.getTotal(), equalTo(3L));
+        assertThat(decisions.getNextCursor(), equalTo(responseList.getNextCursor()));
+    }
+
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void listDecisions_invalidCursor() {
+
+        RestAssured.given()
+                .queryParam("cursor", "not a cursor!")
+                .get("/decisions")
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
+
+        verify(decisionLifecycle, never()).listDecisions(any(), any(), anyInt(), anyBoolean());
+    }
+
     @Test
     @TestSecurity(user = DEFAULT_CUSTOMER_ID)
     public void createOrUpdateDecision() {
@@ -292,4 +493,78 @@ public class DecisionResourceTest {
         assertThat(decisionResponse.getId(), equalTo(DECISION_ID));
         assertThat(decisionResponse.getVersion(), equalTo(100L));
     }
+
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void createOrUpdateDecision_async() {
+        DecisionRequest decisionRequest = buildDecisionRequest();
+        DecisionResponse response = buildDecisionResponse();
+        response.setHref("http://localhost:8080/decisions/" + DECISION_ID + "/versions/100");
+
+        lenient().when(decisionLifecycle.createOrUpdateVersionAsync(DEFAULT_CUSTOMER_ID, decisionRequest)).thenReturn(decisionVersion);
+        lenient().when(decisionMapper.mapVersionToDecisionResponse(decisionVersion)).thenReturn(response);
+        DecisionResponse decisionResponse = RestAssured.given()
+                .body(decisionRequest)
+                .contentType(ContentType.JSON)
+                .header("Prefer", "respond-async")
+                .post("/decisions")
+                .then()
+                .statusCode(Response.Status.ACCEPTED.getStatusCode())
+                .header("Location", equalTo(response.getHref()))
+                .header("Preference-Applied", equalTo("respond-async"))
+                .extract()
+                .as(DecisionResponse.class);
+
+        assertThat(decisionResponse.getId(), equalTo(DECISION_ID));
+        verify(decisionLifecycle, never()).createOrUpdateVersion(DEFAULT_CUSTOMER_ID, decisionRequest);
+    }
+
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void createOrUpdateDecisions() {
+        DecisionRequest first = buildDecisionRequest();
+        DecisionRequest second = buildDecisionRequest();
+        second.setName("robs-second-decision");
+
+        DecisionBulkResult created = new DecisionBulkResult();
+        created.setName(first.getName());
+        created.setStatusCode(Response.Status.CREATED.getStatusCode());
+        created.setDecision(buildDecisionResponse());
+        DecisionBulkResult failed = new DecisionBulkResult();
+        failed.setName(second.getName());
+        failed.setStatusCode(Response.Status.BAD_REQUEST.getStatusCode());
+        failed.setError("Nope!");
+        DecisionBulkResponse response = new DecisionBulkResponse();
+        response.setItems(Arrays.asList(created, failed));
+
+        when(decisionLifecycle.createOrUpdateVersions(eq(DEFAULT_CUSTOMER_ID), anyList())).thenReturn(Collections.emptyList());
+        when(decisionMapper.mapOutcomesToDecisionBulkResponse(any())).thenReturn(response);
+
+        DecisionBulkResponse bulkResponse = RestAssured.given()
+                .body(Arrays.asList(first, second))
+                .contentType(ContentType.JSON)
+                .post("/decisions/bulk")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .extract()
+                .as(DecisionBulkResponse.class);
+
+        assertThat(bulkResponse.getItems().size(), equalTo(2));
+        assertThat(bulkResponse.getItems().get(0).getDecision().getId(), equalTo(DECISION_ID));
+        assertThat(bulkResponse.getItems().get(1).getStatusCode(), equalTo(Response.Status.BAD_REQUEST.getStatusCode()));
+        assertThat(bulkResponse.getItems().get(1).getError(), equalTo("Nope!"));
+    }
+
+    @Test
+    @TestSecurity(user = DEFAULT_CUSTOMER_ID)
+    public void createOrUpdateDecisions_empty() {
+        RestAssured.given()
+                .body(Collections.emptyList())
+                .contentType(ContentType.JSON)
+                .post("/decisions/bulk")
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
+
+        verify(decisionLifecycle, never()).createOrUpdateVersions(any(), any());
+    }
 }
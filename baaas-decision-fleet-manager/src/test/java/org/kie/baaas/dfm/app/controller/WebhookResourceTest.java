@@ -38,6 +38,8 @@ import org.kie.baaas.dfm.app.manager.DecisionLifecycleOrchestrator;
 import org.kie.baaas.dfm.app.manager.DecisionManager;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
 import org.kie.baaas.dfm.app.model.deployment.Deployment;
+import org.kie.baaas.dfm.app.storage.DecisionDMNStorage;
+import org.kie.baaas.dfm.app.storage.StagedDMN;
 import org.kie.baaas.dfm.app.vault.VaultService;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
@@ -97,6 +99,9 @@ public class WebhookResourceTest {
     @InjectMock
     VaultService vaultService;
 
+    @InjectMock
+    DecisionDMNStorage decisionDMNStorage;
+
     private static WireMockServer wireMockServer;
     private static final String SCENARIO_TIMEOUT = "timeout";
     private static final String TIMEOUT_STATE_1 = "timeout1";
@@ -199,7 +204,8 @@ public class WebhookResourceTest {
                 .path("id");
 
         DecisionVersion decisionVersion = new DecisionVersion();
-        Mockito.when(decisionManager.createOrUpdateVersion(any(), any())).thenReturn(decisionVersion);
+        Mockito.when(decisionDMNStorage.stageDMN(any(), any())).thenReturn(new StagedDMN("staging-location", "md5", "hash"));
+        Mockito.when(decisionManager.createOrUpdateVersion(any(), any(), any())).thenReturn(decisionVersion);
         Mockito.when(decisionManager.deployed(any(), any(), anyLong(), any())).thenReturn(decisionVersion);
         Mockito.when(decisionManager.failed(any(), any(), anyLong(), any())).thenReturn(decisionVersion);
         DecisionResponse decisionResponse = new DecisionResponse();
@@ -210,7 +216,7 @@ public class WebhookResourceTest {
         Mockito.when(clientFactory.createClientFor(any())).thenReturn(clientMock);
         DecisionRequest decisionRequest = new DecisionRequest();
         decisionRequest.setDescription("Mocked DecisionRequest");
-        decisionLifeCycleOrchestrator.createOrUpdateVersion("myCustomer", decisionRequest);
+        decisionLifeCycleOrchestrator.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, decisionRequest);
 
         // a total of 1 webhook is currently registered
         await().atMost(5, TimeUnit.SECONDS)
@@ -233,7 +239,7 @@ public class WebhookResourceTest {
                 .post("/webhooks")
                 .then()
                 .statusCode(200);
-        decisionLifeCycleOrchestrator.createOrUpdateVersion("myCustomer", decisionRequest);
+        decisionLifeCycleOrchestrator.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, decisionRequest);
         await().atMost(5, TimeUnit.SECONDS)
                 .pollInterval(1, TimeUnit.SECONDS)
                 .untilAsserted(() -> verify(1, postRequestedFor(urlEqualTo("/mywebhook2"))));
@@ -251,20 +257,20 @@ public class WebhookResourceTest {
                 .post("/webhooks")
                 .then()
                 .statusCode(200);
-        decisionLifeCycleOrchestrator.createOrUpdateVersion("myCustomer", decisionRequest);
+        decisionLifeCycleOrchestrator.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, decisionRequest);
         await().atMost(5, TimeUnit.SECONDS)
                 .pollInterval(1, TimeUnit.SECONDS)
                 .untilAsserted(() -> verify(2, postRequestedFor(urlEqualTo("/mywebhook"))));
         verify(1, postRequestedFor(urlEqualTo("/mywebhook2")));
 
         // one more callback for .deployed()
-        decisionLifeCycleOrchestrator.deployed("x", "x", 1L, new Deployment());
+        decisionLifeCycleOrchestrator.deployed(DEFAULT_CUSTOMER_ID, "x", 1L, new Deployment());
         await().atMost(5, TimeUnit.SECONDS)
                 .pollInterval(1, TimeUnit.SECONDS)
                 .untilAsserted(() -> verify(3, postRequestedFor(urlEqualTo("/mywebhook"))));
 
         // one more callback for .failed()
-        decisionLifeCycleOrchestrator.failed("x", "x", 1L, new Deployment());
+        decisionLifeCycleOrchestrator.failed(DEFAULT_CUSTOMER_ID, "x", 1L, new Deployment());
         await().atMost(5, TimeUnit.SECONDS)
                 .pollInterval(1, TimeUnit.SECONDS)
                 .untilAsserted(() -> verify(4, postRequestedFor(urlEqualTo("/mywebhook"))));
@@ -336,13 +342,14 @@ public class WebhookResourceTest {
                 .path("id");
 
         DecisionVersion decisionVersion = new DecisionVersion();
-        Mockito.when(decisionManager.createOrUpdateVersion(any(), any())).thenReturn(decisionVersion);
+        Mockito.when(decisionDMNStorage.stageDMN(any(), any())).thenReturn(new StagedDMN("staging-location", "md5", "hash"));
+        Mockito.when(decisionManager.createOrUpdateVersion(any(), any(), any())).thenReturn(decisionVersion);
         Mockito.when(fleetShardSelector.selectFleetShardForDeployment(any())).thenReturn(null);
         DecisionFleetShardClient clientMock = Mockito.mock(DecisionFleetShardClient.class);
         Mockito.when(clientFactory.createClientFor(any())).thenReturn(clientMock);
         DecisionRequest decisionRequest = new DecisionRequest();
         decisionRequest.setDescription("Mocked DecisionRequest");
-        decisionLifeCycleOrchestrator.createOrUpdateVersion("myCustomer", decisionRequest);
+        decisionLifeCycleOrchestrator.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, decisionRequest);
 
         // a total of 1 webhook is currently registered
         await().atMost(5, TimeUnit.SECONDS)
@@ -382,13 +389,14 @@ public class WebhookResourceTest {
                 .statusCode(200);
 
         DecisionVersion decisionVersion = new DecisionVersion();
-        Mockito.when(decisionManager.createOrUpdateVersion(any(), any())).thenReturn(decisionVersion);
+        Mockito.when(decisionDMNStorage.stageDMN(any(), any())).thenReturn(new StagedDMN("staging-location", "md5", "hash"));
+        Mockito.when(decisionManager.createOrUpdateVersion(any(), any(), any())).thenReturn(decisionVersion);
         Mockito.when(fleetShardSelector.selectFleetShardForDeployment(any())).thenReturn(null);
         DecisionFleetShardClient clientMock = Mockito.mock(DecisionFleetShardClient.class);
         Mockito.when(clientFactory.createClientFor(any())).thenReturn(clientMock);
         DecisionRequest decisionRequest = new DecisionRequest();
         decisionRequest.setDescription("Mocked DecisionRequest");
-        decisionLifeCycleOrchestrator.createOrUpdateVersion("myCustomer", decisionRequest);
+        decisionLifeCycleOrchestrator.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, decisionRequest);
 
         await().atMost(20, TimeUnit.SECONDS)
                 .pollInterval(1, TimeUnit.SECONDS)
@@ -418,13 +426,14 @@ public class WebhookResourceTest {
                 .statusCode(200);
 
         DecisionVersion decisionVersion = new DecisionVersion();
-        Mockito.when(decisionManager.createOrUpdateVersion(any(), any())).thenReturn(decisionVersion);
+        Mockito.when(decisionDMNStorage.stageDMN(any(), any())).thenReturn(new StagedDMN("staging-location", "md5", "hash"));
+        Mockito.when(decisionManager.createOrUpdateVersion(any(), any(), any())).thenReturn(decisionVersion);
         Mockito.when(fleetShardSelector.selectFleetShardForDeployment(any())).thenReturn(null);
         DecisionFleetShardClient clientMock = Mockito.mock(DecisionFleetShardClient.class);
         Mockito.when(clientFactory.createClientFor(any())).thenReturn(clientMock);
         DecisionRequest decisionRequest = new DecisionRequest();
         decisionRequest.setDescription("Mocked DecisionRequest");
-        decisionLifeCycleOrchestrator.createOrUpdateVersion("myCustomer", decisionRequest);
+        decisionLifeCycleOrchestrator.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, decisionRequest);
 
         await().atMost(10, TimeUnit.SECONDS)
                 .pollInterval(1, TimeUnit.SECONDS)
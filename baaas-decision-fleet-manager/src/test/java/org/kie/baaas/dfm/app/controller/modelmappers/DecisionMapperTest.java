@@ -26,11 +26,16 @@ import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.api.decisions.DecisionBulkResponse;
 import org.kie.baaas.dfm.api.decisions.DecisionResponse;
 import org.kie.baaas.dfm.api.decisions.DecisionResponseList;
+import org.kie.baaas.dfm.app.manager.DecisionLifecycleException;
+import org.kie.baaas.dfm.app.manager.DecisionVersionOutcome;
 import org.kie.baaas.dfm.app.model.Decision;
+import org.kie.baaas.dfm.app.model.DecisionSummary;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
 import org.kie.baaas.dfm.app.model.DecisionVersionStatus;
+import org.kie.baaas.dfm.app.model.ListCursor;
 import org.kie.baaas.dfm.app.model.ListResult;
 import org.kie.baaas.dfm.app.model.deployment.Deployment;
 import org.kie.baaas.dfm.app.model.eventing.KafkaConfig;
@@ -39,12 +44,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -62,8 +69,8 @@ public class DecisionMapperTest {
 
     @BeforeEach
     public void before() {
-        when(hrefGenerator.generateDecisionHref(any(DecisionVersion.class))).thenReturn(DECISION_VERSION_HREF);
-        when(hrefGenerator.generateDecisionDMNHref(any(DecisionVersion.class))).thenReturn(DECISION_VERSION_DMN_HREF);
+        when(hrefGenerator.generateDecisionHref(any(), anyLong())).thenReturn(DECISION_VERSION_HREF);
+        when(hrefGenerator.generateDecisionDMNHref(any(), anyLong())).thenReturn(DECISION_VERSION_DMN_HREF);
     }
 
     private Decision createDecision(String name) {
@@ -157,7 +164,8 @@ public class DecisionMapperTest {
         DecisionVersion version2 = createDecisionVersion(decision);
         version2.setVersion(2l);
 
-        List<DecisionVersion> versions = asList(version, version2);
+        // Versions are listed newest first by the DAO, and the mapper keeps that order
+        List<DecisionVersion> versions = asList(version2, version);
         ListResult<DecisionVersion> listResult = new ListResult<>(versions, 46L, 47L);
 
         DecisionResponseList responseList = decisionMapper.mapVersionsToDecisionResponseList(listResult);
@@ -181,22 +189,58 @@ public class DecisionMapperTest {
     }
 
     @Test
-    public void mapToDecisionResponseList() {
+    public void mapVersionsToDecisionResponseList_withNextCursor() {
 
+        Decision decision = createDecision("my-first-decision");
+        DecisionVersion version = createDecisionVersion(decision);
+
+        ListResult<DecisionVersion> listResult = new ListResult<>(singletonList(version), 0L, null, ListCursor.after("1"));
+
+        DecisionResponseList responseList = decisionMapper.mapVersionsToDecisionResponseList(listResult);
+        assertThat(responseList.getTotal(), is(nullValue()));
+        assertThat(responseList.getNextCursor(), equalTo(ListCursor.after("1").encode()));
+        assertThat(ListCursor.decode(responseList.getNextCursor()), equalTo(ListCursor.after("1")));
+    }
+
+    private DecisionSummary createDecisionSummary(Decision decision, DecisionVersion decisionVersion) {
+        DecisionSummary decisionSummary = new DecisionSummary(decision.getId(), decision.getName(), decisionVersion.getId(), decisionVersion.getVersion(),
+                decisionVersion.getDescription(), decisionVersion.getStatus(), decisionVersion.getSubmittedAt(), decisionVersion.getPublishedAt(),
+                decisionVersion.getDmnMd5(), decisionVersion.getDeployment().getCurrentUrl(), decisionVersion.getDeployment().getVersionUrl(),
+                decisionVersion.getDeployment().getStatusMessage(), null, null, null);
+        decisionSummary.getTags().putAll(decisionVersion.getTags());
+        decisionSummary.getConfiguration().putAll(decisionVersion.getConfiguration());
+        return decisionSummary;
+    }
+
+    @Test
+    public void mapSummaryToDecisionResponse_isTheSameAsTheCurrentVersion() {
         Decision decision = createDecision("my-first-decision");
         DecisionVersion decisionVersion = createDecisionVersion(decision);
+        decisionVersion.setStatus(DecisionVersionStatus.CURRENT);
         decision.setCurrentVersion(decisionVersion);
 
+        DecisionResponse response = decisionMapper.mapSummaryToDecisionResponse(createDecisionSummary(decision, decisionVersion));
+        assertDecisionResponse(response, decision, decisionVersion, false);
+        assertThat(response.getCurrentEndpoint(), equalTo(decisionVersion.getDeployment().getCurrentUrl()));
+        assertThat(response.getId(), equalTo(decision.getId()));
+    }
+
+    @Test
+    public void mapToDecisionResponseList() {
+
+        Decision decision = createDecision("my-first-decision");
+        DecisionVersion decisionVersion = createDecisionVersion(decision);
+
         Decision decision2 = createDecision("my-second-decision");
         DecisionVersion decisionVersion2 = createDecisionVersion(decision2);
 
+        // The Decisions are listed by name, which must not be re-ordered by when their versions were submitted
         ZonedDateTime latest = ZonedDateTime.of(LocalDate.of(3000, 2, 20), LocalTime.of(12, 0, 0), ZoneOffset.UTC);
         assertThat(latest.getYear(), equalTo(3000));
         decisionVersion2.setSubmittedAt(latest);
-        decision2.setCurrentVersion(decisionVersion2);
 
-        List<Decision> decisions = asList(decision, decision2);
-        ListResult<Decision> listResult = new ListResult<>(decisions, 46L, 47L);
+        List<DecisionSummary> decisions = asList(createDecisionSummary(decision, decisionVersion), createDecisionSummary(decision2, decisionVersion2));
+        ListResult<DecisionSummary> listResult = new ListResult<>(decisions, 46L, 47L);
 
         DecisionResponseList responseList = decisionMapper.mapToDecisionResponseList(listResult);
         assertThat(responseList, is(notNullValue()));
@@ -204,7 +248,45 @@ public class DecisionMapperTest {
         assertThat(responseList.getPage(), equalTo(46L));
         assertThat(responseList.getTotal(), equalTo(47L));
 
-        assertDecisionResponse(responseList.getItems().get(0), decision2, decisionVersion2, false);
-        assertDecisionResponse(responseList.getItems().get(1), decision, decisionVersion, false);
+        assertDecisionResponse(responseList.getItems().get(0), decision, decisionVersion, false);
+        assertDecisionResponse(responseList.getItems().get(1), decision2, decisionVersion2, false);
+    }
+
+    @Test
+    public void mapOutcomesToDecisionBulkResponse() {
+        Decision decision = createDecision("my-first-decision");
+        DecisionVersion decisionVersion = createDecisionVersion(decision);
+
+        List<DecisionVersionOutcome> outcomes = asList(
+                DecisionVersionOutcome.succeeded("my-first-decision", decisionVersion),
+                DecisionVersionOutcome.failed("my-second-decision", new DecisionLifecycleException("Nope!")),
+                DecisionVersionOutcome.failed("my-third-decision", new IllegalStateException("Boom!")));
+
+        DecisionBulkResponse response = decisionMapper.mapOutcomesToDecisionBulkResponse(outcomes);
+        assertThat(response.getItems().size(), equalTo(3));
+
+        assertThat(response.getItems().get(0).getName(), equalTo("my-first-decision"));
+        assertThat(response.getItems().get(0).getStatusCode(), equalTo(201));
+        assertDecisionResponse(response.getItems().get(0).getDecision(), decision, decisionVersion, false);
+
+        assertThat(response.getItems().get(1).getName(), equalTo("my-second-decision"));
+        assertThat(response.getItems().get(1).getStatusCode(), equalTo(400));
+        assertThat(response.getItems().get(1).getError(), equalTo("Nope!"));
+        assertThat(response.getItems().get(1).getDecision(), is(nullValue()));
+
+        assertThat(response.getItems().get(2).getStatusCode(), equalTo(500));
+        assertThat(response.getItems().get(2).getError(), equalTo("Boom!"));
+    }
+
+    @Test
+    public void mapOutcomesToDecisionBulkResponse_deferred() {
+        Decision decision = createDecision("my-first-decision");
+        DecisionVersion decisionVersion = createDecisionVersion(decision);
+
+        DecisionBulkResponse response = decisionMapper.mapOutcomesToDecisionBulkResponse(asList(DecisionVersionOutcome.deferred("my-first-decision", decisionVersion)));
+
+        assertThat(response.getItems().get(0).getStatusCode(), equalTo(202));
+        assertThat(response.getItems().get(0).getError(), is(nullValue()));
+        assertDecisionResponse(response.getItems().get(0).getDecision(), decision, decisionVersion, false);
     }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.query.Query;
+import org.junit.jupiter.api.Test;
+
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Guards the plans of the hot named queries against regressions. Each test has Hibernate translate the named query
+ * to the SQL it runs, runs EXPLAIN over that SQL and asserts that the expected index is used, or at least that no
+ * table is read with a full scan.
+ * <p>
+ * H2 creates an index for every foreign key that no other index covers, whereas PostgreSQL does not. Where such an
+ * index is as good as the one created by the migrations, H2 may use either, so the test only asserts that one of the
+ * indexes on the column is used.
+ */
+@QuarkusTest
+public class QueryPlanTest {
+
+    private static final String TABLE_SCAN = "tableScan";
+
+    @Inject
+    EntityManager entityManager;
+
+    private String sqlOf(String namedQuery) {
+        String hql = entityManager.createNamedQuery(namedQuery).unwrap(Query.class).getQueryString();
+        SessionFactoryImplementor sessionFactory = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+        String[] sql = sessionFactory.getQueryPlanCache().getHQLQueryPlan(hql, false, Collections.emptyMap()).getSqlStrings();
+        assertThat(sql, arrayWithSize(1));
+        return sql[0];
+    }
+
+    private String explain(String namedQuery) {
+        String sql = sqlOf(namedQuery);
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                // The plan does not depend on the values of the parameters
+                for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+                    statement.setObject(i, null);
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getString(1);
+                }
+            }
+        });
+    }
+
+    private String assertNoTableScan(String namedQuery) {
+        String plan = explain(namedQuery);
+        assertThat(plan, not(containsString(TABLE_SCAN)));
+        return plan;
+    }
+
+    private void assertUsesIndex(String plan, String index) {
+        assertThat(plan, containsString("PUBLIC." + index));
+    }
+
+    private void assertUsesIndexOn(String plan, String table, String column) {
+        List<String> indexes = indexesOn(table, column);
+        assertThat("Plan uses one of " + indexes + ": " + plan, indexes.stream().anyMatch(index -> plan.contains("PUBLIC." + index)), is(true));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> indexesOf(String table) {
+        return entityManager.createNativeQuery("SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME = '" + table + "'").getResultList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> indexesOn(String table, String column) {
+        return entityManager.createNativeQuery("SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME = '" + table + "' AND COLUMN_NAME = '" + column + "'")
+                .getResultList();
+    }
+
+    @Test
+    @TestTransaction
+    public void migration_createsIndexes() {
+        assertThat(indexesOf("DECISION_VERSION"), hasItems("DECISION_VERSION_DECISION_ID_VERSION_IDX", "DECISION_VERSION_DMN_HASH_IDX"));
+        assertThat(indexesOf("DECISION_VERSION_TAG"), hasItems("DECISION_VERSION_TAG_DECISION_VERSION_ID_IDX"));
+        assertThat(indexesOf("DECISION_VERSION_CONFIG"), hasItems("DECISION_VERSION_CONFIG_DECISION_VERSION_ID_IDX"));
+        assertThat(indexesOf("WEBHOOK"), hasItems("WEBHOOK_CUSTOMER_ID_IDX"));
+        assertThat(indexesOf("STORED_DMN"), hasItems("STORED_DMN_STAGED_AT_IDX"));
+    }
+
+    @Test
+    @TestTransaction
+    public void decisionByCustomerIdAndName() {
+        assertNoTableScan("Decision.byCustomerIdAndName");
+    }
+
+    @Test
+    @TestTransaction
+    public void listCurrentSummariesByCustomerAfter() {
+        assertNoTableScan("DecisionVersion.listCurrentSummariesByCustomerAfter");
+    }
+
+    @Test
+    @TestTransaction
+    public void tagsByIds() {
+        String plan = assertNoTableScan("DecisionVersion.tagsByIds");
+        assertUsesIndexOn(plan, "DECISION_VERSION_TAG", "DECISION_VERSION_ID");
+    }
+
+    @Test
+    @TestTransaction
+    public void configurationByIds() {
+        String plan = assertNoTableScan("DecisionVersion.configurationByIds");
+        assertUsesIndexOn(plan, "DECISION_VERSION_CONFIG", "DECISION_VERSION_ID");
+    }
+
+    @Test
+    @TestTransaction
+    public void listIdsByDecisionNameAfter() {
+        String plan = assertNoTableScan("DecisionVersion.listIdsByDecisionNameAfter");
+        assertUsesIndex(plan, "DECISION_VERSION_DECISION_ID_VERSION_IDX");
+    }
+
+    @Test
+    @TestTransaction
+    public void listByIds() {
+        String plan = assertNoTableScan("DecisionVersion.listByIds");
+        assertUsesIndexOn(plan, "DECISION_VERSION_TAG", "DECISION_VERSION_ID");
+        assertUsesIndexOn(plan, "DECISION_VERSION_CONFIG", "DECISION_VERSION_ID");
+    }
+
+    @Test
+    @TestTransaction
+    public void byCustomerDecisionNameAndVersion() {
+        String plan = assertNoTableScan("DecisionVersion.byCustomerDecisionNameAndVersion");
+        assertUsesIndexOn(plan, "DECISION_VERSION", "DECISION_ID");
+        assertUsesIndexOn(plan, "DECISION_VERSION_TAG", "DECISION_VERSION_ID");
+        assertUsesIndexOn(plan, "DECISION_VERSION_CONFIG", "DECISION_VERSION_ID");
+    }
+
+    @Test
+    @TestTransaction
+    public void countByCustomerAndDmnHash() {
+        assertNoTableScan("DecisionVersion.countByCustomerAndDmnHash");
+    }
+
+    @Test
+    @TestTransaction
+    public void storedDMNUnreferencedBefore() {
+        assertNoTableScan("StoredDMN.unreferencedBefore");
+    }
+
+    @Test
+    @TestTransaction
+    public void webhookByCustomerId() {
+        String plan = assertNoTableScan("Webhook.byCustomerId");
+        assertUsesIndex(plan, "WEBHOOK_CUSTOMER_ID_IDX");
+    }
+
+    @Test
+    @TestTransaction
+    public void deploymentOutboxDue() {
+        assertNoTableScan("DeploymentOutboxEntry.due");
+    }
+}
@@ -15,6 +15,9 @@
 
 package org.kie.baaas.dfm.app.dfs.client;
 
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -24,9 +27,17 @@ import org.kie.baaas.dfm.app.model.DecisionFleetShard;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,11 +49,19 @@ public class DecisionDecisionDecisionFleetShardClientFactoryTest {
     @Mock
     private DecisionFleetManagerConfig config;
 
+    private MeterRegistry meterRegistry;
+
     private DecisionFleetShardClientFactory factory;
 
     @BeforeEach
     public void before() {
-        factory = new DecisionFleetShardClientFactory(config);
+        meterRegistry = new SimpleMeterRegistry();
+        factory = new DecisionFleetShardClientFactory(config, meterRegistry, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    public void after() {
+        factory.close();
     }
 
     @Test
@@ -53,4 +72,30 @@ public class DecisionDecisionDecisionFleetShardClientFactoryTest {
         DecisionFleetShardClient controlPlaneClient = factory.createClientFor(fleetShard);
         assertThat(controlPlaneClient, is(notNullValue()));
     }
+
+    @Test
+    public void createClientFor_reusesKubernetesClient() {
+        when(fleetShard.getId()).thenReturn(1);
+        when(fleetShard.getKubernetesApiUrl()).thenReturn("https://kube.baaas.redhat.com");
+
+        KubernetesClient client = factory.getKubernetesClient(fleetShard);
+
+        assertThat(factory.getKubernetesClient(fleetShard), is(sameInstance(client)));
+        assertThat(meterRegistry.get(DecisionFleetShardClientFactory.CONNECTIONS).tag("shard", "1").gauge().value(), equalTo(0.0));
+    }
+
+    @Test
+    public void createClientFor_replacesKubernetesClientWhenUrlChanges() {
+        when(fleetShard.getId()).thenReturn(1);
+        when(fleetShard.getKubernetesApiUrl()).thenReturn("https://kube.baaas.redhat.com");
+        DefaultKubernetesClient client = (DefaultKubernetesClient) factory.getKubernetesClient(fleetShard);
+
+        when(fleetShard.getKubernetesApiUrl()).thenReturn("https://kube2.baaas.redhat.com");
+        KubernetesClient replacement = factory.getKubernetesClient(fleetShard);
+
+        assertThat(replacement, is(not(sameInstance(client))));
+        assertThat(replacement.getMasterUrl().getHost(), equalTo("kube2.baaas.redhat.com"));
+        assertThat(client.getHttpClient().dispatcher().executorService().isShutdown(), is(true));
+        assertThat(meterRegistry.get(DecisionFleetShardClientFactory.CONNECTIONS).gauges().size(), equalTo(1));
+    }
 }
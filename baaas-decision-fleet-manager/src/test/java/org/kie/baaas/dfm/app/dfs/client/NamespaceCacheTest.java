@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.dfs.client;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.NamespaceBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class NamespaceCacheTest {
+
+    private static final String NAMESPACE = "baaas-dfs";
+
+    @Mock(answer = RETURNS_DEEP_STUBS)
+    KubernetesClient kubernetesClient;
+
+    @Mock
+    Watch watch;
+
+    private Namespace namespace() {
+        return new NamespaceBuilder().withNewMetadata().withName(NAMESPACE).and().build();
+    }
+
+    @Test
+    public void exists_cachesExistingNamespace() {
+        when(kubernetesClient.namespaces().withName(NAMESPACE).get()).thenReturn(namespace());
+        when(kubernetesClient.namespaces().watch(any(Watcher.class))).thenReturn(watch);
+        NamespaceCache namespaceCache = new NamespaceCache(kubernetesClient, Duration.ofMinutes(5));
+
+        assertThat(namespaceCache.exists(NAMESPACE), is(true));
+        assertThat(namespaceCache.exists(NAMESPACE), is(true));
+
+        verify(kubernetesClient.namespaces().withName(NAMESPACE), times(1)).get();
+
+        namespaceCache.close();
+        verify(watch).close();
+    }
+
+    @Test
+    public void exists_doesNotCacheMissingNamespace() {
+        when(kubernetesClient.namespaces().withName(NAMESPACE).get()).thenReturn(null, namespace());
+        when(kubernetesClient.namespaces().watch(any(Watcher.class))).thenReturn(watch);
+        NamespaceCache namespaceCache = new NamespaceCache(kubernetesClient, Duration.ofMinutes(5));
+
+        assertThat(namespaceCache.exists(NAMESPACE), is(false));
+        assertThat(namespaceCache.exists(NAMESPACE), is(true));
+
+        verify(kubernetesClient.namespaces().withName(NAMESPACE), times(2)).get();
+    }
+
+    @Test
+    public void exists_deletedNamespaceIsForgotten() {
+        when(kubernetesClient.namespaces().withName(NAMESPACE).get()).thenReturn(namespace(), (Namespace) null);
+        when(kubernetesClient.namespaces().watch(any(Watcher.class))).thenReturn(watch);
+        NamespaceCache namespaceCache = new NamespaceCache(kubernetesClient, Duration.ofMinutes(5));
+
+        assertThat(namespaceCache.exists(NAMESPACE), is(true));
+
+        ArgumentCaptor<Watcher<Namespace>> watcherCaptor = ArgumentCaptor.forClass(Watcher.class);
+        verify(kubernetesClient.namespaces()).watch(watcherCaptor.capture());
+        watcherCaptor.getValue().eventReceived(Watcher.Action.DELETED, namespace());
+
+        assertThat(namespaceCache.exists(NAMESPACE), is(false));
+    }
+
+    @Test
+    public void exists_cachesWithoutWatch() {
+        when(kubernetesClient.namespaces().withName(NAMESPACE).get()).thenReturn(namespace());
+        when(kubernetesClient.namespaces().watch(any(Watcher.class))).thenThrow(new KubernetesClientException("Forbidden"));
+        NamespaceCache namespaceCache = new NamespaceCache(kubernetesClient, Duration.ofMinutes(5));
+
+        assertThat(namespaceCache.exists(NAMESPACE), is(true));
+        assertThat(namespaceCache.exists(NAMESPACE), is(true));
+
+        verify(kubernetesClient.namespaces(), times(1)).watch(any(Watcher.class));
+        verify(kubernetesClient.namespaces().withName(NAMESPACE), times(1)).get();
+    }
+
+    @Test
+    public void exists_zeroTtlDisablesCache() {
+        when(kubernetesClient.namespaces().withName(NAMESPACE).get()).thenReturn(namespace());
+        NamespaceCache namespaceCache = new NamespaceCache(kubernetesClient, Duration.ZERO);
+
+        assertThat(namespaceCache.exists(NAMESPACE), is(true));
+        assertThat(namespaceCache.exists(NAMESPACE), is(true));
+
+        verify(kubernetesClient.namespaces().withName(NAMESPACE), times(2)).get();
+        verify(kubernetesClient.namespaces(), never()).watch(any(Watcher.class));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kie.baaas.dfm.api.decisions.DecisionResponse;
+import org.kie.baaas.dfm.app.event.AfterDeployedEvent;
+import org.kie.baaas.dfm.app.event.AfterFailedEvent;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class ListenerManagerTest {
+
+    private ListenerManager listenerManager;
+
+    private final List<String> notified = new ArrayList<>();
+
+    @BeforeEach
+    public void beforeEach() {
+        listenerManager = new ListenerManager();
+    }
+
+    private Listener listener(String name) {
+        return event -> notified.add(name);
+    }
+
+    private Listener listener(String name, Class<? extends Event> eventType) {
+        return new Listener() {
+            @Override
+            public void onEvent(Event event) {
+                notified.add(name);
+            }
+
+            @Override
+            public Set<Class<? extends Event>> getEventTypes() {
+                return Set.of(eventType);
+            }
+        };
+    }
+
+    private static Event deployed(String customerId) {
+        return new AfterDeployedEvent(customerId, new DecisionResponse());
+    }
+
+    @Test
+    public void notifyListeners_onlyNotifiesSubscribedListeners() {
+        listenerManager.addListener(listener("all"));
+        listenerManager.addListener(listener("deployed", AfterDeployedEvent.class));
+        listenerManager.addListener("customer-a", "failed", listener("failed", AfterFailedEvent.class));
+
+        listenerManager.notifyListeners(deployed("customer-a"));
+
+        assertThat(notified, containsInAnyOrder("all", "deployed"));
+    }
+
+    @Test
+    public void addListener_replacesListenerWithSameId() {
+        listenerManager.addListener("customer-a", "webhook-1", listener("first"));
+        listenerManager.addListener("customer-a", "webhook-1", listener("second"));
+        listenerManager.addListener("customer-b", "webhook-1", listener("other customer"));
+
+        listenerManager.notifyListeners(deployed("customer-a"));
+
+        assertThat(notified, contains("second"));
+    }
+
+    @Test
+    public void notifyListeners_routesEventsToListenersOfTheirCustomer() {
+        listenerManager.addListener(listener("global"));
+        listenerManager.addListener("customer-a", "webhook-1", listener("a1"));
+        listenerManager.addListener("customer-b", "webhook-1", listener("b1"));
+
+        listenerManager.notifyListeners(deployed("customer-b"));
+        assertThat(notified, containsInAnyOrder("global", "b1"));
+
+        notified.clear();
+        listenerManager.notifyListeners(deployed("customer-c"));
+        assertThat(notified, contains("global"));
+
+        notified.clear();
+        listenerManager.notifyListeners(new AfterDeployedEvent());
+        assertThat(notified, contains("global"));
+    }
+
+    @Test
+    public void removeListener_byCustomerAndId() {
+        Listener listener = listener("a1");
+        listenerManager.addListener("customer-a", "webhook-1", listener);
+        listenerManager.addListener("customer-a", "webhook-2", listener("a2"));
+
+        assertThat(listenerManager.removeListener("customer-a", "webhook-1").orElse(null), equalTo(listener));
+        assertThat(listenerManager.removeListener("customer-b", "webhook-2").isPresent(), is(false));
+
+        listenerManager.notifyListeners(deployed("customer-a"));
+        assertThat(notified, contains("a2"));
+
+        listenerManager.removeListener("customer-a", "webhook-2");
+        assertThat(listenerManager.hasListeners(), is(false));
+        assertThat(listenerManager.getListeners(), is(empty()));
+    }
+
+    @Test
+    public void notifyListeners_dispatchesToSnapshot() {
+        listenerManager.addListener("customer-a", "webhook-1", event -> {
+            notified.add("a1");
+            // Registration while dispatching takes effect for the next event
+            listenerManager.removeListener("customer-a", "webhook-1");
+            listenerManager.addListener("customer-a", "webhook-2", listener("a2"));
+        });
+
+        listenerManager.notifyListeners(deployed("customer-a"));
+        assertThat(notified, contains("a1"));
+
+        listenerManager.notifyListeners(deployed("customer-a"));
+        assertThat(notified, contains("a1", "a2"));
+    }
+}
@@ -67,6 +67,7 @@ class ManagedServicesClientTest {
     void setUp() {
         wireMock = new WireMock(port);
         wireMock.resetRequests();
+        client.clearIndex();
     }
 
     @Test
@@ -97,6 +98,32 @@ class ManagedServicesClientTest {
         wireMock.verifyThat(1, postRequestedFor(urlEqualTo("/api/kafkas_mgmt/v1/service_accounts/id-5/reset_credentials")));
     }
 
+    @Test
+    void testResetIndexedServiceAccountCredentials() {
+
+        client.createOrReplaceServiceAccount("name-5");
+        Secret secret = client.createOrReplaceServiceAccount("name-5");
+
+        assertThat(secret.getId(), is("name-5"));
+        wireMock.verifyThat(1, getRequestedFor(urlEqualTo("/api/kafkas_mgmt/v1/service_accounts")));
+        wireMock.verifyThat(2, postRequestedFor(urlEqualTo("/api/kafkas_mgmt/v1/service_accounts/id-5/reset_credentials")));
+    }
+
+    @Test
+    void testCreateServiceAccountDeletedSinceIndexed() {
+
+        client.createOrReplaceServiceAccount("foo");
+        wireMock.resetRequests();
+
+        // The reset_credentials endpoint of the created Service Account is not stubbed, so it is not found
+        Secret secret = client.createOrReplaceServiceAccount("foo");
+
+        assertThat(secret.getId(), is("name-foo"));
+        wireMock.verifyThat(0, getRequestedFor(urlEqualTo("/api/kafkas_mgmt/v1/service_accounts")));
+        wireMock.verifyThat(1, postRequestedFor(urlEqualTo("/api/kafkas_mgmt/v1/service_accounts/id-foo/reset_credentials")));
+        wireMock.verifyThat(1, postRequestedFor(urlEqualTo("/api/kafkas_mgmt/v1/service_accounts")));
+    }
+
     @Test
     void testErrorResetServiceAccountCredentials() {
         assertThrows(ManagedServicesException.class,
@@ -15,8 +15,12 @@
 
 package org.kie.baaas.dfm.app.manager;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import org.eclipse.microprofile.context.ManagedExecutor;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.kie.baaas.dfm.api.decisions.DecisionRequest;
@@ -32,11 +36,17 @@ import org.kie.baaas.dfm.app.managedservices.ManagedServicesException;
 import org.kie.baaas.dfm.app.model.Decision;
 import org.kie.baaas.dfm.app.model.DecisionFleetShard;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
+import org.kie.baaas.dfm.app.model.DecisionVersionStatus;
+import org.kie.baaas.dfm.app.model.DeploymentOutboxEntry;
 import org.kie.baaas.dfm.app.model.deployment.Deployment;
 import org.kie.baaas.dfm.app.model.eventing.KafkaConfig;
 import org.kie.baaas.dfm.app.storage.DecisionDMNStorage;
+import org.kie.baaas.dfm.app.storage.DecisionDMNStorageException;
+import org.kie.baaas.dfm.app.storage.StagedDMN;
 import org.kie.baaas.dfm.app.vault.Secret;
 import org.kie.baaas.dfm.app.vault.VaultService;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -49,10 +59,13 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -83,12 +96,21 @@ public class DecisionLifecycleOrchestratorTest {
     @SuppressWarnings("unused")
     private ListenerManager listenerManager;
 
-    @Mock
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     VaultService vaultService;
 
     @Mock
     ManagedServicesClient managedServicesClient;
 
+    @Mock
+    ManagedExecutor executorService;
+
+    @Mock
+    DeploymentScheduler deploymentScheduler;
+
+    @Mock
+    DeploymentOutbox deploymentOutbox;
+
     @InjectMocks
     private DecisionLifecycleOrchestrator orchestrator;
 
@@ -100,7 +122,9 @@ public class DecisionLifecycleOrchestratorTest {
         Decision decision = mock(Decision.class);
 
         when(decisionVersion.getDecision()).thenReturn(decision);
-        when(decisionManager.createOrUpdateVersion(customerId, request)).thenReturn(decisionVersion);
+        StagedDMN stagedDMN = new StagedDMN("staging-location", "md5", "hash");
+        when(decisionDMNStorage.stageDMN(customerId, request)).thenReturn(stagedDMN);
+        when(decisionManager.createOrUpdateVersion(customerId, request, stagedDMN)).thenReturn(decisionVersion);
         when(selector.selectFleetShardForDeployment(decision)).thenReturn(fleetShard);
         when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
 
@@ -108,10 +132,53 @@ public class DecisionLifecycleOrchestratorTest {
         assertThat(created, is(notNullValue()));
         assertThat(created, equalTo(decisionVersion));
 
+        verify(decisionDMNStorage).promoteDMN(customerId, stagedDMN, decisionVersion);
         verify(client).deploy(decisionVersion);
+        verify(deploymentOutbox).complete(decisionVersion.getId());
         verifyNoInteractions(vaultService);
     }
 
+    @Test
+    public void createOrUpdateDecision_discardsStagedDMNWhenVersionNotRecorded() {
+        String customerId = "foo";
+        DecisionRequest request = mock(DecisionRequest.class);
+        StagedDMN stagedDMN = new StagedDMN("staging-location", "md5", "hash");
+
+        when(decisionDMNStorage.stageDMN(customerId, request)).thenReturn(stagedDMN);
+        when(decisionManager.createOrUpdateVersion(customerId, request, stagedDMN)).thenThrow(new DecisionLifecycleException("Nope!"));
+
+        assertThrows(DecisionLifecycleException.class, () -> orchestrator.createOrUpdateVersion(customerId, request));
+
+        verify(decisionDMNStorage).discardDMN(stagedDMN);
+        verify(decisionDMNStorage, never()).promoteDMN(anyString(), any(StagedDMN.class), any(DecisionVersion.class));
+        verifyNoInteractions(client);
+    }
+
+    @Test
+    public void createOrUpdateDecision_recordsFailureWhenDMNNotPromoted() {
+        String customerId = "foo";
+        String decisionId = "bob";
+        long version = 1l;
+        DecisionRequest request = mock(DecisionRequest.class);
+        DecisionVersion decisionVersion = mock(DecisionVersion.class);
+        when(decisionVersion.getVersion()).thenReturn(version);
+        Decision decision = mock(Decision.class);
+        when(decision.getId()).thenReturn(decisionId);
+        when(decisionVersion.getDecision()).thenReturn(decision);
+
+        StagedDMN stagedDMN = new StagedDMN("staging-location", "md5", "hash");
+        when(decisionDMNStorage.stageDMN(customerId, request)).thenReturn(stagedDMN);
+        when(decisionManager.createOrUpdateVersion(customerId, request, stagedDMN)).thenReturn(decisionVersion);
+        doThrow(new DecisionDMNStorageException("Nope!")).when(decisionDMNStorage).promoteDMN(customerId, stagedDMN, decisionVersion);
+
+        assertThrows(DecisionFleetManagerException.class, () -> orchestrator.createOrUpdateVersion(customerId, request));
+
+        verify(decisionDMNStorage).discardDMN(stagedDMN);
+        verify(decisionManager).failed(eq(customerId), eq(decisionId), eq(version), any(Deployment.class));
+        verify(deploymentOutbox).complete(decisionVersion.getId());
+        verifyNoInteractions(client);
+    }
+
     @Test
     public void createOrUpdateDecisionNewServiceAccount() {
         String customerId = "foo";
@@ -125,7 +192,9 @@ public class DecisionLifecycleOrchestratorTest {
         when(request.getEventing()).thenReturn(eventing);
         when(decisionVersion.getDecision()).thenReturn(decision);
         when(decisionVersion.getKafkaConfig()).thenReturn(new KafkaConfig());
-        when(decisionManager.createOrUpdateVersion(customerId, request)).thenReturn(decisionVersion);
+        StagedDMN stagedDMN = new StagedDMN("staging-location", "md5", "hash");
+        when(decisionDMNStorage.stageDMN(customerId, request)).thenReturn(stagedDMN);
+        when(decisionManager.createOrUpdateVersion(customerId, request, stagedDMN)).thenReturn(decisionVersion);
         when(selector.selectFleetShardForDeployment(decision)).thenReturn(fleetShard);
         when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
         Secret secret = new Secret().setId(saName).setValues(Map.of(ManagedServicesClient.CLIENT_ID, "foo", ManagedServicesClient.CLIENT_SECRET, "bar"));
@@ -148,18 +217,27 @@ public class DecisionLifecycleOrchestratorTest {
         DecisionRequest request = mock(DecisionRequest.class);
 
         DecisionVersion decisionVersion = mock(DecisionVersion.class);
+        when(decisionVersion.getId()).thenReturn("version-id");
+        when(decisionVersion.getVersion()).thenReturn(1L);
+        Decision decision = mock(Decision.class);
+        when(decision.getId()).thenReturn("bob");
+        when(decisionVersion.getDecision()).thenReturn(decision);
 
         Eventing eventing = new Eventing();
         eventing.setKafka(new Kafka());
         when(request.getEventing()).thenReturn(eventing);
         when(decisionVersion.getKafkaConfig()).thenReturn(new KafkaConfig());
-        when(decisionManager.createOrUpdateVersion(customerId, request)).thenReturn(decisionVersion);
+        StagedDMN stagedDMN = new StagedDMN("staging-location", "md5", "hash");
+        when(decisionDMNStorage.stageDMN(customerId, request)).thenReturn(stagedDMN);
+        when(decisionManager.createOrUpdateVersion(customerId, request, stagedDMN)).thenReturn(decisionVersion);
         when(managedServicesClient.createOrReplaceServiceAccount(anyString()))
                 .thenThrow(new ManagedServicesException("some error", new ApiException("api error")));
 
         assertThrows(ManagedServicesException.class, () -> orchestrator.createOrUpdateVersion(customerId, request));
 
         verifyNoInteractions(client);
+        verify(decisionManager).failed(eq(customerId), eq("bob"), eq(1L), any(Deployment.class));
+        verify(deploymentOutbox).complete("version-id");
         verify(vaultService, times(1)).get(eq(saName));
         verify(managedServicesClient, times(1)).createOrReplaceServiceAccount(eq(saName));
         verify(vaultService, times(0)).create(any(Secret.class));
@@ -181,7 +259,9 @@ public class DecisionLifecycleOrchestratorTest {
         when(request.getEventing()).thenReturn(eventing);
         when(decisionVersion.getDecision()).thenReturn(decision);
         when(decisionVersion.getKafkaConfig()).thenReturn(new KafkaConfig());
-        when(decisionManager.createOrUpdateVersion(customerId, request)).thenReturn(decisionVersion);
+        StagedDMN stagedDMN = new StagedDMN("staging-location", "md5", "hash");
+        when(decisionDMNStorage.stageDMN(customerId, request)).thenReturn(stagedDMN);
+        when(decisionManager.createOrUpdateVersion(customerId, request, stagedDMN)).thenReturn(decisionVersion);
         when(selector.selectFleetShardForDeployment(decision)).thenReturn(fleetShard);
         when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
         when(vaultService.get(anyString())).thenReturn(new Secret());
@@ -193,6 +273,347 @@ public class DecisionLifecycleOrchestratorTest {
 
         verify(decisionManager).failed(eq(customerId), eq(decisionId), eq(version), any(Deployment.class));
         verify(vaultService, times(1)).get(eq("daas-" + customerId + "-credentials"));
+        verify(deploymentOutbox).complete(decisionVersion.getId());
+    }
+
+    @Test
+    public void createOrUpdateDecisionAsync() {
+        String customerId = "foo";
+        DecisionRequest request = mock(DecisionRequest.class);
+        DecisionVersion decisionVersion = mock(DecisionVersion.class);
+        Decision decision = mock(Decision.class);
+
+        when(decisionVersion.getDecision()).thenReturn(decision);
+        StagedDMN stagedDMN = new StagedDMN("staging-location", "md5", "hash");
+        when(decisionDMNStorage.stageDMN(customerId, request)).thenReturn(stagedDMN);
+        when(decisionManager.createOrUpdateVersion(customerId, request, stagedDMN)).thenReturn(decisionVersion);
+        when(selector.selectFleetShardForDeployment(decision)).thenReturn(fleetShard);
+        when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
+
+        DecisionVersion created = orchestrator.createOrUpdateVersionAsync(customerId, request);
+        assertThat(created, equalTo(decisionVersion));
+        verify(decisionDMNStorage).promoteDMN(customerId, stagedDMN, decisionVersion);
+        verifyNoInteractions(client);
+
+        ArgumentCaptor<Runnable> deployment = ArgumentCaptor.forClass(Runnable.class);
+        verify(deploymentScheduler).schedule(eq(customerId), deployment.capture());
+        deployment.getValue().run();
+
+        verify(client).deploy(decisionVersion);
+    }
+
+    @Test
+    public void createOrUpdateDecisionAsync_recordsFailureInBackground() {
+        String customerId = "foo";
+        String decisionId = "bob";
+        long version = 1l;
+        DecisionRequest request = mock(DecisionRequest.class);
+        DecisionVersion decisionVersion = mock(DecisionVersion.class);
+        when(decisionVersion.getVersion()).thenReturn(version);
+        Decision decision = mock(Decision.class);
+        when(decision.getId()).thenReturn(decisionId);
+
+        Eventing eventing = new Eventing();
+        eventing.setKafka(new Kafka());
+        when(request.getEventing()).thenReturn(eventing);
+        when(decisionVersion.getDecision()).thenReturn(decision);
+        when(decisionVersion.getKafkaConfig()).thenReturn(new KafkaConfig());
+        StagedDMN stagedDMN = new StagedDMN("staging-location", "md5", "hash");
+        when(decisionDMNStorage.stageDMN(customerId, request)).thenReturn(stagedDMN);
+        when(decisionManager.createOrUpdateVersion(customerId, request, stagedDMN)).thenReturn(decisionVersion);
+        when(managedServicesClient.createOrReplaceServiceAccount(anyString()))
+                .thenThrow(new ManagedServicesException("some error", new ApiException("api error")));
+
+        orchestrator.createOrUpdateVersionAsync(customerId, request);
+
+        ArgumentCaptor<Runnable> deployment = ArgumentCaptor.forClass(Runnable.class);
+        verify(deploymentScheduler).schedule(eq(customerId), deployment.capture());
+        deployment.getValue().run();
+
+        verify(decisionManager).failed(eq(customerId), eq(decisionId), eq(version), any(Deployment.class));
+        verifyNoInteractions(client);
+    }
+
+    @Test
+    public void createOrUpdateDecisionAsync_recordsFailureWhenQueueFull() {
+        String customerId = "foo";
+        String decisionId = "bob";
+        long version = 1l;
+        DecisionRequest request = mock(DecisionRequest.class);
+        DecisionVersion decisionVersion = mock(DecisionVersion.class);
+        when(decisionVersion.getVersion()).thenReturn(version);
+        Decision decision = mock(Decision.class);
+        when(decision.getId()).thenReturn(decisionId);
+        when(decisionVersion.getDecision()).thenReturn(decision);
+
+        StagedDMN stagedDMN = new StagedDMN("staging-location", "md5", "hash");
+        when(decisionDMNStorage.stageDMN(customerId, request)).thenReturn(stagedDMN);
+        when(decisionManager.createOrUpdateVersion(customerId, request, stagedDMN)).thenReturn(decisionVersion);
+        doThrow(new DeploymentQueueFullException("Nope!")).when(deploymentScheduler).schedule(eq(customerId), any(Runnable.class));
+
+        assertThrows(DeploymentQueueFullException.class, () -> orchestrator.createOrUpdateVersionAsync(customerId, request));
+
+        verify(decisionManager).failed(eq(customerId), eq(decisionId), eq(version), any(Deployment.class));
+        verifyNoInteractions(client);
+    }
+
+    private void runTasksInline() {
+        when(executorService.runAsync(any(Runnable.class))).thenAnswer(invocation -> {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            try {
+                ((Runnable) invocation.getArgument(0)).run();
+                future.complete(null);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        });
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(1)).run();
+            return null;
+        }).when(deploymentScheduler).schedule(anyString(), any(Runnable.class));
+    }
+
+    private DecisionRequest createBulkRequest(String name) {
+        DecisionRequest request = mock(DecisionRequest.class);
+        when(request.getName()).thenReturn(name);
+        return request;
+    }
+
+    private DecisionVersion createBulkVersion(String id) {
+        DecisionVersion decisionVersion = mock(DecisionVersion.class);
+        Decision decision = mock(Decision.class);
+        when(decisionVersion.getId()).thenReturn(id);
+        when(decisionVersion.getDecision()).thenReturn(decision);
+        when(selector.selectFleetShardForDeployment(decision)).thenReturn(fleetShard);
+        return decisionVersion;
+    }
+
+    @Test
+    public void createOrUpdateDecisions() {
+        String customerId = "foo";
+        runTasksInline();
+        DecisionRequest first = createBulkRequest("first");
+        DecisionRequest second = createBulkRequest("second");
+        StagedDMN firstDMN = new StagedDMN("staging-location-1", "md5", "hash-1");
+        StagedDMN secondDMN = new StagedDMN("staging-location-2", "md5", "hash-2");
+        when(decisionDMNStorage.stageDMN(customerId, first)).thenReturn(firstDMN);
+        when(decisionDMNStorage.stageDMN(customerId, second)).thenReturn(secondDMN);
+        DecisionVersion firstVersion = createBulkVersion("first-version");
+        DecisionVersion secondVersion = createBulkVersion("second-version");
+        when(decisionManager.createOrUpdateVersions(customerId, Arrays.asList(first, second), Arrays.asList(firstDMN, secondDMN)))
+                .thenReturn(Arrays.asList(firstVersion, secondVersion));
+        when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
+
+        List<DecisionVersionOutcome> outcomes = orchestrator.createOrUpdateVersions(customerId, Arrays.asList(first, second));
+
+        assertThat(outcomes.size(), equalTo(2));
+        assertThat(outcomes.get(0).getDecisionVersion(), equalTo(firstVersion));
+        assertThat(outcomes.get(1).getDecisionVersion(), equalTo(secondVersion));
+        verify(decisionDMNStorage).promoteDMN(customerId, firstDMN, firstVersion);
+        verify(decisionDMNStorage).promoteDMN(customerId, secondDMN, secondVersion);
+        verify(client).deploy(firstVersion);
+        verify(client).deploy(secondVersion);
+        verify(deploymentOutbox).complete("first-version");
+        verify(deploymentOutbox).complete("second-version");
+        verify(decisionManager, never()).createOrUpdateVersion(anyString(), any(DecisionRequest.class), any(StagedDMN.class));
+    }
+
+    @Test
+    public void createOrUpdateDecisions_recordsVersionsOneAtATimeWhenBatchFails() {
+        String customerId = "foo";
+        runTasksInline();
+        DecisionRequest first = createBulkRequest("first");
+        DecisionRequest second = createBulkRequest("second");
+        StagedDMN firstDMN = new StagedDMN("staging-location-1", "md5", "hash-1");
+        StagedDMN secondDMN = new StagedDMN("staging-location-2", "md5", "hash-2");
+        when(decisionDMNStorage.stageDMN(customerId, first)).thenReturn(firstDMN);
+        when(decisionDMNStorage.stageDMN(customerId, second)).thenReturn(secondDMN);
+        DecisionLifecycleException inProgress = new DecisionLifecycleException("Nope!");
+        when(decisionManager.createOrUpdateVersions(eq(customerId), any(), any())).thenThrow(inProgress);
+        DecisionVersion firstVersion = createBulkVersion("first-version");
+        when(decisionManager.createOrUpdateVersion(customerId, first, firstDMN)).thenReturn(firstVersion);
+        when(decisionManager.createOrUpdateVersion(customerId, second, secondDMN)).thenThrow(inProgress);
+        when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
+
+        List<DecisionVersionOutcome> outcomes = orchestrator.createOrUpdateVersions(customerId, Arrays.asList(first, second));
+
+        assertThat(outcomes.get(0).isSucceeded(), is(true));
+        assertThat(outcomes.get(1).isSucceeded(), is(false));
+        assertThat(outcomes.get(1).getFailure(), equalTo(inProgress));
+        verify(decisionDMNStorage).discardDMN(secondDMN);
+        verify(decisionDMNStorage, never()).discardDMN(firstDMN);
+        verify(client).deploy(firstVersion);
+    }
+
+    @Test
+    public void createOrUpdateDecisions_rejectsDuplicateNames() {
+        String customerId = "foo";
+        runTasksInline();
+        DecisionRequest first = createBulkRequest("first");
+        DecisionRequest duplicate = createBulkRequest("first");
+        StagedDMN firstDMN = new StagedDMN("staging-location-1", "md5", "hash-1");
+        when(decisionDMNStorage.stageDMN(customerId, first)).thenReturn(firstDMN);
+        DecisionVersion firstVersion = createBulkVersion("first-version");
+        when(decisionManager.createOrUpdateVersions(customerId, Arrays.asList(first), Arrays.asList(firstDMN))).thenReturn(Arrays.asList(firstVersion));
+        when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
+
+        List<DecisionVersionOutcome> outcomes = orchestrator.createOrUpdateVersions(customerId, Arrays.asList(first, duplicate));
+
+        assertThat(outcomes.get(0).isSucceeded(), is(true));
+        assertThat(outcomes.get(1).getFailure() instanceof DecisionLifecycleException, is(true));
+        verify(decisionDMNStorage, never()).stageDMN(customerId, duplicate);
+    }
+
+    @Test
+    public void createOrUpdateDecisions_recordsFailureWhenCredentialUnavailable() {
+        String customerId = "foo";
+        runTasksInline();
+        DecisionRequest first = createBulkRequest("first");
+        DecisionRequest second = createBulkRequest("second");
+        StagedDMN firstDMN = new StagedDMN("staging-location-1", "md5", "hash-1");
+        StagedDMN secondDMN = new StagedDMN("staging-location-2", "md5", "hash-2");
+        when(decisionDMNStorage.stageDMN(customerId, first)).thenReturn(firstDMN);
+        when(decisionDMNStorage.stageDMN(customerId, second)).thenReturn(secondDMN);
+        DecisionVersion firstVersion = mock(DecisionVersion.class);
+        Decision firstDecision = mock(Decision.class);
+        when(firstDecision.getId()).thenReturn("first-decision");
+        when(firstVersion.getId()).thenReturn("first-version");
+        when(firstVersion.getVersion()).thenReturn(1L);
+        when(firstVersion.getDecision()).thenReturn(firstDecision);
+        when(firstVersion.getKafkaConfig()).thenReturn(new KafkaConfig());
+        DecisionVersion secondVersion = createBulkVersion("second-version");
+        when(decisionManager.createOrUpdateVersions(customerId, Arrays.asList(first, second), Arrays.asList(firstDMN, secondDMN)))
+                .thenReturn(Arrays.asList(firstVersion, secondVersion));
+        when(managedServicesClient.createOrReplaceServiceAccount(anyString()))
+                .thenThrow(new ManagedServicesException("some error", new ApiException("api error")));
+        when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
+
+        List<DecisionVersionOutcome> outcomes = orchestrator.createOrUpdateVersions(customerId, Arrays.asList(first, second));
+
+        assertThat(outcomes.get(0).isSucceeded(), is(false));
+        assertThat(outcomes.get(1).isSucceeded(), is(true));
+        verify(decisionManager).failed(eq(customerId), eq("first-decision"), eq(1L), any(Deployment.class));
+        verify(deploymentOutbox).complete("first-version");
+        verify(client, never()).deploy(firstVersion);
+        verify(client).deploy(secondVersion);
+    }
+
+    @Test
+    public void createOrUpdateDecisions_defersDeploymentWhenQueueFull() {
+        String customerId = "foo";
+        when(executorService.runAsync(any(Runnable.class))).thenAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return CompletableFuture.completedFuture(null);
+        });
+        doThrow(new DeploymentQueueFullException("Nope!")).when(deploymentScheduler).schedule(eq(customerId), any(Runnable.class));
+        DecisionRequest first = createBulkRequest("first");
+        StagedDMN firstDMN = new StagedDMN("staging-location-1", "md5", "hash-1");
+        when(decisionDMNStorage.stageDMN(customerId, first)).thenReturn(firstDMN);
+        DecisionVersion firstVersion = mock(DecisionVersion.class);
+        when(firstVersion.getDecision()).thenReturn(mock(Decision.class));
+        when(decisionManager.createOrUpdateVersions(customerId, Arrays.asList(first), Arrays.asList(firstDMN))).thenReturn(Arrays.asList(firstVersion));
+
+        List<DecisionVersionOutcome> outcomes = orchestrator.createOrUpdateVersions(customerId, Arrays.asList(first));
+
+        assertThat(outcomes.get(0).isSucceeded(), is(true));
+        assertThat(outcomes.get(0).isDeferred(), is(true));
+        assertThat(outcomes.get(0).getDecisionVersion(), equalTo(firstVersion));
+        verify(deploymentOutbox, never()).complete(anyString());
+        verifyNoInteractions(client);
+    }
+
+    private DeploymentOutboxEntry createOutboxEntry(String customerId, String decisionId, long version) {
+        DeploymentOutboxEntry entry = mock(DeploymentOutboxEntry.class);
+        when(entry.getCustomerId()).thenReturn(customerId);
+        when(entry.getDecisionId()).thenReturn(decisionId);
+        when(entry.getVersion()).thenReturn(version);
+        return entry;
+    }
+
+    @Test
+    public void deliverDeployment() {
+        DeploymentOutboxEntry entry = createOutboxEntry("foo", "bob", 1L);
+        when(entry.getDecisionVersionId()).thenReturn("version-id");
+        DecisionVersion decisionVersion = mock(DecisionVersion.class);
+        Decision decision = mock(Decision.class);
+        when(decisionVersion.getDecision()).thenReturn(decision);
+        when(decisionVersion.getStatus()).thenReturn(DecisionVersionStatus.BUILDING);
+        when(decisionManager.getVersion("foo", "bob", 1L)).thenReturn(decisionVersion);
+        when(selector.selectFleetShardForDeployment(decision)).thenReturn(fleetShard);
+        when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
+
+        orchestrator.deliverDeployment(entry);
+
+        verify(client).deploy(decisionVersion);
+        verify(deploymentOutbox).complete("version-id");
+    }
+
+    @Test
+    public void deliverDeployment_skipsVersionNoLongerBuilding() {
+        DeploymentOutboxEntry entry = createOutboxEntry("foo", "bob", 1L);
+        when(entry.getDecisionVersionId()).thenReturn("version-id");
+        DecisionVersion decisionVersion = mock(DecisionVersion.class);
+        when(decisionVersion.getStatus()).thenReturn(DecisionVersionStatus.FAILED);
+        when(decisionManager.getVersion("foo", "bob", 1L)).thenReturn(decisionVersion);
+
+        orchestrator.deliverDeployment(entry);
+
+        verify(deploymentOutbox).complete("version-id");
+        verifyNoInteractions(client);
+    }
+
+    @Test
+    public void deliverDeployment_skipsDeletedDecision() {
+        DeploymentOutboxEntry entry = createOutboxEntry("foo", "bob", 1L);
+        when(entry.getDecisionVersionId()).thenReturn("version-id");
+        when(decisionManager.getVersion("foo", "bob", 1L)).thenThrow(new NoSuchDecisionException("Nope!"));
+
+        orchestrator.deliverDeployment(entry);
+
+        verify(deploymentOutbox).complete("version-id");
+        verifyNoInteractions(client);
+    }
+
+    @Test
+    public void deliverDeployment_retriesFailedDeployment() {
+        DeploymentOutboxEntry entry = createOutboxEntry("foo", "bob", 1L);
+        DecisionVersion decisionVersion = mock(DecisionVersion.class);
+        when(decisionVersion.getId()).thenReturn("version-id");
+        Decision decision = mock(Decision.class);
+        when(decisionVersion.getDecision()).thenReturn(decision);
+        when(decisionVersion.getStatus()).thenReturn(DecisionVersionStatus.BUILDING);
+        when(decisionManager.getVersion("foo", "bob", 1L)).thenReturn(decisionVersion);
+        when(selector.selectFleetShardForDeployment(decision)).thenReturn(fleetShard);
+        when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
+        doThrow(new RuntimeException("Nope!")).when(client).deploy(decisionVersion);
+        when(deploymentOutbox.retry(eq("version-id"), any(Exception.class))).thenReturn(true);
+
+        orchestrator.deliverDeployment(entry);
+
+        verify(deploymentOutbox, never()).complete(anyString());
+        verify(decisionManager, never()).failed(anyString(), anyString(), anyLong(), any(Deployment.class));
+    }
+
+    @Test
+    public void deliverDeployment_recordsFailureWhenRetriesExhausted() {
+        DeploymentOutboxEntry entry = createOutboxEntry("foo", "bob", 1L);
+        DecisionVersion decisionVersion = mock(DecisionVersion.class);
+        when(decisionVersion.getId()).thenReturn("version-id");
+        when(decisionVersion.getVersion()).thenReturn(1L);
+        Decision decision = mock(Decision.class);
+        when(decision.getId()).thenReturn("bob");
+        when(decisionVersion.getDecision()).thenReturn(decision);
+        when(decisionVersion.getStatus()).thenReturn(DecisionVersionStatus.BUILDING);
+        when(decisionManager.getVersion("foo", "bob", 1L)).thenReturn(decisionVersion);
+        when(selector.selectFleetShardForDeployment(decision)).thenReturn(fleetShard);
+        when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
+        doThrow(new RuntimeException("Nope!")).when(client).deploy(decisionVersion);
+        when(deploymentOutbox.retry(eq("version-id"), any(Exception.class))).thenReturn(false);
+
+        orchestrator.deliverDeployment(entry);
+
+        verify(decisionManager).failed(eq("foo"), eq("bob"), eq(1L), any(Deployment.class));
     }
 
     @Test
@@ -205,6 +626,10 @@ public class DecisionLifecycleOrchestratorTest {
         when(decisionManager.deleteDecision(customerId, decisionName)).thenReturn(decision);
         when(selector.selectFleetShardForDeployment(decision)).thenReturn(fleetShard);
         when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
+        when(executorService.runAsync(any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.getArgument(0, Runnable.class).run();
+            return CompletableFuture.completedFuture(null);
+        });
 
         Decision deleted = orchestrator.deleteDecision(customerId, decisionName);
         assertThat(deleted, is(notNullValue()));
@@ -214,6 +639,23 @@ public class DecisionLifecycleOrchestratorTest {
         verify(decisionDMNStorage).deleteDMN(customerId, deleted);
     }
 
+    @Test
+    public void deleteDecision_storageFailureDoesNotFailRequest() {
+
+        String customerId = "foo";
+        String decisionName = "bar";
+        Decision decision = mock(Decision.class);
+
+        when(decisionManager.deleteDecision(customerId, decisionName)).thenReturn(decision);
+        when(selector.selectFleetShardForDeployment(decision)).thenReturn(fleetShard);
+        when(clientFactory.createClientFor(fleetShard)).thenReturn(client);
+        when(executorService.runAsync(any(Runnable.class))).thenReturn(CompletableFuture.failedFuture(new DecisionDMNStorageException("Nope!")));
+
+        Decision deleted = orchestrator.deleteDecision(customerId, decisionName);
+        assertThat(deleted, equalTo(decision));
+        verify(client).delete(decision);
+    }
+
     @Test
     public void deleteVersion() {
         String customerId = "foo";
@@ -17,11 +17,22 @@ package org.kie.baaas.dfm.app.manager;
 
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.UserTransaction;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.kie.baaas.dfm.api.decisions.DecisionRequest;
@@ -30,15 +41,20 @@ import org.kie.baaas.dfm.api.eventing.Eventing;
 import org.kie.baaas.dfm.api.eventing.kafka.Kafka;
 import org.kie.baaas.dfm.app.dao.DecisionDAO;
 import org.kie.baaas.dfm.app.dao.DecisionVersionDAO;
+import org.kie.baaas.dfm.app.dao.DeploymentOutboxDAO;
 import org.kie.baaas.dfm.app.model.Decision;
+import org.kie.baaas.dfm.app.model.DecisionSummary;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
 import org.kie.baaas.dfm.app.model.DecisionVersionStatus;
+import org.kie.baaas.dfm.app.model.DeploymentOutboxEntry;
+import org.kie.baaas.dfm.app.model.InvalidListCursorException;
+import org.kie.baaas.dfm.app.model.ListCursor;
 import org.kie.baaas.dfm.app.model.ListResult;
 import org.kie.baaas.dfm.app.model.deployment.Deployment;
 import org.kie.baaas.dfm.app.model.eventing.KafkaConfig;
 import org.kie.baaas.dfm.app.storage.DMNStorageRequest;
 import org.kie.baaas.dfm.app.storage.DecisionDMNStorage;
-import org.kie.baaas.dfm.app.storage.s3.S3DMNStorage;
+import org.kie.baaas.dfm.app.storage.StagedDMN;
 import org.mockito.Mockito;
 
 import io.quarkus.test.TestTransaction;
@@ -48,6 +64,7 @@ import io.quarkus.test.junit.QuarkusTest;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anEmptyMap;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
@@ -68,9 +85,20 @@ public class DecisionManagerTest {
     @Inject
     DecisionManager decisionManager;
 
+    @Inject
+    DeploymentOutboxDAO deploymentOutboxDAO;
+
     @Inject
     DecisionDMNStorage dmnStorage;
 
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    UserTransaction userTransaction;
+
+    private final StagedDMN stagedDMN = new StagedDMN("staging-location", "md5", "hash");
+
     private DecisionRequest createApiRequest() {
 
         Model model = new Model();
@@ -85,13 +113,13 @@ public class DecisionManagerTest {
 
     @BeforeAll
     public static void beforeAll() {
-        S3DMNStorage storage = Mockito.mock(S3DMNStorage.class);
-        QuarkusMock.installMockForType(storage, S3DMNStorage.class);
+        DecisionDMNStorage storage = Mockito.mock(DecisionDMNStorage.class);
+        QuarkusMock.installMockForType(storage, DecisionDMNStorage.class);
     }
 
     private DMNStorageRequest createStorageRequest() {
-        DMNStorageRequest request = new DMNStorageRequest("provider-url", "hash");
-        when(dmnStorage.writeDMN(anyString(), Mockito.any(DecisionRequest.class), Mockito.any(DecisionVersion.class))).thenReturn(request);
+        DMNStorageRequest request = new DMNStorageRequest("provider-url", "md5", "hash");
+        when(dmnStorage.locateDMN(anyString(), Mockito.any(StagedDMN.class), Mockito.any(DecisionVersion.class))).thenReturn(request);
         return request;
     }
 
@@ -109,7 +137,7 @@ public class DecisionManagerTest {
         DecisionRequest apiResponse = createApiRequest();
         apiResponse.setEventing(eventing);
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiResponse);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiResponse, stagedDMN);
         KafkaConfig kafkaConfig = decisionVersion.getKafkaConfig();
         assertThat(kafkaConfig.getSinkTopic(), equalTo(eventing.getKafka().getSink()));
         assertThat(kafkaConfig.getSourceTopic(), equalTo(eventing.getKafka().getSource()));
@@ -125,7 +153,7 @@ public class DecisionManagerTest {
         DMNStorageRequest request = createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         assertThat(decisionVersion, is(notNullValue()));
 
         Decision decision = decisionVersion.getDecision();
@@ -142,6 +170,33 @@ public class DecisionManagerTest {
 
         ZonedDateTime zdt = ZonedDateTime.parse(decisionVersion.getSubmittedAt().toString(), DateTimeFormatter.ISO_ZONED_DATE_TIME);
         assertThat(zdt, is(notNullValue()));
+
+        DeploymentOutboxEntry outboxEntry = deploymentOutboxDAO.findById(decisionVersion.getId());
+        assertThat(outboxEntry, is(notNullValue()));
+        assertThat(outboxEntry.getCustomerId(), equalTo(DEFAULT_CUSTOMER_ID));
+        assertThat(outboxEntry.getDecisionId(), equalTo(decision.getId()));
+        assertThat(outboxEntry.getVersion(), equalTo(1L));
+        assertThat(outboxEntry.getNextAttemptAt().isAfter(ZonedDateTime.now()), is(true));
+    }
+
+    @TestTransaction
+    @Test
+    public void createNewVersions() {
+        createStorageRequest();
+        DecisionRequest first = createApiRequest();
+        DecisionRequest second = createApiRequest();
+        second.setName("robs-second-decision");
+        StagedDMN secondDMN = new StagedDMN("staging-location-2", "md5", "hash-2");
+
+        List<DecisionVersion> decisionVersions = decisionManager.createOrUpdateVersions(DEFAULT_CUSTOMER_ID, Arrays.asList(first, second), Arrays.asList(stagedDMN, secondDMN));
+
+        assertThat(decisionVersions.size(), equalTo(2));
+        assertThat(decisionVersions.get(0).getDecision().getName(), equalTo(first.getName()));
+        assertThat(decisionVersions.get(1).getDecision().getName(), equalTo(second.getName()));
+        for (DecisionVersion decisionVersion : decisionVersions) {
+            assertThat(decisionVersion.getStatus(), equalTo(DecisionVersionStatus.BUILDING));
+            assertThat(deploymentOutboxDAO.findById(decisionVersion.getId()), is(notNullValue()));
+        }
     }
 
     private Deployment createDeployment() {
@@ -160,7 +215,7 @@ public class DecisionManagerTest {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         Decision decision = decisionVersion.getDecision();
 
         Deployment deployment = createDeployment();
@@ -180,7 +235,7 @@ public class DecisionManagerTest {
         DMNStorageRequest request = createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         Decision decision = decisionVersion.getDecision();
 
         DecisionVersion deployed = decisionManager.failed(decision.getCustomerId(), decision.getId(), decisionVersion.getVersion(), createDeployment());
@@ -193,18 +248,32 @@ public class DecisionManagerTest {
         assertThat(decision.getNextVersion(), is(nullValue()));
     }
 
+    @TestTransaction
+    @Test
+    public void createNewVersion_referencesDMNByContentHash() {
+        DMNStorageRequest request = createStorageRequest();
+        DecisionRequest apiRequest = createApiRequest();
+
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+        assertThat(decisionVersion.getDmnHash(), equalTo(request.getContentHash()));
+
+        assertThat(decisionVersionDAO.countByCustomerAndDmnHash(DEFAULT_CUSTOMER_ID, request.getContentHash()), equalTo(1L));
+        assertThat(decisionVersionDAO.countByCustomerAndDmnHash("another-customer", request.getContentHash()), equalTo(0L));
+        assertThat(decisionVersionDAO.countByCustomerAndDmnHash(DEFAULT_CUSTOMER_ID, "another-hash"), equalTo(0L));
+    }
+
     @TestTransaction
     @Test
     public void createNewVersion_updateFailsWhenStillCreating() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         apiRequest.setDescription("An updated version!");
         apiRequest.getModel().setDmn("Updated dmn!");
 
-        DecisionLifecycleException thrown = assertThrows(DecisionLifecycleException.class, () -> decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest));
+        DecisionLifecycleException thrown = assertThrows(DecisionLifecycleException.class, () -> decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN));
 
         assertThat(thrown.getMessage(), equalTo("A lifecycle operation is already in progress for Version '1' of Decision 'robs-first-decision'"));
     }
@@ -215,7 +284,7 @@ public class DecisionManagerTest {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         Decision decision = decisionVersion.getDecision();
 
         decisionManager.deployed(decision.getCustomerId(), decision.getName(), decisionVersion.getVersion(), createDeployment());
@@ -223,7 +292,7 @@ public class DecisionManagerTest {
         apiRequest.setDescription("An updated version!");
         apiRequest.getModel().setDmn("Updated dmn!");
 
-        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         assertThat(decisionVersion.getStatus(), equalTo(DecisionVersionStatus.BUILDING));
         assertThat(decisionVersion.getVersion(), equalTo(2L));
 
@@ -238,7 +307,7 @@ public class DecisionManagerTest {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         Decision decision = decisionVersion.getDecision();
 
         decisionManager.deployed(decision.getCustomerId(), decision.getName(), decisionVersion.getVersion(), createDeployment());
@@ -246,7 +315,7 @@ public class DecisionManagerTest {
         apiRequest.setDescription("An updated version!");
         apiRequest.getModel().setDmn("fff");
 
-        DecisionVersion nextVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion nextVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         nextVersion = decisionManager.deployed(decision.getCustomerId(), decision.getName(), nextVersion.getVersion(), createDeployment());
         assertThat(nextVersion.getStatus(), equalTo(DecisionVersionStatus.CURRENT));
         assertThat(nextVersion.getDeployment().getVersionUrl(), is(notNullValue()));
@@ -268,14 +337,14 @@ public class DecisionManagerTest {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         Decision decision = decisionVersion.getDecision();
         decisionManager.failed(decision.getCustomerId(), decision.getName(), decisionVersion.getVersion(), createDeployment());
 
         apiRequest.setDescription("An updated version!");
         apiRequest.getModel().setDmn("fff");
 
-        DecisionVersion failedVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion failedVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         failedVersion = decisionManager.failed(decision.getCustomerId(), decision.getName(), failedVersion.getVersion(), createDeployment());
         assertThat(failedVersion.getStatus(), equalTo(DecisionVersionStatus.FAILED));
 
@@ -291,14 +360,14 @@ public class DecisionManagerTest {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         Decision decision = decisionVersion.getDecision();
         decisionManager.deployed(decision.getCustomerId(), decision.getName(), decisionVersion.getVersion(), createDeployment());
 
         apiRequest.setDescription("An updated version!");
         apiRequest.getModel().setDmn("fff");
 
-        DecisionVersion failedVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion failedVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         failedVersion = decisionManager.failed(decision.getCustomerId(), decision.getName(), failedVersion.getVersion(), createDeployment());
         assertThat(failedVersion.getStatus(), equalTo(DecisionVersionStatus.FAILED));
 
@@ -313,7 +382,7 @@ public class DecisionManagerTest {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         Decision decision = decisionVersion.getDecision();
 
         decisionVersion = decisionManager.deployed(decision.getCustomerId(), decision.getName(), decisionVersion.getVersion(), createDeployment());
@@ -330,13 +399,32 @@ public class DecisionManagerTest {
         });
     }
 
+    @TestTransaction
+    @Test
+    public void getVersion_idOfDecisionDeletedElsewhere() {
+        createStorageRequest();
+        DecisionRequest apiRequest = createApiRequest();
+
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+        Decision decision = decisionVersion.getDecision();
+        decisionManager.getVersion(DEFAULT_CUSTOMER_ID, decision.getId(), decisionVersion.getVersion());
+
+        // Deleted without evicting the cached name, as another instance would
+        decisionDAO.delete(decision);
+        entityManager.flush();
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+
+        assertThrows(NoSuchDecisionException.class, () -> decisionManager.getVersion(DEFAULT_CUSTOMER_ID, decision.getId(), decisionVersion.getVersion()));
+        assertThrows(NoSuchDecisionException.class, () -> decisionManager.getBuildingVersion(DEFAULT_CUSTOMER_ID, decision.getId()));
+    }
+
     @TestTransaction
     @Test
     public void deleteVersion_versionDoesNotExist() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         Decision decision = decisionVersion.getDecision();
 
         assertThrows(NoSuchDecisionVersionException.class, () -> decisionManager.deleteVersion(DEFAULT_CUSTOMER_ID, decision.getName(), decisionVersion.getVersion() + 1L));
@@ -348,13 +436,13 @@ public class DecisionManagerTest {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         Decision decision = decisionVersion.getDecision();
         decisionManager.deployed(DEFAULT_CUSTOMER_ID, decision.getName(), decisionVersion.getVersion(), createDeployment());
 
         apiRequest.getModel().setDmn("updated dmn!");
 
-        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         decisionVersion = decisionManager.deployed(DEFAULT_CUSTOMER_ID, decision.getName(), decisionVersion.getVersion(), createDeployment());
         decision = decisionVersion.getDecision();
 
@@ -371,7 +459,7 @@ public class DecisionManagerTest {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         Decision decision = decisionVersion.getDecision();
 
         DecisionVersion deployed = decisionManager.deployed(decision.getCustomerId(), decision.getName(), decisionVersion.getVersion(), createDeployment());
@@ -384,7 +472,7 @@ public class DecisionManagerTest {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
 
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         Decision decision = decisionVersion.getDecision();
 
         decisionVersion = decisionManager.failed(DEFAULT_CUSTOMER_ID, decision.getName(), decisionVersion.getVersion(), createDeployment());
@@ -394,14 +482,69 @@ public class DecisionManagerTest {
         assertThat(decisionVersion.getDecision().getCurrentVersion().getStatus(), equalTo(DecisionVersionStatus.DELETED));
     }
 
+    @Test
+    @TestTransaction
+    public void createNewVersion_allocatesVersionsFromDecisionCounter() {
+        createStorageRequest();
+        DecisionRequest apiRequest = createApiRequest();
+
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+        Decision decision = decisionVersion.getDecision();
+        decisionManager.deployed(DEFAULT_CUSTOMER_ID, decision.getName(), decisionVersion.getVersion(), createDeployment());
+
+        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+        assertThat(decisionVersion.getVersion(), equalTo(2L));
+        decisionManager.failed(DEFAULT_CUSTOMER_ID, decision.getName(), decisionVersion.getVersion(), createDeployment());
+        decisionManager.deleteVersion(DEFAULT_CUSTOMER_ID, decision.getName(), decisionVersion.getVersion());
+
+        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+        assertThat(decisionVersion.getVersion(), equalTo(3L));
+        decisionDAO.lock(decision);
+        assertThat(decisionDAO.allocateNextVersion(decision), equalTo(4L));
+    }
+
+    @Test
+    public void createNewVersion_concurrentUpdateRejected() throws Exception {
+        createStorageRequest();
+        DecisionRequest apiRequest = createApiRequest();
+        apiRequest.setName("concurrently-updated-decision");
+
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+        decisionManager.deployed(DEFAULT_CUSTOMER_ID, apiRequest.getName(), 1L, createDeployment());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            userTransaction.begin();
+            DecisionVersion first = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+
+            // The second update waits on the row lock of the Decision until the first commits
+            Future<DecisionVersion> second = executor.submit(() -> decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN));
+            Thread.sleep(200);
+            userTransaction.commit();
+
+            ExecutionException thrown = assertThrows(ExecutionException.class, second::get);
+            assertThat(thrown.getCause(), instanceOf(DecisionLifecycleException.class));
+            assertThat(first.getVersion(), equalTo(2L));
+
+            ListResult<DecisionVersion> versions = decisionManager.listDecisionVersions(DEFAULT_CUSTOMER_ID, apiRequest.getName(), ListCursor.first(), 100, true);
+            assertThat(versions.getTotal(), equalTo(2L));
+        } finally {
+            if (userTransaction.getStatus() == Status.STATUS_ACTIVE) {
+                userTransaction.rollback();
+            }
+            executor.shutdownNow();
+            decisionManager.deleteDecision(DEFAULT_CUSTOMER_ID, apiRequest.getName());
+        }
+    }
+
     @TestTransaction
     @Test
     public void listDecisionVersions_withDecisionId() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
-        ListResult<DecisionVersion> versions = decisionManager.listDecisionVersions(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getId(), 0, 100);
+        ListResult<DecisionVersion> versions = decisionManager.listDecisionVersions(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getId(), ListCursor.first(), 100, true);
         assertThat(versions.getSize(), equalTo(1L));
         assertThat(versions.getItems().get(0).getId(), equalTo(decisionVersion.getId()));
         assertThat(versions.getTotal(), equalTo(1L));
@@ -422,7 +565,7 @@ public class DecisionManagerTest {
     public void getVersion_versionDoesNotExist() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         assertThrows(NoSuchDecisionVersionException.class, () -> {
             decisionManager.getVersion(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getId(), decisionVersion.getVersion() + 1L);
@@ -434,7 +577,7 @@ public class DecisionManagerTest {
     public void getVersion_byDecisionId() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         DecisionVersion found = decisionManager.getVersion(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getId(), decisionVersion.getVersion());
         assertThat(found.getId(), equalTo(decisionVersion.getId()));
@@ -445,7 +588,7 @@ public class DecisionManagerTest {
     public void getVersion_byDecisionName() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         DecisionVersion found = decisionManager.getVersion(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName(), decisionVersion.getVersion());
         assertThat(found.getId(), equalTo(decisionVersion.getId()));
@@ -456,7 +599,7 @@ public class DecisionManagerTest {
     public void getCurrentVersion_byDecisionName() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         DecisionVersion found = decisionManager.getCurrentVersion(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName());
         assertThat(found.getId(), equalTo(decisionVersion.getId()));
@@ -467,18 +610,79 @@ public class DecisionManagerTest {
     public void getCurrentVersion_byDecisionId() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         DecisionVersion found = decisionManager.getCurrentVersion(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getId());
         assertThat(found.getId(), equalTo(decisionVersion.getId()));
     }
 
+    /*
+     * The second-level cache is only written when a transaction commits, so the following tests commit their
+     * Decisions for a customer of their own and delete them afterwards.
+     */
+    @Test
+    public void getCurrentVersion_readsStatusFromDatabaseAndTagsFromSecondLevelCache() {
+        createStorageRequest();
+        DecisionRequest apiRequest = createApiRequest();
+        String customerId = "cached-current-version";
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(customerId, apiRequest, stagedDMN);
+
+        try {
+            decisionManager.getCurrentVersion(customerId, apiRequest.getName());
+
+            Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+            statistics.clear();
+
+            DecisionVersion found = decisionManager.getCurrentVersion(customerId, apiRequest.getName());
+            assertThat(found.getId(), equalTo(decisionVersion.getId()));
+            // The status may have been changed by another Fleet Manager, so the DecisionVersion itself is not cached
+            assertThat(statistics.getEntityStatistics(DecisionVersion.class.getName()).getLoadCount(), equalTo(1L));
+            assertThat(statistics.getCollectionStatistics(DecisionVersion.class.getName() + ".tags").getCacheHitCount(), equalTo(1L));
+            assertThat(statistics.getCollectionStatistics(DecisionVersion.class.getName() + ".configuration").getCacheHitCount(), equalTo(1L));
+        } finally {
+            decisionManager.deleteDecision(customerId, apiRequest.getName());
+            deploymentOutboxDAO.deleteById(decisionVersion.getId());
+        }
+    }
+
+    @Test
+    public void getCurrentVersion_afterDeployed_isNotServedStale() {
+        createStorageRequest();
+        DecisionRequest apiRequest = createApiRequest();
+        String customerId = "cached-deployed-version";
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(customerId, apiRequest, stagedDMN);
+
+        try {
+            DecisionVersion building = decisionManager.getCurrentVersion(customerId, apiRequest.getName());
+            assertThat(building.getStatus(), equalTo(DecisionVersionStatus.BUILDING));
+
+            decisionManager.deployed(customerId, apiRequest.getName(), decisionVersion.getVersion(), createDeployment());
+
+            DecisionVersion current = decisionManager.getCurrentVersion(customerId, apiRequest.getName());
+            assertThat(current.getStatus(), equalTo(DecisionVersionStatus.CURRENT));
+            assertThat(current.getDeployment(), is(notNullValue()));
+        } finally {
+            decisionManager.deleteDecision(customerId, apiRequest.getName());
+            deploymentOutboxDAO.deleteById(decisionVersion.getId());
+        }
+    }
+
+    @Test
+    @TestTransaction
+    public void getCurrentVersion_byDecisionIdOfAnotherCustomer() {
+        createStorageRequest();
+        DecisionRequest apiRequest = createApiRequest();
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+
+        assertThrows(NoSuchDecisionException.class, () -> decisionManager.getCurrentVersion("another-customer", decisionVersion.getDecision().getId()));
+    }
+
     @Test
     @TestTransaction
     public void getBuildingVersion_byDecisionId() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         DecisionVersion found = decisionManager.getBuildingVersion(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getId());
         assertThat(found.getId(), equalTo(decisionVersion.getId()));
@@ -489,7 +693,7 @@ public class DecisionManagerTest {
     public void getBuildingVersion_byDecisionName() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         DecisionVersion found = decisionManager.getBuildingVersion(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName());
         assertThat(found.getId(), equalTo(decisionVersion.getId()));
@@ -500,7 +704,7 @@ public class DecisionManagerTest {
     public void getBuildingVersion_noBuildingVersion() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         decisionManager.deployed(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getId(), decisionVersion.getVersion(), createDeployment());
 
         assertThrows(NoSuchDecisionVersionException.class, () -> {
@@ -523,9 +727,9 @@ public class DecisionManagerTest {
     public void listDecisionVersions_withDecisionName() {
         createStorageRequest();
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
-        ListResult<DecisionVersion> versions = decisionManager.listDecisionVersions(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName(), 0, 100);
+        ListResult<DecisionVersion> versions = decisionManager.listDecisionVersions(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName(), ListCursor.first(), 100, true);
         assertThat(versions.getSize(), equalTo(1L));
         assertThat(versions.getItems().get(0).getId(), equalTo(decisionVersion.getId()));
         assertThat(versions.getTotal(), equalTo(1L));
@@ -536,7 +740,7 @@ public class DecisionManagerTest {
     public void listDecisionVersions_noSuchIdOrName() {
 
         NoSuchDecisionException thrown = assertThrows(NoSuchDecisionException.class, () -> {
-            decisionManager.listDecisionVersions(DEFAULT_CUSTOMER_ID, "foo", 0, 100);
+            decisionManager.listDecisionVersions(DEFAULT_CUSTOMER_ID, "foo", ListCursor.first(), 100, false);
         });
 
         assertThat(thrown.getMessage(), equalTo("Decision with id or name 'foo' does not exist for customer 'customer-id'"));
@@ -562,28 +766,28 @@ public class DecisionManagerTest {
         tags.put("tagKey", "tagValue");
         apiRequest2.setTags(tags);
 
-        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
-        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest2);
-        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest3);
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest2, stagedDMN);
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest3, stagedDMN);
 
-        ListResult<Decision> decisions = decisionManager.listDecisions(DEFAULT_CUSTOMER_ID, 0, 100);
+        ListResult<DecisionSummary> decisions = decisionManager.listDecisions(DEFAULT_CUSTOMER_ID, ListCursor.first(), 100, true);
         assertThat(decisions.getTotal(), equalTo(3L));
         assertThat(decisions.getSize(), equalTo(3L));
 
-        Decision found = decisions.getItems().get(0);
+        DecisionSummary found = decisions.getItems().get(0);
         assertThat(found.getName(), equalTo(apiRequest2.getName()));
-        assertThat(found.getCurrentVersion().getConfiguration(), is(anEmptyMap()));
-        assertThat(found.getCurrentVersion().getTags().containsKey("tagKey"), is(true));
+        assertThat(found.getConfiguration(), is(anEmptyMap()));
+        assertThat(found.getTags().containsKey("tagKey"), is(true));
 
         found = decisions.getItems().get(1);
         assertThat(found.getName(), equalTo(apiRequest.getName()));
-        assertThat(found.getCurrentVersion().getConfiguration().containsKey("configKey"), is(true));
-        assertThat(found.getCurrentVersion().getTags(), is(anEmptyMap()));
+        assertThat(found.getConfiguration().containsKey("configKey"), is(true));
+        assertThat(found.getTags(), is(anEmptyMap()));
 
         found = decisions.getItems().get(2);
         assertThat(found.getName(), equalTo(apiRequest3.getName()));
-        assertThat(found.getCurrentVersion().getConfiguration(), is(anEmptyMap()));
-        assertThat(found.getCurrentVersion().getTags(), is(anEmptyMap()));
+        assertThat(found.getConfiguration(), is(anEmptyMap()));
+        assertThat(found.getTags(), is(anEmptyMap()));
     }
 
     @TestTransaction
@@ -599,18 +803,86 @@ public class DecisionManagerTest {
         DecisionRequest apiRequest3 = createApiRequest();
         apiRequest3.setName("yet-another-decision");
 
-        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
-        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest2);
-        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest3);
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest2, stagedDMN);
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest3, stagedDMN);
 
-        ListResult<Decision> decisions = decisionManager.listDecisions(DEFAULT_CUSTOMER_ID, 2, 1);
+        ListResult<DecisionSummary> decisions = decisionManager.listDecisions(DEFAULT_CUSTOMER_ID, ListCursor.atPage(2), 1, true);
         assertThat(decisions.getTotal(), equalTo(3L));
         assertThat(decisions.getSize(), equalTo(1L));
 
-        Decision found = decisions.getItems().get(0);
+        DecisionSummary found = decisions.getItems().get(0);
         assertThat(found.getName(), equalTo(apiRequest3.getName()));
     }
 
+    @TestTransaction
+    @Test
+    public void listDecisions_withCursor() {
+
+        createStorageRequest();
+
+        DecisionRequest apiRequest = createApiRequest();
+        DecisionRequest apiRequest2 = createApiRequest();
+        apiRequest2.setName("another-decision");
+
+        DecisionRequest apiRequest3 = createApiRequest();
+        apiRequest3.setName("yet-another-decision");
+
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest2, stagedDMN);
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest3, stagedDMN);
+
+        ListResult<DecisionSummary> decisions = decisionManager.listDecisions(DEFAULT_CUSTOMER_ID, ListCursor.first(), 2, false);
+        assertThat(decisions.getTotal(), is(nullValue()));
+        assertThat(decisions.getSize(), equalTo(2L));
+        assertThat(decisions.getItems().get(0).getName(), equalTo(apiRequest2.getName()));
+        assertThat(decisions.getItems().get(1).getName(), equalTo(apiRequest.getName()));
+        assertThat(decisions.getNextCursor(), equalTo(ListCursor.after(apiRequest.getName())));
+
+        ListCursor nextCursor = ListCursor.decode(decisions.getNextCursor().encode());
+        decisions = decisionManager.listDecisions(DEFAULT_CUSTOMER_ID, nextCursor, 2, false);
+        assertThat(decisions.getSize(), equalTo(1L));
+        assertThat(decisions.getItems().get(0).getName(), equalTo(apiRequest3.getName()));
+        assertThat(decisions.getNextCursor(), is(nullValue()));
+    }
+
+    @TestTransaction
+    @Test
+    public void listDecisionVersions_withCursor() {
+        createStorageRequest();
+        DecisionRequest apiRequest = createApiRequest();
+
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+        Decision decision = decisionVersion.getDecision();
+        decisionManager.deployed(DEFAULT_CUSTOMER_ID, decision.getName(), decisionVersion.getVersion(), createDeployment());
+        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+        decisionManager.deployed(DEFAULT_CUSTOMER_ID, decision.getName(), decisionVersion.getVersion(), createDeployment());
+        decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+
+        ListResult<DecisionVersion> versions = decisionManager.listDecisionVersions(DEFAULT_CUSTOMER_ID, decision.getName(), ListCursor.first(), 2, true);
+        assertThat(versions.getTotal(), equalTo(3L));
+        assertThat(versions.getItems().get(0).getVersion(), equalTo(3L));
+        assertThat(versions.getItems().get(1).getVersion(), equalTo(2L));
+        assertThat(versions.getNextCursor(), equalTo(ListCursor.after("2")));
+
+        versions = decisionManager.listDecisionVersions(DEFAULT_CUSTOMER_ID, decision.getName(), versions.getNextCursor(), 2, false);
+        assertThat(versions.getTotal(), is(nullValue()));
+        assertThat(versions.getSize(), equalTo(1L));
+        assertThat(versions.getItems().get(0).getVersion(), equalTo(1L));
+        assertThat(versions.getNextCursor(), is(nullValue()));
+    }
+
+    @TestTransaction
+    @Test
+    public void listDecisionVersions_withCursorForAnotherList() {
+        createStorageRequest();
+        DecisionRequest apiRequest = createApiRequest();
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
+
+        assertThrows(InvalidListCursorException.class,
+                () -> decisionManager.listDecisionVersions(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName(), ListCursor.after("a-decision-name"), 2, false));
+    }
+
     @TestTransaction
     @Test
     public void newDecision_decisionDoesNotExist() {
@@ -625,7 +897,7 @@ public class DecisionManagerTest {
         createStorageRequest();
 
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         assertThrows(NoSuchDecisionVersionException.class, () -> {
             decisionManager.setCurrentVersion(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName(), decisionVersion.getVersion() + 1L);
@@ -638,7 +910,7 @@ public class DecisionManagerTest {
         createStorageRequest();
 
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         DecisionVersion deployed = decisionManager.deployed(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName(), decisionVersion.getVersion(), createDeployment());
 
@@ -651,20 +923,20 @@ public class DecisionManagerTest {
         createStorageRequest();
 
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         decisionManager.deployed(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName(), decisionVersion.getVersion(), createDeployment());
 
         apiRequest = createApiRequest();
         apiRequest.getModel().setDmn("Updated dmn!");
 
-        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         decisionManager.deployed(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName(), decisionVersion.getVersion(), createDeployment());
 
         apiRequest = createApiRequest();
         apiRequest.getModel().setDmn("Updated dmn again!");
 
-        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         DecisionVersion firstVersion = decisionManager.getVersion(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getId(), 1L);
         assertThat(firstVersion.getStatus(), equalTo(DecisionVersionStatus.READY));
@@ -678,20 +950,20 @@ public class DecisionManagerTest {
         createStorageRequest();
 
         DecisionRequest apiRequest = createApiRequest();
-        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        DecisionVersion decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
 
         decisionManager.deployed(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName(), decisionVersion.getVersion(), createDeployment());
 
         apiRequest = createApiRequest();
         apiRequest.getModel().setDmn("Updated dmn!");
 
-        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         decisionManager.deployed(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName(), decisionVersion.getVersion(), createDeployment());
 
         apiRequest = createApiRequest();
         apiRequest.getModel().setDmn("Updated dmn again!");
 
-        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest);
+        decisionVersion = decisionManager.createOrUpdateVersion(DEFAULT_CUSTOMER_ID, apiRequest, stagedDMN);
         decisionVersion = decisionManager.deployed(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getName(), decisionVersion.getVersion(), createDeployment());
 
         DecisionVersion firstVersion = decisionManager.getVersion(DEFAULT_CUSTOMER_ID, decisionVersion.getDecision().getId(), 1L);
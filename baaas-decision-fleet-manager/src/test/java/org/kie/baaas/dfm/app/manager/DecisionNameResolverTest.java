@@ -0,0 +1,191 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.app.dao.DecisionDAO;
+import org.kie.baaas.dfm.app.model.Decision;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.kie.baaas.dfm.app.TestConstants.DEFAULT_CUSTOMER_ID;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DecisionNameResolverTest {
+
+    private static final String DECISION_NAME = "robs-first-decision";
+
+    @Mock
+    DecisionDAO decisionDAO;
+
+    private MeterRegistry meterRegistry;
+
+    private Decision decision;
+
+    @BeforeEach
+    public void beforeEach() {
+        meterRegistry = new SimpleMeterRegistry();
+        decision = newDecision(DECISION_NAME);
+    }
+
+    private DecisionNameResolver resolver(int maxSize) {
+        return new DecisionNameResolver(decisionDAO, meterRegistry, maxSize, Duration.ofMinutes(10));
+    }
+
+    private double count(String name) {
+        return meterRegistry.counter(name).count();
+    }
+
+    @Test
+    public void resolveName_name() {
+        DecisionNameResolver resolver = resolver(10);
+
+        assertThat(resolver.resolveName(DEFAULT_CUSTOMER_ID, DECISION_NAME), equalTo(DECISION_NAME));
+        verify(decisionDAO, never()).findById(DECISION_NAME);
+    }
+
+    @Test
+    public void resolveName_id() {
+        DecisionNameResolver resolver = resolver(10);
+        when(decisionDAO.findById(decision.getId())).thenReturn(decision);
+
+        assertThat(resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId()), equalTo(DECISION_NAME));
+        assertThat(resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId()), equalTo(DECISION_NAME));
+
+        verify(decisionDAO, times(1)).findById(decision.getId());
+        assertThat(count(DecisionNameResolver.CACHE_MISSES), equalTo(1.0));
+        assertThat(count(DecisionNameResolver.CACHE_HITS), equalTo(1.0));
+    }
+
+    @Test
+    public void resolveName_idOfAnotherCustomer() {
+        DecisionNameResolver resolver = resolver(10);
+        when(decisionDAO.findById(decision.getId())).thenReturn(decision);
+
+        assertThat(resolver.resolveName("another-customer", decision.getId()), equalTo(decision.getId()));
+        assertThat(resolver.resolveName("another-customer", decision.getId()), equalTo(decision.getId()));
+    }
+
+    @Test
+    public void resolveName_nameShapedLikeAnId() {
+        DecisionNameResolver resolver = resolver(10);
+        String name = UUID.randomUUID().toString();
+
+        assertThat(resolver.resolveName(DEFAULT_CUSTOMER_ID, name), equalTo(name));
+        verify(decisionDAO).findById(name);
+    }
+
+    @Test
+    public void evict() {
+        DecisionNameResolver resolver = resolver(10);
+        when(decisionDAO.findById(decision.getId())).thenReturn(decision);
+
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId());
+        resolver.evict(decision.getId());
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId());
+
+        verify(decisionDAO, times(2)).findById(decision.getId());
+    }
+
+    @Test
+    public void resolveName_cacheFull() {
+        DecisionNameResolver resolver = resolver(1);
+        Decision another = newDecision("another-decision");
+        when(decisionDAO.findById(decision.getId())).thenReturn(decision);
+        when(decisionDAO.findById(another.getId())).thenReturn(another);
+
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId());
+        assertThat(resolver.resolveName(DEFAULT_CUSTOMER_ID, another.getId()), equalTo("another-decision"));
+        assertThat(resolver.resolveName(DEFAULT_CUSTOMER_ID, another.getId()), equalTo("another-decision"));
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId());
+
+        verify(decisionDAO, times(1)).findById(another.getId());
+        verify(decisionDAO, times(2)).findById(decision.getId());
+        assertThat(meterRegistry.get(DecisionNameResolver.CACHE_SIZE).gauge().value(), equalTo(1.0));
+    }
+
+    @Test
+    public void resolveName_cacheFullEvictsLeastRecentlyUsed() {
+        DecisionNameResolver resolver = resolver(2);
+        Decision another = newDecision("another-decision");
+        Decision third = newDecision("third-decision");
+        when(decisionDAO.findById(decision.getId())).thenReturn(decision);
+        when(decisionDAO.findById(another.getId())).thenReturn(another);
+        when(decisionDAO.findById(third.getId())).thenReturn(third);
+
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId());
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, another.getId());
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId());
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, third.getId());
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId());
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, another.getId());
+
+        verify(decisionDAO, times(1)).findById(decision.getId());
+        verify(decisionDAO, times(2)).findById(another.getId());
+        assertThat(meterRegistry.get(DecisionNameResolver.CACHE_SIZE).gauge().value(), equalTo(2.0));
+    }
+
+    @Test
+    public void resolveName_expired() {
+        DecisionNameResolver resolver = new DecisionNameResolver(decisionDAO, meterRegistry, 10, Duration.ofNanos(1));
+        when(decisionDAO.findById(decision.getId())).thenReturn(decision);
+
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId());
+        assertThat(resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId()), equalTo(DECISION_NAME));
+
+        verify(decisionDAO, times(2)).findById(decision.getId());
+        assertThat(count(DecisionNameResolver.CACHE_HITS), equalTo(0.0));
+        assertThat(meterRegistry.get(DecisionNameResolver.CACHE_SIZE).gauge().value(), equalTo(1.0));
+    }
+
+    @Test
+    public void isStale() {
+        DecisionNameResolver resolver = resolver(10);
+        Decision recreated = newDecision(DECISION_NAME);
+        when(decisionDAO.findById(decision.getId())).thenReturn(decision);
+
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId());
+
+        assertThat(resolver.isStale(DECISION_NAME, DECISION_NAME, recreated.getId()), is(false));
+        assertThat(resolver.isStale(decision.getId(), DECISION_NAME, decision.getId()), is(false));
+        assertThat(resolver.isStale(decision.getId(), DECISION_NAME, recreated.getId()), is(true));
+
+        resolver.resolveName(DEFAULT_CUSTOMER_ID, decision.getId());
+        verify(decisionDAO, times(2)).findById(decision.getId());
+    }
+
+    private Decision newDecision(String name) {
+        Decision decision = new Decision();
+        decision.setCustomerId(DEFAULT_CUSTOMER_ID);
+        decision.setName(name);
+        return decision;
+    }
+}
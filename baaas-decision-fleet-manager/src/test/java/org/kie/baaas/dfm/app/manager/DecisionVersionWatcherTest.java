@@ -0,0 +1,197 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.api.decisions.DecisionResponse;
+import org.kie.baaas.dfm.app.event.AfterDeployedEvent;
+import org.kie.baaas.dfm.app.event.AfterFailedEvent;
+import org.kie.baaas.dfm.app.event.BeforeCreateOrUpdateVersionEvent;
+import org.kie.baaas.dfm.app.listener.ListenerManager;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DecisionVersionWatcherTest {
+
+    private static final String DECISION_ID = "decision-id";
+
+    @Mock
+    ListenerManager listenerManager;
+
+    @Mock
+    ManagedExecutor executorService;
+
+    @Mock
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    private MeterRegistry meterRegistry;
+
+    private DecisionVersionWatcher watcher;
+
+    private final List<String> notified = new ArrayList<>();
+
+    @BeforeEach
+    public void beforeEach() {
+        meterRegistry = new SimpleMeterRegistry();
+        watcher = new DecisionVersionWatcher(listenerManager, executorService, meterRegistry, transactionRegistry);
+    }
+
+    private void runNotificationsInline() {
+        doAnswer(invocation -> {
+            invocation.<Runnable> getArgument(0).run();
+            return null;
+        }).when(executorService).execute(any(Runnable.class));
+    }
+
+    private void withoutTransaction() {
+        when(transactionRegistry.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+    }
+
+    private Synchronization onEventWithinTransaction(AfterDeployedEvent event) {
+        when(transactionRegistry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        watcher.onEvent(event);
+
+        ArgumentCaptor<Synchronization> captor = ArgumentCaptor.forClass(Synchronization.class);
+        verify(transactionRegistry).registerInterposedSynchronization(captor.capture());
+        return captor.getValue();
+    }
+
+    private DecisionResponse decisionResponse(long version, String status) {
+        DecisionResponse response = new DecisionResponse();
+        response.setId(DECISION_ID);
+        response.setVersion(version);
+        response.setStatus(status);
+        return response;
+    }
+
+    private double watchers() {
+        return meterRegistry.get(DecisionVersionWatcher.WATCHERS).gauge().value();
+    }
+
+    @Test
+    public void init_listensForEvents() {
+        watcher.init();
+
+        verify(listenerManager).addListener(watcher);
+    }
+
+    @Test
+    public void onEvent_deployedNotifiesEveryWatcherOfTheVersion() {
+        withoutTransaction();
+        runNotificationsInline();
+        watcher.watch(DECISION_ID, 1L, (response) -> notified.add("first:" + response.getStatus()));
+        watcher.watch(DECISION_ID, 1L, (response) -> notified.add("second:" + response.getStatus()));
+        assertThat(watchers(), equalTo(2.0));
+
+        watcher.onEvent(new AfterDeployedEvent(decisionResponse(1L, "CURRENT")));
+
+        assertThat(notified, containsInAnyOrder("first:CURRENT", "second:CURRENT"));
+        assertThat(watchers(), equalTo(0.0));
+
+        // Watchers are only notified once
+        watcher.onEvent(new AfterDeployedEvent(decisionResponse(1L, "CURRENT")));
+        assertThat(notified.size(), equalTo(2));
+    }
+
+    @Test
+    public void onEvent_failedNotifiesWatcher() {
+        withoutTransaction();
+        runNotificationsInline();
+        watcher.watch(DECISION_ID, 1L, (response) -> notified.add(response.getStatus()));
+
+        watcher.onEvent(new AfterFailedEvent(decisionResponse(1L, "FAILED")));
+
+        assertThat(notified, contains("FAILED"));
+    }
+
+    @Test
+    public void onEvent_otherVersionsAndEventsAreIgnored() {
+        withoutTransaction();
+        watcher.watch(DECISION_ID, 1L, (response) -> notified.add(response.getStatus()));
+
+        watcher.onEvent(new AfterDeployedEvent(decisionResponse(2L, "CURRENT")));
+        watcher.onEvent(new BeforeCreateOrUpdateVersionEvent());
+
+        assertThat(notified, is(empty()));
+        assertThat(watchers(), equalTo(1.0));
+    }
+
+    @Test
+    public void onEvent_withinTransactionNotifiesWatcherAfterCommit() {
+        runNotificationsInline();
+        watcher.watch(DECISION_ID, 1L, (response) -> notified.add(response.getStatus()));
+
+        Synchronization synchronization = onEventWithinTransaction(new AfterDeployedEvent(decisionResponse(1L, "CURRENT")));
+        assertThat(notified, is(empty()));
+
+        synchronization.afterCompletion(Status.STATUS_COMMITTED);
+        assertThat(notified, contains("CURRENT"));
+        assertThat(watchers(), equalTo(0.0));
+    }
+
+    @Test
+    public void onEvent_withinTransactionDoesNotNotifyWatcherOnRollback() {
+        watcher.watch(DECISION_ID, 1L, (response) -> notified.add(response.getStatus()));
+
+        Synchronization synchronization = onEventWithinTransaction(new AfterDeployedEvent(decisionResponse(1L, "CURRENT")));
+        synchronization.afterCompletion(Status.STATUS_ROLLEDBACK);
+
+        assertThat(notified, is(empty()));
+        assertThat(watchers(), equalTo(1.0));
+    }
+
+    @Test
+    public void watch_stoppedWatcherIsNotNotified() {
+        withoutTransaction();
+        Runnable stopWatching = watcher.watch(DECISION_ID, 1L, (response) -> notified.add(response.getStatus()));
+
+        stopWatching.run();
+        assertThat(watchers(), equalTo(0.0));
+
+        watcher.onEvent(new AfterDeployedEvent(decisionResponse(1L, "CURRENT")));
+        assertThat(notified, is(empty()));
+
+        // Stopping an already stopped watcher has no effect
+        stopWatching.run();
+        assertThat(watchers(), equalTo(0.0));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.app.model.DeploymentOutboxEntry;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DeploymentOutboxDispatcherTest {
+
+    @Mock
+    DeploymentOutbox deploymentOutbox;
+
+    @Mock
+    DeploymentScheduler deploymentScheduler;
+
+    @Mock
+    DecisionLifecycleOrchestrator decisionLifecycle;
+
+    private DeploymentOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    public void beforeEach() {
+        dispatcher = new DeploymentOutboxDispatcher(deploymentOutbox, deploymentScheduler, decisionLifecycle, false, Duration.ofSeconds(5));
+    }
+
+    private DeploymentOutboxEntry createEntry(String customerId) {
+        DeploymentOutboxEntry entry = mock(DeploymentOutboxEntry.class);
+        when(entry.getCustomerId()).thenReturn(customerId);
+        return entry;
+    }
+
+    @Test
+    public void dispatch_schedulesClaimedDeployments() {
+        DeploymentOutboxEntry entry = createEntry("foo");
+        when(deploymentOutbox.claimDue()).thenReturn(Arrays.asList(entry));
+
+        dispatcher.dispatch();
+
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(deploymentScheduler).schedule(eq("foo"), captor.capture());
+        captor.getValue().run();
+        verify(decisionLifecycle).deliverDeployment(entry);
+    }
+
+    @Test
+    public void dispatch_continuesWhenCustomerQueueIsFull() {
+        DeploymentOutboxEntry full = createEntry("foo");
+        DeploymentOutboxEntry other = createEntry("bar");
+        when(deploymentOutbox.claimDue()).thenReturn(Arrays.asList(full, other));
+        doThrow(new DeploymentQueueFullException("Nope!")).when(deploymentScheduler).schedule(eq("foo"), any(Runnable.class));
+
+        dispatcher.dispatch();
+
+        verify(deploymentScheduler).schedule(eq("bar"), any(Runnable.class));
+    }
+}
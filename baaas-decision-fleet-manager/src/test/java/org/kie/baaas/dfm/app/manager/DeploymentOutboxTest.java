@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.app.dao.DeploymentOutboxDAO;
+import org.kie.baaas.dfm.app.model.Decision;
+import org.kie.baaas.dfm.app.model.DecisionVersion;
+import org.kie.baaas.dfm.app.model.DeploymentOutboxEntry;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DeploymentOutboxTest {
+
+    private static final String CUSTOMER_ID = "customer-id-1";
+
+    @Mock
+    DeploymentOutboxDAO deploymentOutboxDAO;
+
+    private DeploymentOutbox deploymentOutbox;
+
+    private DecisionVersion decisionVersion;
+
+    @BeforeEach
+    public void beforeEach() {
+        deploymentOutbox = new DeploymentOutbox(deploymentOutboxDAO, Duration.ofMinutes(5), Duration.ofSeconds(5), Duration.ofSeconds(30), 3, 50);
+
+        Decision decision = new Decision();
+        decisionVersion = new DecisionVersion();
+        decisionVersion.setVersion(1L);
+        decision.addVersion(decisionVersion);
+    }
+
+    private DeploymentOutboxEntry entry(int attempts) {
+        DeploymentOutboxEntry entry = new DeploymentOutboxEntry(CUSTOMER_ID, decisionVersion, ZonedDateTime.now());
+        entry.setAttempts(attempts);
+        when(deploymentOutboxDAO.findById(decisionVersion.getId())).thenReturn(entry);
+        return entry;
+    }
+
+    @Test
+    public void add_leasesNewEntryToCaller() {
+        deploymentOutbox.add(CUSTOMER_ID, decisionVersion);
+
+        ArgumentCaptor<DeploymentOutboxEntry> captor = ArgumentCaptor.forClass(DeploymentOutboxEntry.class);
+        verify(deploymentOutboxDAO).persist(captor.capture());
+        DeploymentOutboxEntry entry = captor.getValue();
+        assertThat(entry.getDecisionVersionId(), equalTo(decisionVersion.getId()));
+        assertThat(entry.getDecisionId(), equalTo(decisionVersion.getDecision().getId()));
+        assertThat(entry.getCustomerId(), equalTo(CUSTOMER_ID));
+        assertThat(entry.getAttempts(), equalTo(0));
+        assertThat(entry.getNextAttemptAt().isAfter(ZonedDateTime.now().plusMinutes(4)), is(true));
+    }
+
+    @Test
+    public void retry_backsOffExponentially() {
+        DeploymentOutboxEntry entry = entry(1);
+
+        assertThat(deploymentOutbox.retry(decisionVersion.getId(), new RuntimeException("Nope!")), is(true));
+
+        assertThat(entry.getAttempts(), equalTo(2));
+        assertThat(entry.getLastError(), equalTo("Nope!"));
+        assertThat(entry.getNextAttemptAt().isAfter(ZonedDateTime.now().plusSeconds(9)), is(true));
+        assertThat(entry.getNextAttemptAt().isBefore(ZonedDateTime.now().plusSeconds(11)), is(true));
+    }
+
+    @Test
+    public void retry_givesUpAfterMaxAttempts() {
+        DeploymentOutboxEntry entry = entry(2);
+
+        assertThat(deploymentOutbox.retry(decisionVersion.getId(), new RuntimeException("Nope!")), is(false));
+
+        verify(deploymentOutboxDAO).delete(entry);
+    }
+
+    @Test
+    public void complete() {
+        deploymentOutbox.complete(decisionVersion.getId());
+
+        verify(deploymentOutboxDAO).deleteById(decisionVersion.getId());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DeploymentSchedulerTest {
+
+    @Mock
+    ManagedExecutor executorService;
+
+    private MeterRegistry meterRegistry;
+
+    private final List<Runnable> started = new ArrayList<>();
+
+    private final List<CompletableFuture<Void>> running = new ArrayList<>();
+
+    private final List<String> completed = new ArrayList<>();
+
+    @BeforeEach
+    public void beforeEach() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(executorService.runAsync(any(Runnable.class))).thenAnswer(invocation -> {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            started.add(invocation.getArgument(0));
+            running.add(future);
+            return future;
+        });
+    }
+
+    private Runnable deployment(String name) {
+        return () -> completed.add(name);
+    }
+
+    private void complete(int index) {
+        started.get(index).run();
+        running.get(index).complete(null);
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    @Test
+    public void schedule_servesCustomersInTurn() {
+        DeploymentScheduler scheduler = new DeploymentScheduler(executorService, meterRegistry, 1, 10);
+
+        scheduler.schedule("customer-a", deployment("a1"));
+        scheduler.schedule("customer-a", deployment("a2"));
+        scheduler.schedule("customer-a", deployment("a3"));
+        scheduler.schedule("customer-b", deployment("b1"));
+
+        assertThat(started, hasSize(1));
+        assertThat(gauge(DeploymentScheduler.RUNNING_DEPLOYMENTS), equalTo(1.0));
+        assertThat(gauge(DeploymentScheduler.QUEUED_DEPLOYMENTS), equalTo(3.0));
+
+        for (int i = 0; i < 4; i++) {
+            complete(i);
+        }
+
+        assertThat(completed, contains("a1", "a2", "b1", "a3"));
+        assertThat(gauge(DeploymentScheduler.RUNNING_DEPLOYMENTS), equalTo(0.0));
+        assertThat(gauge(DeploymentScheduler.QUEUED_DEPLOYMENTS), equalTo(0.0));
+    }
+
+    @Test
+    public void schedule_boundsConcurrentDeployments() {
+        DeploymentScheduler scheduler = new DeploymentScheduler(executorService, meterRegistry, 2, 10);
+
+        scheduler.schedule("customer-a", deployment("a1"));
+        scheduler.schedule("customer-b", deployment("b1"));
+        scheduler.schedule("customer-c", deployment("c1"));
+
+        assertThat(started, hasSize(2));
+
+        running.get(0).completeExceptionally(new RuntimeException("Deployment failed"));
+
+        assertThat(started, hasSize(3));
+    }
+
+    @Test
+    public void schedule_rejectsWhenCustomerQueueIsFull() {
+        DeploymentScheduler scheduler = new DeploymentScheduler(executorService, meterRegistry, 1, 1);
+
+        scheduler.schedule("customer-a", deployment("a1"));
+        scheduler.schedule("customer-a", deployment("a2"));
+
+        assertThrows(DeploymentQueueFullException.class, () -> scheduler.schedule("customer-a", deployment("a3")));
+        scheduler.schedule("customer-b", deployment("b1"));
+    }
+}
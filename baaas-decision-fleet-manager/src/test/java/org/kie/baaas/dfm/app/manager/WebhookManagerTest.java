@@ -1,14 +1,24 @@
 package org.kie.baaas.dfm.app.manager;
 
+import java.net.URL;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import javax.inject.Inject;
 
 import org.junit.jupiter.api.Test;
+import org.kie.baaas.dfm.api.webhook.WebhookRegistrationRequest;
+import org.kie.baaas.dfm.app.dao.WebhookChangeDAO;
+import org.kie.baaas.dfm.app.dao.WebhookDAO;
 import org.kie.baaas.dfm.app.listener.ListenerManager;
+import org.kie.baaas.dfm.app.model.webhook.Webhook;
 import org.kie.baaas.dfm.app.webhook.WebhookListener;
 
+import io.quarkus.test.TestTransaction;
 import io.quarkus.test.junit.QuarkusTest;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
@@ -20,12 +30,51 @@ public class WebhookManagerTest {
     @Inject
     ListenerManager listenerManager;
 
+    @Inject
+    WebhookDAO webhookDAO;
+
+    @Inject
+    WebhookChangeDAO webhookChangeDAO;
+
+    private List<WebhookListener> webhookListeners() {
+        return listenerManager.getListeners().stream()
+                .filter(WebhookListener.class::isInstance)
+                .map(WebhookListener.class::cast)
+                .collect(Collectors.toList());
+    }
+
+    private boolean hasListener(Webhook webhook) {
+        return webhookListeners().stream().anyMatch(l -> l.getWebhook().getId().equals(webhook.getId()));
+    }
+
     @Test
     public void testWebhookMgrInit() {
         assertTrue(webhookManager.listAll().size() > 0);
         assertTrue(listenerManager.hasListeners());
-        assertEquals(1, listenerManager.getListeners().size());
-        WebhookListener listener0 = (WebhookListener) listenerManager.getListeners().stream().findFirst().get();
+        // The DecisionVersionWatcher listens alongside the webhooks
+        List<WebhookListener> webhookListeners = webhookListeners();
+        assertEquals(1, webhookListeners.size());
+        WebhookListener listener0 = webhookListeners.get(0);
         assertEquals("http://localhost:8080/test-builtin-webhook", listener0.getWebhook().getUrl().toString());
     }
+
+    @Test
+    @TestTransaction
+    public void testRefreshListenerFollowsChangesOnOtherReplicas() throws Exception {
+        long latestSeq = webhookChangeDAO.latestSeq();
+        WebhookRegistrationRequest request = new WebhookRegistrationRequest();
+        request.setUrl(new URL("http://localhost:8080/refreshed-webhook"));
+        Webhook webhook = webhookManager.registerWebhook("refresh-customer", request);
+        assertTrue(webhookChangeDAO.latestSeq() > latestSeq);
+
+        // Registered on another replica
+        listenerManager.removeListener("refresh-customer", webhook.getId());
+        webhookManager.refreshListener("refresh-customer", webhook.getId());
+        assertTrue(hasListener(webhook));
+
+        // Unregistered on another replica
+        webhookDAO.delete(webhook);
+        webhookManager.refreshListener("refresh-customer", webhook.getId());
+        assertFalse(hasListener(webhook));
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.manager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.app.dao.WebhookChangeDAO;
+import org.kie.baaas.dfm.app.model.webhook.WebhookChange;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WebhookRegistrySynchronizerTest {
+
+    private static final String CUSTOMER_ID = "customer-id-1";
+
+    @Mock
+    WebhookChangeDAO webhookChangeDAO;
+
+    @Mock
+    WebhookManager webhookManager;
+
+    private WebhookRegistrySynchronizer synchronizer;
+
+    @BeforeEach
+    public void beforeEach() {
+        synchronizer = new WebhookRegistrySynchronizer(webhookChangeDAO, webhookManager, false, Duration.ofSeconds(5), 500, Duration.ofMinutes(1), Duration.ofDays(1));
+    }
+
+    private WebhookChange change(long seq, String webhookId) {
+        WebhookChange change = mock(WebhookChange.class);
+        when(change.getSeq()).thenReturn(seq);
+        when(change.getCustomerId()).thenReturn(CUSTOMER_ID);
+        when(change.getWebhookId()).thenReturn(webhookId);
+        return change;
+    }
+
+    private void changesAfter(long seq, WebhookChange... changes) {
+        when(webhookChangeDAO.findAfter(eq(seq), anyInt())).thenReturn(Arrays.asList(changes));
+    }
+
+    @Test
+    public void start_startsAfterChangesReflectedByLoadedWebhooks() {
+        when(webhookManager.getLoadedChangeSeq()).thenReturn(250L);
+
+        synchronizer.start();
+
+        assertThat(synchronizer.getWatermark(), equalTo(250L));
+    }
+
+    @Test
+    public void synchronize_refreshesListenersOfChangedWebhooks() {
+        changesAfter(0, change(1, "webhook-1"), change(2, "webhook-2"));
+
+        synchronizer.synchronize();
+
+        verify(webhookManager).refreshListener(CUSTOMER_ID, "webhook-1");
+        verify(webhookManager).refreshListener(CUSTOMER_ID, "webhook-2");
+        verify(webhookChangeDAO).deleteBefore(any());
+        assertThat(synchronizer.getWatermark(), equalTo(2L));
+        assertThat(synchronizer.getGaps(), equalTo(0));
+    }
+
+    @Test
+    public void synchronize_appliesSkippedChangeOnceVisible() {
+        when(webhookChangeDAO.findBySeqs(anyCollection())).thenReturn(Collections.emptyList());
+        changesAfter(0, change(1, "webhook-1"), change(3, "webhook-3"));
+
+        synchronizer.synchronize();
+
+        assertThat(synchronizer.getWatermark(), equalTo(3L));
+        assertThat(synchronizer.getGaps(), equalTo(1));
+
+        // The transaction of change 2 commits after change 3 has been applied
+        WebhookChange late = change(2, "webhook-2");
+        when(webhookChangeDAO.findBySeqs(Set.of(2L))).thenReturn(List.of(late));
+        changesAfter(3);
+
+        synchronizer.synchronize();
+
+        verify(webhookManager).refreshListener(CUSTOMER_ID, "webhook-2");
+        assertThat(synchronizer.getWatermark(), equalTo(3L));
+        assertThat(synchronizer.getGaps(), equalTo(0));
+    }
+
+    @Test
+    public void synchronize_forgetsSkippedChangesAfterTimeout() {
+        synchronizer = new WebhookRegistrySynchronizer(webhookChangeDAO, webhookManager, false, Duration.ofSeconds(5), 500, Duration.ZERO, Duration.ofDays(1));
+        changesAfter(0, change(3, "webhook-3"));
+
+        synchronizer.synchronize();
+
+        assertThat(synchronizer.getWatermark(), equalTo(3L));
+        assertThat(synchronizer.getGaps(), equalTo(0));
+    }
+
+    @Test
+    public void synchronize_continuesAfterFailure() {
+        changesAfter(0, change(1, "webhook-1"));
+        doThrow(new IllegalStateException("Nope!")).when(webhookManager).refreshListener(CUSTOMER_ID, "webhook-1");
+
+        synchronizer.synchronize();
+
+        // The failed change is applied again by the next synchronization
+        assertThat(synchronizer.getWatermark(), equalTo(0L));
+    }
+}
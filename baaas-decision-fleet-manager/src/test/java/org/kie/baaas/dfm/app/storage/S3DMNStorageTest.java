@@ -15,50 +15,78 @@
 
 package org.kie.baaas.dfm.app.storage;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+
+import javax.persistence.PersistenceException;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.kie.baaas.dfm.api.decisions.DecisionRequest;
 import org.kie.baaas.dfm.api.decisions.Model;
 import org.kie.baaas.dfm.app.config.DecisionFleetManagerConfig;
-import org.kie.baaas.dfm.app.manager.DecisionManager;
+import org.kie.baaas.dfm.app.dao.DecisionVersionDAO;
+import org.kie.baaas.dfm.app.dao.StoredDMNDAO;
 import org.kie.baaas.dfm.app.model.Decision;
 import org.kie.baaas.dfm.app.model.DecisionVersion;
+import org.kie.baaas.dfm.app.model.StoredDMN;
 import org.kie.baaas.dfm.app.storage.hash.DMNHashGenerator;
 import org.kie.baaas.dfm.app.storage.s3.S3DMNStorage;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.lenient;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class S3DMNStorageTest {
 
+    private static final String CONTENT_HASH = "/1dvp4cV/8b5+m0yw7ybmg==";
+
+    private static final String CONTENT_LOCATION = "customers/customer-id-1/dmn/ff576fa78715ffc6f9fa6d32c3bc9b9a.xml";
+
+    private static final String MD5 = "\"ff576fa78715ffc6f9fa6d32c3bc9b9a\"";
+
     @InjectMocks
     S3DMNStorage s3DMNStorage;
 
@@ -75,7 +103,10 @@ public class S3DMNStorageTest {
     DecisionFleetManagerConfig decisionFleetManagerConfig;
 
     @Mock
-    DecisionManager decisionManager;
+    DecisionVersionDAO decisionVersionDAO;
+
+    @Mock
+    StoredDMNDAO storedDMNDAO;
 
     private DecisionRequest createApiRequest() {
 
@@ -90,54 +121,240 @@ public class S3DMNStorageTest {
     }
 
     @Test
-    public void writeDMNTest() {
+    public void stageDMNTest() {
 
         String bucketName = "baaas-storage-dev";
         when(decisionFleetManagerConfig.getBucketName()).thenReturn(bucketName);
+        when(hashGenerator.generateHash(anyString())).thenReturn(CONTENT_HASH);
 
-        Decision decision = new Decision();
+        PutObjectResponse response = mock(PutObjectResponse.class);
+        ArgumentCaptor<PutObjectRequest> cap = ArgumentCaptor.forClass(PutObjectRequest.class);
+        when(response.eTag()).thenReturn(MD5);
+        when(s3Client.putObject(cap.capture(), any(RequestBody.class))).thenReturn(response);
+
+        StagedDMN stagedDMN = s3DMNStorage.stageDMN("customer-id-1", createApiRequest());
+
+        PutObjectRequest putObjectRequest = cap.getValue();
+        assertThat(putObjectRequest.bucket(), equalTo(bucketName));
+        assertThat(putObjectRequest.key(), equalTo(CONTENT_LOCATION));
+        assertThat(putObjectRequest.contentMD5(), equalTo(CONTENT_HASH));
+        assertThat(stagedDMN.getStagingLocation(), equalTo(CONTENT_LOCATION));
+        assertThat(stagedDMN.getMd5Hash(), equalTo(MD5));
+        assertThat(stagedDMN.getContentHash(), equalTo(CONTENT_HASH));
+        verify(storedDMNDAO).touch(eq("customer-id-1"), eq(CONTENT_HASH), any(ZonedDateTime.class));
+        verify(storedDMNDAO).uploaded(eq("customer-id-1"), eq(CONTENT_HASH), eq(MD5), any(ZonedDateTime.class));
+    }
+
+    @Test
+    public void stageDMNTest_skipsUploadOfStoredDMN() {
+
+        when(decisionFleetManagerConfig.getBucketName()).thenReturn("baaas-storage-dev");
+        when(hashGenerator.generateHash(anyString())).thenReturn(CONTENT_HASH);
+        when(storedDMNDAO.touch(eq("customer-id-1"), eq(CONTENT_HASH), any(ZonedDateTime.class))).thenReturn(MD5);
+
+        StagedDMN stagedDMN = s3DMNStorage.stageDMN("customer-id-1", createApiRequest());
+
+        assertThat(stagedDMN.getStagingLocation(), equalTo(CONTENT_LOCATION));
+        assertThat(stagedDMN.getMd5Hash(), equalTo(MD5));
+        assertThat(stagedDMN.getContentHash(), equalTo(CONTENT_HASH));
+        verifyNoInteractions(s3Client);
+        verify(storedDMNDAO, never()).uploaded(anyString(), anyString(), anyString(), any(ZonedDateTime.class));
+    }
+
+    @Test
+    public void stageDMNTest_touchesAgainAfterConcurrentRecord() {
+
+        when(decisionFleetManagerConfig.getBucketName()).thenReturn("baaas-storage-dev");
+        when(hashGenerator.generateHash(anyString())).thenReturn(CONTENT_HASH);
+        when(storedDMNDAO.touch(eq("customer-id-1"), eq(CONTENT_HASH), any(ZonedDateTime.class)))
+                .thenThrow(new PersistenceException("duplicate key"))
+                .thenReturn(MD5);
+
+        StagedDMN stagedDMN = s3DMNStorage.stageDMN("customer-id-1", createApiRequest());
+
+        assertThat(stagedDMN.getMd5Hash(), equalTo(MD5));
+        verifyNoInteractions(s3Client);
+    }
+
+    @Test
+    public void locateDMNTest() {
+
+        String bucketName = "baaas-storage-dev";
+        when(decisionFleetManagerConfig.getBucketName()).thenReturn(bucketName);
+        StoredDMN storedDMN = new StoredDMN("customer-id-1", CONTENT_HASH, ZonedDateTime.now(ZoneOffset.UTC));
+        storedDMN.setMd5(MD5);
+        when(storedDMNDAO.referenced(eq("customer-id-1"), eq(CONTENT_HASH), any(ZonedDateTime.class))).thenReturn(storedDMN);
+
+        dmnStorageRequest = s3DMNStorage.locateDMN("customer-id-1", new StagedDMN(CONTENT_LOCATION, MD5, CONTENT_HASH), new DecisionVersion());
+
+        assertThat(dmnStorageRequest.getProviderUrl(), equalTo("s3://" + bucketName + "/" + CONTENT_LOCATION));
+        assertThat(dmnStorageRequest.getMd5Hash(), equalTo(MD5));
+        assertThat(dmnStorageRequest.getContentHash(), equalTo(CONTENT_HASH));
+        verifyNoInteractions(s3Client);
+    }
+
+    @Test
+    public void locateDMNTest_reclaimedBeforeRecorded() {
+        when(decisionFleetManagerConfig.getBucketName()).thenReturn("baaas-storage-dev");
+        when(storedDMNDAO.referenced(eq("customer-id-1"), eq(CONTENT_HASH), any(ZonedDateTime.class))).thenReturn(null);
+
+        assertThrows(DecisionDMNStorageException.class,
+                () -> s3DMNStorage.locateDMN("customer-id-1", new StagedDMN(CONTENT_LOCATION, MD5, CONTENT_HASH), new DecisionVersion()));
+    }
+
+    @Test
+    public void promoteAndDiscardDMNTest_leaveContentAddressedDMNInPlace() {
+        StagedDMN stagedDMN = new StagedDMN(CONTENT_LOCATION, MD5, CONTENT_HASH);
+
+        s3DMNStorage.promoteDMN("customer-id-1", stagedDMN, new DecisionVersion());
+        s3DMNStorage.discardDMN(stagedDMN);
+
+        verifyNoInteractions(s3Client);
+    }
+
+    @Test
+    public void readDMNTest_resolvesThroughContentHash() {
         DecisionVersion decisionVersion = new DecisionVersion();
-        decisionVersion.setVersion(1L);
-        decisionVersion.setDecision(decision);
+        decisionVersion.setDmnHash(CONTENT_HASH);
 
-        PutObjectResponse response = mock(PutObjectResponse.class);
-        PutObjectRequest request = PutObjectRequest.builder()
-                .key("customers/customer-id-1/" + decision.getId() + "/1/dmn.xml")
-                .contentType("application/xml")
-                .bucket(bucketName)
-                .build();
+        ArgumentCaptor<GetObjectRequest> cap = ArgumentCaptor.forClass(GetObjectRequest.class);
+        when(s3Client.getObject(cap.capture())).thenReturn(getObjectResponse("foo", null));
+
+        s3DMNStorage.readDMN("customer-id-1", decisionVersion, null);
+
+        assertThat(cap.getValue().key(), equalTo(CONTENT_LOCATION));
+    }
+
+    @Test
+    public void readDMNTest_range() throws IOException {
+        DecisionVersion decisionVersion = new DecisionVersion();
+        decisionVersion.setDmnHash(CONTENT_HASH);
+
+        ArgumentCaptor<GetObjectRequest> cap = ArgumentCaptor.forClass(GetObjectRequest.class);
+        when(s3Client.getObject(cap.capture())).thenReturn(getObjectResponse("<xml ", "bytes 0-4/25"));
+
+        DMNContent dmnContent = s3DMNStorage.readDMN("customer-id-1", decisionVersion, "bytes=0-4");
+
+        assertThat(cap.getValue().range(), equalTo("bytes=0-4"));
+        assertThat(dmnContent.isPartial(), is(true));
+        assertThat(dmnContent.getContentRange(), equalTo("bytes 0-4/25"));
+        assertThat(dmnContent.getContentLength(), equalTo(5L));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        dmnContent.writeTo(outputStream);
+        assertThat(outputStream.toString(StandardCharsets.UTF_8), equalTo("<xml "));
+    }
+
+    @Test
+    public void readDMNTest_rangeNotSatisfiable() {
+        DecisionVersion decisionVersion = new DecisionVersion();
+        decisionVersion.setDmnHash(CONTENT_HASH);
+
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenThrow(S3Exception.builder().statusCode(416).build());
+
+        DMNRangeNotSatisfiableException e = assertThrows(DMNRangeNotSatisfiableException.class, () -> s3DMNStorage.readDMN("customer-id-1", decisionVersion, "bytes=100-"));
+        assertThat(e.getStatusCode(), equalTo(416));
+    }
 
-        when(response.eTag()).thenReturn("ff576fa78715ffc6f9fa6d32c3bc9b9a");
-        when(s3Client.putObject(Mockito.eq(request), any(RequestBody.class)))
-                .thenReturn(response);
+    private ResponseInputStream<GetObjectResponse> getObjectResponse(String content, String contentRange) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        GetObjectResponse response = GetObjectResponse.builder().contentLength((long) bytes.length).contentRange(contentRange).build();
+        return new ResponseInputStream<>(response, AbortableInputStream.create(new ByteArrayInputStream(bytes)));
+    }
 
-        dmnStorageRequest = s3DMNStorage.writeDMN("customer-id-1", createApiRequest(), decisionVersion);
+    private void mockPaginatedListing(Map<String, List<List<S3Object>>> pagesByPrefix) {
+        when(s3Client.listObjectsV2Paginator(any(ListObjectsV2Request.class))).thenAnswer(invocation -> new ListObjectsV2Iterable(s3Client, invocation.getArgument(0)));
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request request = invocation.getArgument(0);
+            List<List<S3Object>> pages = pagesByPrefix.get(request.prefix());
+            int page = request.continuationToken() == null ? 0 : Integer.parseInt(request.continuationToken());
+            boolean truncated = page < pages.size() - 1;
+            return ListObjectsV2Response.builder()
+                    .contents(pages.get(page))
+                    .isTruncated(truncated)
+                    .nextContinuationToken(truncated ? String.valueOf(page + 1) : null)
+                    .build();
+        });
+    }
 
-        assertThat(dmnStorageRequest.getProviderUrl(), equalTo("s3://" + bucketName + "/customers/customer-id-1/" + decision.getId() + "/1/dmn.xml"));
-        assertThat(dmnStorageRequest.getMd5Hash(), equalTo("ff576fa78715ffc6f9fa6d32c3bc9b9a"));
+    private S3Object s3Object(String key, Instant lastModified) {
+        return S3Object.builder().key(key).lastModified(lastModified).build();
     }
 
     @Test
     public void deleteDMNTest() {
-        List<S3Object> objLIst = new ArrayList<>();
-        objLIst.add(S3Object.builder()
-                .key("obj1").lastModified(ZonedDateTime.now(ZoneOffset.MAX).toInstant())
-                .eTag("obj1-chacksum")
-                .storageClass("STANDARD")
-                .build());
 
-        objLIst.add(S3Object.builder()
-                .key("obj2").lastModified(ZonedDateTime.now(ZoneOffset.MAX).toInstant())
-                .eTag("obj2-chacksum")
-                .storageClass("STANDARD")
-                .build());
+        Decision decision = new Decision();
+        String decisionPrefix = "customers/customer-id-1/" + decision.getId() + "/";
+        List<S3Object> firstPage = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            firstPage.add(s3Object(decisionPrefix + i + "/dmn.xml", Instant.now()));
+        }
+        List<S3Object> secondPage = List.of(s3Object(decisionPrefix + "1000/dmn.xml", Instant.now()));
+
+        when(decisionFleetManagerConfig.getBucketName()).thenReturn("baaas-storage-dev");
+        mockPaginatedListing(Map.of(decisionPrefix, List.of(firstPage, secondPage)));
+
+        ArgumentCaptor<DeleteObjectsRequest> cap = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        when(s3Client.deleteObjects(cap.capture())).thenReturn(DeleteObjectsResponse.builder().build());
+
+        s3DMNStorage.deleteDMN("customer-id-1", decision);
+
+        List<DeleteObjectsRequest> requests = cap.getAllValues();
+        assertThat(requests, hasSize(2));
+        assertThat(requests.get(0).delete().objects(), hasSize(1000));
+        assertThat(requests.get(1).delete().objects(), hasSize(1));
+        assertThat(requests.get(1).delete().objects().get(0).key(), equalTo(decisionPrefix + "1000/dmn.xml"));
+    }
+
+    private StoredDMN storedDMN(ZonedDateTime stagedAt) {
+        StoredDMN storedDMN = new StoredDMN("customer-id-1", CONTENT_HASH, stagedAt);
+        storedDMN.setMd5(MD5);
+        return storedDMN;
+    }
+
+    @Test
+    public void reclaimDMNTest_deletesUnreferencedDMN() {
+
+        ZonedDateTime cutoff = ZonedDateTime.now(ZoneOffset.UTC);
+        StoredDMN storedDMN = storedDMN(cutoff.minus(Duration.ofDays(1)));
+        when(decisionFleetManagerConfig.getBucketName()).thenReturn("baaas-storage-dev");
+        when(storedDMNDAO.lock("customer-id-1", CONTENT_HASH)).thenReturn(storedDMN);
+        when(decisionVersionDAO.countByCustomerAndDmnHash("customer-id-1", CONTENT_HASH)).thenReturn(0L);
+
+        ArgumentCaptor<DeleteObjectRequest> cap = ArgumentCaptor.forClass(DeleteObjectRequest.class);
 
-        ListObjectsV2Response listObjectsV2Response = ListObjectsV2Response.builder().contents(objLIst).build();
+        assertThat(s3DMNStorage.reclaimDMN("customer-id-1", CONTENT_HASH, cutoff), is(true));
+
+        verify(s3Client).deleteObject(cap.capture());
+        assertThat(cap.getValue().key(), equalTo(CONTENT_LOCATION));
+        verify(storedDMNDAO).delete(storedDMN);
+    }
+
+    @Test
+    public void reclaimDMNTest_keepsReferencedDMN() {
+
+        ZonedDateTime cutoff = ZonedDateTime.now(ZoneOffset.UTC);
+        when(storedDMNDAO.lock("customer-id-1", CONTENT_HASH)).thenReturn(storedDMN(cutoff.minus(Duration.ofDays(1))));
+        when(decisionVersionDAO.countByCustomerAndDmnHash("customer-id-1", CONTENT_HASH)).thenReturn(1L);
+
+        assertThat(s3DMNStorage.reclaimDMN("customer-id-1", CONTENT_HASH, cutoff), is(false));
+
+        verifyNoInteractions(s3Client);
+        verify(storedDMNDAO, never()).delete(any(StoredDMN.class));
+    }
+
+    @Test
+    public void reclaimDMNTest_keepsDMNStagedAfterCutoff() {
 
-        lenient().when(s3Client.listObjectsV2(ListObjectsV2Request.builder().build())).thenReturn(listObjectsV2Response);
+        // The DMN was staged again for a DecisionVersion that is still being recorded
+        ZonedDateTime cutoff = ZonedDateTime.now(ZoneOffset.UTC).minus(Duration.ofHours(1));
+        when(storedDMNDAO.lock("customer-id-1", CONTENT_HASH)).thenReturn(storedDMN(ZonedDateTime.now(ZoneOffset.UTC)));
 
-        // TODO finish to mock the delete request.
+        assertThat(s3DMNStorage.reclaimDMN("customer-id-1", CONTENT_HASH, cutoff), is(false));
 
+        verifyNoInteractions(s3Client, decisionVersionDAO);
+        verify(storedDMNDAO, never()).delete(any(StoredDMN.class));
     }
 
     @Test
@@ -151,10 +368,11 @@ public class S3DMNStorageTest {
         when(decisionVersion.getDecision()).thenReturn(decision);
 
         ArgumentCaptor<GetObjectRequest> cap = ArgumentCaptor.forClass(GetObjectRequest.class);
-        when(s3Client.getObject(cap.capture(), any(ResponseTransformer.class))).thenReturn(null);
+        when(s3Client.getObject(cap.capture())).thenReturn(getObjectResponse("foo", null));
 
-        ByteArrayOutputStream outputStream = s3DMNStorage.readDMN("1", decisionVersion);
-        assertThat(outputStream, is(notNullValue()));
+        DMNContent dmnContent = s3DMNStorage.readDMN("1", decisionVersion, null);
+        assertThat(dmnContent, is(notNullValue()));
+        assertThat(dmnContent.isPartial(), is(false));
 
         GetObjectRequest getObjectRequest = cap.getValue();
         assertThat(getObjectRequest.key(), equalTo("customers/1/" + id + "/" + version + "/dmn.xml"));
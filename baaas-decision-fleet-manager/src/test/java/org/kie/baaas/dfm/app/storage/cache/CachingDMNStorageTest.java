@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.storage.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.app.model.DecisionVersion;
+import org.kie.baaas.dfm.app.storage.DMNContent;
+import org.kie.baaas.dfm.app.storage.DMNRangeNotSatisfiableException;
+import org.kie.baaas.dfm.app.storage.s3.S3DMNStorage;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CachingDMNStorageTest {
+
+    private static final String DMN = "<xml test=\"123\">foo</xml>";
+
+    @Mock
+    S3DMNStorage delegate;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void beforeEach() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private CachingDMNStorage cache(long maxBytes, boolean compress) {
+        return new CachingDMNStorage(delegate, meterRegistry, maxBytes, maxBytes, compress);
+    }
+
+    private DecisionVersion decisionVersion(long version) {
+        DecisionVersion decisionVersion = new DecisionVersion();
+        decisionVersion.setVersion(version);
+        decisionVersion.setDmnLocation("s3://bucket/dmn-" + version + ".xml");
+        when(delegate.readDMN("customer-id-1", decisionVersion, null)).thenAnswer(invocation -> dmnContent(DMN));
+        return decisionVersion;
+    }
+
+    private DMNContent dmnContent(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return new DMNContent(new ByteArrayInputStream(bytes), (long) bytes.length, null);
+    }
+
+    private String read(DMNContent dmnContent) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        dmnContent.writeTo(output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private double count(String name) {
+        return meterRegistry.counter(name).count();
+    }
+
+    @Test
+    public void readDMN_servesRepeatReadsFromCache() throws IOException {
+        CachingDMNStorage storage = cache(1024, false);
+        DecisionVersion decisionVersion = decisionVersion(1L);
+
+        assertThat(read(storage.readDMN("customer-id-1", decisionVersion, null)), equalTo(DMN));
+        assertThat(read(storage.readDMN("customer-id-1", decisionVersion, null)), equalTo(DMN));
+
+        verify(delegate, times(1)).readDMN("customer-id-1", decisionVersion, null);
+        assertThat(count(CachingDMNStorage.CACHE_MISSES), equalTo(1.0));
+        assertThat(count(CachingDMNStorage.CACHE_HITS), equalTo(1.0));
+        assertThat(storage.getCurrentBytes(), equalTo((long) DMN.length()));
+    }
+
+    @Test
+    public void readDMN_evictsLeastRecentlyReadWhenFull() throws IOException {
+        CachingDMNStorage storage = cache(DMN.length() * 2, false);
+        DecisionVersion first = decisionVersion(1L);
+        DecisionVersion second = decisionVersion(2L);
+        DecisionVersion third = decisionVersion(3L);
+
+        read(storage.readDMN("customer-id-1", first, null));
+        read(storage.readDMN("customer-id-1", second, null));
+        read(storage.readDMN("customer-id-1", first, null));
+        read(storage.readDMN("customer-id-1", third, null));
+        read(storage.readDMN("customer-id-1", first, null));
+        read(storage.readDMN("customer-id-1", second, null));
+
+        verify(delegate, times(1)).readDMN("customer-id-1", first, null);
+        verify(delegate, times(2)).readDMN("customer-id-1", second, null);
+        assertThat(count(CachingDMNStorage.CACHE_EVICTIONS), equalTo(2.0));
+        assertThat(storage.getCurrentBytes(), equalTo((long) DMN.length() * 2));
+    }
+
+    @Test
+    public void readDMN_doesNotCacheDMNLargerThanCache() throws IOException {
+        CachingDMNStorage storage = cache(DMN.length() - 1, false);
+        DecisionVersion decisionVersion = decisionVersion(1L);
+
+        assertThat(read(storage.readDMN("customer-id-1", decisionVersion, null)), equalTo(DMN));
+        assertThat(read(storage.readDMN("customer-id-1", decisionVersion, null)), equalTo(DMN));
+
+        verify(delegate, times(2)).readDMN("customer-id-1", decisionVersion, null);
+        assertThat(storage.getCurrentBytes(), equalTo(0L));
+    }
+
+    @Test
+    public void readDMN_compressed() throws IOException {
+        String dmn = DMN.repeat(100);
+        CachingDMNStorage storage = cache(dmn.length(), true);
+        DecisionVersion decisionVersion = new DecisionVersion();
+        decisionVersion.setDmnLocation("s3://bucket/dmn-1.xml");
+        when(delegate.readDMN("customer-id-1", decisionVersion, null)).thenReturn(dmnContent(dmn));
+
+        assertThat(read(storage.readDMN("customer-id-1", decisionVersion, null)), equalTo(dmn));
+        assertThat(read(storage.readDMN("customer-id-1", decisionVersion, null)), equalTo(dmn));
+
+        verify(delegate, times(1)).readDMN("customer-id-1", decisionVersion, null);
+        assertThat(storage.getCurrentBytes(), lessThan((long) dmn.length()));
+    }
+
+    @Test
+    public void readDMN_servesRangeFromCache() throws IOException {
+        CachingDMNStorage storage = cache(1024, true);
+        DecisionVersion decisionVersion = decisionVersion(1L);
+        read(storage.readDMN("customer-id-1", decisionVersion, null));
+
+        DMNContent range = storage.readDMN("customer-id-1", decisionVersion, "bytes=0-4");
+        assertThat(range.getContentRange(), equalTo("bytes 0-4/" + DMN.length()));
+        assertThat(range.getContentLength(), equalTo(5L));
+        assertThat(read(range), equalTo("<xml "));
+
+        DMNContent suffix = storage.readDMN("customer-id-1", decisionVersion, "bytes=-6");
+        assertThat(read(suffix), equalTo("</xml>"));
+
+        DMNContent invalid = storage.readDMN("customer-id-1", decisionVersion, "bytes=4-0");
+        assertThat(invalid.getContentRange(), is(nullValue()));
+
+        assertThrows(DMNRangeNotSatisfiableException.class, () -> storage.readDMN("customer-id-1", decisionVersion, "bytes=1000-"));
+        verify(delegate, times(1)).readDMN("customer-id-1", decisionVersion, null);
+    }
+
+    @Test
+    public void readDMN_rangeNotCachedIsReadFromDelegate() throws IOException {
+        CachingDMNStorage storage = cache(1024, false);
+        DecisionVersion decisionVersion = new DecisionVersion();
+        decisionVersion.setDmnLocation("s3://bucket/dmn-1.xml");
+        DMNContent partial = new DMNContent(new ByteArrayInputStream("<xml ".getBytes(StandardCharsets.UTF_8)), 5L, "bytes 0-4/25");
+        when(delegate.readDMN("customer-id-1", decisionVersion, "bytes=0-4")).thenReturn(partial);
+
+        assertThat(storage.readDMN("customer-id-1", decisionVersion, "bytes=0-4"), is(partial));
+        assertThat(storage.getCurrentBytes(), equalTo(0L));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.storage.s3;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.app.dao.StoredDMNDAO;
+import org.kie.baaas.dfm.app.model.StoredDMN;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class UnreferencedDMNSweeperTest {
+
+    @Mock
+    S3DMNStorage dmnStorage;
+
+    @Mock
+    StoredDMNDAO storedDMNDAO;
+
+    private UnreferencedDMNSweeper sweeper;
+
+    @BeforeEach
+    public void beforeEach() {
+        sweeper = new UnreferencedDMNSweeper(dmnStorage, storedDMNDAO, false, Duration.ofHours(1), 100);
+    }
+
+    @Test
+    public void sweep_reclaimsUnreferencedDMNsStagedBeforeGracePeriod() {
+        StoredDMN first = new StoredDMN("foo", "hash-1", ZonedDateTime.now(ZoneOffset.UTC).minus(Duration.ofDays(1)));
+        StoredDMN second = new StoredDMN("bar", "hash-2", ZonedDateTime.now(ZoneOffset.UTC).minus(Duration.ofDays(1)));
+        ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.forClass(ZonedDateTime.class);
+        when(storedDMNDAO.listUnreferencedBefore(cutoff.capture(), eq(100))).thenReturn(Arrays.asList(first, second));
+        when(dmnStorage.reclaimDMN(eq("foo"), eq("hash-1"), any(ZonedDateTime.class))).thenReturn(true);
+        when(dmnStorage.reclaimDMN(eq("bar"), eq("hash-2"), any(ZonedDateTime.class))).thenReturn(false);
+
+        assertThat(sweeper.sweep(), equalTo(1));
+
+        assertThat(cutoff.getValue().isAfter(ZonedDateTime.now(ZoneOffset.UTC).minus(Duration.ofHours(1))), is(false));
+        verify(dmnStorage).reclaimDMN("foo", "hash-1", cutoff.getValue());
+    }
+
+    @Test
+    public void scheduledSweep_disabled() {
+        sweeper.scheduledSweep();
+
+        verifyNoInteractions(storedDMNDAO, dmnStorage);
+    }
+
+    @Test
+    public void sweep_continuesWhenReclaimFails() {
+        StoredDMN failing = new StoredDMN("foo", "hash-1", ZonedDateTime.now(ZoneOffset.UTC).minus(Duration.ofDays(1)));
+        StoredDMN other = new StoredDMN("bar", "hash-2", ZonedDateTime.now(ZoneOffset.UTC).minus(Duration.ofDays(1)));
+        when(storedDMNDAO.listUnreferencedBefore(any(ZonedDateTime.class), eq(100))).thenReturn(Arrays.asList(failing, other));
+        when(dmnStorage.reclaimDMN(eq("foo"), eq("hash-1"), any(ZonedDateTime.class))).thenThrow(new IllegalStateException("Nope!"));
+        when(dmnStorage.reclaimDMN(eq("bar"), eq("hash-2"), any(ZonedDateTime.class))).thenReturn(true);
+
+        assertThat(sweeper.sweep(), equalTo(1));
+    }
+}
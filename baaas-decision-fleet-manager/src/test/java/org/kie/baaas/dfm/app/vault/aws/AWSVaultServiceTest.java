@@ -8,7 +8,6 @@ import javax.inject.Inject;
 import org.junit.jupiter.api.Test;
 import org.kie.baaas.dfm.app.vault.Secret;
 import org.kie.baaas.dfm.app.vault.VaultException;
-import org.kie.baaas.dfm.app.vault.VaultService;
 
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.mockito.InjectMock;
@@ -37,7 +36,7 @@ import static org.mockito.Mockito.when;
 class AWSVaultServiceTest {
 
     @Inject
-    VaultService vault;
+    AWSVaultService vault;
 
     @InjectMock
     SecretsManagerClient client;
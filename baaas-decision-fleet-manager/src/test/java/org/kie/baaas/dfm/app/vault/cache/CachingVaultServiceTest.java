@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.vault.cache;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.app.vault.Secret;
+import org.kie.baaas.dfm.app.vault.VaultException;
+import org.kie.baaas.dfm.app.vault.aws.AWSVaultService;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CachingVaultServiceTest {
+
+    private static final String NAME = "daas-foo-credentials";
+
+    @Mock
+    AWSVaultService delegate;
+
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    public void beforeEach() {
+        meterRegistry = new SimpleMeterRegistry();
+        executorService = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        executorService.shutdownNow();
+    }
+
+    private CachingVaultService cache(Duration ttl, Duration negativeTtl) {
+        return new CachingVaultService(delegate, meterRegistry, ttl, negativeTtl);
+    }
+
+    private Secret secret() {
+        return new Secret().setId(NAME).value("client-id", "foo");
+    }
+
+    private double count(String name) {
+        return meterRegistry.counter(name).count();
+    }
+
+    @Test
+    public void get_servesRepeatLookupsFromCache() {
+        CachingVaultService vault = cache(Duration.ofMinutes(5), Duration.ofSeconds(30));
+        Secret secret = secret();
+        when(delegate.get(NAME)).thenReturn(secret);
+
+        assertThat(vault.get(NAME), equalTo(secret));
+        assertThat(vault.get(NAME), equalTo(secret));
+
+        verify(delegate, times(1)).get(NAME);
+        assertThat(count(CachingVaultService.CACHE_MISSES), equalTo(1.0));
+        assertThat(count(CachingVaultService.CACHE_HITS), equalTo(1.0));
+        assertThat(meterRegistry.get(CachingVaultService.CACHE_SIZE).gauge().value(), equalTo(1.0));
+    }
+
+    @Test
+    public void get_remembersMissingSecrets() {
+        CachingVaultService vault = cache(Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+        assertThat(vault.get(NAME), is(nullValue()));
+        assertThat(vault.get(NAME), is(nullValue()));
+
+        verify(delegate, times(1)).get(NAME);
+    }
+
+    @Test
+    public void get_cachesNothingWhenTtlIsZero() {
+        CachingVaultService vault = cache(Duration.ZERO, Duration.ZERO);
+        Secret secret = secret();
+        when(delegate.get(NAME)).thenReturn(secret);
+
+        vault.get(NAME);
+        vault.get(NAME);
+
+        verify(delegate, times(2)).get(NAME);
+    }
+
+    @Test
+    public void get_doesNotCacheFailures() {
+        CachingVaultService vault = cache(Duration.ofMinutes(5), Duration.ofSeconds(30));
+        when(delegate.get(NAME)).thenThrow(new VaultException("Nope!"));
+
+        assertThrows(VaultException.class, () -> vault.get(NAME));
+        assertThrows(VaultException.class, () -> vault.get(NAME));
+
+        verify(delegate, times(2)).get(NAME);
+    }
+
+    @Test
+    public void get_sharesLookupInFlight() throws Exception {
+        CachingVaultService vault = cache(Duration.ofMinutes(5), Duration.ofSeconds(30));
+        Secret secret = secret();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.get(NAME)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return secret;
+        });
+
+        Future<Secret> first = executorService.submit(() -> vault.get(NAME));
+        started.await();
+        Future<Secret> second = executorService.submit(() -> vault.get(NAME));
+        await().until(() -> count(CachingVaultService.CACHE_COALESCED) == 1.0);
+        release.countDown();
+
+        assertThat(first.get(), equalTo(secret));
+        assertThat(second.get(), equalTo(secret));
+        verify(delegate, times(1)).get(NAME);
+    }
+
+    @Test
+    public void create_replacesMissingSecret() {
+        CachingVaultService vault = cache(Duration.ofMinutes(5), Duration.ofSeconds(30));
+        Secret secret = secret();
+
+        assertThat(vault.get(NAME), is(nullValue()));
+        vault.create(secret);
+
+        assertThat(vault.get(NAME), equalTo(secret));
+        verify(delegate).create(secret);
+        verify(delegate, times(1)).get(NAME);
+    }
+
+    @Test
+    public void delete_forgetsSecret() {
+        CachingVaultService vault = cache(Duration.ofMinutes(5), Duration.ofSeconds(30));
+        Secret secret = secret();
+        when(delegate.get(NAME)).thenReturn(secret);
+
+        vault.get(NAME);
+        vault.delete(NAME);
+        vault.get(NAME);
+
+        verify(delegate).delete(NAME);
+        verify(delegate, times(2)).get(NAME);
+    }
+
+    @Test
+    public void getOrCreate_createsMissingSecretOnce() throws Exception {
+        CachingVaultService vault = cache(Duration.ofMinutes(5), Duration.ofSeconds(30));
+        Secret secret = secret();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.get(NAME)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+
+        Future<Secret> first = executorService.submit(() -> vault.getOrCreate(NAME, () -> secret));
+        started.await();
+        Future<Secret> second = executorService.submit(() -> vault.getOrCreate(NAME, () -> secret));
+        await().until(() -> count(CachingVaultService.CACHE_COALESCED) == 1.0);
+        release.countDown();
+
+        assertThat(first.get(), equalTo(secret));
+        assertThat(second.get(), equalTo(secret));
+        verify(delegate, times(1)).create(secret);
+        assertThat(vault.getOrCreate(NAME, () -> secret), equalTo(secret));
+        verify(delegate, times(1)).get(NAME);
+    }
+
+    @Test
+    public void getOrCreate_ignoresRememberedMissingSecret() {
+        CachingVaultService vault = cache(Duration.ofMinutes(5), Duration.ofSeconds(30));
+        Secret secret = secret();
+
+        assertThat(vault.get(NAME), is(nullValue()));
+        assertThat(vault.getOrCreate(NAME, () -> secret), equalTo(secret));
+
+        verify(delegate, times(2)).get(NAME);
+        verify(delegate).create(secret);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.webhook;
+
+import java.net.URL;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kie.baaas.dfm.app.model.webhook.Webhook;
+import org.kie.baaas.dfm.app.model.webhook.WebhookDelivery;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class WebhookDeliveryBatcherTest {
+
+    private static final String PAYLOAD = "{\"specversion\":\"1.0\"}";
+
+    private Webhook webhook;
+
+    private Webhook otherWebhook;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        webhook = new Webhook("customer-id-1", new URL("http://localhost:8080/webhook"));
+        webhook.setBatch(true);
+        otherWebhook = new Webhook("customer-id-1", new URL("http://localhost:8080/other-webhook"));
+        otherWebhook.setBatch(true);
+    }
+
+    private WebhookDelivery delivery(Webhook webhook) {
+        return new WebhookDelivery(webhook, PAYLOAD, ZonedDateTime.now());
+    }
+
+    @Test
+    public void add_returnsBatchOnceFull() {
+        WebhookDeliveryBatcher batcher = new WebhookDeliveryBatcher(Duration.ofHours(1), 2);
+        WebhookDelivery first = delivery(webhook);
+        WebhookDelivery other = delivery(otherWebhook);
+        WebhookDelivery second = delivery(webhook);
+
+        assertThat(batcher.add(first).isPresent(), is(false));
+        assertThat(batcher.add(other).isPresent(), is(false));
+        Optional<List<WebhookDelivery>> batch = batcher.add(second);
+
+        assertThat(batch.isPresent(), is(true));
+        assertThat(batch.get(), contains(first, second));
+        assertThat(batcher.drainExpired(), is(empty()));
+    }
+
+    @Test
+    public void add_ignoresDeliveryAlreadyInBatch() {
+        WebhookDeliveryBatcher batcher = new WebhookDeliveryBatcher(Duration.ofHours(1), 2);
+        WebhookDelivery first = delivery(webhook);
+
+        batcher.add(first);
+
+        assertThat(batcher.add(first).isPresent(), is(false));
+    }
+
+    @Test
+    public void drainExpired_returnsBatchesOnceWindowHasElapsed() {
+        WebhookDeliveryBatcher batcher = new WebhookDeliveryBatcher(Duration.ZERO, 100);
+        WebhookDelivery first = delivery(webhook);
+        WebhookDelivery other = delivery(otherWebhook);
+        WebhookDelivery second = delivery(webhook);
+        batcher.add(first);
+        batcher.add(other);
+        batcher.add(second);
+
+        List<List<WebhookDelivery>> batches = batcher.drainExpired();
+
+        assertThat(batches, contains(List.of(first, second), List.of(other)));
+        assertThat(batcher.drainExpired(), is(empty()));
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.webhook;
+
+import java.net.ConnectException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.app.model.webhook.Webhook;
+import org.kie.baaas.dfm.app.model.webhook.WebhookDelivery;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WebhookDeliveryDispatcherTest {
+
+    private static final String PAYLOAD = "{\"specversion\":\"1.0\"}";
+
+    @Mock
+    WebhookDeliveryOutbox webhookDeliveryOutbox;
+
+    @Mock
+    WebhookDeliveryScheduler webhookDeliveryScheduler;
+
+    @Mock
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    @Mock
+    HttpClient httpClient;
+
+    @Mock
+    HttpResponse<Void> response;
+
+    private MeterRegistry meterRegistry;
+
+    private WebhookDeliveryDispatcher dispatcher;
+
+    private Webhook webhook;
+
+    private WebhookDelivery delivery;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = dispatcher(new WebhookDeliveryBatcher(Duration.ofHours(1), 2));
+        webhook = new Webhook("customer-id-1", new URL("http://localhost:8080/webhook"));
+        delivery = new WebhookDelivery(webhook, PAYLOAD, ZonedDateTime.now());
+    }
+
+    private WebhookDeliveryDispatcher dispatcher(WebhookDeliveryBatcher batcher) {
+        return new WebhookDeliveryDispatcher(webhookDeliveryOutbox, webhookDeliveryScheduler, batcher, meterRegistry, transactionRegistry, httpClient, Duration.ofSeconds(10), false, Duration.ofSeconds(5));
+    }
+
+    private WebhookDelivery batchDelivery() {
+        webhook.setBatch(true);
+        return new WebhookDelivery(webhook, PAYLOAD, ZonedDateTime.now());
+    }
+
+    private void respond(CompletableFuture<HttpResponse<Void>> outcome) {
+        when(httpClient.sendAsync(any(HttpRequest.class), ArgumentMatchers.<BodyHandler<Void>> any())).thenReturn(outcome);
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).tag("url", webhook.getUrl().toString()).counter().count();
+    }
+
+    private void withoutTransaction() {
+        when(transactionRegistry.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+    }
+
+    @Test
+    public void deliver_recordsDeliveryBeforeSchedulingIt() {
+        withoutTransaction();
+        when(webhookDeliveryOutbox.add(webhook, PAYLOAD)).thenReturn(delivery);
+
+        dispatcher.deliver(webhook, PAYLOAD);
+
+        verify(webhookDeliveryScheduler).schedule(eq(webhook.getId()), eq("localhost"), eq(delivery.getId()), any());
+    }
+
+    @Test
+    public void deliver_schedulesDeliveryOnceTransactionCommits() {
+        when(transactionRegistry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        when(webhookDeliveryOutbox.add(webhook, PAYLOAD)).thenReturn(delivery);
+
+        dispatcher.deliver(webhook, PAYLOAD);
+
+        ArgumentCaptor<Synchronization> captor = ArgumentCaptor.forClass(Synchronization.class);
+        verify(transactionRegistry).registerInterposedSynchronization(captor.capture());
+        verify(webhookDeliveryScheduler, never()).schedule(anyString(), anyString(), anyString(), any());
+
+        captor.getValue().afterCompletion(Status.STATUS_COMMITTED);
+        verify(webhookDeliveryScheduler).schedule(eq(webhook.getId()), eq("localhost"), eq(delivery.getId()), any());
+    }
+
+    @Test
+    public void deliver_doesNotScheduleDeliveryWhenTransactionRollsBack() {
+        when(transactionRegistry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        when(webhookDeliveryOutbox.add(webhook, PAYLOAD)).thenReturn(delivery);
+
+        dispatcher.deliver(webhook, PAYLOAD);
+
+        ArgumentCaptor<Synchronization> captor = ArgumentCaptor.forClass(Synchronization.class);
+        verify(transactionRegistry).registerInterposedSynchronization(captor.capture());
+        captor.getValue().afterCompletion(Status.STATUS_ROLLEDBACK);
+
+        verify(webhookDeliveryScheduler, never()).schedule(anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void dispatch_schedulesClaimedDeliveries() {
+        when(webhookDeliveryOutbox.claimDue()).thenReturn(Arrays.asList(delivery));
+        when(webhookDeliveryScheduler.schedule(eq(webhook.getId()), eq("localhost"), eq(delivery.getId()), any())).thenReturn(true);
+        when(response.statusCode()).thenReturn(200);
+        respond(CompletableFuture.completedFuture(response));
+
+        dispatcher.dispatch();
+
+        ArgumentCaptor<Supplier<CompletionStage<?>>> captor = ArgumentCaptor.forClass(Supplier.class);
+        verify(webhookDeliveryScheduler).schedule(eq(webhook.getId()), eq("localhost"), eq(delivery.getId()), captor.capture());
+        captor.getValue().get().toCompletableFuture().join();
+        verify(webhookDeliveryOutbox).complete(List.of(delivery.getId()));
+    }
+
+    @Test
+    public void deliver_schedulesBatchOnceFull() {
+        withoutTransaction();
+        WebhookDelivery first = batchDelivery();
+        WebhookDelivery second = batchDelivery();
+        when(webhookDeliveryOutbox.add(webhook, PAYLOAD)).thenReturn(first, second);
+
+        dispatcher.deliver(webhook, PAYLOAD);
+        verify(webhookDeliveryScheduler, never()).schedule(anyString(), anyString(), anyString(), any());
+
+        dispatcher.deliver(webhook, PAYLOAD);
+        verify(webhookDeliveryScheduler).schedule(eq(webhook.getId()), eq("localhost"), eq(first.getId()), any());
+    }
+
+    @Test
+    public void dispatchBatches_schedulesBatchOnceWindowHasElapsed() {
+        dispatcher = dispatcher(new WebhookDeliveryBatcher(Duration.ZERO, 100));
+        WebhookDelivery first = batchDelivery();
+        when(webhookDeliveryOutbox.claimDue()).thenReturn(Arrays.asList(first));
+        when(webhookDeliveryScheduler.schedule(eq(webhook.getId()), eq("localhost"), eq(first.getId()), any())).thenReturn(true);
+
+        dispatcher.dispatch();
+        verify(webhookDeliveryScheduler, never()).schedule(anyString(), anyString(), anyString(), any());
+
+        dispatcher.dispatchBatches();
+        verify(webhookDeliveryScheduler).schedule(eq(webhook.getId()), eq("localhost"), eq(first.getId()), any());
+    }
+
+    @Test
+    public void send_postsBatchAndCompletesItAsAWhole() {
+        WebhookDelivery first = batchDelivery();
+        WebhookDelivery second = batchDelivery();
+        when(response.statusCode()).thenReturn(200);
+        respond(CompletableFuture.completedFuture(response));
+
+        dispatcher.send(List.of(first, second)).toCompletableFuture().join();
+
+        ArgumentCaptor<HttpRequest> captor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient).sendAsync(captor.capture(), any());
+        assertThat(captor.getValue().headers().firstValue("Content-Type").orElse(null), equalTo("application/cloudevents-batch+json"));
+        verify(webhookDeliveryOutbox).complete(List.of(first.getId(), second.getId()));
+        assertThat(counter(WebhookDeliveryDispatcher.INVOCATIONS), equalTo(1.0));
+    }
+
+    @Test
+    public void send_retriesBatchAsAWhole() {
+        WebhookDelivery first = batchDelivery();
+        WebhookDelivery second = batchDelivery();
+        when(response.statusCode()).thenReturn(503);
+        respond(CompletableFuture.completedFuture(response));
+
+        dispatcher.send(List.of(first, second)).toCompletableFuture().join();
+
+        verify(webhookDeliveryOutbox).retry(List.of(first.getId(), second.getId()), "HTTP status 503");
+    }
+
+    @Test
+    public void send_completesAcceptedDelivery() {
+        when(response.statusCode()).thenReturn(202);
+        respond(CompletableFuture.completedFuture(response));
+
+        dispatcher.send(delivery).toCompletableFuture().join();
+
+        ArgumentCaptor<HttpRequest> captor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient).sendAsync(captor.capture(), any());
+        HttpRequest request = captor.getValue();
+        assertThat(request.uri().toString(), equalTo(webhook.getUrl().toString()));
+        assertThat(request.headers().firstValue("Content-Type").orElse(null), equalTo("application/cloudevents+json"));
+        verify(webhookDeliveryOutbox).complete(List.of(delivery.getId()));
+        verify(webhookDeliveryOutbox, never()).retry(anyList(), anyString());
+        assertThat(counter(WebhookDeliveryDispatcher.INVOCATIONS), equalTo(1.0));
+        assertThat(counter(WebhookDeliveryDispatcher.SUCCESS), equalTo(1.0));
+        assertThat(meterRegistry.get(WebhookDeliveryDispatcher.LATENCY).tag("host", "localhost").timer().count(), equalTo(1L));
+    }
+
+    @Test
+    public void send_retriesRejectedDelivery() {
+        when(response.statusCode()).thenReturn(503);
+        respond(CompletableFuture.completedFuture(response));
+
+        dispatcher.send(delivery).toCompletableFuture().join();
+
+        verify(webhookDeliveryOutbox).retry(List.of(delivery.getId()), "HTTP status 503");
+        verify(webhookDeliveryOutbox, never()).complete(anyList());
+        assertThat(counter(WebhookDeliveryDispatcher.FAILURE), equalTo(1.0));
+    }
+
+    @Test
+    public void send_retriesUnreachableWebhook() {
+        respond(CompletableFuture.failedFuture(new ConnectException("Connection refused")));
+
+        dispatcher.send(delivery).toCompletableFuture().join();
+
+        verify(webhookDeliveryOutbox).retry(eq(List.of(delivery.getId())), anyString());
+        assertThat(counter(WebhookDeliveryDispatcher.FAILURE), equalTo(1.0));
+    }
+}
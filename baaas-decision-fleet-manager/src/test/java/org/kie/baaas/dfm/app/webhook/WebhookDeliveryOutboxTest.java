@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.webhook;
+
+import java.net.URL;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kie.baaas.dfm.app.dao.WebhookDeliveryDAO;
+import org.kie.baaas.dfm.app.model.webhook.Webhook;
+import org.kie.baaas.dfm.app.model.webhook.WebhookDelivery;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WebhookDeliveryOutboxTest {
+
+    private static final String PAYLOAD = "{\"specversion\":\"1.0\"}";
+
+    @Mock
+    WebhookDeliveryDAO webhookDeliveryDAO;
+
+    private WebhookDeliveryOutbox webhookDeliveryOutbox;
+
+    private Webhook webhook;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        webhookDeliveryOutbox = new WebhookDeliveryOutbox(webhookDeliveryDAO, Duration.ofMinutes(5), Duration.ofSeconds(10), Duration.ofSeconds(30), 3, 100);
+        webhook = new Webhook("customer-id-1", new URL("http://localhost:8080/webhook"));
+    }
+
+    private WebhookDelivery delivery(int attempts) {
+        WebhookDelivery delivery = new WebhookDelivery(webhook, PAYLOAD, ZonedDateTime.now());
+        delivery.setAttempts(attempts);
+        when(webhookDeliveryDAO.findById(delivery.getId())).thenReturn(delivery);
+        return delivery;
+    }
+
+    @Test
+    public void add_leasesNewDeliveryToCaller() {
+        WebhookDelivery delivery = webhookDeliveryOutbox.add(webhook, PAYLOAD);
+
+        verify(webhookDeliveryDAO).persist(delivery);
+        assertThat(delivery.getWebhookId(), equalTo(webhook.getId()));
+        assertThat(delivery.getUrl(), equalTo(webhook.getUrl()));
+        assertThat(delivery.getPayload(), equalTo(PAYLOAD));
+        assertThat(delivery.getAttempts(), equalTo(0));
+        assertThat(delivery.getNextAttemptAt().isAfter(ZonedDateTime.now().plusMinutes(4)), is(true));
+    }
+
+    @Test
+    public void retry_backsOffExponentiallyWithJitter() {
+        WebhookDelivery delivery = delivery(1);
+
+        assertThat(webhookDeliveryOutbox.retry(delivery.getId(), "HTTP status 503"), is(true));
+
+        // The second attempt backs off 20s, half of which is randomised
+        assertThat(delivery.getAttempts(), equalTo(2));
+        assertThat(delivery.getLastError(), equalTo("HTTP status 503"));
+        assertThat(delivery.getNextAttemptAt().isAfter(ZonedDateTime.now().plusSeconds(9)), is(true));
+        assertThat(delivery.getNextAttemptAt().isBefore(ZonedDateTime.now().plusSeconds(21)), is(true));
+    }
+
+    @Test
+    public void retry_capsBackoff() {
+        WebhookDelivery delivery = delivery(1);
+        webhookDeliveryOutbox = new WebhookDeliveryOutbox(webhookDeliveryDAO, Duration.ofMinutes(5), Duration.ofMinutes(1), Duration.ofSeconds(30), 3, 100);
+
+        assertThat(webhookDeliveryOutbox.retry(delivery.getId(), "HTTP status 503"), is(true));
+
+        assertThat(delivery.getNextAttemptAt().isBefore(ZonedDateTime.now().plusSeconds(31)), is(true));
+    }
+
+    @Test
+    public void retry_givesUpAfterMaxAttempts() {
+        WebhookDelivery delivery = delivery(2);
+
+        assertThat(webhookDeliveryOutbox.retry(delivery.getId(), "HTTP status 503"), is(false));
+
+        verify(webhookDeliveryDAO).delete(delivery);
+    }
+
+    @Test
+    public void retry_retriesBatchTogether() {
+        WebhookDelivery first = delivery(0);
+        WebhookDelivery second = delivery(1);
+        WebhookDelivery exhausted = delivery(2);
+
+        webhookDeliveryOutbox.retry(List.of(first.getId(), second.getId(), exhausted.getId()), "HTTP status 503");
+
+        assertThat(first.getAttempts(), equalTo(1));
+        assertThat(second.getAttempts(), equalTo(2));
+        assertThat(second.getNextAttemptAt(), equalTo(first.getNextAttemptAt()));
+        verify(webhookDeliveryDAO).delete(exhausted);
+    }
+
+    @Test
+    public void complete() {
+        webhookDeliveryOutbox.complete("delivery-id");
+
+        verify(webhookDeliveryDAO).deleteById("delivery-id");
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2021 Red Hat, Inc. and/or its affiliates.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.kie.baaas.dfm.app.webhook;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class WebhookDeliverySchedulerTest {
+
+    private MeterRegistry meterRegistry;
+
+    private final List<String> started = new ArrayList<>();
+
+    private final List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+
+    @BeforeEach
+    public void beforeEach() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private Supplier<CompletionStage<Void>> delivery(String name) {
+        return () -> {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            started.add(name);
+            inFlight.add(future);
+            return future;
+        };
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    private double hostGauge(String name, String host) {
+        return meterRegistry.get(name).tag("host", host).gauge().value();
+    }
+
+    @Test
+    public void schedule_servesWebhooksInTurn() {
+        WebhookDeliveryScheduler scheduler = new WebhookDeliveryScheduler(meterRegistry, 1, 1, 10);
+
+        scheduler.schedule("webhook-a", "host-a", "a1", delivery("a1"));
+        scheduler.schedule("webhook-a", "host-a", "a2", delivery("a2"));
+        scheduler.schedule("webhook-a", "host-a", "a3", delivery("a3"));
+        scheduler.schedule("webhook-b", "host-b", "b1", delivery("b1"));
+
+        assertThat(started, contains("a1"));
+        assertThat(gauge(WebhookDeliveryScheduler.IN_FLIGHT_DELIVERIES), equalTo(1.0));
+        assertThat(gauge(WebhookDeliveryScheduler.QUEUED_DELIVERIES), equalTo(3.0));
+
+        for (int i = 0; i < 4; i++) {
+            inFlight.get(i).complete(null);
+        }
+
+        assertThat(started, contains("a1", "a2", "b1", "a3"));
+        assertThat(gauge(WebhookDeliveryScheduler.IN_FLIGHT_DELIVERIES), equalTo(0.0));
+        assertThat(gauge(WebhookDeliveryScheduler.QUEUED_DELIVERIES), equalTo(0.0));
+    }
+
+    @Test
+    public void schedule_boundsConcurrentDeliveriesPerHost() {
+        WebhookDeliveryScheduler scheduler = new WebhookDeliveryScheduler(meterRegistry, 10, 1, 10);
+
+        scheduler.schedule("webhook-a", "slow-host", "a1", delivery("a1"));
+        scheduler.schedule("webhook-b", "slow-host", "b1", delivery("b1"));
+        scheduler.schedule("webhook-c", "other-host", "c1", delivery("c1"));
+        scheduler.schedule("webhook-c", "other-host", "c2", delivery("c2"));
+
+        // The second Webhook on the slow host waits, while the other host is served
+        assertThat(started, contains("a1", "c1"));
+        assertThat(hostGauge(WebhookDeliveryScheduler.HOST_IN_FLIGHT_DELIVERIES, "slow-host"), equalTo(1.0));
+        assertThat(hostGauge(WebhookDeliveryScheduler.HOST_QUEUED_DELIVERIES, "slow-host"), equalTo(1.0));
+        assertThat(hostGauge(WebhookDeliveryScheduler.HOST_IN_FLIGHT_DELIVERIES, "other-host"), equalTo(1.0));
+        assertThat(hostGauge(WebhookDeliveryScheduler.HOST_QUEUED_DELIVERIES, "other-host"), equalTo(1.0));
+
+        inFlight.get(1).complete(null);
+        assertThat(started, contains("a1", "c1", "c2"));
+
+        inFlight.get(0).completeExceptionally(new RuntimeException("Delivery failed"));
+        assertThat(started, contains("a1", "c1", "c2", "b1"));
+        assertThat(hostGauge(WebhookDeliveryScheduler.HOST_QUEUED_DELIVERIES, "slow-host"), equalTo(0.0));
+    }
+
+    @Test
+    public void schedule_coalescesDeliveryAlreadyScheduled() {
+        WebhookDeliveryScheduler scheduler = new WebhookDeliveryScheduler(meterRegistry, 1, 1, 10);
+
+        scheduler.schedule("webhook-a", "host-a", "a1", delivery("a1"));
+        scheduler.schedule("webhook-a", "host-a", "a2", delivery("a2"));
+        assertThat(scheduler.schedule("webhook-a", "host-a", "a1", delivery("a1")), is(true));
+        assertThat(scheduler.schedule("webhook-a", "host-a", "a2", delivery("a2")), is(true));
+        assertThat(gauge(WebhookDeliveryScheduler.QUEUED_DELIVERIES), equalTo(1.0));
+        assertThat(meterRegistry.get(WebhookDeliveryScheduler.COALESCED_DELIVERIES).counter().count(), equalTo(2.0));
+
+        inFlight.get(0).complete(null);
+        inFlight.get(1).complete(null);
+        assertThat(started, contains("a1", "a2"));
+
+        // Once completed, a delivery that is claimed again is attempted again
+        scheduler.schedule("webhook-a", "host-a", "a1", delivery("a1"));
+        assertThat(started, contains("a1", "a2", "a1"));
+    }
+
+    @Test
+    public void schedule_releasesDeliveryThatFailsToStart() {
+        WebhookDeliveryScheduler scheduler = new WebhookDeliveryScheduler(meterRegistry, 1, 1, 10);
+
+        scheduler.schedule("webhook-a", "host-a", "a1", () -> {
+            throw new IllegalStateException("Nope!");
+        });
+        scheduler.schedule("webhook-a", "host-a", "a2", delivery("a2"));
+
+        assertThat(started, contains("a2"));
+    }
+
+    @Test
+    public void schedule_startsDeliveriesOutsideTheMonitor() {
+        WebhookDeliveryScheduler scheduler = new WebhookDeliveryScheduler(meterRegistry, 1, 1, 10);
+        List<Boolean> heldLock = new ArrayList<>();
+
+        scheduler.schedule("webhook-a", "host-a", "a1", () -> {
+            heldLock.add(Thread.holdsLock(scheduler));
+            return CompletableFuture.completedFuture(null);
+        });
+
+        assertThat(heldLock, contains(false));
+    }
+
+    @Test
+    public void schedule_startsDeliveriesThatCompleteImmediatelyInALoop() {
+        int deliveries = 10000;
+        WebhookDeliveryScheduler scheduler = new WebhookDeliveryScheduler(meterRegistry, 1, 1, deliveries);
+        scheduler.schedule("webhook-a", "host-a", "a0", delivery("a0"));
+        for (int i = 1; i <= deliveries; i++) {
+            String name = "a" + i;
+            scheduler.schedule("webhook-a", "host-a", name, () -> {
+                started.add(name);
+                return CompletableFuture.completedFuture(null);
+            });
+        }
+
+        // Each delivery completes as it is started, which must not start the next from within its completion
+        inFlight.get(0).complete(null);
+
+        assertThat(started.size(), equalTo(deliveries + 1));
+        assertThat(gauge(WebhookDeliveryScheduler.IN_FLIGHT_DELIVERIES), equalTo(0.0));
+        assertThat(gauge(WebhookDeliveryScheduler.QUEUED_DELIVERIES), equalTo(0.0));
+    }
+
+    @Test
+    public void schedule_rejectsWhenWebhookQueueIsFull() {
+        WebhookDeliveryScheduler scheduler = new WebhookDeliveryScheduler(meterRegistry, 1, 1, 1);
+
+        assertThat(scheduler.schedule("webhook-a", "host-a", "a1", delivery("a1")), is(true));
+        assertThat(scheduler.schedule("webhook-a", "host-a", "a2", delivery("a2")), is(true));
+
+        assertThat(scheduler.schedule("webhook-a", "host-a", "a3", delivery("a3")), is(false));
+        assertThat(scheduler.schedule("webhook-b", "host-b", "b1", delivery("b1")), is(true));
+    }
+}
@@ -16,4 +16,4 @@
 
 # Creates the required bucket in the localstack s3 mock
 set -ex
-awslocal s3 mb s3://decisions
\ No newline at end of file
+awslocal s3 mb s3://decisions